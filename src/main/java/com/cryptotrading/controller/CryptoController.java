@@ -1,6 +1,13 @@
 package com.cryptotrading.controller;
 
+import com.cryptotrading.service.CandleEngine;
+import com.cryptotrading.service.Candles;
 import com.cryptotrading.service.KrakenWebSocketService;
+import com.cryptotrading.service.OrderBook;
+import com.cryptotrading.service.OrderBookSnapshot;
+import com.cryptotrading.service.OrderBookStore;
+import com.cryptotrading.service.PriceSnapshot;
+import com.cryptotrading.service.PriceTable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -27,6 +34,15 @@ public class CryptoController {
 
     @Autowired
     private KrakenWebSocketService krakenWebSocketService;
+
+    @Autowired
+    private PriceTable priceTable;
+
+    @Autowired
+    private OrderBookStore orderBookStore;
+
+    @Autowired
+    private CandleEngine candleEngine;
     
     private final RestTemplate restTemplate = new RestTemplate();
     private final ObjectMapper objectMapper = new ObjectMapper();
@@ -84,18 +100,15 @@ public class CryptoController {
     @GetMapping("/crypto-data")
     public ResponseEntity<Map<String, Object>> getCryptoData() {
         Map<String, Object> response = new HashMap<>();
-        
-        // Get latest prices and 24h changes from the WebSocket service
-        Map<String, Double> latestPrices = krakenWebSocketService.getLatestPrices();
-        Map<String, Double> dailyChanges = krakenWebSocketService.get24hChanges();
-        
-        // Convert prices to the format expected by frontend
+
+        // Read each symbol's row straight from the price table; every row is
+        // internally consistent and nothing is copied besides the response itself
         List<Map<String, Object>> pricesList = new ArrayList<>();
-        latestPrices.forEach((symbol, price) -> {
+        priceTable.forEach(new PriceSnapshot(), snapshot -> {
             Map<String, Object> priceData = new HashMap<>();
-            priceData.put("symbol", symbol);
-            priceData.put("price", price);
-            priceData.put("change24h", dailyChanges.getOrDefault(symbol, 0.0));
+            priceData.put("symbol", snapshot.getSymbol());
+            priceData.put("price", snapshot.getLast());
+            priceData.put("change24h", snapshot.getChange24h());
             pricesList.add(priceData);
         });
 
@@ -103,6 +116,69 @@ public class CryptoController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/order-book")
+    public ResponseEntity<Map<String, Object>> getOrderBook(@RequestParam String symbol,
+                                                            @RequestParam(defaultValue = "10") int depth) {
+        OrderBook book = orderBookStore.get(symbol);
+        if (book == null) {
+            return ResponseEntity.status(404).body(Map.of("message", "No order book for " + symbol));
+        }
+
+        OrderBookSnapshot snapshot = new OrderBookSnapshot();
+        book.read(snapshot, Math.max(1, Math.min(depth, book.getDepth())));
+        List<double[]> asks = new ArrayList<>();
+        for (int i = 0; i < snapshot.getAskCount(); i++) {
+            asks.add(new double[]{snapshot.getAskPrice(i), snapshot.getAskVolume(i)});
+        }
+        List<double[]> bids = new ArrayList<>();
+        for (int i = 0; i < snapshot.getBidCount(); i++) {
+            bids.add(new double[]{snapshot.getBidPrice(i), snapshot.getBidVolume(i)});
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("symbol", snapshot.getSymbol());
+        response.put("synced", snapshot.isSynced());
+        response.put("updatedAt", snapshot.getUpdatedAt());
+        response.put("asks", asks);
+        response.put("bids", bids);
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/candles")
+    public ResponseEntity<Map<String, Object>> getCandles(@RequestParam String symbol,
+                                                         @RequestParam(defaultValue = "1m") String interval,
+                                                         @RequestParam(defaultValue = "100") int limit) {
+        CandleEngine.Interval candleInterval;
+        try {
+            candleInterval = CandleEngine.Interval.fromLabel(interval);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+
+        // Bars are oldest first; the last one is still in progress
+        List<Map<String, Object>> bars = new ArrayList<>();
+        Candles candles = new Candles();
+        int symbolId = candleEngine.getSymbolRegistry().idOf(symbol);
+        if (symbolId >= 0 && candleEngine.read(symbolId, candleInterval, Math.max(1, limit), candles)) {
+            for (int i = 0; i < candles.getCount(); i++) {
+                Map<String, Object> bar = new LinkedHashMap<>();
+                bar.put("time", candles.getTime(i));
+                bar.put("open", candles.getOpen(i));
+                bar.put("high", candles.getHigh(i));
+                bar.put("low", candles.getLow(i));
+                bar.put("close", candles.getClose(i));
+                bar.put("volume", candles.getVolume(i));
+                bars.add(bar);
+            }
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("symbol", symbol);
+        response.put("interval", candleInterval.getLabel());
+        response.put("candles", bars);
+        return ResponseEntity.ok(response);
+    }
+
     @PostMapping("/subscribe")
     public ResponseEntity<?> subscribeToPair(@RequestBody Map<String, String> request) {
         try {
@@ -0,0 +1,160 @@
+package com.cryptotrading.controller;
+
+import com.cryptotrading.service.CandleEngine;
+import com.cryptotrading.service.KrakenWebSocketService;
+import com.cryptotrading.service.OrderBookStore;
+import com.cryptotrading.service.PriceBusService;
+import com.cryptotrading.service.RestingOrderService;
+import com.cryptotrading.service.TickJournal;
+import com.cryptotrading.service.TickPipeline;
+import com.cryptotrading.service.TickReplayService;
+import com.cryptotrading.websocket.CryptoWebSocketEndpoint;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import java.util.Map;
+
+/**
+ * REST Controller exposing runtime metrics of the market data path
+ * Maps all endpoints to the base URL path "/api/metrics"
+ */
+@RestController
+@RequestMapping("/api/metrics")
+public class MetricsController {
+
+    @Autowired
+    private TickPipeline tickPipeline;
+
+    @Autowired
+    private KrakenWebSocketService krakenWebSocketService;
+
+    @Autowired
+    private OrderBookStore orderBookStore;
+
+    @Autowired
+    private CandleEngine candleEngine;
+
+    @Autowired
+    private TickJournal tickJournal;
+
+    @Autowired
+    private TickReplayService tickReplayService;
+
+    @Autowired
+    private PriceBusService priceBusService;
+
+    @Autowired
+    private RestingOrderService restingOrderService;
+
+    /**
+     * Handles GET requests for tick pipeline metrics
+     * @return Ring buffer depth, producer waits and per-stage lag
+     */
+    @GetMapping("/pipeline")
+    public ResponseEntity<Map<String, Object>> getPipelineMetrics() {
+        return ResponseEntity.ok(tickPipeline.getMetrics());
+    }
+
+    /**
+     * Handles GET requests for Kraken subscription metrics
+     * @return Pending/confirmed/failed counts and the duration of the last resubscribe, summed over shards
+     */
+    @GetMapping("/subscriptions")
+    public ResponseEntity<Map<String, Object>> getSubscriptionMetrics() {
+        return ResponseEntity.ok(krakenWebSocketService.getSubscriptionMetrics());
+    }
+
+    /**
+     * Handles GET requests for Kraken feed metrics
+     * @return Active upstream connection, failover counters and per-connection liveness
+     */
+    @GetMapping("/feed")
+    public ResponseEntity<Map<String, Object>> getFeedMetrics() {
+        return ResponseEntity.ok(krakenWebSocketService.getFeedMetrics());
+    }
+
+    /**
+     * Handles GET requests for client WebSocket metrics
+     * @return Sent and conflated updates, queued backlog and the most lagging sessions
+     */
+    @GetMapping("/sessions")
+    public ResponseEntity<Map<String, Object>> getSessionMetrics() {
+        return ResponseEntity.ok(CryptoWebSocketEndpoint.getOutboundMetrics());
+    }
+
+    /**
+     * Handles GET requests for order book metrics
+     * @return Tracked and synced book counts, applied updates and checksum mismatches
+     */
+    @GetMapping("/order-books")
+    public ResponseEntity<Map<String, Object>> getOrderBookMetrics() {
+        return ResponseEntity.ok(orderBookStore.getMetrics());
+    }
+
+    /**
+     * Handles GET requests for candle engine metrics
+     * @return Pairs with bars, bar storage per pair and updates that arrived too late
+     */
+    @GetMapping("/candles")
+    public ResponseEntity<Map<String, Object>> getCandleMetrics() {
+        return ResponseEntity.ok(candleEngine.getMetrics());
+    }
+
+    /**
+     * Handles GET requests for tick journal metrics
+     * @return Current segment, records written and disk force timings
+     */
+    @GetMapping("/journal")
+    public ResponseEntity<Map<String, Object>> getJournalMetrics() {
+        return ResponseEntity.ok(tickJournal.getMetrics());
+    }
+
+    /**
+     * Handles GET requests for tick replay metrics
+     * @return Replay speed and send rate with the broadcast throughput and latency it causes
+     */
+    @GetMapping("/replay")
+    public ResponseEntity<Map<String, Object>> getReplayMetrics() {
+        return ResponseEntity.ok(tickReplayService.getMetrics());
+    }
+
+    /**
+     * Handles GET requests for price bus metrics
+     * @return Whether this instance leads, the bus head and ticks published, received and overrun
+     */
+    @GetMapping("/bus")
+    public ResponseEntity<Map<String, Object>> getBusMetrics() {
+        return ResponseEntity.ok(priceBusService.getMetrics());
+    }
+
+    /**
+     * Handles GET requests for resting order metrics
+     * @return Open orders and counts of orders placed, cancelled, filled and rejected
+     */
+    @GetMapping("/orders")
+    public ResponseEntity<Map<String, Object>> getOrderMetrics() {
+        return ResponseEntity.ok(restingOrderService.getMetrics());
+    }
+
+    /**
+     * Handles POST requests to replay the recording again at another speed
+     * @param speed Speed relative to the recording, 0 for as fast as possible
+     * @return Replay metrics, 400 for a negative speed or 409 if replay is not enabled
+     */
+    @PostMapping("/replay")
+    public ResponseEntity<Map<String, Object>> restartReplay(@RequestParam double speed) {
+        if (speed < 0) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Replay speed must not be negative"));
+        }
+        if (!tickReplayService.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", "Replay is not enabled"));
+        }
+        tickReplayService.replay(speed);
+        return ResponseEntity.ok(tickReplayService.getMetrics());
+    }
+}
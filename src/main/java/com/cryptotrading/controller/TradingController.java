@@ -2,10 +2,13 @@
 package com.cryptotrading.controller;
 
 // Import necessary classes and dependencies
+import com.cryptotrading.service.RestingOrderService;
 import com.cryptotrading.service.TradingService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import java.util.List;
 import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,9 +27,14 @@ public class TradingController {
     @Autowired
     private TradingService tradingService;
 
+    // Resting orders executed from the live price feed
+    @Autowired
+    private RestingOrderService restingOrderService;
+
     /**
-     * Handles POST requests to execute trades
-     * @param request Map containing trade parameters in the request body
+     * Handles POST requests to execute trades at the live bid or ask
+     * @param request Map containing trade parameters in the request body; accountId, the expected
+     *                price and maxSlippage are optional
      * @return ResponseEntity with trade result or error message
      */
     @PostMapping("/trade")
@@ -35,16 +43,22 @@ public class TradingController {
             log.info("Received trade request: {}", request);
             
             // Extract trade parameters from request body
+            Object account = request.getOrDefault("accountId", TradingService.DEFAULT_ACCOUNT);
+            String accountId = account instanceof String id ? id : null;
             String type = (String) request.get("type");
             String symbol = (String) request.get("symbol");
             double amount = ((Number) request.get("amount")).doubleValue();
-            double price = ((Number) request.get("price")).doubleValue();
+            // The fill price comes from the live quote; the client's price only bounds slippage
+            double price = request.get("price") instanceof Number expected ? expected.doubleValue() : Double.NaN;
+            double maxSlippage = request.get("maxSlippage") instanceof Number slippage
+                ? slippage.doubleValue() : Double.NaN;
 
-            log.info("Processing trade - Type: {}, Symbol: {}, Amount: {}, Price: {}", 
+            log.info("Processing trade - Type: {}, Symbol: {}, Amount: {}, Expected price: {}", 
                     type, symbol, amount, price);
 
             // Execute trade through service layer
-            Map<String, Object> result = tradingService.executeTrade(type, symbol, amount, price);
+            Map<String, Object> result = tradingService.executeMarketTrade(accountId, type, symbol, amount, price,
+                maxSlippage);
             log.info("Trade executed successfully: {}", result);
             return ResponseEntity.ok(result);
         } catch (IllegalArgumentException e) {
@@ -60,14 +74,70 @@ public class TradingController {
         }
     }
 
+    /**
+     * Handles POST requests to place a resting limit, stop-loss or take-profit order
+     * @param request Map containing type, side, symbol, amount and price; accountId is optional
+     * @return ResponseEntity with the open order or error message
+     */
+    @PostMapping("/orders")
+    public ResponseEntity<?> placeOrder(@RequestBody Map<String, Object> request) {
+        try {
+            Object account = request.getOrDefault("accountId", TradingService.DEFAULT_ACCOUNT);
+            String accountId = account instanceof String id ? id : null;
+            if (!(request.get("amount") instanceof Number amount) || !(request.get("price") instanceof Number price)) {
+                throw new IllegalArgumentException("Amount and price are required");
+            }
+            Map<String, Object> order = restingOrderService.place(accountId, (String) request.get("type"),
+                (String) request.get("side"), (String) request.get("symbol"), amount.doubleValue(), price.doubleValue());
+            log.info("Order placed: {}", order);
+            return ResponseEntity.ok(order);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid order request: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                .body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error placing order", e);
+            return ResponseEntity.internalServerError()
+                .body(Map.of("message", "Internal server error"));
+        }
+    }
+
+    /**
+     * Handles GET requests to list open resting orders
+     * @param accountId Account whose orders are listed
+     * @return ResponseEntity with the open orders, newest first
+     */
+    @GetMapping("/orders")
+    public ResponseEntity<List<Map<String, Object>>> getOpenOrders(
+            @RequestParam(defaultValue = TradingService.DEFAULT_ACCOUNT) String accountId) {
+        return ResponseEntity.ok(restingOrderService.getOpenOrders(accountId));
+    }
+
+    /**
+     * Handles DELETE requests to cancel a resting order
+     * @param id Order ID returned when the order was placed
+     * @param accountId Account that placed the order
+     * @return ResponseEntity confirming the cancel, or 404 if the order is not open for the account
+     */
+    @DeleteMapping("/orders/{id}")
+    public ResponseEntity<?> cancelOrder(@PathVariable long id,
+                                         @RequestParam(defaultValue = TradingService.DEFAULT_ACCOUNT) String accountId) {
+        if (!restingOrderService.cancel(accountId, id)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(Map.of("message", "Order not found"));
+        }
+        return ResponseEntity.ok(Map.of("id", id, "cancelled", true));
+    }
+
     /**
      * Handles POST requests to reset user account state
+     * @param accountId Account to reset
      * @return ResponseEntity with reset operation result or error message
      */
     @PostMapping("/reset")
-    public ResponseEntity<?> resetAccount() {
+    public ResponseEntity<?> resetAccount(@RequestParam(defaultValue = TradingService.DEFAULT_ACCOUNT) String accountId) {
         try {
-            Map<String, Object> result = tradingService.resetAccount();
+            Map<String, Object> result = tradingService.resetAccount(accountId);
             return ResponseEntity.ok(result);
         } catch (Exception e) {
             log.error("Error resetting account", e);
@@ -78,12 +148,13 @@ public class TradingController {
 
     /**
      * Handles GET requests to retrieve initial account state and market data
+     * @param accountId Account whose state is returned
      * @return ResponseEntity with initial data or error message
      */
     @GetMapping("/initial-data")
-    public ResponseEntity<?> getInitialData() {
+    public ResponseEntity<?> getInitialData(@RequestParam(defaultValue = TradingService.DEFAULT_ACCOUNT) String accountId) {
         try {
-            Map<String, Object> state = tradingService.getUpdatedState();
+            Map<String, Object> state = tradingService.getUpdatedState(accountId);
             return ResponseEntity.ok(state);
         } catch (Exception e) {
             log.error("Error fetching initial data", e);
@@ -0,0 +1,23 @@
+// Package declaration for model classes
+package com.cryptotrading.model;
+
+/**
+ * Order in which the lots of a position are sold, which decides the cost basis and therefore
+ * the realized profit/loss of a sale.
+ */
+public enum CostBasisMethod {
+    /**
+     * First in, first out: the oldest lots are sold first
+     */
+    FIFO,
+
+    /**
+     * Last in, first out: the newest lots are sold first
+     */
+    LIFO,
+
+    /**
+     * Highest in, first out: the lots with the highest cost per unit are sold first
+     */
+    HIFO
+}
@@ -0,0 +1,170 @@
+package com.cryptotrading.model;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * Arithmetic on amounts held as scaled {@code long}s: a value with {@code decimals} decimal
+ * places is stored as {@code value * 10^decimals}.
+ *
+ * <p>Every operation that can lose digits takes an explicit {@link RoundingMode}. Results are
+ * computed in {@code long} arithmetic; only a product that overflows 64 bits falls back to
+ * {@link BigDecimal}, so ordinary trades allocate nothing.</p>
+ */
+public final class FixedPoint {
+    /**
+     * Decimal places of account cash balances and realized profit/loss.
+     */
+    public static final int CASH_DECIMALS = 8;
+    /**
+     * Decimal places of trade prices.
+     */
+    public static final int PRICE_DECIMALS = 8;
+    public static final int MAX_DECIMALS = 18;
+
+    private static final long[] POW10 = new long[MAX_DECIMALS + 1];
+    // Doubles below this hold every integer exactly
+    private static final double EXACT_LIMIT = 0x1p53;
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    private FixedPoint() {
+    }
+
+    public static long pow10(int decimals) {
+        return POW10[decimals];
+    }
+
+    /**
+     * Converts a value to units of {@code 10^-decimals}. A double that is the nearest one to a
+     * decimal with at most {@code decimals} places converts to exactly that decimal; anything
+     * finer is rounded with {@code mode}.
+     * @throws ArithmeticException if the value is not finite or does not fit a long, or if
+     * {@code mode} is {@link RoundingMode#UNNECESSARY} and the value has more decimal places
+     */
+    public static long toUnits(double value, int decimals, RoundingMode mode) {
+        if (!Double.isFinite(value)) {
+            throw new ArithmeticException("Not a finite amount: " + value);
+        }
+        double scaled = value * POW10[decimals];
+        if (Math.abs(scaled) >= EXACT_LIMIT) {
+            return slowToUnits(value, decimals, mode);
+        }
+        long nearest = Math.round(scaled);
+        // The product of the double and the power of ten is off by a few ulps at most, so a
+        // value this close to a whole unit was meant to be that unit
+        if (Math.abs(scaled - nearest) <= Math.ulp(scaled) * 4) {
+            return nearest;
+        }
+        long floor = (long) Math.floor(scaled);
+        double fraction = scaled - floor;
+        return roundUp(floor, fraction > 0.5 ? 1 : fraction < 0.5 ? -1 : 0, mode) ? floor + 1 : floor;
+    }
+
+    private static long slowToUnits(double value, int decimals, RoundingMode mode) {
+        return BigDecimal.valueOf(value).setScale(decimals, mode).unscaledValue().longValueExact();
+    }
+
+    /**
+     * @return The double nearest to the decimal value of the units
+     */
+    public static double toDouble(long units, int decimals) {
+        if (Math.abs(units) < EXACT_LIMIT) {
+            // Both operands are exact, and division rounds the exact quotient once
+            return units / (double) POW10[decimals];
+        }
+        return BigDecimal.valueOf(units, decimals).doubleValue();
+    }
+
+    /**
+     * Changes the number of decimal places of a value.
+     */
+    public static long rescale(long units, int fromDecimals, int toDecimals, RoundingMode mode) {
+        if (toDecimals >= fromDecimals) {
+            return Math.multiplyExact(units, POW10[toDecimals - fromDecimals]);
+        }
+        return divide(units, POW10[fromDecimals - toDecimals], mode);
+    }
+
+    /**
+     * Multiplies two scaled values, e.g. a quantity by a price.
+     * @return The product with {@code aDecimals + bDecimals - dropDecimals} decimal places
+     */
+    public static long multiply(long a, long b, int dropDecimals, RoundingMode mode) {
+        long high = Math.multiplyHigh(a, b);
+        long low = a * b;
+        if (high == (low >> 63)) {
+            return divide(low, POW10[dropDecimals], mode);
+        }
+        return new BigDecimal(BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)))
+            .movePointLeft(dropDecimals).setScale(0, mode).longValueExact();
+    }
+
+    /**
+     * @return {@code a * b / c}, rounded once; for taking a share of a value pro rata
+     */
+    public static long multiplyDivide(long a, long b, long c, RoundingMode mode) {
+        long high = Math.multiplyHigh(a, b);
+        long low = a * b;
+        if (high == (low >> 63)) {
+            return divide(low, c, mode);
+        }
+        return new BigDecimal(BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)))
+            .divide(BigDecimal.valueOf(c), 0, mode).longValueExact();
+    }
+
+    /**
+     * Integer division rounded with {@code mode} instead of truncated.
+     * @throws ArithmeticException if {@code mode} is {@link RoundingMode#UNNECESSARY} and the
+     * division leaves a remainder
+     */
+    public static long divide(long dividend, long divisor, RoundingMode mode) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder == 0) {
+            return quotient;
+        }
+        int sign = (dividend < 0) == (divisor < 0) ? 1 : -1;
+        // Compare twice the remainder with the divisor without overflowing
+        long absRemainder = Math.abs(remainder);
+        long rest = Math.abs(divisor) - absRemainder;
+        int half = Long.compare(absRemainder, rest);
+        boolean awayFromZero = switch (mode) {
+            case UP -> true;
+            case DOWN -> false;
+            case CEILING -> sign > 0;
+            case FLOOR -> sign < 0;
+            case HALF_UP -> half >= 0;
+            case HALF_DOWN -> half > 0;
+            case HALF_EVEN -> half > 0 || (half == 0 && (quotient & 1) != 0);
+            case UNNECESSARY -> throw new ArithmeticException("Rounding necessary");
+        };
+        return awayFromZero ? quotient + sign : quotient;
+    }
+
+    /**
+     * Decides whether a positive or negative value between {@code floor} and {@code floor + 1}
+     * rounds to the upper one.
+     * @param half Whether the fraction is above (1), below (-1) or exactly at (0) one half
+     */
+    private static boolean roundUp(long floor, int half, RoundingMode mode) {
+        // Values in (floor, floor + 1): towards zero is down for positive values, up for negative
+        boolean negative = floor < 0;
+        return switch (mode) {
+            case CEILING -> true;
+            case FLOOR -> false;
+            case UP -> !negative;
+            case DOWN -> negative;
+            case HALF_UP -> half > 0 || (half == 0 && !negative);
+            case HALF_DOWN -> half > 0 || (half == 0 && negative);
+            case HALF_EVEN -> half > 0 || (half == 0 && (floor & 1) != 0);
+            case UNNECESSARY -> throw new ArithmeticException("Rounding necessary");
+        };
+    }
+}
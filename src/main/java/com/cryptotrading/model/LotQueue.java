@@ -0,0 +1,226 @@
+// Package declaration for model classes
+package com.cryptotrading.model;
+
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+/**
+ * The purchase lots of one position, each a quantity and the cash paid for it, held in two
+ * parallel {@code long} arrays.
+ *
+ * <p>For {@link CostBasisMethod#FIFO} and {@link CostBasisMethod#LIFO} the arrays are a ring
+ * deque: a buy appends at the tail and a sale takes from the head or the tail, so both are
+ * O(1) amortized however many lots there are. For {@link CostBasisMethod#HIFO} the same arrays
+ * are a binary max-heap ordered by cost per unit, so a sale takes O(log n) per lot it uses up.</p>
+ *
+ * <p>A sale that ends inside a lot keeps the rest of that lot, with the lot's cost split pro
+ * rata and rounded half-even. Selling the whole position always takes exactly its total cost.
+ * Not thread-safe; the account that owns the position guards it.</p>
+ */
+public class LotQueue {
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final CostBasisMethod method;
+    private long[] quantities = new long[INITIAL_CAPACITY];
+    private long[] costs = new long[INITIAL_CAPACITY];
+    // Ring deque: lot i is in slot (head + i) & (capacity - 1); the heap always has head 0
+    private int head;
+    private int size;
+    private long quantity;
+    private long cost;
+
+    public LotQueue(CostBasisMethod method) {
+        this.method = method;
+    }
+
+    public CostBasisMethod getMethod() {
+        return method;
+    }
+
+    /**
+     * @return Number of lots
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Quantity of all lots
+     */
+    public long getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * @return Cost of all lots
+     */
+    public long getCost() {
+        return cost;
+    }
+
+    /**
+     * Adds a purchase lot.
+     * @throws IllegalArgumentException if the quantity is not positive or the cost is negative
+     * @throws ArithmeticException if the totals overflow; the queue is left unchanged
+     */
+    public void add(long lotQuantity, long lotCost) {
+        if (lotQuantity <= 0 || lotCost < 0) {
+            throw new IllegalArgumentException("Invalid lot: " + lotQuantity + " for " + lotCost);
+        }
+        long newQuantity = Math.addExact(quantity, lotQuantity);
+        long newCost = Math.addExact(cost, lotCost);
+        if (size == quantities.length) {
+            grow();
+        }
+        int slot = method == CostBasisMethod.HIFO ? size : (head + size) & (quantities.length - 1);
+        quantities[slot] = lotQuantity;
+        costs[slot] = lotCost;
+        size++;
+        if (method == CostBasisMethod.HIFO) {
+            siftUp(slot);
+        }
+        quantity = newQuantity;
+        cost = newCost;
+    }
+
+    /**
+     * Removes a quantity from the lots, in the order of the queue's method.
+     * @return Cost of the quantity removed
+     * @throws IllegalArgumentException if the quantity is not positive or more than the lots hold
+     */
+    public long remove(long removed) {
+        if (removed <= 0 || removed > quantity) {
+            throw new IllegalArgumentException("Cannot remove " + removed + " of " + quantity);
+        }
+        if (removed == quantity) {
+            long all = cost;
+            clear();
+            return all;
+        }
+        long remaining = removed;
+        long basis = 0;
+        while (remaining > 0) {
+            int slot = nextSlot();
+            long lotQuantity = quantities[slot];
+            if (lotQuantity <= remaining) {
+                remaining -= lotQuantity;
+                basis += costs[slot];
+                pop();
+            } else {
+                long part = FixedPoint.multiplyDivide(costs[slot], remaining, lotQuantity, RoundingMode.HALF_EVEN);
+                quantities[slot] = lotQuantity - remaining;
+                costs[slot] -= part;
+                basis += part;
+                remaining = 0;
+                if (method == CostBasisMethod.HIFO) {
+                    // Rounding the split can move the rest of the lot below its children
+                    siftDown(0);
+                }
+            }
+        }
+        quantity -= removed;
+        cost -= basis;
+        return basis;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+        quantity = 0;
+        cost = 0;
+    }
+
+    private int nextSlot() {
+        return switch (method) {
+            case FIFO -> head;
+            case LIFO -> (head + size - 1) & (quantities.length - 1);
+            case HIFO -> 0;
+        };
+    }
+
+    private void pop() {
+        size--;
+        if (method == CostBasisMethod.FIFO) {
+            head = (head + 1) & (quantities.length - 1);
+        } else if (method == CostBasisMethod.HIFO) {
+            quantities[0] = quantities[size];
+            costs[0] = costs[size];
+            siftDown(0);
+        }
+    }
+
+    private void grow() {
+        int capacity = quantities.length;
+        long[] newQuantities = new long[capacity * 2];
+        long[] newCosts = new long[capacity * 2];
+        // Unwrap the ring so the lots start at slot 0
+        int first = capacity - head;
+        System.arraycopy(quantities, head, newQuantities, 0, first);
+        System.arraycopy(quantities, 0, newQuantities, first, head);
+        System.arraycopy(costs, head, newCosts, 0, first);
+        System.arraycopy(costs, 0, newCosts, first, head);
+        quantities = newQuantities;
+        costs = newCosts;
+        head = 0;
+    }
+
+    private void siftUp(int slot) {
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            if (compareUnitCost(slot, parent) <= 0) {
+                return;
+            }
+            swap(slot, parent);
+            slot = parent;
+        }
+    }
+
+    private void siftDown(int slot) {
+        while (true) {
+            int child = 2 * slot + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && compareUnitCost(child + 1, child) > 0) {
+                child++;
+            }
+            if (compareUnitCost(child, slot) <= 0) {
+                return;
+            }
+            swap(slot, child);
+            slot = child;
+        }
+    }
+
+    /**
+     * Compares the cost per unit of two lots without dividing: a/b against c/d is ad against cb,
+     * compared as unsigned 128-bit products.
+     */
+    private int compareUnitCost(int a, int b) {
+        long left = Math.multiplyHigh(costs[a], quantities[b]);
+        long right = Math.multiplyHigh(costs[b], quantities[a]);
+        if (left != right) {
+            return Long.compare(left, right);
+        }
+        return Long.compareUnsigned(costs[a] * quantities[b], costs[b] * quantities[a]);
+    }
+
+    private void swap(int a, int b) {
+        long q = quantities[a];
+        quantities[a] = quantities[b];
+        quantities[b] = q;
+        long c = costs[a];
+        costs[a] = costs[b];
+        costs[b] = c;
+    }
+
+    @Override
+    public String toString() {
+        long[][] lots = new long[size][];
+        for (int i = 0; i < size; i++) {
+            int slot = method == CostBasisMethod.HIFO ? i : (head + i) & (quantities.length - 1);
+            lots[i] = new long[]{quantities[slot], costs[slot]};
+        }
+        return method + Arrays.deepToString(lots);
+    }
+}
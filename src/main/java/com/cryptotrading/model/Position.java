@@ -0,0 +1,102 @@
+// Package declaration for model classes
+package com.cryptotrading.model;
+
+import java.math.RoundingMode;
+
+/**
+ * Holding of one cryptocurrency in a portfolio, kept in fixed-point units so that buying and
+ * selling never accumulates rounding drift.
+ *
+ * <p>The quantity is counted in units of {@code 10^-quantityDecimals} of the asset, and the
+ * cost basis in cash units of {@code 10^-}{@link FixedPoint#CASH_DECIMALS}. Both are the totals
+ * of the position's purchase lots ({@link LotQueue}); a sale takes its cost basis from the lots
+ * in the order of the position's {@link CostBasisMethod}.</p>
+ */
+public class Position {
+    /**
+     * Decimal places of the quantity, fixed when the position is opened
+     */
+    private final int quantityDecimals;
+
+    /**
+     * Purchase lots making up the amount held and the cash paid for it
+     */
+    private final LotQueue lots;
+
+    /**
+     * Constructs an empty position whose lots are sold first in, first out
+     * @param quantityDecimals Decimal places of the quantity
+     */
+    public Position(int quantityDecimals) {
+        this(quantityDecimals, CostBasisMethod.FIFO);
+    }
+
+    /**
+     * Constructs an empty position
+     * @param quantityDecimals Decimal places of the quantity
+     * @param costBasisMethod Order in which the lots are sold
+     */
+    public Position(int quantityDecimals, CostBasisMethod costBasisMethod) {
+        this.quantityDecimals = quantityDecimals;
+        this.lots = new LotQueue(costBasisMethod);
+    }
+
+    public int getQuantityDecimals() {
+        return quantityDecimals;
+    }
+
+    /**
+     * @return Amount held, in units of 10^-quantityDecimals
+     */
+    public long getQuantity() {
+        return lots.getQuantity();
+    }
+
+    /**
+     * @return Cash paid for the amount held, in units of 10^-CASH_DECIMALS
+     */
+    public long getCostBasis() {
+        return lots.getCost();
+    }
+
+    public LotQueue getLots() {
+        return lots;
+    }
+
+    /**
+     * Adds a purchase to the position
+     * @param quantity Amount bought, in units of 10^-quantityDecimals
+     * @param cost Cash paid, in units of 10^-CASH_DECIMALS
+     */
+    public void buy(long quantity, long cost) {
+        lots.add(quantity, cost);
+    }
+
+    /**
+     * Takes an amount out of the position's lots
+     * @param quantity Amount sold, in units of 10^-quantityDecimals
+     * @return Cost basis of the amount sold, in units of 10^-CASH_DECIMALS
+     */
+    public long sell(long quantity) {
+        return lots.remove(quantity);
+    }
+
+    /**
+     * @return Amount held as a double, for display and the JSON API
+     */
+    public double getAmount() {
+        return FixedPoint.toDouble(lots.getQuantity(), quantityDecimals);
+    }
+
+    /**
+     * Replaces the amount held with a single lot that cost nothing
+     * @param amount Amount, rounded half-even to the position's decimals
+     */
+    public void setAmount(double amount) {
+        long quantity = FixedPoint.toUnits(amount, quantityDecimals, RoundingMode.HALF_EVEN);
+        lots.clear();
+        if (quantity > 0) {
+            lots.add(quantity, 0);
+        }
+    }
+}
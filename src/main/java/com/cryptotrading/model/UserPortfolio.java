@@ -2,6 +2,7 @@
 package com.cryptotrading.model;
 
 // Import necessary collection classes
+import java.math.RoundingMode;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.ArrayList;
@@ -12,8 +13,10 @@ import java.util.List;
  * - Current cash balance
  * - Cryptocurrency holdings
  * - Transaction history
- * 
- * <p>Maintains the state of all trading activities and asset allocations</p>
+ *
+ * <p>Maintains the state of all trading activities and asset allocations. The balance and
+ * holdings are kept as fixed-point {@code long}s (see {@link FixedPoint}); the {@code double}
+ * accessors convert for display and the JSON API.</p>
  */
 public class UserPortfolio {
     /**
@@ -21,19 +24,24 @@ public class UserPortfolio {
      * Default value: $10,000
      */
     private static final double INITIAL_BALANCE = 10000.0;
-    
+
     /**
-     * Current available balance in USD
+     * Decimal places of holdings set through {@link #setHoldings}
+     */
+    private static final int DEFAULT_QUANTITY_DECIMALS = 8;
+
+    /**
+     * Current available balance in units of 10^-CASH_DECIMALS USD
      * Used for executing new trades
      */
-    private double balance;
+    private long cash;
 
     /**
-     * Cryptocurrency holdings mapped by symbol
+     * Cryptocurrency positions mapped by symbol
      * Key: Cryptocurrency symbol (e.g., "BTC")
-     * Value: Quantity owned (in cryptocurrency units)
+     * Value: Quantity owned and the cash paid for it
      */
-    private Map<String, Double> holdings; // symbol -> quantity
+    private final Map<String, Position> positions;
 
     /**
      * Chronological list of all financial transactions
@@ -48,42 +56,75 @@ public class UserPortfolio {
      * - Empty transaction history
      */
     public UserPortfolio() {
-        this.balance = INITIAL_BALANCE;
-        this.holdings = new HashMap<>();
+        this.cash = initialCash();
+        this.positions = new HashMap<>();
         this.transactions = new ArrayList<>();
     }
 
+    private static long initialCash() {
+        return FixedPoint.toUnits(INITIAL_BALANCE, FixedPoint.CASH_DECIMALS, RoundingMode.UNNECESSARY);
+    }
+
     // ACCESSORS AND MUTATORS
-    
+
     /**
      * @return Current available balance in USD
      */
     public double getBalance() {
-        return balance;
+        return FixedPoint.toDouble(cash, FixedPoint.CASH_DECIMALS);
     }
 
     /**
      * Sets new balance value
-     * @param balance New balance in USD (must be non-negative)
+     * @param balance New balance in USD (must be non-negative), rounded half-even to CASH_DECIMALS
      */
     public void setBalance(double balance) {
-        this.balance = balance;
+        this.cash = FixedPoint.toUnits(balance, FixedPoint.CASH_DECIMALS, RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * @return Current available balance in units of 10^-CASH_DECIMALS USD
+     */
+    public long getCash() {
+        return cash;
+    }
+
+    /**
+     * Sets new balance value
+     * @param cash New balance in units of 10^-CASH_DECIMALS USD
+     */
+    public void setCash(long cash) {
+        this.cash = cash;
     }
 
     /**
-     * @return Unmodifiable view of cryptocurrency holdings
+     * @return Copy of the cryptocurrency holdings
      * Format: Map<Symbol, Quantity>
      */
     public Map<String, Double> getHoldings() {
+        Map<String, Double> holdings = new HashMap<>();
+        positions.forEach((symbol, position) -> holdings.put(symbol, position.getAmount()));
         return holdings;
     }
 
     /**
-     * Replaces entire holdings map
+     * Replaces entire holdings map; the new positions have no cost basis
      * @param holdings New holdings mapping (symbol -> quantity)
      */
     public void setHoldings(Map<String, Double> holdings) {
-        this.holdings = holdings;
+        positions.clear();
+        holdings.forEach((symbol, amount) -> {
+            Position position = new Position(DEFAULT_QUANTITY_DECIMALS);
+            position.setAmount(amount);
+            positions.put(symbol, position);
+        });
+    }
+
+    /**
+     * @return Live positions by symbol; callers modify them in place
+     */
+    public Map<String, Position> getPositions() {
+        return positions;
     }
 
     /**
@@ -110,8 +151,8 @@ public class UserPortfolio {
      * Typically used for account reset functionality
      */
     public void reset() {
-        this.balance = INITIAL_BALANCE;
-        this.holdings.clear();
+        this.cash = initialCash();
+        this.positions.clear();
         this.transactions.clear();
     }
 }
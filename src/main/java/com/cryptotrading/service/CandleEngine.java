@@ -0,0 +1,301 @@
+package com.cryptotrading.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Incremental OHLCV bars per pair for a fixed set of intervals.
+ *
+ * <p>Each pair owns one {@code long[]} holding a ring of {@code history} bars for every
+ * {@link Interval}, allocated on the pair's first update, so memory is
+ * {@code 5 * history * 48} bytes per active pair no matter how long the service runs. A price
+ * is folded into the current bar of each interval; when its time falls into a later bucket
+ * the ring advances by one slot, so rolling over never scans. Intervals without any trade
+ * produce no bar.</p>
+ *
+ * <p>Pairs that receive trades are built from the trades (exact volume, exchange time); other
+ * pairs are built from ticker updates, using the increase of Kraken's volume-today field as
+ * the bar volume. Rows are guarded by a seqlock like {@link PriceTable} rows, so the ticker
+ * stage and the trade ingest thread can both write and readers never block.</p>
+ */
+@Component
+public class CandleEngine {
+    public static final int DEFAULT_HISTORY = 120;
+
+    /**
+     * Supported bar intervals. Buckets are aligned to the epoch, so daily bars start at 00:00 UTC.
+     */
+    public enum Interval {
+        S1("1s", 1_000L),
+        M1("1m", 60_000L),
+        M5("5m", 300_000L),
+        H1("1h", 3_600_000L),
+        D1("1d", 86_400_000L);
+
+        private final String label;
+        private final long millis;
+
+        Interval(String label, long millis) {
+            this.label = label;
+            this.millis = millis;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        /**
+         * @return The interval with the given label such as {@code "5m"}
+         * @throws IllegalArgumentException if the label is unknown
+         */
+        public static Interval fromLabel(String label) {
+            for (Interval interval : values()) {
+                if (interval.label.equals(label)) {
+                    return interval;
+                }
+            }
+            throw new IllegalArgumentException("Unknown candle interval: " + label);
+        }
+    }
+
+    private static final Interval[] INTERVALS = Interval.values();
+    // Header cells: sequence, bar count per interval, trade-fed flag, last volume-today, rolled mask
+    private static final int SEQ = 0;
+    private static final int HEADS = 1;
+    private static final int TRADE_FED = HEADS + INTERVALS.length;
+    private static final int VOLUME_TODAY = TRADE_FED + 1;
+    private static final int ROLLED = VOLUME_TODAY + 1;
+    private static final int HEADER = ROLLED + 1;
+    // Bar cells
+    private static final int TIME = 0;
+    private static final int OPEN = 1;
+    private static final int HIGH = 2;
+    private static final int LOW = 3;
+    private static final int CLOSE = 4;
+    private static final int VOLUME = 5;
+    private static final int BAR = 6;
+
+    private static final VarHandle CELLS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final SymbolRegistry symbolRegistry;
+    private final int history;
+    private final AtomicReferenceArray<long[]> rows;
+    private volatile long lateUpdates;
+
+    public CandleEngine(SymbolRegistry symbolRegistry) {
+        this(symbolRegistry, DEFAULT_HISTORY);
+    }
+
+    @Autowired
+    public CandleEngine(SymbolRegistry symbolRegistry,
+                        @Value("${market-data.candles.history:120}") int history) {
+        if (history < 2) {
+            throw new IllegalArgumentException("Candle history must be at least 2 bars: " + history);
+        }
+        this.symbolRegistry = symbolRegistry;
+        this.history = history;
+        this.rows = new AtomicReferenceArray<>(symbolRegistry.capacity());
+    }
+
+    /**
+     * Folds a ticker update into the pair's bars unless the pair is built from trades.
+     * @param volumeToday Kraken's cumulative volume since 00:00 UTC, or NaN if unknown
+     * @return Bit mask (by {@link Interval#ordinal()}) of intervals whose bar closed since the
+     *         previous call, including bars closed by trades
+     */
+    public int onTick(int symbolId, double last, double volumeToday, long timestamp) {
+        long[] row = row(symbolId);
+        long seq = lock(row);
+        try {
+            if (row[TRADE_FED] == 0 && !Double.isNaN(last)) {
+                double previous = Double.longBitsToDouble(row[VOLUME_TODAY]);
+                double volume = 0;
+                if (!Double.isNaN(volumeToday)) {
+                    if (row[HEADS] != 0 && !Double.isNaN(previous)) {
+                        // The counter restarts at midnight UTC
+                        volume = volumeToday >= previous ? volumeToday - previous : volumeToday;
+                    }
+                    row[VOLUME_TODAY] = Double.doubleToRawLongBits(volumeToday);
+                }
+                row[ROLLED] |= fold(row, last, volume, timestamp);
+            }
+            int rolled = (int) row[ROLLED];
+            row[ROLLED] = 0;
+            return rolled;
+        } finally {
+            unlock(row, seq);
+        }
+    }
+
+    /**
+     * Folds a trade into the pair's bars; from then on ticker prices are ignored for the pair.
+     * Bars closed by trades are reported by the next {@link #onTick} call.
+     */
+    public void onTrade(int symbolId, double price, double volume, long timestamp) {
+        long[] row = row(symbolId);
+        long seq = lock(row);
+        try {
+            if (row[TRADE_FED] == 0) {
+                // Switch sources on a clean slate so ticker and trade volumes never mix in a bar
+                row[TRADE_FED] = 1;
+                for (int i = 0; i < INTERVALS.length; i++) {
+                    CELLS.setOpaque(row, HEADS + i, 0L);
+                }
+            }
+            row[ROLLED] |= fold(row, price, volume, timestamp);
+        } finally {
+            unlock(row, seq);
+        }
+    }
+
+    private int fold(long[] row, double price, double volume, long timestamp) {
+        int rolled = 0;
+        boolean late = false;
+        for (int i = 0; i < INTERVALS.length; i++) {
+            long bucket = timestamp - Math.floorMod(timestamp, INTERVALS[i].millis);
+            long head = row[HEADS + i];
+            int base = barBase(i, head - 1);
+            if (head == 0 || bucket > row[base + TIME]) {
+                if (head != 0) {
+                    rolled |= 1 << i;
+                }
+                CELLS.setOpaque(row, HEADS + i, head + 1);
+                base = barBase(i, head);
+                CELLS.setOpaque(row, base + TIME, bucket);
+                CELLS.setOpaque(row, base + OPEN, Double.doubleToRawLongBits(price));
+                CELLS.setOpaque(row, base + HIGH, Double.doubleToRawLongBits(price));
+                CELLS.setOpaque(row, base + LOW, Double.doubleToRawLongBits(price));
+                CELLS.setOpaque(row, base + CLOSE, Double.doubleToRawLongBits(price));
+                CELLS.setOpaque(row, base + VOLUME, Double.doubleToRawLongBits(volume));
+            } else if (bucket == row[base + TIME]) {
+                if (price > Double.longBitsToDouble(row[base + HIGH])) {
+                    CELLS.setOpaque(row, base + HIGH, Double.doubleToRawLongBits(price));
+                }
+                if (price < Double.longBitsToDouble(row[base + LOW])) {
+                    CELLS.setOpaque(row, base + LOW, Double.doubleToRawLongBits(price));
+                }
+                CELLS.setOpaque(row, base + CLOSE, Double.doubleToRawLongBits(price));
+                double total = Double.longBitsToDouble(row[base + VOLUME]) + volume;
+                CELLS.setOpaque(row, base + VOLUME, Double.doubleToRawLongBits(total));
+            } else {
+                late = true;
+            }
+        }
+        if (late) {
+            lateUpdates++;
+        }
+        return rolled;
+    }
+
+    /**
+     * Copies the latest {@code limit} bars of an interval, oldest first; the last one is the
+     * bar still in progress.
+     * @return false if the pair has no bars
+     */
+    public boolean read(int symbolId, Interval interval, int limit, Candles into) {
+        long[] row = rows.get(symbolId);
+        if (row == null) {
+            return false;
+        }
+        into.ensureCapacity(limit);
+        int i = interval.ordinal();
+        while (true) {
+            long seq = (long) CELLS.getAcquire(row, SEQ);
+            if ((seq & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            long head = (long) CELLS.getOpaque(row, HEADS + i);
+            int count = (int) Math.min(Math.min(head, history), limit);
+            for (int n = 0; n < count; n++) {
+                int base = barBase(i, head - count + n);
+                into.time[n] = (long) CELLS.getOpaque(row, base + TIME);
+                into.open[n] = cell(row, base + OPEN);
+                into.high[n] = cell(row, base + HIGH);
+                into.low[n] = cell(row, base + LOW);
+                into.close[n] = cell(row, base + CLOSE);
+                into.volume[n] = cell(row, base + VOLUME);
+            }
+            VarHandle.loadLoadFence();
+            if ((long) CELLS.getOpaque(row, SEQ) == seq) {
+                into.symbolId = symbolId;
+                into.symbol = symbolRegistry.nameOf(symbolId);
+                into.interval = interval;
+                into.count = count;
+                return count > 0;
+            }
+        }
+    }
+
+    private long[] row(int symbolId) {
+        long[] row = rows.get(symbolId);
+        if (row == null) {
+            long[] created = new long[HEADER + INTERVALS.length * history * BAR];
+            created[VOLUME_TODAY] = Double.doubleToRawLongBits(Double.NaN);
+            row = rows.compareAndSet(symbolId, null, created) ? created : rows.get(symbolId);
+        }
+        return row;
+    }
+
+    private static long lock(long[] row) {
+        long seq;
+        do {
+            seq = (long) CELLS.getVolatile(row, SEQ);
+        } while ((seq & 1) != 0 || !CELLS.compareAndSet(row, SEQ, seq, seq + 1));
+        VarHandle.storeStoreFence();
+        return seq;
+    }
+
+    private static void unlock(long[] row, long seq) {
+        CELLS.setRelease(row, SEQ, seq + 2);
+    }
+
+    private int barBase(int interval, long index) {
+        return HEADER + (interval * history + (int) Math.floorMod(index, (long) history)) * BAR;
+    }
+
+    private static double cell(long[] row, int index) {
+        return Double.longBitsToDouble((long) CELLS.getOpaque(row, index));
+    }
+
+    public SymbolRegistry getSymbolRegistry() {
+        return symbolRegistry;
+    }
+
+    /**
+     * @return Bytes of bar storage per pair, independent of how long the pair has been traded
+     */
+    public long getBytesPerPair() {
+        return (long) (HEADER + INTERVALS.length * history * BAR) * Long.BYTES;
+    }
+
+    public int getHistory() {
+        return history;
+    }
+
+    public Map<String, Object> getMetrics() {
+        int pairs = 0;
+        for (int i = 0; i < rows.length(); i++) {
+            if (rows.get(i) != null) {
+                pairs++;
+            }
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("pairs", pairs);
+        metrics.put("history", history);
+        metrics.put("bytesPerPair", getBytesPerPair());
+        metrics.put("allocatedBytes", pairs * getBytesPerPair());
+        metrics.put("lateUpdates", lateUpdates);
+        return metrics;
+    }
+}
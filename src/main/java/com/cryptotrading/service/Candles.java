@@ -0,0 +1,73 @@
+package com.cryptotrading.service;
+
+/**
+ * Reusable, caller-owned copy of the latest bars of one pair and interval.
+ * Filled by {@link CandleEngine#read}; bars are ordered oldest first and the last one is
+ * still in progress.
+ */
+public class Candles {
+    int symbolId = -1;
+    String symbol;
+    CandleEngine.Interval interval;
+    int count;
+    long[] time = new long[0];
+    double[] open = new double[0];
+    double[] high = new double[0];
+    double[] low = new double[0];
+    double[] close = new double[0];
+    double[] volume = new double[0];
+
+    void ensureCapacity(int bars) {
+        if (time.length < bars) {
+            time = new long[bars];
+            open = new double[bars];
+            high = new double[bars];
+            low = new double[bars];
+            close = new double[bars];
+            volume = new double[bars];
+        }
+    }
+
+    public int getSymbolId() {
+        return symbolId;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public CandleEngine.Interval getInterval() {
+        return interval;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return Start of the bar in epoch milliseconds
+     */
+    public long getTime(int bar) {
+        return time[bar];
+    }
+
+    public double getOpen(int bar) {
+        return open[bar];
+    }
+
+    public double getHigh(int bar) {
+        return high[bar];
+    }
+
+    public double getLow(int bar) {
+        return low[bar];
+    }
+
+    public double getClose(int bar) {
+        return close[bar];
+    }
+
+    public double getVolume(int bar) {
+        return volume[bar];
+    }
+}
@@ -0,0 +1,131 @@
+package com.cryptotrading.service;
+
+import java.util.Arrays;
+
+/**
+ * Mutable holder for the levels of a single Kraken {@code book} frame.
+ *
+ * <p>Prices and volumes are kept as the decimal digits Kraken sent with the dot removed
+ * (the mantissa) plus the number of fraction digits (the scale), which is both exact and the
+ * form the book checksum is computed over. One instance is reused per ingest thread; the level
+ * arrays only grow when a frame carries more levels than any frame before it.</p>
+ */
+public class DecodedBookUpdate {
+    private static final int INITIAL_LEVELS = 64;
+
+    private String pair;
+    private int symbolId;
+    private boolean snapshot;
+    private boolean hasChecksum;
+    private long checksum;
+    private int count;
+    private boolean[] ask = new boolean[INITIAL_LEVELS];
+    private long[] price = new long[INITIAL_LEVELS];
+    private int[] priceScale = new int[INITIAL_LEVELS];
+    private long[] volume = new long[INITIAL_LEVELS];
+    private int[] volumeScale = new int[INITIAL_LEVELS];
+
+    public DecodedBookUpdate() {
+        reset();
+    }
+
+    /**
+     * Clears the holder before the next frame is decoded into it.
+     */
+    public void reset() {
+        pair = null;
+        symbolId = -1;
+        snapshot = false;
+        hasChecksum = false;
+        checksum = 0;
+        count = 0;
+    }
+
+    void addLevel(boolean isAsk, long priceMantissa, int priceDigits, long volumeMantissa, int volumeDigits) {
+        if (count == price.length) {
+            grow();
+        }
+        ask[count] = isAsk;
+        price[count] = priceMantissa;
+        priceScale[count] = priceDigits;
+        volume[count] = volumeMantissa;
+        volumeScale[count] = volumeDigits;
+        count++;
+    }
+
+    private void grow() {
+        int capacity = price.length * 2;
+        ask = Arrays.copyOf(ask, capacity);
+        price = Arrays.copyOf(price, capacity);
+        priceScale = Arrays.copyOf(priceScale, capacity);
+        volume = Arrays.copyOf(volume, capacity);
+        volumeScale = Arrays.copyOf(volumeScale, capacity);
+    }
+
+    public String getPair() {
+        return pair;
+    }
+
+    void setPair(String pair) {
+        this.pair = pair;
+    }
+
+    public int getSymbolId() {
+        return symbolId;
+    }
+
+    void setSymbolId(int symbolId) {
+        this.symbolId = symbolId;
+    }
+
+    /**
+     * @return Whether the frame is a full snapshot ({@code as}/{@code bs}) rather than an update
+     */
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    void setSnapshot(boolean snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public boolean hasChecksum() {
+        return hasChecksum;
+    }
+
+    /**
+     * @return Unsigned CRC32 Kraken computed over its top ten levels after this update
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    void setChecksum(long checksum) {
+        this.checksum = checksum;
+        this.hasChecksum = true;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public boolean isAsk(int level) {
+        return ask[level];
+    }
+
+    public long getPrice(int level) {
+        return price[level];
+    }
+
+    public int getPriceScale(int level) {
+        return priceScale[level];
+    }
+
+    public long getVolume(int level) {
+        return volume[level];
+    }
+
+    public int getVolumeScale(int level) {
+        return volumeScale[level];
+    }
+}
@@ -0,0 +1,120 @@
+package com.cryptotrading.service;
+
+/**
+ * Mutable holder for the fields of a single Kraken ticker frame.
+ * One instance is reused per ingest thread so decoding a frame does not allocate;
+ * missing fields are reported as {@link Double#NaN}.
+ */
+public class DecodedTick {
+    private String pair;
+    private int symbolId;
+    private double last;
+    private double open;
+    private double bid;
+    private double ask;
+    private double volume;
+    private double volumeToday;
+
+    public DecodedTick() {
+        reset();
+    }
+
+    /**
+     * Clears every field before the next frame is decoded into this holder.
+     */
+    public void reset() {
+        pair = null;
+        symbolId = -1;
+        last = Double.NaN;
+        open = Double.NaN;
+        bid = Double.NaN;
+        ask = Double.NaN;
+        volume = Double.NaN;
+        volumeToday = Double.NaN;
+    }
+
+    public String getPair() {
+        return pair;
+    }
+
+    public void setPair(String pair) {
+        this.pair = pair;
+    }
+
+    /**
+     * @return Interned ID from the {@link SymbolRegistry}, or -1 if the decoder did not resolve one
+     */
+    public int getSymbolId() {
+        return symbolId;
+    }
+
+    public void setSymbolId(int symbolId) {
+        this.symbolId = symbolId;
+    }
+
+    /**
+     * @return Last trade price (Kraken field {@code c[0]})
+     */
+    public double getLast() {
+        return last;
+    }
+
+    public void setLast(double last) {
+        this.last = last;
+    }
+
+    /**
+     * @return Today's opening price (Kraken field {@code o[0]})
+     */
+    public double getOpen() {
+        return open;
+    }
+
+    public void setOpen(double open) {
+        this.open = open;
+    }
+
+    /**
+     * @return Best bid price (Kraken field {@code b[0]})
+     */
+    public double getBid() {
+        return bid;
+    }
+
+    public void setBid(double bid) {
+        this.bid = bid;
+    }
+
+    /**
+     * @return Best ask price (Kraken field {@code a[0]})
+     */
+    public double getAsk() {
+        return ask;
+    }
+
+    public void setAsk(double ask) {
+        this.ask = ask;
+    }
+
+    /**
+     * @return Volume over the last 24 hours (Kraken field {@code v[1]})
+     */
+    public double getVolume() {
+        return volume;
+    }
+
+    public void setVolume(double volume) {
+        this.volume = volume;
+    }
+
+    /**
+     * @return Volume since the start of the UTC day (Kraken field {@code v[0]})
+     */
+    public double getVolumeToday() {
+        return volumeToday;
+    }
+
+    public void setVolumeToday(double volumeToday) {
+        this.volumeToday = volumeToday;
+    }
+}
@@ -0,0 +1,79 @@
+package com.cryptotrading.service;
+
+import java.util.Arrays;
+
+/**
+ * Mutable holder for the trades of a single Kraken {@code trade} frame.
+ * One instance is reused per ingest thread; the arrays only grow when a frame carries more
+ * trades than any frame before it.
+ */
+public class DecodedTrades {
+    private static final int INITIAL_TRADES = 16;
+
+    private String pair;
+    private int symbolId;
+    private int count;
+    private double[] price = new double[INITIAL_TRADES];
+    private double[] volume = new double[INITIAL_TRADES];
+    private long[] time = new long[INITIAL_TRADES];
+
+    public DecodedTrades() {
+        reset();
+    }
+
+    /**
+     * Clears the holder before the next frame is decoded into it.
+     */
+    public void reset() {
+        pair = null;
+        symbolId = -1;
+        count = 0;
+    }
+
+    void addTrade(double tradePrice, double tradeVolume, long tradeTime) {
+        if (count == price.length) {
+            price = Arrays.copyOf(price, count * 2);
+            volume = Arrays.copyOf(volume, count * 2);
+            time = Arrays.copyOf(time, count * 2);
+        }
+        price[count] = tradePrice;
+        volume[count] = tradeVolume;
+        time[count] = tradeTime;
+        count++;
+    }
+
+    public String getPair() {
+        return pair;
+    }
+
+    void setPair(String pair) {
+        this.pair = pair;
+    }
+
+    public int getSymbolId() {
+        return symbolId;
+    }
+
+    void setSymbolId(int symbolId) {
+        this.symbolId = symbolId;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getPrice(int trade) {
+        return price[trade];
+    }
+
+    public double getVolume(int trade) {
+        return volume[trade];
+    }
+
+    /**
+     * @return Exchange time of the trade in epoch milliseconds
+     */
+    public long getTime(int trade) {
+        return time[trade];
+    }
+}
@@ -0,0 +1,120 @@
+package com.cryptotrading.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chooses which of several redundant upstream connections feeds the price pipeline.
+ *
+ * <p>Only ticks from the active connection are accepted. If the active connection has been
+ * silent for longer than the staleness window while another connection is still receiving
+ * frames, the fresher connection takes over. Kraken ticker frames carry neither a sequence
+ * number nor a timestamp, so duplicates are recognised by content instead: a tick whose last
+ * price, bid, ask and volume equal the last accepted tick for the same pair is dropped. This
+ * removes the replays seen right after a switch-over.</p>
+ */
+public class FeedArbiter {
+    private static final Logger log = LoggerFactory.getLogger(FeedArbiter.class);
+
+    private final long stalenessNanos;
+    private final double[] acceptedLast;
+    private final double[] acceptedBid;
+    private final double[] acceptedAsk;
+    private final double[] acceptedVolume;
+    private volatile KrakenConnection active;
+    private volatile long failovers;
+    private volatile long lastFailoverMillis = -1;
+    private volatile long duplicatesDropped;
+    private volatile long standbyTicksDropped;
+
+    public FeedArbiter(int symbolCapacity, long stalenessMillis) {
+        this.stalenessNanos = stalenessMillis * 1_000_000;
+        this.acceptedLast = new double[symbolCapacity];
+        this.acceptedBid = new double[symbolCapacity];
+        this.acceptedAsk = new double[symbolCapacity];
+        this.acceptedVolume = new double[symbolCapacity];
+        Arrays.fill(acceptedLast, Double.NaN);
+    }
+
+    public void setActive(KrakenConnection connection) {
+        this.active = connection;
+    }
+
+    public KrakenConnection getActive() {
+        return active;
+    }
+
+    /**
+     * Decides whether a decoded tick should be published.
+     * @param source Connection the tick arrived on
+     * @param tick Decoded tick with a resolved symbol ID
+     */
+    public boolean accept(KrakenConnection source, DecodedTick tick) {
+        if (source != active) {
+            standbyTicksDropped++;
+            return false;
+        }
+        synchronized (this) {
+            int id = tick.getSymbolId();
+            if (acceptedLast[id] == tick.getLast() && sameValue(acceptedBid[id], tick.getBid())
+                    && sameValue(acceptedAsk[id], tick.getAsk()) && sameValue(acceptedVolume[id], tick.getVolume())) {
+                duplicatesDropped++;
+                return false;
+            }
+            acceptedLast[id] = tick.getLast();
+            acceptedBid[id] = tick.getBid();
+            acceptedAsk[id] = tick.getAsk();
+            acceptedVolume[id] = tick.getVolume();
+            return true;
+        }
+    }
+
+    /**
+     * Promotes the freshest open connection if the active one is closed or has gone silent.
+     * @return The connection that was demoted, or null if nothing changed
+     */
+    public synchronized KrakenConnection checkStaleness(List<KrakenConnection> connections, long nowNanos) {
+        KrakenConnection current = active;
+        if (current != null && current.isOpen() && nowNanos - current.getLastMessageNanos() <= stalenessNanos) {
+            return null;
+        }
+        KrakenConnection best = null;
+        for (KrakenConnection candidate : connections) {
+            if (candidate == current || !candidate.isOpen()
+                    || nowNanos - candidate.getLastMessageNanos() > stalenessNanos) {
+                continue;
+            }
+            if (best == null || candidate.getLastMessageNanos() > best.getLastMessageNanos()) {
+                best = candidate;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        active = best;
+        failovers++;
+        lastFailoverMillis = System.currentTimeMillis();
+        log.warn("Kraken feed failover: {} -> {}", current == null ? "none" : current.getName(), best.getName());
+        return current;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        KrakenConnection current = active;
+        metrics.put("active", current == null ? null : current.getName());
+        metrics.put("stalenessMillis", stalenessNanos / 1_000_000);
+        metrics.put("failovers", failovers);
+        metrics.put("lastFailoverMillis", lastFailoverMillis);
+        metrics.put("duplicatesDropped", duplicatesDropped);
+        metrics.put("standbyTicksDropped", standbyTicksDropped);
+        return metrics;
+    }
+
+    private static boolean sameValue(double a, double b) {
+        return a == b || (Double.isNaN(a) && Double.isNaN(b));
+    }
+}
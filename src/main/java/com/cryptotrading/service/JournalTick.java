@@ -0,0 +1,50 @@
+package com.cryptotrading.service;
+
+/**
+ * Reusable, caller-owned view of one journaled tick.
+ * Filled by {@link TickJournalReader} before each call to its visitor; copy what you keep.
+ */
+public class JournalTick {
+    String symbol;
+    long timestamp;
+    long receivedNanos;
+    double last;
+    double bid;
+    double ask;
+    double volume;
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * @return Wall-clock time of the tick in epoch milliseconds, as published to the pipeline
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} of the writing process when the frame was received;
+     *         only comparable between ticks of the same segment and process run
+     */
+    public long getReceivedNanos() {
+        return receivedNanos;
+    }
+
+    public double getLast() {
+        return last;
+    }
+
+    public double getBid() {
+        return bid;
+    }
+
+    public double getAsk() {
+        return ask;
+    }
+
+    public double getVolume() {
+        return volume;
+    }
+}
@@ -0,0 +1,306 @@
+package com.cryptotrading.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.handshake.ServerHandshake;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One upstream WebSocket connection to Kraken.
+ *
+ * <p>Owns the Java-WebSocket client, the per-connection {@link SubscriptionManager} and the
+ * decoder state used by its read thread, and remembers when it last received a frame so the
+ * owning service can detect a silent connection. Reconnect policy is left to the
+ * {@link Listener}.</p>
+ */
+public class KrakenConnection {
+    private static final Logger log = LoggerFactory.getLogger(KrakenConnection.class);
+
+    /**
+     * Callbacks invoked on the connection's read thread.
+     */
+    public interface Listener {
+        void onConnected(KrakenConnection connection);
+
+        void onFrame(KrakenConnection connection, String message, long receivedNanos);
+
+        void onDisconnected(KrakenConnection connection, int code, String reason, boolean remote);
+    }
+
+    private final String name;
+    private final int shard;
+    private final URI uri;
+    private final Listener listener;
+    private final ObjectMapper objectMapper;
+    private final int subscribeBatchSize;
+    private final SubscriptionManager subscriptionManager = new SubscriptionManager();
+    private final KrakenFrameDecoder frameDecoder;
+    private final DecodedTick decodedTick = new DecodedTick();
+    private final DecodedBookUpdate decodedBook = new DecodedBookUpdate();
+    private final DecodedTrades decodedTrades = new DecodedTrades();
+    private volatile WebSocketClient webSocketClient;
+    private volatile boolean isConnecting = false;
+    private volatile boolean closedByUser = false;
+    private volatile long lastMessageNanos;
+    private volatile long messages;
+    private volatile long busyNanos;
+    private volatile long connects;
+
+    public KrakenConnection(String name, URI uri, Listener listener, ObjectMapper objectMapper,
+                            SymbolRegistry symbolRegistry, int subscribeBatchSize) {
+        this(name, 0, uri, listener, objectMapper, symbolRegistry, subscribeBatchSize);
+    }
+
+    /**
+     * @param shard Index of the shard of the pair universe this connection carries
+     */
+    public KrakenConnection(String name, int shard, URI uri, Listener listener, ObjectMapper objectMapper,
+                            SymbolRegistry symbolRegistry, int subscribeBatchSize) {
+        this.name = name;
+        this.shard = shard;
+        this.uri = uri;
+        this.listener = listener;
+        this.objectMapper = objectMapper;
+        this.subscribeBatchSize = subscribeBatchSize;
+        this.frameDecoder = new KrakenFrameDecoder(symbolRegistry);
+    }
+
+    /**
+     * Opens the connection unless it is already open or being opened.
+     */
+    public synchronized void connect() {
+        if (isConnecting || isOpen()) return;
+        isConnecting = true;
+        closedByUser = false;
+
+        try {
+            webSocketClient = new WebSocketClient(uri) {
+                @Override
+                public void onOpen(ServerHandshake handshake) {
+                    log.info("Connected to Kraken WebSocket ({})", name);
+                    isConnecting = false;
+                    lastMessageNanos = System.nanoTime();
+                    connects++;
+                    listener.onConnected(KrakenConnection.this);
+                }
+
+                @Override
+                public void onMessage(String message) {
+                    long receivedNanos = System.nanoTime();
+                    lastMessageNanos = receivedNanos;
+                    messages++;
+                    try {
+                        listener.onFrame(KrakenConnection.this, message, receivedNanos);
+                    } catch (Exception e) {
+                        log.error("Error handling message: {}", e.getMessage());
+                    }
+                    busyNanos += System.nanoTime() - receivedNanos;
+                }
+
+                @Override
+                public void onClose(int code, String reason, boolean remote) {
+                    log.info("Kraken WebSocket connection closed ({}): {} (code: {})", name, reason, code);
+                    isConnecting = false;
+                    subscriptionManager.onDisconnect();
+                    listener.onDisconnected(KrakenConnection.this, code, reason, remote);
+                }
+
+                @Override
+                public void onError(Exception ex) {
+                    log.error("Kraken WebSocket error ({}): {}", name, ex.getMessage());
+                    isConnecting = false;
+                }
+            };
+
+            webSocketClient.setConnectionLostTimeout(30);
+            webSocketClient.connect();
+        } catch (Exception e) {
+            log.error("Error connecting to Kraken WebSocket ({}): {}", name, e.getMessage());
+            isConnecting = false;
+        }
+    }
+
+    /**
+     * Closes the connection on purpose; the listener should not reconnect it.
+     */
+    public void close() {
+        closedByUser = true;
+        WebSocketClient client = webSocketClient;
+        if (client != null) {
+            client.close();
+        }
+        isConnecting = false;
+    }
+
+    /**
+     * Drops the current socket without marking the close as intentional, so that the
+     * owner's reconnect policy applies. Used when the connection is open but silent.
+     */
+    public void abort() {
+        WebSocketClient client = webSocketClient;
+        if (client != null) {
+            client.closeConnection(1006, "connection went silent");
+        }
+    }
+
+    public boolean isOpen() {
+        WebSocketClient client = webSocketClient;
+        return client != null && client.isOpen();
+    }
+
+    /**
+     * Requests pairs on this connection and sends subscribe messages for the new ones.
+     */
+    public void subscribe(String... pairs) {
+        List<String> toSend = subscriptionManager.request(pairs);
+        if (toSend.size() < pairs.length) {
+            log.info("Skipping {} pair(s) that are already subscribed or pending ({})",
+                pairs.length - toSend.size(), name);
+        }
+        sendSubscribe(toSend);
+    }
+
+    /**
+     * Restores every live pair plus {@code defaults} after the connection has (re)opened.
+     */
+    public void resubscribe(String... defaults) {
+        subscriptionManager.request(defaults);
+        sendSubscribe(subscriptionManager.beginResubscribe());
+    }
+
+    /**
+     * Subscribes pairs to the {@code book} channel. Book subscriptions are not tracked by the
+     * {@link SubscriptionManager}; the owner resubscribes them when this connection becomes active.
+     */
+    public void subscribeBook(List<String> pairs, int depth) {
+        sendChannelMessage("subscribe", pairs, Map.of("name", "book", "depth", depth));
+    }
+
+    /**
+     * Drops and re-requests a pair's book so that Kraken sends a fresh snapshot.
+     */
+    public void resyncBook(String pair, int depth) {
+        Map<String, Object> subscription = Map.of("name", "book", "depth", depth);
+        sendChannelMessage("unsubscribe", List.of(pair), subscription);
+        sendChannelMessage("subscribe", List.of(pair), subscription);
+    }
+
+    /**
+     * Subscribes pairs to the {@code trade} channel. Like books, trade subscriptions are only
+     * held by the active connection.
+     */
+    public void subscribeTrades(List<String> pairs) {
+        sendChannelMessage("subscribe", pairs, Map.of("name", "trade"));
+    }
+
+    private void sendChannelMessage(String event, List<String> pairs, Map<String, Object> subscription) {
+        if (pairs.isEmpty()) return;
+        try {
+            String message = objectMapper.writeValueAsString(Map.of(
+                "event", event,
+                "pair", pairs,
+                "subscription", subscription
+            ));
+            log.info("Sending {} {} message for {} pair(s) ({}): {}",
+                subscription.get("name"), event, pairs.size(), name, pairs);
+            webSocketClient.send(message);
+        } catch (Exception e) {
+            log.error("Error sending {} {} message: {}", subscription.get("name"), event, e.getMessage(), e);
+            throw new RuntimeException("Failed to " + event + " " + subscription.get("name") + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void sendSubscribe(List<String> pairs) {
+        try {
+            for (int start = 0; start < pairs.size(); start += subscribeBatchSize) {
+                List<String> batch = pairs.subList(start, Math.min(pairs.size(), start + subscribeBatchSize));
+                String subscribeMessage = objectMapper.writeValueAsString(Map.of(
+                    "event", "subscribe",
+                    "pair", batch,
+                    "subscription", Map.of("name", "ticker")
+                ));
+
+                log.info("Sending subscription message for {} pair(s) ({}): {}", batch.size(), name, batch);
+                webSocketClient.send(subscribeMessage);
+                subscriptionManager.recordMessageSent();
+            }
+        } catch (Exception e) {
+            log.error("Error subscribing to pairs: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to subscribe to pairs: " + e.getMessage(), e);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    public SubscriptionManager getSubscriptionManager() {
+        return subscriptionManager;
+    }
+
+    /**
+     * @return Decoder owned by this connection's read thread
+     */
+    public KrakenFrameDecoder getFrameDecoder() {
+        return frameDecoder;
+    }
+
+    /**
+     * @return Tick holder owned by this connection's read thread
+     */
+    public DecodedTick getDecodedTick() {
+        return decodedTick;
+    }
+
+    /**
+     * @return Book holder owned by this connection's read thread
+     */
+    public DecodedBookUpdate getDecodedBook() {
+        return decodedBook;
+    }
+
+    /**
+     * @return Trade holder owned by this connection's read thread
+     */
+    public DecodedTrades getDecodedTrades() {
+        return decodedTrades;
+    }
+
+    public boolean isConnecting() {
+        return isConnecting;
+    }
+
+    public boolean isClosedByUser() {
+        return closedByUser;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} of the last frame (or of the open), 0 if never connected
+     */
+    public long getLastMessageNanos() {
+        return lastMessageNanos;
+    }
+
+    public long getMessages() {
+        return messages;
+    }
+
+    /**
+     * @return Time the read thread has spent decoding and publishing frames
+     */
+    public long getBusyNanos() {
+        return busyNanos;
+    }
+
+    public long getConnects() {
+        return connects;
+    }
+}
@@ -0,0 +1,575 @@
+package com.cryptotrading.service;
+
+/**
+ * Allocation-light decoder for Kraken WebSocket frames.
+ *
+ * <p>Channel frames have the shape {@code [channelID, payload, channelName, pair]}, so the
+ * decoder reads the channel name and pair from the tail of the frame first and only walks the
+ * payload when the channel is one it understands. Ticker prices are parsed straight from the
+ * frame's characters into primitives and the pair is resolved through the {@link SymbolRegistry},
+ * so a ticker frame for a known pair is decoded without allocating. {@code book} frames are
+ * decoded the same way into a {@link DecodedBookUpdate}, keeping prices and volumes as exact
+ * decimal mantissas.</p>
+ *
+ * <p>Instances keep no state between calls but are meant to be owned by a single ingest thread
+ * together with the {@link DecodedTick} they write into.</p>
+ */
+public class KrakenFrameDecoder {
+
+    /**
+     * Routing result for a decoded frame.
+     */
+    public enum FrameType {
+        /** A ticker update; the target {@link DecodedTick} has been filled. */
+        TICKER,
+        /** A control event such as {@code subscriptionStatus} or {@code systemStatus}. */
+        EVENT,
+        /** A book snapshot or update; the target {@link DecodedBookUpdate} has been filled. */
+        BOOK,
+        /** One or more trades; the target {@link DecodedTrades} has been filled. */
+        TRADE,
+        /** A {@code heartbeat} event, which carries no data. */
+        HEARTBEAT,
+        /** A channel this decoder does not handle. */
+        OTHER
+    }
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private final SymbolRegistry symbolRegistry;
+    private String frame;
+    private int pos;
+    private int end;
+    private int scale;
+
+    public KrakenFrameDecoder(SymbolRegistry symbolRegistry) {
+        this.symbolRegistry = symbolRegistry;
+    }
+
+    /**
+     * Decodes a single frame.
+     * @param message Raw text frame received from Kraken
+     * @param tick Holder that receives the ticker fields when the frame is a ticker update
+     * @return The frame's routing type
+     * @throws IllegalArgumentException if the frame is not well-formed
+     */
+    public FrameType decode(String message, DecodedTick tick) {
+        return decode(message, tick, null);
+    }
+
+    /**
+     * Decodes a single frame, including {@code book} frames.
+     * @param message Raw text frame received from Kraken
+     * @param tick Holder that receives the ticker fields when the frame is a ticker update
+     * @param book Holder that receives the levels when the frame is a book frame, or null to
+     *             report book frames as {@link FrameType#OTHER}
+     * @return The frame's routing type
+     * @throws IllegalArgumentException if the frame is not well-formed
+     */
+    public FrameType decode(String message, DecodedTick tick, DecodedBookUpdate book) {
+        return decode(message, tick, book, null);
+    }
+
+    /**
+     * Decodes a single frame, including {@code book} and {@code trade} frames.
+     * @param trades Holder that receives the trades when the frame is a trade frame, or null
+     *               to report trade frames as {@link FrameType#OTHER}
+     * @see #decode(String, DecodedTick, DecodedBookUpdate)
+     */
+    public FrameType decode(String message, DecodedTick tick, DecodedBookUpdate book, DecodedTrades trades) {
+        frame = message;
+        pos = 0;
+        end = trimEnd(message);
+        try {
+            skipWhitespace();
+            if (pos >= end) {
+                throw malformed("empty frame");
+            }
+            char first = frame.charAt(pos);
+            if (first == '{') {
+                return decodeEvent();
+            }
+            if (first == '[') {
+                return decodeChannelFrame(tick, book, trades);
+            }
+            throw malformed("unexpected character '" + first + "'");
+        } finally {
+            frame = null;
+        }
+    }
+
+    private FrameType decodeEvent() {
+        pos++;
+        skipWhitespace();
+        while (pos < end && frame.charAt(pos) != '}') {
+            int keyStart = readStringBounds();
+            int keyEnd = pos - 1;
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            if (matches(keyStart, keyEnd, "event") && frame.charAt(pos) == '"') {
+                int valueStart = readStringBounds();
+                return matches(valueStart, pos - 1, "heartbeat") ? FrameType.HEARTBEAT : FrameType.EVENT;
+            }
+            skipValue();
+            skipWhitespace();
+            if (pos < end && frame.charAt(pos) == ',') {
+                pos++;
+                skipWhitespace();
+            }
+        }
+        return FrameType.EVENT;
+    }
+
+    private FrameType decodeChannelFrame(DecodedTick tick, DecodedBookUpdate book, DecodedTrades trades) {
+        // Walk back from the closing bracket: ..., "channelName", "pair"]
+        int cursor = end - 1;
+        if (frame.charAt(cursor) != ']') {
+            throw malformed("unterminated array");
+        }
+        cursor = skipWhitespaceBackwards(cursor - 1);
+        int pairEnd = cursor;
+        int pairStart = frame.lastIndexOf('"', pairEnd - 1) + 1;
+        if (frame.charAt(pairEnd) != '"' || pairStart <= 0) {
+            return FrameType.OTHER;
+        }
+        cursor = skipWhitespaceBackwards(pairStart - 2);
+        if (frame.charAt(cursor) != ',') {
+            return FrameType.OTHER;
+        }
+        cursor = skipWhitespaceBackwards(cursor - 1);
+        int channelEnd = cursor;
+        int channelStart = frame.lastIndexOf('"', channelEnd - 1) + 1;
+        if (frame.charAt(channelEnd) != '"' || channelStart <= 0) {
+            return FrameType.OTHER;
+        }
+        if (book != null && frame.startsWith("book-", channelStart)) {
+            decodeBook(book, channelStart - 1, pairStart, pairEnd);
+            return FrameType.BOOK;
+        }
+        if (trades != null && matches(channelStart, channelEnd, "trade")) {
+            decodeTrades(trades, pairStart, pairEnd);
+            return FrameType.TRADE;
+        }
+        if (!matches(channelStart, channelEnd, "ticker")) {
+            return FrameType.OTHER;
+        }
+
+        tick.reset();
+        // Skip the channel ID and position the cursor on the payload object
+        pos++;
+        skipWhitespace();
+        skipValue();
+        skipWhitespace();
+        expect(',');
+        skipWhitespace();
+        decodeTickerPayload(tick);
+        int symbolId = symbolRegistry.idOf(frame, pairStart, pairEnd);
+        if (symbolId < 0) {
+            symbolId = symbolRegistry.register(frame.substring(pairStart, pairEnd));
+        }
+        tick.setSymbolId(symbolId);
+        tick.setPair(symbolRegistry.nameOf(symbolId));
+        return FrameType.TICKER;
+    }
+
+    /**
+     * Decodes {@code [channelID, [["price","volume","time","side","orderType","misc"], ...], "trade", "pair"]}.
+     */
+    private void decodeTrades(DecodedTrades trades, int pairStart, int pairEnd) {
+        trades.reset();
+        pos++;
+        skipWhitespace();
+        skipValue();
+        skipWhitespace();
+        expect(',');
+        skipWhitespace();
+        expect('[');
+        skipWhitespace();
+        while (pos < end && frame.charAt(pos) != ']') {
+            expect('[');
+            skipWhitespace();
+            int start = readStringBounds();
+            double price = parseDecimal(start, pos - 1);
+            skipWhitespace();
+            expect(',');
+            skipWhitespace();
+            start = readStringBounds();
+            double volume = parseDecimal(start, pos - 1);
+            skipWhitespace();
+            expect(',');
+            skipWhitespace();
+            start = readStringBounds();
+            long time = (long) (parseDecimal(start, pos - 1) * 1000);
+            skipWhitespace();
+            while (pos < end && frame.charAt(pos) != ']') {
+                expect(',');
+                skipWhitespace();
+                skipValue();
+                skipWhitespace();
+            }
+            expect(']');
+            trades.addTrade(price, volume, time);
+            skipWhitespace();
+            if (pos < end && frame.charAt(pos) == ',') {
+                pos++;
+                skipWhitespace();
+            }
+        }
+        expect(']');
+        int symbolId = symbolRegistry.idOf(frame, pairStart, pairEnd);
+        if (symbolId < 0) {
+            symbolId = symbolRegistry.register(frame.substring(pairStart, pairEnd));
+        }
+        trades.setSymbolId(symbolId);
+        trades.setPair(symbolRegistry.nameOf(symbolId));
+    }
+
+    /**
+     * Decodes {@code [channelID, {..}, ({..},) "book-N", "pair"]}. Updates that touch both
+     * sides arrive as two payload objects, the second one carrying the checksum.
+     */
+    private void decodeBook(DecodedBookUpdate book, int channelQuote, int pairStart, int pairEnd) {
+        book.reset();
+        pos++;
+        skipWhitespace();
+        skipValue();
+        skipWhitespace();
+        expect(',');
+        skipWhitespace();
+        while (pos < channelQuote && frame.charAt(pos) == '{') {
+            decodeBookPayload(book);
+            skipWhitespace();
+            expect(',');
+            skipWhitespace();
+        }
+        int symbolId = symbolRegistry.idOf(frame, pairStart, pairEnd);
+        if (symbolId < 0) {
+            symbolId = symbolRegistry.register(frame.substring(pairStart, pairEnd));
+        }
+        book.setSymbolId(symbolId);
+        book.setPair(symbolRegistry.nameOf(symbolId));
+    }
+
+    private void decodeBookPayload(DecodedBookUpdate book) {
+        expect('{');
+        skipWhitespace();
+        while (pos < end && frame.charAt(pos) != '}') {
+            int keyStart = readStringBounds();
+            int keyEnd = pos - 1;
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            if (matches(keyStart, keyEnd, "as") || matches(keyStart, keyEnd, "bs")) {
+                book.setSnapshot(true);
+                readBookLevels(book, frame.charAt(keyStart) == 'a');
+            } else if (matches(keyStart, keyEnd, "a") || matches(keyStart, keyEnd, "b")) {
+                readBookLevels(book, frame.charAt(keyStart) == 'a');
+            } else if (matches(keyStart, keyEnd, "c")) {
+                int start = readStringBounds();
+                book.setChecksum(parseMantissa(start, pos - 1));
+            } else {
+                skipValue();
+            }
+            skipWhitespace();
+            if (pos < end && frame.charAt(pos) == ',') {
+                pos++;
+                skipWhitespace();
+            }
+        }
+        expect('}');
+    }
+
+    /**
+     * Reads {@code [["price","volume","timestamp"(,"r")], ...]} into the holder.
+     */
+    private void readBookLevels(DecodedBookUpdate book, boolean ask) {
+        expect('[');
+        skipWhitespace();
+        while (pos < end && frame.charAt(pos) != ']') {
+            expect('[');
+            skipWhitespace();
+            int start = readStringBounds();
+            long price = parseMantissa(start, pos - 1);
+            int priceScale = scale;
+            skipWhitespace();
+            expect(',');
+            skipWhitespace();
+            start = readStringBounds();
+            long volume = parseMantissa(start, pos - 1);
+            int volumeScale = scale;
+            skipWhitespace();
+            while (pos < end && frame.charAt(pos) != ']') {
+                expect(',');
+                skipWhitespace();
+                skipValue();
+                skipWhitespace();
+            }
+            expect(']');
+            book.addLevel(ask, price, priceScale, volume, volumeScale);
+            skipWhitespace();
+            if (pos < end && frame.charAt(pos) == ',') {
+                pos++;
+                skipWhitespace();
+            }
+        }
+        expect(']');
+    }
+
+    /**
+     * Parses an unsigned decimal such as {@code "0.05005000"} into its digits with the dot
+     * removed ({@code 5005000}) and leaves the number of fraction digits in {@link #scale}.
+     */
+    long parseMantissa(int start, int stop) {
+        long mantissa = 0;
+        int fractionDigits = 0;
+        boolean seenDot = false;
+        if (start == stop) {
+            throw malformed("empty number");
+        }
+        for (int i = start; i < stop; i++) {
+            char c = frame.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (mantissa > (Long.MAX_VALUE - 9) / 10) {
+                    throw malformed("number out of range '" + frame.substring(start, stop) + "'");
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (seenDot) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !seenDot) {
+                seenDot = true;
+            } else {
+                throw malformed("invalid number '" + frame.substring(start, stop) + "'");
+            }
+        }
+        scale = fractionDigits;
+        return mantissa;
+    }
+
+    private void decodeTickerPayload(DecodedTick tick) {
+        expect('{');
+        skipWhitespace();
+        while (pos < end && frame.charAt(pos) != '}') {
+            int keyStart = readStringBounds();
+            int keyLength = pos - 1 - keyStart;
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            char key = keyLength == 1 ? frame.charAt(keyStart) : 0;
+            switch (key) {
+                case 'c' -> tick.setLast(readArrayElement(0));
+                case 'o' -> tick.setOpen(readArrayElement(0));
+                case 'a' -> tick.setAsk(readArrayElement(0));
+                case 'b' -> tick.setBid(readArrayElement(0));
+                case 'v' -> readVolumes(tick);
+                default -> skipValue();
+            }
+            skipWhitespace();
+            if (pos < end && frame.charAt(pos) == ',') {
+                pos++;
+                skipWhitespace();
+            }
+        }
+        expect('}');
+    }
+
+    /**
+     * Reads {@code "v":["today","last24Hours"]}.
+     */
+    private void readVolumes(DecodedTick tick) {
+        expect('[');
+        skipWhitespace();
+        if (pos < end && frame.charAt(pos) == '"') {
+            int start = readStringBounds();
+            tick.setVolumeToday(parseDecimal(start, pos - 1));
+            skipWhitespace();
+            if (pos < end && frame.charAt(pos) == ',') {
+                pos++;
+                skipWhitespace();
+                if (pos < end && frame.charAt(pos) == '"') {
+                    start = readStringBounds();
+                    tick.setVolume(parseDecimal(start, pos - 1));
+                    skipWhitespace();
+                }
+            }
+        }
+        while (pos < end && frame.charAt(pos) != ']') {
+            if (frame.charAt(pos) == ',') {
+                pos++;
+                skipWhitespace();
+            }
+            skipValue();
+            skipWhitespace();
+        }
+        expect(']');
+    }
+
+    /**
+     * Reads element {@code index} of an array of decimal strings and skips the rest of the array.
+     */
+    private double readArrayElement(int index) {
+        expect('[');
+        double value = Double.NaN;
+        int element = 0;
+        skipWhitespace();
+        while (pos < end && frame.charAt(pos) != ']') {
+            if (element == index && frame.charAt(pos) == '"') {
+                int start = readStringBounds();
+                value = parseDecimal(start, pos - 1);
+            } else {
+                skipValue();
+            }
+            element++;
+            skipWhitespace();
+            if (pos < end && frame.charAt(pos) == ',') {
+                pos++;
+                skipWhitespace();
+            }
+        }
+        expect(']');
+        return value;
+    }
+
+    /**
+     * Parses a plain decimal such as {@code "50000.12340"} without creating a String.
+     * Values that fit the exact fast path (at most 2^53 mantissa and 22 fractional digits)
+     * are computed with a single correctly rounded division; anything else falls back to
+     * {@link Double#parseDouble(String)}.
+     */
+    double parseDecimal(int start, int stop) {
+        int i = start;
+        boolean negative = false;
+        if (i < stop && frame.charAt(i) == '-') {
+            negative = true;
+            i++;
+        }
+        long mantissa = 0;
+        int fractionDigits = 0;
+        boolean seenDot = false;
+        boolean seenDigit = false;
+        for (; i < stop; i++) {
+            char c = frame.charAt(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                seenDigit = true;
+                if (seenDot) {
+                    fractionDigits++;
+                }
+                if (mantissa >= MAX_EXACT_MANTISSA) {
+                    return slowParse(start, stop);
+                }
+            } else if (c == '.' && !seenDot) {
+                seenDot = true;
+            } else {
+                return slowParse(start, stop);
+            }
+        }
+        if (!seenDigit || fractionDigits >= POWERS_OF_TEN.length) {
+            return slowParse(start, stop);
+        }
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    private double slowParse(int start, int stop) {
+        try {
+            return Double.parseDouble(frame.substring(start, stop));
+        } catch (NumberFormatException e) {
+            throw malformed("invalid number '" + frame.substring(start, stop) + "'");
+        }
+    }
+
+    /**
+     * Reads a JSON string starting at the cursor and leaves the cursor after its closing quote.
+     * @return Index of the first character inside the quotes
+     */
+    private int readStringBounds() {
+        expect('"');
+        int start = pos;
+        while (pos < end) {
+            char c = frame.charAt(pos++);
+            if (c == '\\') {
+                pos++;
+            } else if (c == '"') {
+                return start;
+            }
+        }
+        throw malformed("unterminated string");
+    }
+
+    private void skipValue() {
+        if (pos >= end) {
+            throw malformed("missing value");
+        }
+        char c = frame.charAt(pos);
+        if (c == '"') {
+            readStringBounds();
+            return;
+        }
+        if (c == '[' || c == '{') {
+            int depth = 0;
+            while (pos < end) {
+                char ch = frame.charAt(pos);
+                if (ch == '"') {
+                    readStringBounds();
+                    continue;
+                }
+                pos++;
+                if (ch == '[' || ch == '{') {
+                    depth++;
+                } else if ((ch == ']' || ch == '}') && --depth == 0) {
+                    return;
+                }
+            }
+            throw malformed("unterminated container");
+        }
+        while (pos < end) {
+            char ch = frame.charAt(pos);
+            if (ch == ',' || ch == ']' || ch == '}' || Character.isWhitespace(ch)) {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private void expect(char expected) {
+        if (pos >= end || frame.charAt(pos) != expected) {
+            throw malformed("expected '" + expected + "' at offset " + pos);
+        }
+        pos++;
+    }
+
+    private void skipWhitespace() {
+        while (pos < end && Character.isWhitespace(frame.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private int skipWhitespaceBackwards(int index) {
+        while (index > 0 && Character.isWhitespace(frame.charAt(index))) {
+            index--;
+        }
+        return index;
+    }
+
+    private boolean matches(int start, int stop, String expected) {
+        return stop - start == expected.length() && frame.regionMatches(start, expected, 0, expected.length());
+    }
+
+    private static int trimEnd(String message) {
+        int last = message.length();
+        while (last > 0 && Character.isWhitespace(message.charAt(last - 1))) {
+            last--;
+        }
+        return last;
+    }
+
+    private IllegalArgumentException malformed(String reason) {
+        return new IllegalArgumentException("Malformed Kraken frame: " + reason);
+    }
+}
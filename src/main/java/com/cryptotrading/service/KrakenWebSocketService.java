@@ -3,35 +3,98 @@ package com.cryptotrading.service;
 import com.cryptotrading.websocket.CryptoWebSocketEndpoint;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.java_websocket.client.WebSocketClient;
-import org.java_websocket.handshake.ServerHandshake;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.Set;
-import java.util.HashSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Feeds Kraken market data into the price table, order books and candles.
+ *
+ * <p>The pair universe is split across {@code kraken.ws.shards} upstream connections with
+ * {@link PairSharding}, so each connection's read thread decodes only its own pairs and a
+ * dropped connection only interrupts the pairs of its shard. Every shard has its own optional
+ * hot standby and {@link FeedArbiter}; all shards publish into the same {@link TickPipeline},
+ * whose single-producer publish is the only step they serialize on.</p>
+ */
 @Service
 public class KrakenWebSocketService {
     private static final Logger log = LoggerFactory.getLogger(KrakenWebSocketService.class);
+    private static final String ASSET_PAIRS_URL = "https://api.kraken.com/0/public/AssetPairs";
 
     @Value("${kraken.ws.url:wss://ws.kraken.com}")
     private String krakenWsUrl;
 
+    @Value("${kraken.ws.shards:1}")
+    private int shardCount = 1;
+
+    @Value("${kraken.ws.pairs:}")
+    private String[] configuredPairs = new String[0];
+
+    @Value("${kraken.ws.pairs.all-asset-pairs:false}")
+    private boolean allAssetPairs = false;
+
+    @Value("${kraken.ws.streaming-decoder:true}")
+    private boolean streamingDecoder = true;
+
+    @Value("${kraken.ws.subscribe-batch-size:100}")
+    private int subscribeBatchSize = 100;
+
+    @Value("${kraken.ws.reconnect-delay-ms:1000}")
+    private long reconnectDelayMillis = 1000;
+
+    @Value("${kraken.ws.reconnect-max-delay-ms:30000}")
+    private long reconnectMaxDelayMillis = 30000;
+
+    @Value("${kraken.ws.failover.enabled:false}")
+    private boolean failoverEnabled = false;
+
+    @Value("${kraken.ws.failover.standby-url:}")
+    private String standbyWsUrl = "";
+
+    @Value("${kraken.ws.failover.staleness-ms:3000}")
+    private long stalenessMillis = 3000;
+
+    @Value("${kraken.ws.book.pairs:}")
+    private String[] bookPairs = new String[0];
+
+    @Value("${kraken.ws.book.depth:10}")
+    private int bookDepth = 10;
+
+    @Value("${kraken.ws.trade.pairs:}")
+    private String[] tradePairs = new String[0];
+
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private WebSocketClient webSocketClient;
-    private final Map<String, Double> lastPrices = new ConcurrentHashMap<>();
-    private final Map<String, Double> previousDayPrices = new ConcurrentHashMap<>();
-    private boolean isConnecting = false;
-    private final Set<String> subscribedPairs = ConcurrentHashMap.newKeySet();
-    private final Map<String, Double> dailyChanges = new ConcurrentHashMap<>();
+    private PriceTable priceTable;
+    private OrderBookStore orderBookStore;
+    private CandleEngine candleEngine;
+    @Autowired
+    private TickPipeline tickPipeline;
+    private PriceBusService priceBus;
+    private PairPrecision pairPrecision;
+    private KrakenConnection primary;
+    private Shard[] shards;
+    private List<KrakenConnection> connections;
+    private ScheduledExecutorService supervisor;
+    private final Map<KrakenConnection, Integer> reconnectAttempts = new ConcurrentHashMap<>();
+    private final KrakenConnection.Listener connectionListener = new ConnectionListener();
 
     private static final String[] DEFAULT_PAIRS = new String[]{
         "XBT/USD", "ETH/USD", "XPR/USD", "ADA/USD", "DOT/USD",
@@ -41,194 +104,660 @@ public class KrakenWebSocketService {
         "MANA/USD", 
     };
 
+    @Autowired
+    public void setPriceTable(PriceTable priceTable) {
+        this.priceTable = priceTable;
+    }
+
+    public PriceTable getPriceTable() {
+        return priceTable;
+    }
+
+    @Autowired
+    public void setOrderBookStore(OrderBookStore orderBookStore) {
+        this.orderBookStore = orderBookStore;
+    }
+
+    public OrderBookStore getOrderBookStore() {
+        initConnections();
+        return orderBookStore;
+    }
+
+    @Autowired
+    public void setCandleEngine(CandleEngine candleEngine) {
+        this.candleEngine = candleEngine;
+    }
+
+    @Autowired(required = false)
+    public void setPairPrecision(PairPrecision pairPrecision) {
+        this.pairPrecision = pairPrecision;
+    }
+
+    @Autowired(required = false)
+    public void setPriceBus(PriceBusService priceBus) {
+        this.priceBus = priceBus;
+    }
+
+    /**
+     * Opens each shard's primary connection and, with failover enabled, a hot standby
+     * subscribed to the same pairs. An instance following the price bus connects only once
+     * it is elected to lead.
+     */
     @PostConstruct
     public void connect() {
-        if (isConnecting) return;
-        isConnecting = true;
+        if (priceBus != null && !priceBus.isIngesting()) {
+            log.info("Not connecting to Kraken while following the price bus");
+            priceBus.whenIngesting(this::connect);
+            return;
+        }
+        initConnections();
+        for (KrakenConnection connection : connections) {
+            connection.connect();
+        }
+    }
 
-        try {
-            webSocketClient = new WebSocketClient(new URI(krakenWsUrl)) {
-                @Override
-                public void onOpen(ServerHandshake handshake) {
-                    log.info("Connected to Kraken WebSocket");
-                    subscribe();
-                }
+    synchronized void initConnections() {
+        if (connections != null) return;
+        if (shardCount <= 0) {
+            throw new IllegalStateException("kraken.ws.shards must be greater than 0: " + shardCount);
+        }
 
-                @Override
-                public void onMessage(String message) {
-                    try {
-                        handleMessage(message);
-                    } catch (Exception e) {
-                        log.error("Error handling message: {}", e.getMessage());
-                    }
-                }
+        supervisor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "kraken-supervisor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (orderBookStore == null) {
+            orderBookStore = new OrderBookStore(priceTable.getSymbolRegistry());
+        }
+        for (String pair : bookPairs) {
+            orderBookStore.track(pair, bookDepth);
+        }
+        if (candleEngine == null) {
+            candleEngine = new CandleEngine(priceTable.getSymbolRegistry());
+        }
 
-                @Override
-                public void onClose(int code, String reason, boolean remote) {
-                    log.info("Kraken WebSocket connection closed: {} (code: {})", reason, code);
-                    isConnecting = false;
-                    if (remote) {
-                        scheduleReconnect();
+        String[] universe = resolvePairs();
+        String standbyUrl = standbyWsUrl == null || standbyWsUrl.isBlank() ? krakenWsUrl : standbyWsUrl;
+        List<KrakenConnection> created = new ArrayList<>();
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            // A single shard keeps the historical connection names
+            String suffix = shardCount == 1 ? "" : "-" + i;
+            KrakenConnection shardPrimary = new KrakenConnection("primary" + suffix, i, URI.create(krakenWsUrl),
+                connectionListener, objectMapper, priceTable.getSymbolRegistry(), subscribeBatchSize);
+            KrakenConnection shardStandby = failoverEnabled
+                ? new KrakenConnection("standby" + suffix, i, URI.create(standbyUrl), connectionListener,
+                    objectMapper, priceTable.getSymbolRegistry(), subscribeBatchSize)
+                : null;
+            shards[i] = new Shard(i, shardPrimary, shardStandby,
+                new FeedArbiter(priceTable.getSymbolRegistry().capacity(), stalenessMillis),
+                assigned(universe, i), assigned(bookPairs, i), assigned(tradePairs, i));
+            created.addAll(shards[i].connections);
+        }
+        primary = shards[0].primary;
+        connections = List.copyOf(created);
+        log.info("Sharding {} Kraken pairs across {} connection(s)", universe.length, shardCount);
+
+        supervisor.scheduleAtFixedRate(this::sampleThroughput, 1, 1, TimeUnit.SECONDS);
+        if (failoverEnabled) {
+            long period = Math.max(10, stalenessMillis / 4);
+            supervisor.scheduleWithFixedDelay(this::checkStaleness, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return The configured pairs, every {@code wsname} listed by Kraken's AssetPairs endpoint
+     * when {@code kraken.ws.pairs.all-asset-pairs} is set, or the built-in defaults. The decimals
+     * AssetPairs lists for each pair are passed on to {@link PairPrecision}.
+     */
+    private String[] resolvePairs() {
+        if (allAssetPairs) {
+            try {
+                JsonNode result = objectMapper.readTree(new RestTemplate().getForObject(ASSET_PAIRS_URL, String.class))
+                    .path("result");
+                Set<String> pairs = new TreeSet<>();
+                result.elements().forEachRemaining(pair -> {
+                    if (pair.has("wsname")) {
+                        pairs.add(pair.get("wsname").asText());
+                        if (pairPrecision != null && pair.has("lot_decimals") && pair.has("cost_decimals")) {
+                            pairPrecision.register(pair.get("wsname").asText(),
+                                pair.get("lot_decimals").asInt(), pair.get("cost_decimals").asInt());
+                        }
                     }
+                });
+                if (!pairs.isEmpty()) {
+                    return pairs.toArray(new String[0]);
                 }
+                log.warn("Kraken AssetPairs returned no wsnames; using the configured pairs");
+            } catch (Exception e) {
+                log.error("Error loading Kraken AssetPairs, using the configured pairs: {}", e.getMessage());
+            }
+        }
+        return configuredPairs.length > 0 ? configuredPairs : DEFAULT_PAIRS;
+    }
 
-                @Override
-                public void onError(Exception ex) {
-                    log.error("Kraken WebSocket error: {}", ex.getMessage());
-                    isConnecting = false;
-                }
-            };
+    private String[] assigned(String[] pairs, int shard) {
+        return Arrays.stream(pairs).filter(pair -> PairSharding.shardOf(pair, shardCount) == shard).toArray(String[]::new);
+    }
+
+    private Shard shardOf(KrakenConnection connection) {
+        return shards[connection.getShard()];
+    }
+
+    private Shard shardOf(String pair) {
+        initConnections();
+        return shards[PairSharding.shardOf(pair, shardCount)];
+    }
 
-            webSocketClient.setConnectionLostTimeout(30);
-            webSocketClient.connect();
+    /**
+     * Switches each shard to its standby when the active connection has gone silent for longer
+     * than the staleness window. A demoted connection that still receives heartbeats stays open
+     * as the new standby; only a connection silent for twice the window is dropped and
+     * reconnected.
+     */
+    private void checkStaleness() {
+        for (Shard shard : shards) {
+            checkStaleness(shard);
+        }
+    }
+
+    private void checkStaleness(Shard shard) {
+        try {
+            long now = System.nanoTime();
+            KrakenConnection demoted = shard.arbiter.checkStaleness(shard.connections, now);
+            if (demoted != null) {
+                // Books were built from the old connection's updates; start over from a snapshot
+                for (String pair : shard.bookPairs) {
+                    orderBookStore.invalidate(pair);
+                }
+                subscribeActiveChannels(shard, shard.arbiter.getActive());
+            }
+            long deadNanos = 2 * stalenessMillis * 1_000_000;
+            for (KrakenConnection connection : shard.connections) {
+                if (connection.isOpen() && now - connection.getLastMessageNanos() > deadNanos) {
+                    log.warn("Kraken {} connection silent for {} ms; reconnecting", connection.getName(),
+                        (now - connection.getLastMessageNanos()) / 1_000_000);
+                    connection.abort();
+                }
+            }
         } catch (Exception e) {
-            log.error("Error connecting to Kraken WebSocket: {}", e.getMessage());
-            isConnecting = false;
+            log.error("Error checking Kraken feed staleness: {}", e.getMessage());
         }
     }
 
-    @Scheduled(fixedDelay = 5000)
-    private void scheduleReconnect() {
-        if (!isConnected()) {
-            connect();
+    /**
+     * Turns the shards' cumulative tick and busy-time counters into per-second rates.
+     */
+    private void sampleThroughput() {
+        long now = System.nanoTime();
+        for (Shard shard : shards) {
+            shard.sample(now);
+        }
+    }
+
+    /**
+     * Reconnects a dropped connection after an exponential backoff, instead of polling.
+     */
+    private void scheduleReconnect(KrakenConnection connection) {
+        int attempt = reconnectAttempts.merge(connection, 1, Integer::sum);
+        long delay = Math.min(reconnectMaxDelayMillis, reconnectDelayMillis << Math.min(attempt - 1, 16));
+        log.info("Reconnecting {} Kraken connection in {} ms (attempt {})", connection.getName(), delay, attempt);
+        try {
+            supervisor.schedule(() -> {
+                if (!connection.isClosedByUser() && !connection.isOpen()) {
+                    connection.connect();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.warn("Cannot schedule reconnect of {} Kraken connection: {}", connection.getName(), e.getMessage());
         }
     }
 
-    private void subscribe() {
+    /**
+     * Subscribes the shard's book and trade pairs. Unlike tickers these channels are only
+     * consumed from the active connection, so the standby does not carry them.
+     */
+    private void subscribeActiveChannels(Shard shard, KrakenConnection connection) {
+        if (connection == null || !connection.isOpen()) return;
         try {
-            // Subscribe to default pairs first
-            subscribeToPairs(DEFAULT_PAIRS);
+            connection.subscribeBook(List.of(shard.bookPairs), bookDepth);
+            connection.subscribeTrades(List.of(shard.tradePairs));
         } catch (Exception e) {
-            log.error("Error subscribing to Kraken WebSocket: {}", e.getMessage());
+            log.error("Error subscribing to Kraken book/trade channels: {}", e.getMessage());
         }
     }
 
+    private class ConnectionListener implements KrakenConnection.Listener {
+        @Override
+        public void onConnected(KrakenConnection connection) {
+            reconnectAttempts.remove(connection);
+            Shard shard = shardOf(connection);
+            try {
+                // Restore every pair that was live on the previous connection, plus the shard's defaults
+                connection.resubscribe(shard.pairs);
+            } catch (Exception e) {
+                log.error("Error subscribing to Kraken WebSocket: {}", e.getMessage());
+            }
+            if (connection == shard.arbiter.getActive()) {
+                subscribeActiveChannels(shard, connection);
+            }
+        }
+
+        @Override
+        public void onFrame(KrakenConnection connection, String message, long receivedNanos) {
+            handleMessage(connection, message, receivedNanos);
+        }
+
+        @Override
+        public void onDisconnected(KrakenConnection connection, int code, String reason, boolean remote) {
+            Shard shard = shardOf(connection);
+            if (connection == shard.arbiter.getActive() && shard.connections.size() > 1) {
+                checkStaleness(shard);
+            }
+            if (!connection.isClosedByUser()) {
+                scheduleReconnect(connection);
+            }
+        }
+    }
+
+    /**
+     * Requests each pair on the connections of its shard. Connections that are down pick them
+     * up on reconnect.
+     */
     public void subscribeToPairs(String... pairs) {
         if (!isConnected()) {
             log.error("Cannot subscribe to pairs: WebSocket not connected");
             throw new IllegalStateException("WebSocket is not connected");
         }
 
-        try {
-            for (String pair : pairs) {
-                log.info("Processing subscription request for pair: {}", pair);
-                
-                if (subscribedPairs.contains(pair)) {
-                    log.info("Pair already subscribed: {}", pair);
-                    continue;
+        for (Shard shard : shards) {
+            String[] shardPairs = assigned(pairs, shard.index);
+            if (shardPairs.length == 0) {
+                continue;
+            }
+            for (KrakenConnection connection : shard.connections) {
+                if (connection.isOpen()) {
+                    connection.subscribe(shardPairs);
+                } else {
+                    connection.getSubscriptionManager().request(shardPairs);
                 }
-
-                String subscribeMessage = objectMapper.writeValueAsString(Map.of(
-                    "event", "subscribe",
-                    "pair", new String[]{pair},
-                    "subscription", Map.of("name", "ticker")
-                ));
-                
-                log.info("Sending subscription message for pair {}: {}", pair, subscribeMessage);
-                webSocketClient.send(subscribeMessage);
-                subscribedPairs.add(pair);
-                log.info("Successfully sent subscription request for pair: {}", pair);
             }
-        } catch (Exception e) {
-            log.error("Error subscribing to pairs: {}", e.getMessage(), e);
-            throw new RuntimeException("Failed to subscribe to pairs: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * @return Whether the pair has been requested and is pending or confirmed by Kraken
+     */
     public boolean isSubscribed(String pair) {
-        return subscribedPairs.contains(pair);
+        return getSubscriptionManager(pair).isActive(pair);
     }
 
     public Set<String> getSubscribedPairs() {
-        return new HashSet<>(subscribedPairs);
+        initConnections();
+        Set<String> pairs = new TreeSet<>();
+        for (Shard shard : shards) {
+            pairs.addAll(shard.primary.getSubscriptionManager().getActivePairs());
+        }
+        return pairs;
+    }
+
+    /**
+     * @return Subscription state of the first shard's primary connection
+     */
+    public SubscriptionManager getSubscriptionManager() {
+        initConnections();
+        return primary.getSubscriptionManager();
+    }
+
+    /**
+     * @return Subscription state of the primary connection of the pair's shard
+     */
+    public SubscriptionManager getSubscriptionManager(String pair) {
+        return shardOf(pair).primary.getSubscriptionManager();
     }
 
-    private void handleMessage(String message) {
+    /**
+     * @return Subscription counts summed over the shards' primary connections, and each
+     * shard's own counts when there is more than one
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> getSubscriptionMetrics() {
+        initConnections();
+        if (shards.length == 1) {
+            return primary.getSubscriptionManager().getMetrics();
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        Map<String, Object> failures = new LinkedHashMap<>();
+        List<Map<String, Object>> shardMetrics = new ArrayList<>();
+        for (Shard shard : shards) {
+            Map<String, Object> entry = shard.primary.getSubscriptionManager().getMetrics();
+            for (String key : new String[]{"pending", "confirmed", "failed", "messagesSent", "recoveries"}) {
+                metrics.merge(key, entry.get(key), (a, b) -> ((Number) a).longValue() + ((Number) b).longValue());
+            }
+            metrics.merge("recovering", entry.get("recovering"), (a, b) -> (Boolean) a || (Boolean) b);
+            metrics.merge("lastRecoveryMillis", entry.get("lastRecoveryMillis"),
+                (a, b) -> Math.max(((Number) a).longValue(), ((Number) b).longValue()));
+            failures.putAll((Map<String, ?>) entry.get("failures"));
+            Map<String, Object> shardEntry = new LinkedHashMap<>();
+            shardEntry.put("shard", shard.index);
+            shardEntry.putAll(entry);
+            shardMetrics.add(shardEntry);
+        }
+        metrics.put("failures", failures);
+        metrics.put("shards", shardMetrics);
+        return metrics;
+    }
+
+    private void handleMessage(KrakenConnection source, String message, long receivedNanos) {
+        KrakenFrameDecoder frameDecoder = source.getFrameDecoder();
+        DecodedTick decodedTick = source.getDecodedTick();
         try {
-            JsonNode data = objectMapper.readTree(message);
             log.debug("Received message from Kraken: {}", message);
-            
-            if (data.has("event")) {
-                String event = data.get("event").asText();
-                if ("subscriptionStatus".equals(event)) {
-                    String status = data.get("status").asText();
-                    String pair = data.get("pair").asText();
-                    if ("error".equals(status)) {
-                        String errorMessage = data.has("errorMessage") ? data.get("errorMessage").asText() : "Unknown error";
-                        log.error("Subscription error for {}: {}", pair, errorMessage);
-                        // Remove from subscribed pairs if there was an error
-                        subscribedPairs.remove(pair);
-                        // Broadcast error to clients
-                        CryptoWebSocketEndpoint.broadcastPriceUpdate(pair, 0.0, 0.0);
-                    } else {
-                        log.info("Subscription status for {}: {}", pair, status);
-                    }
-                    return;
+
+            if (streamingDecoder) {
+                switch (frameDecoder.decode(message, decodedTick, source.getDecodedBook(), source.getDecodedTrades())) {
+                    case TICKER -> handleTicker(source, decodedTick, receivedNanos);
+                    case BOOK -> handleBook(source, source.getDecodedBook());
+                    case TRADE -> handleTrades(source, source.getDecodedTrades());
+                    case EVENT -> handleEvent(source, objectMapper.readTree(message));
+                    default -> { }
                 }
+                return;
             }
-            
+
+            JsonNode data = objectMapper.readTree(message);
+            if (data.has("event")) {
+                handleEvent(source, data);
+                return;
+            }
+
             if (data.isArray() && data.size() > 2 && "ticker".equals(data.get(2).asText())) {
-                String pair = data.get(3).asText();
+                decodedTick.reset();
+                decodedTick.setPair(data.get(3).asText());
                 JsonNode tickerData = data.get(1);
-                
-                if (tickerData.has("c") && tickerData.get("c").size() > 0) {
-                    try {
-                        double currentPrice = Double.parseDouble(tickerData.get("c").get(0).asText());
-                        
-                        // Get the 24h opening price from the "o" field if available
-                        double previousPrice;
-                        if (tickerData.has("o") && tickerData.get("o").size() > 0) {
-                            previousPrice = Double.parseDouble(tickerData.get("o").get(0).asText());
-                        } else {
-                            // Fallback to stored previous price or current price
-                            previousPrice = previousDayPrices.getOrDefault(pair, currentPrice);
-                        }
-                        
-                        double change24h = ((currentPrice - previousPrice) / previousPrice) * 100;
-                        
-                        dailyChanges.put(pair, change24h);
-                        
-                        log.info("Price update for {}: Current Price = {}, 24h Change = {}%", 
-                            pair, currentPrice, String.format("%.2f", change24h));
-                        
-                        lastPrices.put(pair, currentPrice);
-                        previousDayPrices.put(pair, previousPrice); // Update the previous day price
-                        CryptoWebSocketEndpoint.broadcastPriceUpdate(pair, currentPrice, change24h);
-                    } catch (NumberFormatException e) {
-                        log.error("Error parsing price data for {}: {}", pair, e.getMessage());
-                    }
-                }
+                decodedTick.setLast(readTreeField(decodedTick, tickerData, "c", 0));
+                decodedTick.setOpen(readTreeField(decodedTick, tickerData, "o", 0));
+                decodedTick.setAsk(readTreeField(decodedTick, tickerData, "a", 0));
+                decodedTick.setBid(readTreeField(decodedTick, tickerData, "b", 0));
+                decodedTick.setVolume(readTreeField(decodedTick, tickerData, "v", 1));
+                decodedTick.setVolumeToday(readTreeField(decodedTick, tickerData, "v", 0));
+                handleTicker(source, decodedTick, receivedNanos);
             }
         } catch (Exception e) {
             log.error("Error parsing message: {} - Raw message: {}", e.getMessage(), message);
         }
     }
 
+    private void handleEvent(KrakenConnection source, JsonNode data) {
+        SubscriptionManager subscriptionManager = source.getSubscriptionManager();
+        String event = data.get("event").asText();
+        if ("subscriptionStatus".equals(event)) {
+            String channel = data.path("subscription").path("name").asText();
+            if ("book".equals(channel) || "trade".equals(channel)) {
+                handleChannelStatus(channel, data);
+                return;
+            }
+            String status = data.path("status").asText();
+            String pair = data.path("pair").asText(null);
+            if (pair == null) {
+                log.warn("Subscription status without pair: {}", data);
+                return;
+            }
+            switch (status) {
+                case "subscribed" -> {
+                    log.debug("Subscription confirmed for {}", pair);
+                    subscriptionManager.onSubscribed(pair);
+                }
+                case "unsubscribed" -> {
+                    log.info("Unsubscribed from {}", pair);
+                    subscriptionManager.onUnsubscribed(pair);
+                }
+                case "error" -> {
+                    String errorMessage = data.has("errorMessage") ? data.get("errorMessage").asText() : "Unknown error";
+                    log.error("Subscription error for {}: {}", pair, errorMessage);
+                    subscriptionManager.onFailed(pair, errorMessage);
+                    // Broadcast error to clients, once rather than once per connection
+                    if (source == shardOf(source).primary) {
+                        CryptoWebSocketEndpoint.broadcastPriceUpdate(pair, 0.0, 0.0);
+                    }
+                }
+                default -> log.info("Subscription status for {}: {}", pair, status);
+            }
+        }
+    }
+
+    private void handleChannelStatus(String channel, JsonNode data) {
+        String status = data.path("status").asText();
+        String pair = data.path("pair").asText(null);
+        if ("error".equals(status)) {
+            log.error("{} subscription error for {}: {}", channel, pair, data.path("errorMessage").asText("Unknown error"));
+        } else {
+            log.info("{} subscription status for {}: {}", channel, pair, status);
+        }
+    }
+
+    /**
+     * Folds trades from the active connection into the candle engine.
+     */
+    private void handleTrades(KrakenConnection source, DecodedTrades trades) {
+        if (source != shardOf(source).arbiter.getActive()) {
+            return;
+        }
+        for (int i = 0; i < trades.getCount(); i++) {
+            candleEngine.onTrade(trades.getSymbolId(), trades.getPrice(i), trades.getVolume(i), trades.getTime(i));
+        }
+    }
+
+    /**
+     * Applies a book frame from the active connection and requests a fresh snapshot when the
+     * resulting book does not match Kraken's checksum.
+     */
+    private void handleBook(KrakenConnection source, DecodedBookUpdate update) {
+        if (source != shardOf(source).arbiter.getActive()) {
+            return;
+        }
+        if (!orderBookStore.apply(update, System.currentTimeMillis())) {
+            log.info("Resyncing order book for {}", update.getPair());
+            OrderBook book = orderBookStore.get(update.getSymbolId());
+            source.resyncBook(update.getPair(), book.getDepth());
+        }
+    }
+
+    private double readTreeField(DecodedTick decodedTick, JsonNode tickerData, String field, int index) {
+        JsonNode values = tickerData.get(field);
+        if (values == null || values.size() <= index) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(values.get(index).asText());
+        } catch (NumberFormatException e) {
+            log.error("Error parsing price data for {}: {}", decodedTick.getPair(), e.getMessage());
+            return Double.NaN;
+        }
+    }
+
+    private void handleTicker(KrakenConnection source, DecodedTick tick, long receivedNanos) {
+        String pair = tick.getPair();
+        double currentPrice = tick.getLast();
+        if (Double.isNaN(currentPrice)) {
+            return;
+        }
+        int symbolId = tick.getSymbolId() >= 0
+            ? tick.getSymbolId()
+            : priceTable.getSymbolRegistry().register(pair);
+        tick.setSymbolId(symbolId);
+        Shard shard = shardOf(source);
+        if (shard.connections.size() > 1 && !shard.arbiter.accept(source, tick)) {
+            return;
+        }
+        shard.ticks++;
+
+        // Use the opening price from the "o" field if available,
+        // otherwise fall back to the stored previous price or the current price
+        double previousPrice = tick.getOpen();
+        if (Double.isNaN(previousPrice)) {
+            double storedOpen = priceTable.open(symbolId);
+            previousPrice = Double.isNaN(storedOpen) ? currentPrice : storedOpen;
+        }
+
+        double change24h = ((currentPrice - previousPrice) / previousPrice) * 100;
+
+        if (log.isDebugEnabled()) {
+            log.debug("Price update for {}: Current Price = {}, 24h Change = {}%",
+                pair, currentPrice, String.format("%.2f", change24h));
+        }
+
+        tickPipeline.publish(tick, symbolId, previousPrice, change24h, System.currentTimeMillis(), receivedNanos);
+    }
+
     @PreDestroy
     public void disconnect() {
-        if (webSocketClient != null) {
-            webSocketClient.close();
-            log.info("Kraken WebSocket connection closed");
+        if (connections == null) return;
+        for (KrakenConnection connection : connections) {
+            connection.close();
         }
+        supervisor.shutdownNow();
+        log.info("Kraken WebSocket connection closed");
     }
 
     public boolean isConnected() {
-        return webSocketClient != null && webSocketClient.isOpen();
+        if (connections == null) return false;
+        for (KrakenConnection connection : connections) {
+            if (connection.isOpen()) return true;
+        }
+        return false;
     }
 
     public void reconnect() {
-        if (webSocketClient != null) {
-            webSocketClient.close();
+        initConnections();
+        for (KrakenConnection connection : connections) {
+            connection.close();
+            connection.connect();
         }
-        isConnecting = false;
-        connect();
     }
 
+    /**
+     * @return Failover counters summed over the shards, per-connection liveness and per-shard
+     * throughput
+     */
+    public Map<String, Object> getFeedMetrics() {
+        initConnections();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("failoverEnabled", failoverEnabled);
+        metrics.put("shardCount", shards.length);
+        for (Shard shard : shards) {
+            shard.arbiter.getMetrics().forEach((key, value) -> metrics.merge(key, value, (a, b) -> switch (key) {
+                case "active" -> a + "," + b;
+                case "stalenessMillis" -> a;
+                case "lastFailoverMillis" -> Math.max((Long) a, (Long) b);
+                default -> (Long) a + (Long) b;
+            }));
+        }
+        long now = System.nanoTime();
+        List<Map<String, Object>> connectionMetrics = new ArrayList<>();
+        for (KrakenConnection connection : connections) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("name", connection.getName());
+            entry.put("shard", connection.getShard());
+            entry.put("open", connection.isOpen());
+            entry.put("messages", connection.getMessages());
+            entry.put("connects", connection.getConnects());
+            entry.put("reconnectAttempts", reconnectAttempts.getOrDefault(connection, 0));
+            long last = connection.getLastMessageNanos();
+            entry.put("lastMessageAgeMillis", last == 0 ? -1 : (now - last) / 1_000_000);
+            entry.put("confirmedPairs", connection.getSubscriptionManager().getPairs(SubscriptionManager.State.CONFIRMED).size());
+            connectionMetrics.add(entry);
+        }
+        metrics.put("connections", connectionMetrics);
+        List<Map<String, Object>> shardMetrics = new ArrayList<>();
+        for (Shard shard : shards) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("shard", shard.index);
+            entry.put("pairs", shard.pairs.length);
+            KrakenConnection active = shard.arbiter.getActive();
+            entry.put("active", active == null ? null : active.getName());
+            entry.put("healthy", active != null && active.isOpen());
+            entry.put("ticks", shard.ticks);
+            entry.put("ticksPerSecond", shard.ticksPerSecond);
+            entry.put("readThreadUtilization", Math.round(shard.utilization * 1000) / 1000.0);
+            shardMetrics.add(entry);
+        }
+        metrics.put("shards", shardMetrics);
+        return metrics;
+    }
+
+    /**
+     * Copies the latest prices into a map. Hot readers should use {@link #getPriceTable()}
+     * with a reusable {@link PriceSnapshot} instead.
+     */
     public Map<String, Double> getLatestPrices() {
-        return new ConcurrentHashMap<>(lastPrices);
+        Map<String, Double> prices = new HashMap<>();
+        priceTable.forEach(new PriceSnapshot(), snapshot -> prices.put(snapshot.getSymbol(), snapshot.getLast()));
+        return prices;
     }
 
+    /**
+     * Copies the latest 24h changes into a map. Hot readers should use {@link #getPriceTable()}
+     * with a reusable {@link PriceSnapshot} instead.
+     */
     public Map<String, Double> get24hChanges() {
-        return new ConcurrentHashMap<>(dailyChanges);
+        Map<String, Double> changes = new HashMap<>();
+        priceTable.forEach(new PriceSnapshot(), snapshot -> changes.put(snapshot.getSymbol(), snapshot.getChange24h()));
+        return changes;
+    }
+
+    /**
+     * One slice of the pair universe: its connections, the arbiter choosing between them and
+     * its throughput counters.
+     */
+    private static final class Shard {
+        final int index;
+        final KrakenConnection primary;
+        final List<KrakenConnection> connections;
+        final FeedArbiter arbiter;
+        final String[] pairs;
+        final String[] bookPairs;
+        final String[] tradePairs;
+        // Written by whichever connection is active; only one publishes at a time
+        volatile long ticks;
+        volatile long ticksPerSecond;
+        volatile double utilization;
+        private long sampledTicks;
+        private long sampledBusyNanos;
+        private long sampledAtNanos = System.nanoTime();
+
+        Shard(int index, KrakenConnection primary, KrakenConnection standby, FeedArbiter arbiter,
+              String[] pairs, String[] bookPairs, String[] tradePairs) {
+            this.index = index;
+            this.primary = primary;
+            this.connections = standby == null ? List.of(primary) : List.of(primary, standby);
+            this.arbiter = arbiter;
+            this.pairs = pairs;
+            this.bookPairs = bookPairs;
+            this.tradePairs = tradePairs;
+            arbiter.setActive(primary);
+        }
+
+        /**
+         * Called once per period by the supervisor. Utilization is the share of the period the
+         * shard's read threads spent decoding and publishing, averaged over its connections.
+         */
+        void sample(long nowNanos) {
+            long elapsed = nowNanos - sampledAtNanos;
+            if (elapsed <= 0) {
+                return;
+            }
+            long currentTicks = ticks;
+            long busy = 0;
+            for (KrakenConnection connection : connections) {
+                busy += connection.getBusyNanos();
+            }
+            ticksPerSecond = (currentTicks - sampledTicks) * 1_000_000_000L / elapsed;
+            utilization = Math.min(1.0, (double) (busy - sampledBusyNanos) / elapsed / connections.size());
+            sampledTicks = currentTicks;
+            sampledBusyNanos = busy;
+            sampledAtNanos = nowNanos;
+        }
     }
-}
\ No newline at end of file
+}
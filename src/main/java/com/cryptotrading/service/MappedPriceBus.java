@@ -0,0 +1,340 @@
+package com.cryptotrading.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link PriceBus} between the JVMs of one host, through a memory-mapped ring file.
+ *
+ * <p>The directory holds {@code prices.ring}: a 64-byte header followed by {@code capacity}
+ * fixed-width 128-byte little-endian records (see {@link #RECORD_SIZE}), mapped by every
+ * instance. The leader writes each tick into the slot of its sequence number and then
+ * publishes the sequence in the header with release semantics; readers follow the header and
+ * read the slots up to it, without any system call. A record starts with its own sequence,
+ * cleared before the fields are rewritten and stored last, so a reader that was lapped by the
+ * writer notices and skips ahead to the oldest record still in the ring.</p>
+ *
+ * <p>The leader is whoever holds the operating system lock on {@code leader.lock}. The lock
+ * goes away with the process that held it, so a crashed leader is replaced on the next
+ * {@link #tryLead()} of another instance, which continues the sequence where it stopped.</p>
+ */
+public class MappedPriceBus implements PriceBus {
+    private static final Logger log = LoggerFactory.getLogger(MappedPriceBus.class);
+
+    static final long MAGIC = 0x3153554245434950L; // "PRICEBU1" in little-endian byte order
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    // Header fields
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 8;
+    static final int RECORD_SIZE_OFFSET = 12;
+    static final int CAPACITY_OFFSET = 16;
+    static final int HEAD_OFFSET = 24;
+    static final int EPOCH_OFFSET = 32;
+    static final int LEADER_PID_OFFSET = 40;
+    // Record fields: sequence, timestamp, last, open, change24h, bid, ask, volume, volume today, symbol
+    static final int RECORD_SIZE = 128;
+    static final int SEQ = 0;
+    static final int TIMESTAMP = 8;
+    static final int LAST = 16;
+    static final int OPEN = 24;
+    static final int CHANGE = 32;
+    static final int BID = 40;
+    static final int ASK = 48;
+    static final int VOLUME = 56;
+    static final int VOLUME_TODAY = 64;
+    static final int SYMBOL_LENGTH = 72;
+    static final int SYMBOL = 73;
+    static final int MAX_SYMBOL_BYTES = RECORD_SIZE - SYMBOL;
+    public static final int DEFAULT_CAPACITY = 65_536;
+
+    static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final Path directory;
+    private final FileChannel channel;
+    private final MappedByteBuffer ring;
+    private final int capacity;
+    private final long mask;
+    // Written by publish and read by poll respectively, which may run on different threads
+    private final byte[] encodedSymbol = new byte[MAX_SYMBOL_BYTES];
+    private final byte[] symbolBytes = new byte[MAX_SYMBOL_BYTES];
+    private final DecodedTick tick = new DecodedTick();
+    // Last symbol decoded by poll, reused while the bytes match
+    private String lastSymbol;
+    private int lastSymbolLength = -1;
+    private final byte[] lastSymbolBytes = new byte[MAX_SYMBOL_BYTES];
+
+    private FileChannel leaderChannel;
+    private FileLock leaderLock;
+    private volatile boolean leader;
+    private long next;
+    private volatile long published;
+    private volatile long received;
+    private volatile long overruns;
+    private volatile long skipped;
+    private volatile long oversizedSymbols;
+    private volatile long elections;
+
+    /**
+     * Maps the ring in {@code directory}, creating it if needed. A new reader starts at the
+     * oldest record still in the ring.
+     * @param capacity Records kept in a newly created ring, a power of 2; an existing ring keeps its own
+     */
+    public MappedPriceBus(Path directory, int capacity) throws IOException {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Price bus capacity must be a power of 2: " + capacity);
+        }
+        this.directory = directory;
+        Files.createDirectories(directory);
+        Path path = directory.resolve("prices.ring");
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            this.capacity = initialize(path, capacity);
+            ring = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) this.capacity * RECORD_SIZE);
+            ring.order(ByteOrder.LITTLE_ENDIAN);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        mask = this.capacity - 1;
+        next = Math.max(1, head() - this.capacity + 1);
+    }
+
+    /**
+     * Writes the header of a new ring, or checks that of an existing one, holding the file lock
+     * so that two instances starting together do not both initialize it.
+     * @return Capacity of the ring
+     */
+    private int initialize(Path path, int capacity) throws IOException {
+        // The lock is held per JVM, so threads of one JVM also take turns
+        synchronized (MappedPriceBus.class) {
+            try (FileLock ignored = channel.lock(0, HEADER_SIZE, false)) {
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+                header.order(ByteOrder.LITTLE_ENDIAN);
+                long magic = header.getLong(MAGIC_OFFSET);
+                if (magic == 0) {
+                    header.putInt(VERSION_OFFSET, VERSION);
+                    header.putInt(RECORD_SIZE_OFFSET, RECORD_SIZE);
+                    header.putInt(CAPACITY_OFFSET, capacity);
+                    header.putLong(HEAD_OFFSET, 0);
+                    LONGS.setRelease(header, MAGIC_OFFSET, MAGIC);
+                    header.force();
+                    return capacity;
+                }
+                int version = header.getInt(VERSION_OFFSET);
+                int recordSize = header.getInt(RECORD_SIZE_OFFSET);
+                if (magic != MAGIC || version != VERSION || recordSize != RECORD_SIZE) {
+                    throw new IOException("Not a version " + VERSION + " price bus ring: " + path);
+                }
+                return header.getInt(CAPACITY_OFFSET);
+            }
+        }
+    }
+
+    @Override
+    public synchronized boolean tryLead() {
+        if (leader) {
+            return true;
+        }
+        try {
+            if (leaderChannel == null) {
+                leaderChannel = FileChannel.open(directory.resolve("leader.lock"),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            }
+            leaderLock = leaderChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Another bus in this JVM leads
+            return false;
+        } catch (IOException e) {
+            log.warn("Failed to contend for price bus leadership in {}: {}", directory, e.getMessage());
+            return false;
+        }
+        if (leaderLock == null) {
+            return false;
+        }
+        ring.putLong(LEADER_PID_OFFSET, ProcessHandle.current().pid());
+        LONGS.getAndAdd(ring, EPOCH_OFFSET, 1L);
+        elections++;
+        leader = true;
+        log.info("Leading the price bus in {} from sequence {}", directory, head());
+        return true;
+    }
+
+    @Override
+    public boolean isLeader() {
+        return leader;
+    }
+
+    @Override
+    public void publish(TickEvent event) {
+        String symbol = event.getSymbol();
+        int length = encode(symbol);
+        if (length < 0) {
+            oversizedSymbols++;
+            return;
+        }
+        long sequence = head() + 1;
+        int at = offset(sequence);
+        ring.putLong(at + SEQ, 0);
+        // The cleared sequence must be visible before any field changes
+        VarHandle.storeStoreFence();
+        ring.putLong(at + TIMESTAMP, event.getTimestamp());
+        ring.putDouble(at + LAST, event.getLast());
+        ring.putDouble(at + OPEN, event.getOpen());
+        ring.putDouble(at + CHANGE, event.getChange24h());
+        ring.putDouble(at + BID, event.getBid());
+        ring.putDouble(at + ASK, event.getAsk());
+        ring.putDouble(at + VOLUME, event.getVolume());
+        ring.putDouble(at + VOLUME_TODAY, event.getVolumeToday());
+        ring.put(at + SYMBOL_LENGTH, (byte) length);
+        ring.put(at + SYMBOL, encodedSymbol, 0, length);
+        LONGS.setRelease(ring, at + SEQ, sequence);
+        LONGS.setRelease(ring, HEAD_OFFSET, sequence);
+        published++;
+    }
+
+    /**
+     * @return Length of the symbol in {@link #encodedSymbol}, or -1 if it does not fit a record
+     */
+    private int encode(String symbol) {
+        if (symbol.length() > MAX_SYMBOL_BYTES) {
+            return -1;
+        }
+        for (int i = 0; i < symbol.length(); i++) {
+            char c = symbol.charAt(i);
+            if (c > 0x7F) {
+                // Kraken pair names are ASCII; anything else goes through the encoder
+                byte[] encoded = symbol.getBytes(StandardCharsets.UTF_8);
+                if (encoded.length > MAX_SYMBOL_BYTES) {
+                    return -1;
+                }
+                System.arraycopy(encoded, 0, encodedSymbol, 0, encoded.length);
+                return encoded.length;
+            }
+            encodedSymbol[i] = (byte) c;
+        }
+        return symbol.length();
+    }
+
+    @Override
+    public int poll(Handler handler) {
+        long head = head();
+        int count = 0;
+        while (next <= head) {
+            if (head - next >= capacity) {
+                skip(head - capacity + 1);
+            }
+            int at = offset(next);
+            long before = (long) LONGS.getAcquire(ring, at + SEQ);
+            if (before != next) {
+                // Rewritten since the head was read: the writer lapped us
+                skip(Math.max(next + 1, head() - capacity + 1));
+                continue;
+            }
+            tick.reset();
+            long timestamp = ring.getLong(at + TIMESTAMP);
+            tick.setLast(ring.getDouble(at + LAST));
+            double open = ring.getDouble(at + OPEN);
+            double change24h = ring.getDouble(at + CHANGE);
+            tick.setOpen(open);
+            tick.setBid(ring.getDouble(at + BID));
+            tick.setAsk(ring.getDouble(at + ASK));
+            tick.setVolume(ring.getDouble(at + VOLUME));
+            tick.setVolumeToday(ring.getDouble(at + VOLUME_TODAY));
+            int length = Math.min(ring.get(at + SYMBOL_LENGTH) & 0xFF, MAX_SYMBOL_BYTES);
+            ring.get(at + SYMBOL, symbolBytes, 0, length);
+            // The fields must be read before the sequence is checked again
+            VarHandle.loadLoadFence();
+            if ((long) LONGS.getOpaque(ring, at + SEQ) != next) {
+                skip(Math.max(next + 1, head() - capacity + 1));
+                continue;
+            }
+            tick.setPair(decode(length));
+            next++;
+            received++;
+            count++;
+            handler.onTick(tick, open, change24h, timestamp);
+        }
+        return count;
+    }
+
+    private void skip(long to) {
+        overruns++;
+        skipped += to - next;
+        log.warn("Price bus reader fell {} records behind the writer; skipping to {}", to - next, to);
+        next = to;
+    }
+
+    private String decode(int length) {
+        if (length != lastSymbolLength || !Arrays.equals(symbolBytes, 0, length, lastSymbolBytes, 0, length)) {
+            lastSymbol = new String(symbolBytes, 0, length, StandardCharsets.UTF_8);
+            System.arraycopy(symbolBytes, 0, lastSymbolBytes, 0, length);
+            lastSymbolLength = length;
+        }
+        return lastSymbol;
+    }
+
+    private int offset(long sequence) {
+        return HEADER_SIZE + (int) ((sequence - 1) & mask) * RECORD_SIZE;
+    }
+
+    /**
+     * @return Sequence of the newest record, 0 before the first
+     */
+    long head() {
+        return (long) LONGS.getAcquire(ring, HEAD_OFFSET);
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Releases leadership, if held, and closes the ring file. The mapping itself stays valid
+     * until the buffer is collected.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        leader = false;
+        if (leaderChannel != null) {
+            // Closing the channel releases the lock
+            leaderChannel.close();
+            leaderChannel = null;
+            leaderLock = null;
+        }
+        channel.close();
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("directory", directory.toString());
+        metrics.put("capacity", capacity);
+        metrics.put("leader", leader);
+        metrics.put("leaderPid", ring.getLong(LEADER_PID_OFFSET));
+        metrics.put("epoch", (long) LONGS.getAcquire(ring, EPOCH_OFFSET));
+        metrics.put("head", head());
+        metrics.put("published", published);
+        metrics.put("received", received);
+        metrics.put("overruns", overruns);
+        metrics.put("skipped", skipped);
+        metrics.put("oversizedSymbols", oversizedSymbols);
+        metrics.put("elections", elections);
+        return metrics;
+    }
+}
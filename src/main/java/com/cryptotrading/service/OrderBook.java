@@ -0,0 +1,265 @@
+package com.cryptotrading.service;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.zip.CRC32;
+
+/**
+ * Level-2 book of one pair, kept to the subscribed depth.
+ *
+ * <p>Each side is a pair of sorted primitive arrays (asks ascending, bids descending) holding
+ * exact decimal mantissas at the scale Kraken uses for the pair, so the best levels sit at the
+ * front of the arrays and an update is a binary search plus at most one
+ * {@link System#arraycopy} of {@code depth} longs. Nothing is allocated after construction.</p>
+ *
+ * <p>There is a single writer, the ingest thread of the active Kraken connection. Readers use
+ * the optimistic mode of a {@link StampedLock}, which is the same sequence-validated read as
+ * the {@link PriceTable} rows, and only fall back to the read lock if they keep racing the
+ * writer.</p>
+ */
+public class OrderBook {
+    /** Number of levels per side Kraken includes in the checksum. */
+    static final int CHECKSUM_LEVELS = 10;
+    private static final int OPTIMISTIC_ATTEMPTS = 4;
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final int symbolId;
+    private final String symbol;
+    private final int depth;
+    private final StampedLock lock = new StampedLock();
+    private final long[] askPrice;
+    private final long[] askVolume;
+    private final long[] bidPrice;
+    private final long[] bidVolume;
+    private int askCount;
+    private int bidCount;
+    private int priceScale;
+    private int volumeScale;
+    private boolean synced;
+    private long updatedAt;
+    private long updates;
+    // Checksum scratch space, only touched by the writer
+    private final CRC32 crc = new CRC32();
+    private final byte[] digits = new byte[20];
+
+    public OrderBook(int symbolId, String symbol, int depth) {
+        this.symbolId = symbolId;
+        this.symbol = symbol;
+        this.depth = depth;
+        this.askPrice = new long[depth];
+        this.askVolume = new long[depth];
+        this.bidPrice = new long[depth];
+        this.bidVolume = new long[depth];
+    }
+
+    /**
+     * Replaces the book with a snapshot and marks it synced.
+     */
+    void applySnapshot(DecodedBookUpdate update, long timestamp) {
+        long stamp = lock.writeLock();
+        try {
+            askCount = 0;
+            bidCount = 0;
+            priceScale = update.getCount() > 0 ? update.getPriceScale(0) : 0;
+            volumeScale = update.getCount() > 0 ? update.getVolumeScale(0) : 0;
+            applyLevels(update);
+            synced = true;
+            updatedAt = timestamp;
+            updates++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Applies an incremental update. Levels with zero volume are removed and each side is
+     * truncated back to the subscribed depth.
+     */
+    void applyUpdate(DecodedBookUpdate update, long timestamp) {
+        long stamp = lock.writeLock();
+        try {
+            applyLevels(update);
+            updatedAt = timestamp;
+            updates++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Marks the book as out of sync until the next snapshot; readers see it as not synced.
+     */
+    void invalidate() {
+        long stamp = lock.writeLock();
+        try {
+            synced = false;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void applyLevels(DecodedBookUpdate update) {
+        for (int i = 0; i < update.getCount(); i++) {
+            long price = rescale(update.getPrice(i), update.getPriceScale(i), priceScale);
+            long volume = rescale(update.getVolume(i), update.getVolumeScale(i), volumeScale);
+            if (update.isAsk(i)) {
+                askCount = setLevel(askPrice, askVolume, askCount, price, volume, false);
+            } else {
+                bidCount = setLevel(bidPrice, bidVolume, bidCount, price, volume, true);
+            }
+        }
+    }
+
+    /**
+     * Inserts, replaces or removes a level in one side.
+     * @return The new level count of the side
+     */
+    private int setLevel(long[] prices, long[] volumes, int count, long price, long volume, boolean descending) {
+        int index = search(prices, count, price, descending);
+        if (index >= 0) {
+            if (volume == 0) {
+                System.arraycopy(prices, index + 1, prices, index, count - index - 1);
+                System.arraycopy(volumes, index + 1, volumes, index, count - index - 1);
+                return count - 1;
+            }
+            volumes[index] = volume;
+            return count;
+        }
+        int insertAt = -index - 1;
+        if (volume == 0 || insertAt >= depth) {
+            return count;
+        }
+        int moved = Math.min(count, depth - 1) - insertAt;
+        System.arraycopy(prices, insertAt, prices, insertAt + 1, moved);
+        System.arraycopy(volumes, insertAt, volumes, insertAt + 1, moved);
+        prices[insertAt] = price;
+        volumes[insertAt] = volume;
+        return Math.min(count + 1, depth);
+    }
+
+    private static int search(long[] prices, int count, long price, boolean descending) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = prices[mid];
+            int cmp = descending ? Long.compare(price, value) : Long.compare(value, price);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static long rescale(long mantissa, int from, int to) {
+        if (from == to) {
+            return mantissa;
+        }
+        return from < to ? mantissa * POWERS_OF_TEN[to - from] : mantissa / POWERS_OF_TEN[from - to];
+    }
+
+    /**
+     * Computes Kraken's book checksum: CRC32 over the top ten asks (lowest first) and then the
+     * top ten bids (highest first), each level contributing its price and volume digits with
+     * the decimal point and leading zeros removed.
+     * Must be called by the writer thread.
+     */
+    long checksum() {
+        crc.reset();
+        for (int i = 0; i < Math.min(askCount, CHECKSUM_LEVELS); i++) {
+            appendDigits(askPrice[i]);
+            appendDigits(askVolume[i]);
+        }
+        for (int i = 0; i < Math.min(bidCount, CHECKSUM_LEVELS); i++) {
+            appendDigits(bidPrice[i]);
+            appendDigits(bidVolume[i]);
+        }
+        return crc.getValue();
+    }
+
+    private void appendDigits(long value) {
+        int position = digits.length;
+        do {
+            digits[--position] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        crc.update(digits, position, digits.length - position);
+    }
+
+    /**
+     * Copies up to {@code levels} levels per side into a caller-owned snapshot.
+     * Safe to call from any thread while the book is being updated.
+     */
+    public void read(OrderBookSnapshot into, int levels) {
+        into.ensureCapacity(levels);
+        long stamp = lock.tryOptimisticRead();
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            if (stamp != 0) {
+                copyInto(into, levels);
+                if (lock.validate(stamp)) {
+                    return;
+                }
+            }
+            Thread.onSpinWait();
+            stamp = lock.tryOptimisticRead();
+        }
+        stamp = lock.readLock();
+        try {
+            copyInto(into, levels);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void copyInto(OrderBookSnapshot into, int levels) {
+        into.symbolId = symbolId;
+        into.symbol = symbol;
+        into.synced = synced;
+        into.updatedAt = updatedAt;
+        into.updates = updates;
+        double priceDivisor = POWERS_OF_TEN[Math.min(priceScale, POWERS_OF_TEN.length - 1)];
+        double volumeDivisor = POWERS_OF_TEN[Math.min(volumeScale, POWERS_OF_TEN.length - 1)];
+        int asks = Math.min(Math.min(askCount, levels), depth);
+        int bids = Math.min(Math.min(bidCount, levels), depth);
+        for (int i = 0; i < asks; i++) {
+            into.askPrices[i] = askPrice[i] / priceDivisor;
+            into.askVolumes[i] = askVolume[i] / volumeDivisor;
+        }
+        for (int i = 0; i < bids; i++) {
+            into.bidPrices[i] = bidPrice[i] / priceDivisor;
+            into.bidVolumes[i] = bidVolume[i] / volumeDivisor;
+        }
+        into.askCount = asks;
+        into.bidCount = bids;
+    }
+
+    public int getSymbolId() {
+        return symbolId;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public boolean isSynced() {
+        return synced;
+    }
+
+    public long getUpdates() {
+        return updates;
+    }
+}
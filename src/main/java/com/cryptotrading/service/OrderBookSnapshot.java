@@ -0,0 +1,85 @@
+package com.cryptotrading.service;
+
+/**
+ * Reusable, caller-owned copy of the top levels of an {@link OrderBook}.
+ * Filled by {@link OrderBook#read(OrderBookSnapshot, int)}; the arrays only grow when a
+ * caller asks for more levels than before.
+ */
+public class OrderBookSnapshot {
+    int symbolId = -1;
+    String symbol;
+    boolean synced;
+    long updatedAt;
+    long updates;
+    int askCount;
+    int bidCount;
+    double[] askPrices = new double[0];
+    double[] askVolumes = new double[0];
+    double[] bidPrices = new double[0];
+    double[] bidVolumes = new double[0];
+
+    void ensureCapacity(int levels) {
+        if (askPrices.length < levels) {
+            askPrices = new double[levels];
+            askVolumes = new double[levels];
+            bidPrices = new double[levels];
+            bidVolumes = new double[levels];
+        }
+    }
+
+    public int getSymbolId() {
+        return symbolId;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * @return Whether the book matched Kraken's last checksum; false while waiting for a snapshot
+     */
+    public boolean isSynced() {
+        return synced;
+    }
+
+    /**
+     * @return Epoch millis of the last applied snapshot or update
+     */
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public long getUpdates() {
+        return updates;
+    }
+
+    public int getAskCount() {
+        return askCount;
+    }
+
+    public int getBidCount() {
+        return bidCount;
+    }
+
+    /**
+     * @return Ask price at {@code level}, 0 being the best (lowest) ask
+     */
+    public double getAskPrice(int level) {
+        return askPrices[level];
+    }
+
+    public double getAskVolume(int level) {
+        return askVolumes[level];
+    }
+
+    /**
+     * @return Bid price at {@code level}, 0 being the best (highest) bid
+     */
+    public double getBidPrice(int level) {
+        return bidPrices[level];
+    }
+
+    public double getBidVolume(int level) {
+        return bidVolumes[level];
+    }
+}
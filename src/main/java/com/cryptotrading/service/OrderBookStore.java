@@ -0,0 +1,136 @@
+package com.cryptotrading.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Level-2 books indexed by symbol ID.
+ *
+ * <p>A book is created when its pair is subscribed to the {@code book} channel and is then
+ * maintained by the ingest thread of the active Kraken connection. Updates received before
+ * the first snapshot, or after a checksum mismatch, are ignored until Kraken sends a fresh
+ * snapshot.</p>
+ */
+@Component
+public class OrderBookStore {
+    private static final Logger log = LoggerFactory.getLogger(OrderBookStore.class);
+
+    private final SymbolRegistry symbolRegistry;
+    private final AtomicReferenceArray<OrderBook> books;
+    private volatile long snapshots;
+    private volatile long updates;
+    private volatile long updatesWhileUnsynced;
+    private volatile long checksumMismatches;
+
+    public OrderBookStore(SymbolRegistry symbolRegistry) {
+        this.symbolRegistry = symbolRegistry;
+        this.books = new AtomicReferenceArray<>(symbolRegistry.capacity());
+    }
+
+    /**
+     * Returns the book for a pair, creating it with the given depth if needed.
+     */
+    public synchronized OrderBook track(String pair, int depth) {
+        int symbolId = symbolRegistry.idOf(pair);
+        if (symbolId < 0) {
+            symbolId = symbolRegistry.register(pair);
+        }
+        OrderBook book = books.get(symbolId);
+        if (book == null || book.getDepth() != depth) {
+            book = new OrderBook(symbolId, symbolRegistry.nameOf(symbolId), depth);
+            books.set(symbolId, book);
+        }
+        return book;
+    }
+
+    /**
+     * Applies a decoded book frame and verifies Kraken's checksum.
+     * Must only be called from the ingest thread of the active connection.
+     * @return false if the checksum did not match; the book is then invalidated and the
+     *         caller should request a new snapshot
+     */
+    public boolean apply(DecodedBookUpdate update, long timestamp) {
+        OrderBook book = books.get(update.getSymbolId());
+        if (book == null) {
+            return true;
+        }
+        if (update.isSnapshot()) {
+            book.applySnapshot(update, timestamp);
+            snapshots++;
+        } else if (book.isSynced()) {
+            book.applyUpdate(update, timestamp);
+            updates++;
+        } else {
+            updatesWhileUnsynced++;
+            return true;
+        }
+        if (update.hasChecksum() && book.checksum() != update.getChecksum()) {
+            checksumMismatches++;
+            log.warn("Order book checksum mismatch for {}: expected {}, computed {}",
+                book.getSymbol(), update.getChecksum(), book.checksum());
+            book.invalidate();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Marks every book as out of sync, e.g. when the feed switches to another connection.
+     */
+    public void invalidateAll() {
+        for (int i = 0; i < books.length(); i++) {
+            OrderBook book = books.get(i);
+            if (book != null) {
+                book.invalidate();
+            }
+        }
+    }
+
+    /**
+     * Marks one pair's book as out of sync, e.g. when only its shard's feed switched over.
+     */
+    public void invalidate(String pair) {
+        OrderBook book = get(pair);
+        if (book != null) {
+            book.invalidate();
+        }
+    }
+
+    /**
+     * @return The book for a pair, or null if the pair's book is not tracked
+     */
+    public OrderBook get(String pair) {
+        int symbolId = symbolRegistry.idOf(pair);
+        return symbolId < 0 ? null : books.get(symbolId);
+    }
+
+    public OrderBook get(int symbolId) {
+        return books.get(symbolId);
+    }
+
+    public Map<String, Object> getMetrics() {
+        int tracked = 0;
+        int synced = 0;
+        for (int i = 0; i < books.length(); i++) {
+            OrderBook book = books.get(i);
+            if (book != null) {
+                tracked++;
+                if (book.isSynced()) {
+                    synced++;
+                }
+            }
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("books", tracked);
+        metrics.put("synced", synced);
+        metrics.put("snapshots", snapshots);
+        metrics.put("updates", updates);
+        metrics.put("updatesWhileUnsynced", updatesWhileUnsynced);
+        metrics.put("checksumMismatches", checksumMismatches);
+        return metrics;
+    }
+}
@@ -0,0 +1,67 @@
+package com.cryptotrading.service;
+
+import com.cryptotrading.model.FixedPoint;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decimal places of each pair's trade quantities and costs, as listed by Kraken's AssetPairs
+ * endpoint ({@code lot_decimals} and {@code cost_decimals}).
+ *
+ * <p>Pairs Kraken has not described use {@code trading.decimals.quantity} and
+ * {@code trading.decimals.cost}. Costs never get more places than {@link FixedPoint#CASH_DECIMALS},
+ * so a cost always adds to a cash balance exactly.</p>
+ */
+@Component
+public class PairPrecision {
+
+    /**
+     * @param quantity Decimal places of amounts of the base asset
+     * @param cost Decimal places of trade totals in the quote currency
+     */
+    public record Decimals(int quantity, int cost) {
+    }
+
+    private final Decimals defaults;
+    private final Map<String, Decimals> pairs = new ConcurrentHashMap<>();
+
+    public PairPrecision() {
+        this(8, FixedPoint.CASH_DECIMALS);
+    }
+
+    @Autowired
+    public PairPrecision(@Value("${trading.decimals.quantity:8}") int quantityDecimals,
+                         @Value("${trading.decimals.cost:8}") int costDecimals) {
+        this.defaults = checked(quantityDecimals, costDecimals);
+    }
+
+    /**
+     * Records the decimals of a pair; later trades of the pair are rounded to them.
+     */
+    public void register(String pair, int quantityDecimals, int costDecimals) {
+        pairs.put(pair, checked(quantityDecimals, costDecimals));
+    }
+
+    public Decimals of(String pair) {
+        Decimals decimals = pairs.get(pair);
+        return decimals != null ? decimals : defaults;
+    }
+
+    public int size() {
+        return pairs.size();
+    }
+
+    private static Decimals checked(int quantityDecimals, int costDecimals) {
+        if (quantityDecimals < 0 || quantityDecimals > FixedPoint.MAX_DECIMALS - FixedPoint.PRICE_DECIMALS) {
+            throw new IllegalArgumentException("Quantity decimals must be between 0 and "
+                + (FixedPoint.MAX_DECIMALS - FixedPoint.PRICE_DECIMALS) + ": " + quantityDecimals);
+        }
+        if (costDecimals < 0) {
+            throw new IllegalArgumentException("Cost decimals must not be negative: " + costDecimals);
+        }
+        return new Decimals(quantityDecimals, Math.min(costDecimals, FixedPoint.CASH_DECIMALS));
+    }
+}
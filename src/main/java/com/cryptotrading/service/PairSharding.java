@@ -0,0 +1,47 @@
+package com.cryptotrading.service;
+
+/**
+ * Assigns trading pairs to upstream connection shards with jump consistent hashing
+ * (Lamping and Veach), so each pair's shard depends only on its name and the shard count.
+ * Growing from K to K+1 shards moves only the ~1/(K+1) of pairs that land on the new shard;
+ * every other pair stays on the connection it already had.
+ */
+public final class PairSharding {
+
+    private PairSharding() {
+    }
+
+    /**
+     * @return Shard index in {@code [0, shards)} for the pair
+     */
+    public static int shardOf(String pair, int shards) {
+        if (shards <= 0) {
+            throw new IllegalArgumentException("Shard count must be greater than 0: " + shards);
+        }
+        return jumpHash(mix(pair.hashCode()), shards);
+    }
+
+    static int jumpHash(long key, int buckets) {
+        long bucket = -1;
+        long next = 0;
+        while (next < buckets) {
+            bucket = next;
+            key = key * 2862933555777941757L + 1;
+            next = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) bucket;
+    }
+
+    /**
+     * Spreads the bits of {@link String#hashCode()}, which is stable across JVMs but clusters
+     * for short names with a common suffix such as "/USD".
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,51 @@
+package com.cryptotrading.service;
+
+import java.io.Closeable;
+import java.util.Map;
+
+/**
+ * Shares ticks between application instances, so that only one of them ingests from Kraken.
+ *
+ * <p>Instances contend to lead with {@link #tryLead()}. The leader publishes every tick of its
+ * pipeline to the bus; the other instances {@link #poll} the bus and feed the ticks to their
+ * own pipelines, and try to lead again from time to time so that one of them takes over when
+ * the leader goes away.</p>
+ */
+public interface PriceBus extends Closeable {
+
+    /**
+     * Receives a tick read from the bus.
+     */
+    @FunctionalInterface
+    interface Handler {
+        /**
+         * @param tick Holder reused for every tick; only valid for the duration of the call
+         * @param open Opening price the leader computed the change from
+         * @param change24h Change in percent as published by the leader
+         * @param timestamp Wall-clock time of the tick in epoch milliseconds
+         */
+        void onTick(DecodedTick tick, double open, double change24h, long timestamp);
+    }
+
+    /**
+     * Tries to become the instance that ingests. Once it succeeds this instance leads until
+     * it is closed or exits.
+     * @return Whether this instance leads
+     */
+    boolean tryLead();
+
+    boolean isLeader();
+
+    /**
+     * Appends a tick for the other instances. Only called by the leader, from one thread.
+     */
+    void publish(TickEvent event);
+
+    /**
+     * Hands the ticks published since the previous call to the handler, oldest first.
+     * @return Number of ticks handed over
+     */
+    int poll(Handler handler);
+
+    Map<String, Object> getMetrics();
+}
@@ -0,0 +1,187 @@
+package com.cryptotrading.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lets several instances on one host share a single Kraken feed through a {@link PriceBus}.
+ *
+ * <p>With {@code price-bus.enabled} set, every instance opens the bus in
+ * {@code price-bus.directory} at startup and tries to lead. The leader ingests from Kraken as
+ * usual, and a {@code bus} stage of its {@link TickPipeline} publishes every tick to the bus.
+ * The other instances do not connect to Kraken; a reader thread polls the bus and publishes
+ * the ticks to their own pipelines, so prices, fan-out and candles work the same on every
+ * instance. The journal is the exception: only ticks an instance ingested itself reach its
+ * {@code journal} stage, so a shared journal directory is written by the leader alone (and
+ * {@link TickJournal} locks the directory against any other writer). Followers try to lead
+ * every {@code price-bus.election-interval-ms}, and the first to succeed after the leader exits
+ * stops reading and starts ingesting.</p>
+ *
+ * <p>Only ticker ticks travel over the bus; order books and trade-channel candles are only
+ * available on the leader.</p>
+ */
+@Component
+public class PriceBusService {
+    private static final Logger log = LoggerFactory.getLogger(PriceBusService.class);
+    private static final long IDLE_PARK_NANOS = 100_000;
+
+    private final TickPipeline tickPipeline;
+    private final SymbolRegistry symbolRegistry;
+    private final boolean enabled;
+    private final String directory;
+    private final int capacity;
+    private final long electionIntervalNanos;
+
+    private PriceBus bus;
+    private Thread reader;
+    private volatile boolean running;
+    // First pipeline sequence this instance ingested itself; earlier ticks came from the bus
+    private volatile long leadFrom = Long.MAX_VALUE;
+    // Guarded by this
+    private boolean ingesting;
+    private final List<Runnable> electionListeners = new ArrayList<>();
+
+    @Autowired
+    public PriceBusService(TickPipeline tickPipeline, SymbolRegistry symbolRegistry,
+                           @Value("${price-bus.enabled:false}") boolean enabled,
+                           @Value("${price-bus.directory:data/price-bus}") String directory,
+                           @Value("${price-bus.capacity:65536}") int capacity,
+                           @Value("${price-bus.election-interval-ms:1000}") long electionIntervalMillis) {
+        this.tickPipeline = tickPipeline;
+        this.symbolRegistry = symbolRegistry;
+        this.enabled = enabled;
+        this.directory = directory;
+        this.capacity = capacity;
+        this.electionIntervalNanos = electionIntervalMillis * 1_000_000L;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            synchronized (this) {
+                ingesting = true;
+            }
+            return;
+        }
+        bus = new MappedPriceBus(Paths.get(directory), capacity);
+        // Republished ticks are journaled by the leader that ingested them
+        tickPipeline.setJournalFrom(Long.MAX_VALUE);
+        tickPipeline.addStage("bus", (event, sequence, endOfBatch) -> {
+            if (sequence >= leadFrom) {
+                bus.publish(event);
+            }
+        });
+        running = true;
+        if (bus.tryLead()) {
+            elected();
+        } else {
+            log.info("Following the price bus in {}", directory);
+            reader = new Thread(this::follow, "price-bus-reader");
+            reader.setDaemon(true);
+            reader.start();
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        running = false;
+        if (reader != null) {
+            reader.interrupt();
+            reader.join(1000);
+        }
+        if (bus != null) {
+            bus.close();
+        }
+    }
+
+    /**
+     * @return Whether this instance should ingest from Kraken itself: always when the bus is
+     * disabled, otherwise only while it leads
+     */
+    public synchronized boolean isIngesting() {
+        return ingesting;
+    }
+
+    /**
+     * Runs the action once this instance starts ingesting, immediately if it already does.
+     */
+    public void whenIngesting(Runnable action) {
+        synchronized (this) {
+            if (!ingesting) {
+                electionListeners.add(action);
+                return;
+            }
+        }
+        action.run();
+    }
+
+    private void follow() {
+        PriceBus.Handler handler = this::republish;
+        long nextElection = System.nanoTime() + electionIntervalNanos;
+        while (running) {
+            try {
+                if (System.nanoTime() - nextElection >= 0) {
+                    // Drain what the previous leader published before taking over
+                    while (bus.poll(handler) > 0) {
+                    }
+                    if (bus.tryLead()) {
+                        elected();
+                        return;
+                    }
+                    nextElection = System.nanoTime() + electionIntervalNanos;
+                }
+                if (bus.poll(handler) == 0) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            } catch (RuntimeException e) {
+                log.error("Error reading the price bus: {}", e.getMessage(), e);
+                LockSupport.parkNanos(electionIntervalNanos);
+            }
+        }
+    }
+
+    private void republish(DecodedTick tick, double open, double change24h, long timestamp) {
+        int symbolId = symbolRegistry.register(tick.getPair());
+        tick.setSymbolId(symbolId);
+        tickPipeline.publish(tick, symbolId, open, change24h, timestamp, System.nanoTime());
+    }
+
+    private void elected() {
+        leadFrom = tickPipeline.getPublished();
+        tickPipeline.setJournalFrom(leadFrom);
+        List<Runnable> listeners;
+        synchronized (this) {
+            ingesting = true;
+            listeners = new ArrayList<>(electionListeners);
+            electionListeners.clear();
+        }
+        log.info("Leading the price bus in {}", directory);
+        listeners.forEach(Runnable::run);
+    }
+
+    /**
+     * @return Role of this instance and the bus counters
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("ingesting", isIngesting());
+        if (bus != null) {
+            metrics.put("role", bus.isLeader() ? "leader" : "follower");
+            metrics.putAll(bus.getMetrics());
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,74 @@
+package com.cryptotrading.service;
+
+/**
+ * Reusable, caller-owned view of one row of the {@link PriceTable}.
+ * Filled by {@link PriceTable#read(int, PriceSnapshot)} so readers never box or copy maps.
+ */
+public class PriceSnapshot {
+    int symbolId = -1;
+    String symbol;
+    double last;
+    double open;
+    double change24h;
+    double bid;
+    double ask;
+    double volume;
+    long updatedAt;
+
+    public int getSymbolId() {
+        return symbolId;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * @return Last trade price
+     */
+    public double getLast() {
+        return last;
+    }
+
+    /**
+     * @return Opening price the 24h change is measured against
+     */
+    public double getOpen() {
+        return open;
+    }
+
+    /**
+     * @return 24-hour change in percent
+     */
+    public double getChange24h() {
+        return change24h;
+    }
+
+    /**
+     * @return Best bid, or NaN if the feed has not provided one
+     */
+    public double getBid() {
+        return bid;
+    }
+
+    /**
+     * @return Best ask, or NaN if the feed has not provided one
+     */
+    public double getAsk() {
+        return ask;
+    }
+
+    /**
+     * @return 24-hour traded volume, or NaN if the feed has not provided one
+     */
+    public double getVolume() {
+        return volume;
+    }
+
+    /**
+     * @return Wall-clock time of the update in epoch milliseconds
+     */
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+}
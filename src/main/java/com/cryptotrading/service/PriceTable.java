@@ -0,0 +1,140 @@
+package com.cryptotrading.service;
+
+import org.springframework.stereotype.Component;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.Consumer;
+
+/**
+ * Primitive, lock-free store of the latest market data per symbol ID.
+ *
+ * <p>Each symbol owns one 64-byte row of a {@code long[]} (sequence word plus seven fields),
+ * so rows written by different feed threads do not share cache lines and nothing is boxed.
+ * Writers bump the row's sequence to an odd value, write the fields and bump it back to even;
+ * readers retry until they see the same even sequence before and after reading (a seqlock),
+ * which gives them a consistent row without taking a lock.</p>
+ */
+@Component
+public class PriceTable {
+    private static final int SEQ = 0;
+    private static final int LAST = 1;
+    private static final int OPEN = 2;
+    private static final int CHANGE = 3;
+    private static final int BID = 4;
+    private static final int ASK = 5;
+    private static final int VOLUME = 6;
+    private static final int UPDATED_AT = 7;
+    private static final int ROW = 8;
+
+    private static final VarHandle CELLS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final SymbolRegistry symbolRegistry;
+    private final long[] rows;
+
+    public PriceTable(SymbolRegistry symbolRegistry) {
+        this.symbolRegistry = symbolRegistry;
+        this.rows = new long[symbolRegistry.capacity() * ROW];
+    }
+
+    public SymbolRegistry getSymbolRegistry() {
+        return symbolRegistry;
+    }
+
+    /**
+     * Publishes a new row for a symbol. Safe to call from several threads; concurrent writers
+     * of the same symbol are serialized on the row's sequence word.
+     */
+    public void update(int symbolId, double last, double open, double change24h,
+                       double bid, double ask, double volume, long updatedAt) {
+        int base = symbolId * ROW;
+        long seq;
+        do {
+            seq = (long) CELLS.getVolatile(rows, base + SEQ);
+        } while ((seq & 1) != 0 || !CELLS.compareAndSet(rows, base + SEQ, seq, seq + 1));
+        VarHandle.storeStoreFence();
+        CELLS.setOpaque(rows, base + LAST, Double.doubleToRawLongBits(last));
+        CELLS.setOpaque(rows, base + OPEN, Double.doubleToRawLongBits(open));
+        CELLS.setOpaque(rows, base + CHANGE, Double.doubleToRawLongBits(change24h));
+        CELLS.setOpaque(rows, base + BID, Double.doubleToRawLongBits(bid));
+        CELLS.setOpaque(rows, base + ASK, Double.doubleToRawLongBits(ask));
+        CELLS.setOpaque(rows, base + VOLUME, Double.doubleToRawLongBits(volume));
+        CELLS.setOpaque(rows, base + UPDATED_AT, updatedAt);
+        CELLS.setRelease(rows, base + SEQ, seq + 2);
+    }
+
+    /**
+     * Copies a consistent row into a caller-owned snapshot.
+     * @return false if the symbol has never been updated
+     */
+    public boolean read(int symbolId, PriceSnapshot into) {
+        int base = symbolId * ROW;
+        while (true) {
+            long seq = (long) CELLS.getAcquire(rows, base + SEQ);
+            if (seq == 0) {
+                return false;
+            }
+            if ((seq & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            into.last = cell(base + LAST);
+            into.open = cell(base + OPEN);
+            into.change24h = cell(base + CHANGE);
+            into.bid = cell(base + BID);
+            into.ask = cell(base + ASK);
+            into.volume = cell(base + VOLUME);
+            into.updatedAt = (long) CELLS.getOpaque(rows, base + UPDATED_AT);
+            VarHandle.loadLoadFence();
+            if ((long) CELLS.getOpaque(rows, base + SEQ) == seq) {
+                into.symbolId = symbolId;
+                into.symbol = symbolRegistry.nameOf(symbolId);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Visits every symbol that has data, reusing one snapshot instance for all of them.
+     */
+    public void forEach(PriceSnapshot reuse, Consumer<PriceSnapshot> action) {
+        int size = symbolRegistry.size();
+        for (int id = 0; id < size; id++) {
+            if (read(id, reuse)) {
+                action.accept(reuse);
+            }
+        }
+    }
+
+    /**
+     * @return Whether the symbol has received at least one update
+     */
+    public boolean hasPrice(int symbolId) {
+        return (long) CELLS.getAcquire(rows, symbolId * ROW + SEQ) != 0;
+    }
+
+    /**
+     * @return Latest trade price, or NaN if the symbol has no data. A single field is always
+     * read atomically, so this does not need the seqlock retry loop.
+     */
+    public double last(int symbolId) {
+        return hasPrice(symbolId) ? cell(symbolId * ROW + LAST) : Double.NaN;
+    }
+
+    /**
+     * @return Latest opening price, or NaN if the symbol has no data
+     */
+    public double open(int symbolId) {
+        return hasPrice(symbolId) ? cell(symbolId * ROW + OPEN) : Double.NaN;
+    }
+
+    /**
+     * @return Number of updates applied to the symbol's row
+     */
+    public long version(int symbolId) {
+        return (long) CELLS.getAcquire(rows, symbolId * ROW + SEQ) >>> 1;
+    }
+
+    private double cell(int index) {
+        return Double.longBitsToDouble((long) CELLS.getOpaque(rows, index));
+    }
+}
@@ -0,0 +1,203 @@
+package com.cryptotrading.service;
+
+import com.cryptotrading.model.FixedPoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import jakarta.annotation.PostConstruct;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resting limit, stop-loss and take-profit orders of the paper-trading accounts, executed by
+ * {@link TradingService} when the live price reaches them.
+ *
+ * <p>An {@code orders} stage of the {@link TickPipeline} hands every Kraken tick to
+ * {@link #onTick}, which pops the orders the tick's ask (buys) or bid (sells) reaches from the
+ * {@link RestingOrders} index and fills each at that price. A triggered order that the account
+ * can no longer cover is dropped and counted as rejected. Orders are held in memory only, up
+ * to {@code trading.orders.max-open} across all accounts.</p>
+ */
+@Component
+public class RestingOrderService {
+    private static final Logger log = LoggerFactory.getLogger(RestingOrderService.class);
+
+    private final TickPipeline tickPipeline;
+    private final SymbolRegistry symbolRegistry;
+    private final TradingService tradingService;
+    private final int maxOpen;
+    // Guarded by this
+    private final RestingOrders orders;
+    private final RestingOrders.OrderHandler execute = this::execute;
+    private long placed;
+    private long cancelled;
+    private long filled;
+    private long rejected;
+    // Quotes of the tick being processed
+    private long tickAsk;
+    private long tickBid;
+
+    @Autowired
+    public RestingOrderService(TickPipeline tickPipeline, SymbolRegistry symbolRegistry, TradingService tradingService,
+                               @Value("${trading.orders.max-open:2000000}") int maxOpen) {
+        this.tickPipeline = tickPipeline;
+        this.symbolRegistry = symbolRegistry;
+        this.tradingService = tradingService;
+        this.maxOpen = maxOpen;
+        this.orders = new RestingOrders(symbolRegistry.capacity());
+    }
+
+    @PostConstruct
+    public void start() {
+        tickPipeline.addStage("orders", (event, sequence, endOfBatch) ->
+            onTick(event.symbolId, event.bid, event.ask));
+    }
+
+    /**
+     * Places a resting order.
+     * @param type LIMIT, STOP_LOSS or TAKE_PROFIT
+     * @param side BUY or SELL
+     * @param symbol A pair the live feed has registered
+     * @param price Price at which the order fires
+     * @return The order as listed by {@link #getOpenOrders}
+     * @throws IllegalArgumentException if the order is invalid or too many orders are open
+     */
+    public Map<String, Object> place(String accountId, String type, String side, String symbol, double amount,
+                                     double price) {
+        if (accountId == null || accountId.isEmpty()) {
+            throw new IllegalArgumentException("Account ID is required");
+        }
+        RestingOrders.Type orderType = typeOf(type);
+        if (!"BUY".equals(side) && !"SELL".equals(side)) {
+            throw new IllegalArgumentException("Invalid trade type");
+        }
+        if (symbol == null || symbol.isEmpty()) {
+            throw new IllegalArgumentException("Symbol is required");
+        }
+        if (!(amount > 0) || Double.isInfinite(amount)) {
+            throw new IllegalArgumentException("Amount must be greater than 0");
+        }
+        long priceUnits = priceUnits(price);
+        // Only pairs the feed has seen; registering client input would fill the shared registry
+        int symbolId = symbolRegistry.idOf(symbol);
+        if (symbolId < 0) {
+            throw new IllegalArgumentException("Unknown symbol");
+        }
+        boolean buy = "BUY".equals(side);
+        synchronized (this) {
+            if (orders.size() >= maxOpen) {
+                throw new IllegalArgumentException("Too many open orders");
+            }
+            long id = orders.add(accountId, symbolId, orderType, buy, amount, priceUnits);
+            placed++;
+            return view(id, symbolId, orderType, buy, amount, priceUnits);
+        }
+    }
+
+    /**
+     * @return Whether the order was open and belonged to the account
+     */
+    public synchronized boolean cancel(String accountId, long orderId) {
+        boolean removed = orders.remove(orderId, accountId);
+        if (removed) {
+            cancelled++;
+        }
+        return removed;
+    }
+
+    /**
+     * @return The account's open orders, newest first
+     */
+    public synchronized List<Map<String, Object>> getOpenOrders(String accountId) {
+        List<Map<String, Object>> open = new ArrayList<>();
+        orders.forEachOfAccount(accountId, (id, account, symbolId, type, buy, amount, price) ->
+            open.add(view(id, symbolId, type, buy, amount, price)));
+        return open;
+    }
+
+    /**
+     * Executes the orders of a symbol that a tick's quote reaches. Like market trades, orders
+     * never fill at the last trade price: a side without a quote triggers nothing.
+     * @return Number of orders triggered
+     */
+    public synchronized int onTick(int symbolId, double bid, double ask) {
+        tickAsk = tickPrice(ask);
+        tickBid = tickPrice(bid);
+        return orders.trigger(symbolId, tickAsk, tickBid, execute);
+    }
+
+    private void execute(long orderId, String accountId, int symbolId, RestingOrders.Type type, boolean buy,
+                         double amount, long price) {
+        String symbol = symbolRegistry.nameOf(symbolId);
+        // Fill at the quote that reached the order, which may be better than its price after a gap
+        double fillPrice = FixedPoint.toDouble(buy ? tickAsk : tickBid, FixedPoint.PRICE_DECIMALS);
+        try {
+            tradingService.trade(accountId, buy ? "BUY" : "SELL", symbol, amount, fillPrice);
+            filled++;
+        } catch (IllegalArgumentException e) {
+            rejected++;
+            log.info("Dropped {} {} order {} of {} for {} {}: {}", type, buy ? "BUY" : "SELL", orderId, accountId,
+                amount, symbol, e.getMessage());
+        }
+    }
+
+    /**
+     * @return Open orders and counts of orders placed, cancelled, filled and rejected
+     */
+    public synchronized Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("open", orders.size());
+        metrics.put("maxOpen", maxOpen);
+        metrics.put("placed", placed);
+        metrics.put("cancelled", cancelled);
+        metrics.put("filled", filled);
+        metrics.put("rejected", rejected);
+        return metrics;
+    }
+
+    private Map<String, Object> view(long id, int symbolId, RestingOrders.Type type, boolean buy, double amount,
+                                     long price) {
+        Map<String, Object> order = new LinkedHashMap<>();
+        order.put("id", id);
+        order.put("type", type.name());
+        order.put("side", buy ? "BUY" : "SELL");
+        order.put("symbol", symbolRegistry.nameOf(symbolId));
+        order.put("amount", amount);
+        order.put("price", FixedPoint.toDouble(price, FixedPoint.PRICE_DECIMALS));
+        return order;
+    }
+
+    private static RestingOrders.Type typeOf(String type) {
+        if (type != null) {
+            for (RestingOrders.Type candidate : RestingOrders.Type.values()) {
+                if (candidate.name().equals(type)) {
+                    return candidate;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Invalid order type");
+    }
+
+    private static long priceUnits(double price) {
+        if (!(price > 0) || Double.isInfinite(price)) {
+            throw new IllegalArgumentException("Price must be greater than 0");
+        }
+        try {
+            return FixedPoint.toUnits(price, FixedPoint.PRICE_DECIMALS, RoundingMode.HALF_EVEN);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Price is out of range");
+        }
+    }
+
+    private static long tickPrice(double price) {
+        if (!(price > 0) || price >= 1e10) {
+            return 0;
+        }
+        return FixedPoint.toUnits(price, FixedPoint.PRICE_DECIMALS, RoundingMode.HALF_EVEN);
+    }
+}
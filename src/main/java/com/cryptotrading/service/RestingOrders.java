@@ -0,0 +1,357 @@
+package com.cryptotrading.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Open limit, stop-loss and take-profit orders, indexed by symbol and trigger price so that a
+ * tick only touches the orders it triggers.
+ *
+ * <p>Orders live in parallel primitive arrays addressed by a slot; freed slots are reused, and
+ * an order's ID combines its slot with a generation counter so that the ID of a filled or
+ * cancelled order never matches a later one. Each symbol has four binary heaps of slots keyed
+ * by trigger price, one per side and direction:</p>
+ * <ul>
+ *   <li>orders that fire when the price falls to the trigger (limit and take-profit buys,
+ *       stop-loss sells) are in max-heaps, so the top is the first to fire;</li>
+ *   <li>orders that fire when the price rises to the trigger (limit and take-profit sells,
+ *       stop-loss buys) are in min-heaps.</li>
+ * </ul>
+ * <p>Buy orders are compared with the ask and sell orders with the bid, the price they would
+ * trade at. {@link #trigger} pops heap tops while they cross, so a tick costs O(1) plus
+ * O(log n) per order it fires, and a cancel is O(log n) via the slot's position in its heap.</p>
+ *
+ * <p>Not thread-safe; {@link RestingOrderService} guards it.</p>
+ */
+public class RestingOrders {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int INITIAL_HEAP_CAPACITY = 16;
+    private static final int NONE = -1;
+
+    /**
+     * Kind of resting order; decides whether it fires on a falling or a rising price.
+     */
+    public enum Type {
+        /**
+         * Buy at or below, or sell at or above, the order's price
+         */
+        LIMIT,
+        /**
+         * Sell once the price falls to the order's price, or buy once it rises to it
+         */
+        STOP_LOSS,
+        /**
+         * Sell once the price rises to the order's price, or buy once it falls to it
+         */
+        TAKE_PROFIT;
+
+        boolean firesBelow(boolean buy) {
+            return this == STOP_LOSS ? !buy : buy;
+        }
+    }
+
+    /**
+     * Receives orders as they are triggered or listed. The slot's fields are only valid during
+     * the call.
+     */
+    @FunctionalInterface
+    public interface OrderHandler {
+        /**
+         * @param price Trigger price in units of 10^-PRICE_DECIMALS
+         */
+        void onOrder(long orderId, String accountId, int symbolId, Type type, boolean buy, double amount, long price);
+    }
+
+    private static final Type[] TYPES = Type.values();
+
+    // Slot fields
+    private String[] accounts = new String[INITIAL_CAPACITY];
+    private int[] symbols = new int[INITIAL_CAPACITY];
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private boolean[] buys = new boolean[INITIAL_CAPACITY];
+    private double[] amounts = new double[INITIAL_CAPACITY];
+    private long[] prices = new long[INITIAL_CAPACITY];
+    private int[] heapPositions = new int[INITIAL_CAPACITY];
+    private int[] generations = new int[INITIAL_CAPACITY];
+    // Doubly linked list of each account's orders; next also links the free slots
+    private int[] next = new int[INITIAL_CAPACITY];
+    private int[] previous = new int[INITIAL_CAPACITY];
+    private final Map<String, Integer> accountHeads = new HashMap<>();
+
+    private int allocated;
+    private int freeHead = NONE;
+    private int size;
+    private Heap[][] books;
+
+    public RestingOrders(int symbolCapacity) {
+        this.books = new Heap[symbolCapacity][];
+    }
+
+    /**
+     * @return Number of open orders
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds an open order.
+     * @param price Trigger price in units of 10^-PRICE_DECIMALS
+     * @return ID of the order
+     */
+    public long add(String accountId, int symbolId, Type type, boolean buy, double amount, long price) {
+        int slot = allocate();
+        accounts[slot] = accountId;
+        symbols[slot] = symbolId;
+        types[slot] = (byte) type.ordinal();
+        buys[slot] = buy;
+        amounts[slot] = amount;
+        prices[slot] = price;
+        linkToAccount(slot);
+        heapOf(slot).push(slot);
+        size++;
+        return idOf(slot);
+    }
+
+    /**
+     * Removes an open order.
+     * @return Whether the order was open and placed by the account
+     */
+    public boolean remove(long orderId, String accountId) {
+        int slot = slotOf(orderId);
+        if (slot == NONE || !accounts[slot].equals(accountId)) {
+            return false;
+        }
+        heapOf(slot).removeAt(heapPositions[slot]);
+        free(slot);
+        return true;
+    }
+
+    /**
+     * Lists an account's open orders, newest first.
+     */
+    public void forEachOfAccount(String accountId, OrderHandler handler) {
+        Integer head = accountHeads.get(accountId);
+        for (int slot = head == null ? NONE : head; slot != NONE; slot = next[slot]) {
+            handler.onOrder(idOf(slot), accountId, symbols[slot], TYPES[types[slot]], buys[slot], amounts[slot], prices[slot]);
+        }
+    }
+
+    /**
+     * Removes the orders of a symbol that the prices reach and hands each to the handler, in
+     * the order they were reached.
+     * @param ask Price a buy would fill at, in units of 10^-PRICE_DECIMALS; 0 or less skips buys
+     * @param bid Price a sell would fill at; 0 or less skips sells
+     * @return Number of orders triggered
+     */
+    public int trigger(int symbolId, long ask, long bid, OrderHandler handler) {
+        Heap[] book = symbolId < books.length ? books[symbolId] : null;
+        if (book == null) {
+            return 0;
+        }
+        int triggered = 0;
+        if (ask > 0) {
+            triggered += book[heapIndex(true, true)].popReached(ask, handler);
+            triggered += book[heapIndex(true, false)].popReached(ask, handler);
+        }
+        if (bid > 0) {
+            triggered += book[heapIndex(false, true)].popReached(bid, handler);
+            triggered += book[heapIndex(false, false)].popReached(bid, handler);
+        }
+        return triggered;
+    }
+
+    private long idOf(int slot) {
+        // Positive even once the generation wraps
+        return ((long) (generations[slot] & Integer.MAX_VALUE) << 32) | slot;
+    }
+
+    private int slotOf(long orderId) {
+        int slot = (int) orderId;
+        if (orderId < 0 || slot < 0 || slot >= allocated || (generations[slot] & Integer.MAX_VALUE) != (int) (orderId >>> 32)
+            || accounts[slot] == null) {
+            return NONE;
+        }
+        return slot;
+    }
+
+    private int allocate() {
+        if (freeHead != NONE) {
+            int slot = freeHead;
+            freeHead = next[slot];
+            return slot;
+        }
+        if (allocated == accounts.length) {
+            grow();
+        }
+        return allocated++;
+    }
+
+    private void free(int slot) {
+        unlinkFromAccount(slot);
+        accounts[slot] = null;
+        // Makes the order's ID stale
+        generations[slot]++;
+        next[slot] = freeHead;
+        freeHead = slot;
+        size--;
+    }
+
+    private void grow() {
+        int capacity = accounts.length * 2;
+        accounts = Arrays.copyOf(accounts, capacity);
+        symbols = Arrays.copyOf(symbols, capacity);
+        types = Arrays.copyOf(types, capacity);
+        buys = Arrays.copyOf(buys, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        heapPositions = Arrays.copyOf(heapPositions, capacity);
+        generations = Arrays.copyOf(generations, capacity);
+        next = Arrays.copyOf(next, capacity);
+        previous = Arrays.copyOf(previous, capacity);
+    }
+
+    private void linkToAccount(int slot) {
+        Integer head = accountHeads.put(accounts[slot], slot);
+        next[slot] = head == null ? NONE : head;
+        previous[slot] = NONE;
+        if (head != null) {
+            previous[head] = slot;
+        }
+    }
+
+    private void unlinkFromAccount(int slot) {
+        if (previous[slot] != NONE) {
+            next[previous[slot]] = next[slot];
+        } else if (next[slot] != NONE) {
+            accountHeads.put(accounts[slot], next[slot]);
+        } else {
+            accountHeads.remove(accounts[slot]);
+        }
+        if (next[slot] != NONE) {
+            previous[next[slot]] = previous[slot];
+        }
+    }
+
+    private Heap heapOf(int slot) {
+        int symbolId = symbols[slot];
+        if (symbolId >= books.length) {
+            books = Arrays.copyOf(books, Math.max(symbolId + 1, books.length * 2));
+        }
+        Heap[] book = books[symbolId];
+        if (book == null) {
+            book = new Heap[4];
+            for (int i = 0; i < book.length; i++) {
+                book[i] = new Heap((i & 1) != 0);
+            }
+            books[symbolId] = book;
+        }
+        boolean buy = buys[slot];
+        return book[heapIndex(buy, TYPES[types[slot]].firesBelow(buy))];
+    }
+
+    private static int heapIndex(boolean buy, boolean below) {
+        return (buy ? 2 : 0) | (below ? 1 : 0);
+    }
+
+    /**
+     * Binary heap of slots keyed by their trigger price: a max-heap for orders that fire when
+     * the price falls to them, a min-heap for those that fire when it rises. Keys are copied
+     * into the heap so that sifting does not chase slots.
+     */
+    private final class Heap {
+        private final boolean below;
+        private long[] keys = new long[INITIAL_HEAP_CAPACITY];
+        private int[] slots = new int[INITIAL_HEAP_CAPACITY];
+        private int size;
+
+        Heap(boolean below) {
+            this.below = below;
+        }
+
+        void push(int slot) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            set(size, prices[slot], slot);
+            siftUp(size++);
+        }
+
+        int popReached(long price, OrderHandler handler) {
+            int popped = 0;
+            while (size > 0 && (below ? keys[0] >= price : keys[0] <= price)) {
+                int slot = slots[0];
+                removeAt(0);
+                popped++;
+                try {
+                    handler.onOrder(idOf(slot), accounts[slot], symbols[slot], TYPES[types[slot]], buys[slot],
+                        amounts[slot], prices[slot]);
+                } finally {
+                    free(slot);
+                }
+            }
+            return popped;
+        }
+
+        void removeAt(int position) {
+            size--;
+            if (position == size) {
+                return;
+            }
+            int moved = slots[size];
+            set(position, keys[size], moved);
+            // The moved entry may belong above or below its new position
+            siftUp(position);
+            siftDown(heapPositions[moved]);
+        }
+
+        /**
+         * @return Whether the key at a belongs above the key at b
+         */
+        private boolean before(long a, long b) {
+            return below ? a > b : a < b;
+        }
+
+        private void siftUp(int position) {
+            long key = keys[position];
+            int slot = slots[position];
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                if (!before(key, keys[parent])) {
+                    break;
+                }
+                set(position, keys[parent], slots[parent]);
+                position = parent;
+            }
+            set(position, key, slot);
+        }
+
+        private void siftDown(int position) {
+            long key = keys[position];
+            int slot = slots[position];
+            while (true) {
+                int child = 2 * position + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && before(keys[child + 1], keys[child])) {
+                    child++;
+                }
+                if (!before(keys[child], key)) {
+                    break;
+                }
+                set(position, keys[child], slots[child]);
+                position = child;
+            }
+            set(position, key, slot);
+        }
+
+        private void set(int position, long key, int slot) {
+            keys[position] = key;
+            slots[position] = slot;
+            heapPositions[slot] = position;
+        }
+    }
+}
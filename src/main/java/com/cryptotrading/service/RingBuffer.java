@@ -0,0 +1,171 @@
+package com.cryptotrading.service;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Preallocated single-producer, multi-consumer ring buffer in the style of the LMAX Disruptor.
+ *
+ * <p>Slots are created once up front and mutated in place, so publishing an event does not
+ * allocate. The producer claims a sequence with {@link #next()}, fills {@link #get(long)} and
+ * calls {@link #publish(long)}. Each {@link RingBufferConsumer} follows the cursor with its own
+ * {@link Sequence}; the producer never overwrites a slot until every consumer has passed it.</p>
+ *
+ * @param <E> Type of the preallocated event slots
+ */
+public class RingBuffer<E> {
+
+    /**
+     * Callback invoked by a {@link RingBufferConsumer} for each event it reads.
+     */
+    @FunctionalInterface
+    public interface EventHandler<E> {
+        /**
+         * @param event Slot being consumed; only valid for the duration of the call
+         * @param sequence Sequence number of the event
+         * @param endOfBatch Whether this is the last event currently available to the consumer
+         */
+        void onEvent(E event, long sequence, boolean endOfBatch) throws Exception;
+    }
+
+    private static final int SPIN_TRIES = 100;
+
+    private final Object[] slots;
+    private final int mask;
+    private final Sequence cursor = new Sequence(-1);
+    private long nextSequence = 0;
+    private long cachedGatingSequence = -1;
+    private volatile RingBufferConsumer<E>[] consumers = newConsumerArray(0);
+    private volatile long producerWaits;
+
+    public RingBuffer(int capacity, Supplier<E> factory) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring buffer capacity must be a power of 2");
+        }
+        this.slots = new Object[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = factory.get();
+        }
+    }
+
+    /**
+     * Claims the next slot, waiting while the slowest consumer is a full lap behind.
+     * Must only be called from the producer thread.
+     * @return Sequence of the claimed slot
+     */
+    public long next() {
+        long sequence = nextSequence++;
+        long wrapPoint = sequence - slots.length;
+        if (wrapPoint > cachedGatingSequence) {
+            long minimum;
+            while (wrapPoint > (minimum = minimumConsumerSequence(sequence - 1))) {
+                producerWaits++;
+                LockSupport.parkNanos(1_000);
+            }
+            cachedGatingSequence = minimum;
+        }
+        return sequence;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(long sequence) {
+        return (E) slots[(int) (sequence & mask)];
+    }
+
+    /**
+     * Makes a claimed slot visible to consumers and wakes any consumer that is parked.
+     */
+    public void publish(long sequence) {
+        cursor.setVolatile(sequence);
+        for (RingBufferConsumer<E> consumer : consumers) {
+            if (consumer.isParked()) {
+                LockSupport.unpark(consumer.getThread());
+            }
+        }
+    }
+
+    /**
+     * Waits until {@code sequence} has been published or the consumer is halted.
+     * @return Highest published sequence, which may be beyond {@code sequence}
+     */
+    long waitFor(long sequence, RingBufferConsumer<E> consumer) {
+        long available;
+        int spins = 0;
+        while ((available = cursor.get()) < sequence && consumer.isRunning()) {
+            if (spins < SPIN_TRIES) {
+                spins++;
+                Thread.onSpinWait();
+                continue;
+            }
+            consumer.setParked(true);
+            if ((available = cursor.getVolatile()) < sequence && consumer.isRunning()) {
+                LockSupport.park(this);
+            }
+            consumer.setParked(false);
+        }
+        return available;
+    }
+
+    /**
+     * Registers a consumer that starts after the current cursor. Consumers can be added while
+     * the producer is running; the new consumer gates the producer from its first event on.
+     */
+    synchronized void addConsumer(RingBufferConsumer<E> consumer) {
+        consumer.getSequence().set(cursor.get());
+        RingBufferConsumer<E>[] current = consumers;
+        RingBufferConsumer<E>[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = consumer;
+        consumers = updated;
+    }
+
+    synchronized void removeConsumer(RingBufferConsumer<E> consumer) {
+        consumers = Arrays.stream(consumers)
+            .filter(existing -> existing != consumer)
+            .toArray(RingBuffer::newConsumerArray);
+    }
+
+    private long minimumConsumerSequence(long defaultValue) {
+        long minimum = defaultValue;
+        for (RingBufferConsumer<E> consumer : consumers) {
+            minimum = Math.min(minimum, consumer.getSequence().get());
+        }
+        return minimum;
+    }
+
+    /**
+     * @return Highest published sequence, or -1 if nothing has been published
+     */
+    public long getCursor() {
+        return cursor.get();
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * @return Number of published events the slowest consumer has not processed yet
+     */
+    public long getDepth() {
+        long published = cursor.get();
+        return published - minimumConsumerSequence(published);
+    }
+
+    /**
+     * @return How many times the producer had to wait for a full ring to drain
+     */
+    public long getProducerWaits() {
+        return producerWaits;
+    }
+
+    RingBufferConsumer<E>[] getConsumers() {
+        return consumers;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> RingBufferConsumer<E>[] newConsumerArray(int length) {
+        return (RingBufferConsumer<E>[]) new RingBufferConsumer[length];
+    }
+}
@@ -0,0 +1,107 @@
+package com.cryptotrading.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A consumer stage of a {@link RingBuffer}: one dedicated thread that follows the producer
+ * cursor with its own {@link Sequence} and hands events to an {@link RingBuffer.EventHandler}
+ * in batches. A failing handler is logged and skipped so one bad event cannot stall the stage.
+ */
+public class RingBufferConsumer<E> implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(RingBufferConsumer.class);
+
+    private final String name;
+    private final RingBuffer<E> ringBuffer;
+    private final RingBuffer.EventHandler<E> handler;
+    private final Sequence sequence = new Sequence(-1);
+    private volatile boolean running;
+    private volatile boolean parked;
+    private volatile Thread thread;
+    private volatile long errors;
+
+    public RingBufferConsumer(String name, RingBuffer<E> ringBuffer, RingBuffer.EventHandler<E> handler) {
+        this.name = name;
+        this.ringBuffer = ringBuffer;
+        this.handler = handler;
+    }
+
+    /**
+     * Registers the stage with the ring buffer and starts its thread.
+     */
+    public void start() {
+        running = true;
+        ringBuffer.addConsumer(this);
+        thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the stage after the event it is currently processing and unregisters it.
+     */
+    public void halt() {
+        running = false;
+        Thread current = thread;
+        if (current != null) {
+            current.interrupt();
+        }
+        ringBuffer.removeConsumer(this);
+    }
+
+    @Override
+    public void run() {
+        long next = sequence.get() + 1;
+        while (running) {
+            long available = ringBuffer.waitFor(next, this);
+            while (next <= available) {
+                try {
+                    handler.onEvent(ringBuffer.get(next), next, next == available);
+                } catch (Exception e) {
+                    errors++;
+                    log.error("Error in {} handling sequence {}: {}", name, next, e.getMessage());
+                }
+                next++;
+            }
+            sequence.set(next - 1);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Sequence getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return Number of published events this stage has not processed yet
+     */
+    public long getLag() {
+        return Math.max(0, ringBuffer.getCursor() - sequence.get());
+    }
+
+    /**
+     * @return Number of events whose handler threw
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    boolean isParked() {
+        return parked;
+    }
+
+    void setParked(boolean parked) {
+        this.parked = parked;
+    }
+
+    Thread getThread() {
+        return thread;
+    }
+}
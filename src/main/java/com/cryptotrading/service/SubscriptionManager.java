@@ -0,0 +1,188 @@
+package com.cryptotrading.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Tracks the Kraken subscription state of every pair the application wants to receive.
+ *
+ * <p>A pair is {@link State#PENDING} from the moment a subscribe message is sent until Kraken
+ * answers with a {@code subscriptionStatus} event, which moves it to {@link State#CONFIRMED}
+ * or {@link State#FAILED}. When the connection drops every live pair goes back to pending so
+ * that the next connection can restore the full set with a few batched messages.</p>
+ */
+public class SubscriptionManager {
+
+    public enum State {
+        PENDING,
+        CONFIRMED,
+        FAILED
+    }
+
+    private final Map<String, State> states = new LinkedHashMap<>();
+    private final Map<String, String> failureReasons = new LinkedHashMap<>();
+    private int confirmedCount;
+    private long recoveryStartNanos;
+    private boolean recovering;
+    private long lastRecoveryNanos = -1;
+    private long recoveries;
+    private long messagesSent;
+
+    /**
+     * Records that the given pairs are wanted and marks the new ones as pending.
+     * Pairs that previously failed are retried.
+     * @return Pairs that need a subscribe message, in request order
+     */
+    public synchronized List<String> request(String... pairs) {
+        List<String> toSend = new ArrayList<>();
+        for (String pair : pairs) {
+            State state = states.get(pair);
+            if (state == State.PENDING || state == State.CONFIRMED) {
+                continue;
+            }
+            states.put(pair, State.PENDING);
+            failureReasons.remove(pair);
+            toSend.add(pair);
+        }
+        return toSend;
+    }
+
+    /**
+     * Called when a connection is (re)established. Every pair that is not failed is marked
+     * pending again and the time until they are all confirmed is measured.
+     * @return Pairs that need a subscribe message on the new connection
+     */
+    public synchronized List<String> beginResubscribe() {
+        List<String> toSend = new ArrayList<>();
+        states.replaceAll((pair, state) -> {
+            if (state == State.FAILED) {
+                return state;
+            }
+            toSend.add(pair);
+            return State.PENDING;
+        });
+        confirmedCount = 0;
+        recovering = !toSend.isEmpty();
+        recoveryStartNanos = System.nanoTime();
+        return toSend;
+    }
+
+    /**
+     * Called when the connection drops; nothing is confirmed until the next connection says so.
+     */
+    public synchronized void onDisconnect() {
+        states.replaceAll((pair, state) -> state == State.CONFIRMED ? State.PENDING : state);
+        confirmedCount = 0;
+        recovering = false;
+    }
+
+    public synchronized void onSubscribed(String pair) {
+        State previous = states.put(pair, State.CONFIRMED);
+        if (previous != State.CONFIRMED) {
+            confirmedCount++;
+        }
+        failureReasons.remove(pair);
+        if (recovering && confirmedCount == activeCount()) {
+            lastRecoveryNanos = System.nanoTime() - recoveryStartNanos;
+            recoveries++;
+            recovering = false;
+        }
+    }
+
+    public synchronized void onFailed(String pair, String reason) {
+        if (states.put(pair, State.FAILED) == State.CONFIRMED) {
+            confirmedCount--;
+        }
+        failureReasons.put(pair, reason);
+    }
+
+    public synchronized void onUnsubscribed(String pair) {
+        if (states.remove(pair) == State.CONFIRMED) {
+            confirmedCount--;
+        }
+    }
+
+    public synchronized void recordMessageSent() {
+        messagesSent++;
+    }
+
+    /**
+     * @return State of the pair, or null if it has never been requested
+     */
+    public synchronized State getState(String pair) {
+        return states.get(pair);
+    }
+
+    /**
+     * @return Whether the pair is pending or confirmed
+     */
+    public synchronized boolean isActive(String pair) {
+        State state = states.get(pair);
+        return state == State.PENDING || state == State.CONFIRMED;
+    }
+
+    public synchronized Set<String> getPairs(State state) {
+        Set<String> pairs = new TreeSet<>();
+        states.forEach((pair, current) -> {
+            if (current == state) {
+                pairs.add(pair);
+            }
+        });
+        return pairs;
+    }
+
+    /**
+     * @return Pairs that are pending or confirmed
+     */
+    public synchronized Set<String> getActivePairs() {
+        Set<String> pairs = new TreeSet<>(getPairs(State.PENDING));
+        pairs.addAll(getPairs(State.CONFIRMED));
+        return pairs;
+    }
+
+    /**
+     * @return Duration of the last reconnect until every live pair was confirmed again,
+     * or -1 if no recovery has completed yet
+     */
+    public synchronized long getLastRecoveryMillis() {
+        return lastRecoveryNanos < 0 ? -1 : lastRecoveryNanos / 1_000_000;
+    }
+
+    /**
+     * @return Number of (re)connects after which every live pair was confirmed again
+     */
+    public synchronized long getRecoveries() {
+        return recoveries;
+    }
+
+    public synchronized Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("pending", count(State.PENDING));
+        metrics.put("confirmed", confirmedCount);
+        metrics.put("failed", count(State.FAILED));
+        metrics.put("failures", new LinkedHashMap<>(failureReasons));
+        metrics.put("messagesSent", messagesSent);
+        metrics.put("recovering", recovering);
+        metrics.put("recoveries", recoveries);
+        metrics.put("lastRecoveryMillis", getLastRecoveryMillis());
+        return metrics;
+    }
+
+    private int activeCount() {
+        return states.size() - count(State.FAILED);
+    }
+
+    private int count(State state) {
+        int count = 0;
+        for (State current : states.values()) {
+            if (current == state) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
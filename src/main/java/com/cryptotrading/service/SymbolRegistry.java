@@ -0,0 +1,147 @@
+package com.cryptotrading.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Interns trading pair names to dense integer IDs ({@code 0..size-1}).
+ *
+ * <p>IDs never change once assigned, so they can index primitive arrays in the price table and
+ * per-session state. Lookups are lock-free and can be done straight from a region of a frame
+ * without creating a String; registration is rare and copies the index under a lock.</p>
+ */
+@Component
+public class SymbolRegistry {
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final int capacity;
+    private final String[] names;
+    private volatile int size;
+    private volatile int[] slots; // open-addressing index of id + 1, 0 marks an empty slot
+
+    public SymbolRegistry() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    @Autowired
+    public SymbolRegistry(@Value("${market-data.max-symbols:4096}") int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Symbol capacity must be greater than 0");
+        }
+        this.capacity = capacity;
+        this.names = new String[capacity];
+        this.slots = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+    }
+
+    /**
+     * Returns the ID of a symbol, assigning the next free ID if it has not been seen before.
+     * @param symbol Pair name such as "XBT/USD"
+     * @return Dense symbol ID
+     * @throws IllegalStateException if the registry is full
+     */
+    public int register(String symbol) {
+        int id = idOf(symbol);
+        if (id >= 0) {
+            return id;
+        }
+        synchronized (this) {
+            id = idOf(symbol);
+            if (id >= 0) {
+                return id;
+            }
+            if (size == capacity) {
+                throw new IllegalStateException("Symbol registry is full (" + capacity + " symbols)");
+            }
+            id = size;
+            names[id] = symbol;
+            int[] copy = slots.clone();
+            insert(copy, symbol, id);
+            slots = copy;
+            size = id + 1; // publishes names[id] to readers
+            return id;
+        }
+    }
+
+    /**
+     * @return ID of the symbol, or -1 if it is not registered
+     */
+    public int idOf(String symbol) {
+        return idOf(symbol, 0, symbol.length());
+    }
+
+    /**
+     * Looks up a symbol from a region of a larger character sequence without allocating.
+     * @return ID of the symbol, or -1 if it is not registered
+     */
+    public int idOf(CharSequence text, int start, int end) {
+        int[] table = slots;
+        int mask = table.length - 1;
+        int index = hash(text, start, end) & mask;
+        while (true) {
+            int entry = table[index];
+            if (entry == 0) {
+                return -1;
+            }
+            String candidate = names[entry - 1];
+            if (regionEquals(candidate, text, start, end)) {
+                return entry - 1;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * @return Pair name for an ID returned by {@link #register(String)}
+     */
+    public String nameOf(int id) {
+        if (id < 0 || id >= size) {
+            throw new IllegalArgumentException("Unknown symbol ID: " + id);
+        }
+        return names[id];
+    }
+
+    /**
+     * @return Number of registered symbols; valid IDs are {@code 0..size()-1}
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Maximum number of symbols this registry can hold
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    private void insert(int[] table, String symbol, int id) {
+        int mask = table.length - 1;
+        int index = hash(symbol, 0, symbol.length()) & mask;
+        while (table[index] != 0) {
+            index = (index + 1) & mask;
+        }
+        table[index] = id + 1;
+    }
+
+    private static int hash(CharSequence text, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + text.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean regionEquals(String candidate, CharSequence text, int start, int end) {
+        int length = end - start;
+        if (candidate.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (candidate.charAt(i) != text.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
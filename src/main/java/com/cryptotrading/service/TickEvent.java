@@ -0,0 +1,83 @@
+package com.cryptotrading.service;
+
+/**
+ * Preallocated ring buffer slot carrying one decoded ticker update from the ingest thread
+ * to the pipeline stages. Slots are overwritten in place; stages must copy what they keep.
+ */
+public class TickEvent {
+    int symbolId;
+    String symbol;
+    double last;
+    double open;
+    double change24h;
+    double bid;
+    double ask;
+    double volume;
+    double volumeToday;
+    long timestamp;
+    long receivedNanos;
+
+    void set(DecodedTick tick, int symbolId, double open, double change24h, long timestamp, long receivedNanos) {
+        this.symbolId = symbolId;
+        this.symbol = tick.getPair();
+        this.last = tick.getLast();
+        this.open = open;
+        this.change24h = change24h;
+        this.bid = tick.getBid();
+        this.ask = tick.getAsk();
+        this.volume = tick.getVolume();
+        this.volumeToday = tick.getVolumeToday();
+        this.timestamp = timestamp;
+        this.receivedNanos = receivedNanos;
+    }
+
+    public int getSymbolId() {
+        return symbolId;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public double getLast() {
+        return last;
+    }
+
+    public double getOpen() {
+        return open;
+    }
+
+    public double getChange24h() {
+        return change24h;
+    }
+
+    public double getBid() {
+        return bid;
+    }
+
+    public double getAsk() {
+        return ask;
+    }
+
+    public double getVolume() {
+        return volume;
+    }
+
+    public double getVolumeToday() {
+        return volumeToday;
+    }
+
+    /**
+     * @return Wall-clock time of the tick in epoch milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when the frame was received, for latency measurement
+     */
+    public long getReceivedNanos() {
+        return receivedNanos;
+    }
+}
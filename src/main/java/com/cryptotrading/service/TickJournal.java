@@ -0,0 +1,410 @@
+package com.cryptotrading.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only journal of every tick published to the {@link TickPipeline}.
+ *
+ * <p>The journal is a directory of daily segments ({@code ticks-YYYY-MM-DD.journal}, by the UTC
+ * day of the tick). A segment is a 64-byte header followed by fixed-width 56-byte little-endian
+ * records (see {@link #RECORD_SIZE}), written through memory-mapped chunks of the file, so an
+ * append is a handful of stores into the page cache. The header's record count is published
+ * with release semantics after each record; records past the count are ignored, which makes a
+ * torn write after a crash harmless.</p>
+ *
+ * <p>Symbol IDs in records are local to the segment and resolved through the
+ * {@code ticks-YYYY-MM-DD.symbols} file next to it, because {@link SymbolRegistry} IDs are only
+ * stable for the lifetime of one process.</p>
+ *
+ * <p>There is a single writer, the {@code journal} stage of the pipeline, so writing never
+ * runs on the Kraken ingest thread. Dirty pages are forced to disk at the end of a batch
+ * once {@code market-data.journal.force-interval-ms} has passed since the last force, and when
+ * a chunk or segment is finished. Use {@link TickJournalReader} to read segments back.</p>
+ *
+ * <p>Before the first append the journal takes an exclusive lock on {@code journal.lock} in the
+ * directory. If another process (or another journal in this one) already holds it, journaling
+ * is turned off with a warning instead of writing the same segments at the same offsets.</p>
+ */
+@Component
+public class TickJournal {
+    private static final Logger log = LoggerFactory.getLogger(TickJournal.class);
+
+    static final long MAGIC = 0x314C4E524A4B4354L; // "TCKJRNL1" in little-endian byte order
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    // Header fields
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 8;
+    static final int RECORD_SIZE_OFFSET = 12;
+    static final int COUNT_OFFSET = 16;
+    static final int DAY_OFFSET = 24;
+    // Record fields: segment symbol ID, 4 bytes padding, timestamp, receive nanoTime, last, bid, ask, volume
+    static final int RECORD_SIZE = 56;
+    static final int SYMBOL = 0;
+    static final int TIMESTAMP = 8;
+    static final int RECEIVED = 16;
+    static final int LAST = 24;
+    static final int BID = 32;
+    static final int ASK = 40;
+    static final int VOLUME = 48;
+
+    static final String LOCK_FILE = "journal.lock";
+    static final long MILLIS_PER_DAY = 86_400_000L;
+    static final VarHandle HEADER_LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final SymbolRegistry symbolRegistry;
+    private final boolean enabled;
+    private final Path directory;
+    private final long chunkRecords;
+    private final long forceIntervalNanos;
+
+    // Writer state, guarded by this; the lock is only contended at shutdown
+    private FileChannel lockChannel;
+    private FileLock lock;
+    private FileChannel channel;
+    private MappedByteBuffer header;
+    private MappedByteBuffer chunk;
+    private long chunkIndex;
+    private long day = Long.MIN_VALUE;
+    private long count;
+    private final int[] segmentIds;
+    private int segmentSymbols;
+    private long lastForceNanos = System.nanoTime();
+    private boolean failing;
+    private boolean closed;
+
+    private volatile boolean heldElsewhere;
+    private volatile String segment;
+    private volatile long records;
+    private volatile long segments;
+    private volatile long forces;
+    private volatile long lastForceMicros;
+    private volatile long maxForceMicros;
+    private volatile long errors;
+
+    public TickJournal(SymbolRegistry symbolRegistry, Path directory) {
+        this(symbolRegistry, true, directory.toString(), 64, 1000);
+    }
+
+    @Autowired
+    public TickJournal(SymbolRegistry symbolRegistry,
+                       @Value("${market-data.journal.enabled:false}") boolean enabled,
+                       @Value("${market-data.journal.directory:data/journal}") String directory,
+                       @Value("${market-data.journal.chunk-mb:64}") int chunkMegabytes,
+                       @Value("${market-data.journal.force-interval-ms:1000}") long forceIntervalMillis) {
+        if (chunkMegabytes <= 0 || chunkMegabytes > 1024) {
+            throw new IllegalArgumentException("Journal chunk size must be between 1 and 1024 MB: " + chunkMegabytes);
+        }
+        this.symbolRegistry = symbolRegistry;
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.chunkRecords = (chunkMegabytes * 1024L * 1024L) / RECORD_SIZE;
+        this.forceIntervalNanos = forceIntervalMillis * 1_000_000L;
+        this.segmentIds = new int[symbolRegistry.capacity()];
+    }
+
+    /**
+     * @return Whether ticks should be journaled; when false the pipeline has no journal stage
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Appends one tick, opening the segment of the tick's UTC day if needed. A tick older than
+     * the open segment's day is appended to the open segment. I/O errors are counted and
+     * logged once until the journal recovers; the tick is then lost. Ticks are ignored while
+     * another writer holds the directory.
+     */
+    public synchronized void append(int symbolId, String symbol, long timestamp, long receivedNanos,
+                                    double last, double bid, double ask, double volume) {
+        if (closed || heldElsewhere) {
+            return;
+        }
+        try {
+            if (lock == null && !lock()) {
+                return;
+            }
+            long tickDay = Math.floorDiv(timestamp, MILLIS_PER_DAY);
+            if (channel == null || tickDay > day) {
+                openSegment(tickDay);
+            }
+            int segmentId = segmentIds[symbolId];
+            if (segmentId < 0) {
+                segmentId = addSymbol(symbolId, symbol);
+            }
+            long index = count / chunkRecords;
+            if (chunk == null || index != chunkIndex) {
+                mapChunk(index);
+            }
+            int at = (int) (count % chunkRecords) * RECORD_SIZE;
+            chunk.putInt(at + SYMBOL, segmentId);
+            chunk.putInt(at + SYMBOL + 4, 0);
+            chunk.putLong(at + TIMESTAMP, timestamp);
+            chunk.putLong(at + RECEIVED, receivedNanos);
+            chunk.putDouble(at + LAST, last);
+            chunk.putDouble(at + BID, bid);
+            chunk.putDouble(at + ASK, ask);
+            chunk.putDouble(at + VOLUME, volume);
+            count++;
+            HEADER_LONGS.setRelease(header, COUNT_OFFSET, count);
+            records++;
+            failing = false;
+        } catch (IOException | RuntimeException e) {
+            errors++;
+            if (!failing) {
+                log.error("Failed to journal tick for {}, dropping ticks until the journal recovers", symbol, e);
+                failing = true;
+            }
+            closeSegment();
+        }
+    }
+
+    /**
+     * Called at the end of each pipeline batch; forces dirty pages to disk if the force
+     * interval has elapsed.
+     */
+    public synchronized void onBatchEnd() {
+        if (channel != null && System.nanoTime() - lastForceNanos >= forceIntervalNanos) {
+            force();
+        }
+    }
+
+    /**
+     * Forces the open segment to disk and closes it. Later appends are ignored.
+     */
+    @PreDestroy
+    public synchronized void close() {
+        closed = true;
+        closeSegment();
+        if (lockChannel != null) {
+            try {
+                // Closing the channel releases the lock
+                lockChannel.close();
+            } catch (IOException e) {
+                log.warn("Failed to release tick journal lock in {}", directory, e);
+            }
+            lockChannel = null;
+            lock = null;
+        }
+    }
+
+    /**
+     * @return Whether the journal went quiet because another writer holds its directory
+     */
+    public boolean isHeldElsewhere() {
+        return heldElsewhere;
+    }
+
+    private boolean lock() throws IOException {
+        Files.createDirectories(directory);
+        FileChannel opened = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE);
+        FileLock acquired;
+        try {
+            acquired = opened.tryLock();
+        } catch (OverlappingFileLockException e) {
+            acquired = null;
+        } catch (IOException | RuntimeException e) {
+            opened.close();
+            throw e;
+        }
+        if (acquired == null) {
+            opened.close();
+            heldElsewhere = true;
+            log.warn("Tick journal {} is held by another writer; journaling is disabled in this process",
+                directory.toAbsolutePath());
+            return false;
+        }
+        lockChannel = opened;
+        lock = acquired;
+        return true;
+    }
+
+    private void openSegment(long newDay) throws IOException {
+        closeSegment();
+        Files.createDirectories(directory);
+        Path path = segmentPath(directory, newDay);
+        FileChannel opened = FileChannel.open(path, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer mappedHeader = opened.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            mappedHeader.order(ByteOrder.LITTLE_ENDIAN);
+            Arrays.fill(segmentIds, -1);
+            segmentSymbols = 0;
+            long magic = mappedHeader.getLong(MAGIC_OFFSET);
+            if (magic == MAGIC) {
+                checkHeader(mappedHeader, path);
+                count = (long) HEADER_LONGS.getAcquire(mappedHeader, COUNT_OFFSET);
+                loadSymbols(newDay);
+            } else if (magic == 0) {
+                mappedHeader.putInt(VERSION_OFFSET, VERSION);
+                mappedHeader.putInt(RECORD_SIZE_OFFSET, RECORD_SIZE);
+                mappedHeader.putLong(DAY_OFFSET, newDay);
+                mappedHeader.putLong(COUNT_OFFSET, 0);
+                HEADER_LONGS.setRelease(mappedHeader, MAGIC_OFFSET, MAGIC);
+                count = 0;
+            } else {
+                throw new IOException("Not a tick journal segment: " + path);
+            }
+            channel = opened;
+            header = mappedHeader;
+        } catch (IOException | RuntimeException e) {
+            opened.close();
+            throw e;
+        }
+        chunk = null;
+        day = newDay;
+        segment = path.getFileName().toString();
+        segments++;
+        log.info("Journaling ticks to {} from record {}", path, count);
+    }
+
+    static void checkHeader(MappedByteBuffer header, Path path) throws IOException {
+        int version = header.getInt(VERSION_OFFSET);
+        int recordSize = header.getInt(RECORD_SIZE_OFFSET);
+        if (version != VERSION || recordSize != RECORD_SIZE) {
+            throw new IOException("Unsupported tick journal segment " + path + " (version " + version
+                + ", record size " + recordSize + ")");
+        }
+    }
+
+    private void loadSymbols(long segmentDay) throws IOException {
+        String[] names = readSymbols(symbolsPath(directory, segmentDay));
+        for (int i = 0; i < names.length; i++) {
+            if (names[i] != null) {
+                segmentIds[symbolRegistry.register(names[i])] = i;
+            }
+        }
+        segmentSymbols = names.length;
+    }
+
+    private int addSymbol(int symbolId, String symbol) throws IOException {
+        int segmentId = segmentSymbols;
+        // Written before any record that refers to it, so readers can always resolve a record
+        Files.writeString(symbolsPath(directory, day), segmentId + "," + symbol + "\n", StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.DSYNC);
+        segmentIds[symbolId] = segmentId;
+        segmentSymbols++;
+        return segmentId;
+    }
+
+    private void mapChunk(long index) throws IOException {
+        if (chunk != null) {
+            chunk.force();
+        }
+        long position = HEADER_SIZE + index * chunkRecords * RECORD_SIZE;
+        chunk = channel.map(FileChannel.MapMode.READ_WRITE, position, chunkRecords * RECORD_SIZE);
+        chunk.order(ByteOrder.LITTLE_ENDIAN);
+        chunkIndex = index;
+    }
+
+    private void force() {
+        long start = System.nanoTime();
+        if (chunk != null) {
+            chunk.force();
+        }
+        header.force();
+        long end = System.nanoTime();
+        lastForceNanos = end;
+        long micros = (end - start) / 1_000;
+        lastForceMicros = micros;
+        if (micros > maxForceMicros) {
+            maxForceMicros = micros;
+        }
+        forces++;
+    }
+
+    private void closeSegment() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            force();
+        } catch (RuntimeException e) {
+            log.warn("Failed to force tick journal segment {}", segment, e);
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close tick journal segment {}", segment, e);
+        }
+        channel = null;
+        header = null;
+        chunk = null;
+    }
+
+    static Path segmentPath(Path directory, long day) {
+        return directory.resolve("ticks-" + LocalDate.ofEpochDay(day) + ".journal");
+    }
+
+    static Path symbolsPath(Path directory, long day) {
+        return directory.resolve("ticks-" + LocalDate.ofEpochDay(day) + ".symbols");
+    }
+
+    /**
+     * Reads a segment's symbol file.
+     * @return Pair names indexed by segment symbol ID; empty if the file does not exist
+     */
+    static String[] readSymbols(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return new String[0];
+        }
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        String[] names = new String[lines.size()];
+        for (String line : lines) {
+            int comma = line.indexOf(',');
+            if (comma > 0) {
+                int id = Integer.parseInt(line.substring(0, comma));
+                if (id >= names.length) {
+                    names = Arrays.copyOf(names, id + 1);
+                }
+                names[id] = line.substring(comma + 1);
+            }
+        }
+        return names;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("directory", directory.toAbsolutePath().toString());
+        metrics.put("heldElsewhere", heldElsewhere);
+        metrics.put("segment", segment);
+        metrics.put("records", records);
+        metrics.put("bytesWritten", records * RECORD_SIZE);
+        metrics.put("segmentsOpened", segments);
+        metrics.put("forces", forces);
+        metrics.put("lastForceMicros", lastForceMicros);
+        metrics.put("maxForceMicros", maxForceMicros);
+        metrics.put("errors", errors);
+        return metrics;
+    }
+}
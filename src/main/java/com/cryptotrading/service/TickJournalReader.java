@@ -0,0 +1,168 @@
+package com.cryptotrading.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Scans {@link TickJournal} segments for a time range.
+ *
+ * <p>Records are appended in receive order, so within a segment their timestamps only go
+ * backwards if the wall clock is stepped back. A scan binary-searches the first record at or
+ * after the start of the range with positional reads, then maps the segment read-only in
+ * windows of {@link #WINDOW_RECORDS} records and stops at the first record past the end of the
+ * range. Nothing but the symbol names of a segment is copied to the heap, and a segment can be
+ * read while it is being written.</p>
+ */
+public class TickJournalReader {
+    /** Records mapped at a time while scanning, about 3.5 MB. */
+    static final int WINDOW_RECORDS = 65_536;
+
+    /**
+     * Receives the ticks of a scan in journal order.
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        /**
+         * @param tick Reused for every record; copy what you keep
+         * @return false to stop the scan
+         */
+        boolean onTick(JournalTick tick);
+    }
+
+    private final Path directory;
+
+    public TickJournalReader(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Visits the ticks of one pair with {@code fromMillis <= timestamp <= toMillis}.
+     * @return Number of ticks visited
+     */
+    public long scan(String symbol, long fromMillis, long toMillis, Visitor visitor) throws IOException {
+        return scanRange(symbol, fromMillis, toMillis, visitor);
+    }
+
+    /**
+     * Visits the ticks of all pairs with {@code fromMillis <= timestamp <= toMillis}, in the
+     * order they were journaled.
+     * @return Number of ticks visited
+     */
+    public long scan(long fromMillis, long toMillis, Visitor visitor) throws IOException {
+        return scanRange(null, fromMillis, toMillis, visitor);
+    }
+
+    private long scanRange(String symbol, long fromMillis, long toMillis, Visitor visitor) throws IOException {
+        JournalTick tick = new JournalTick();
+        ByteBuffer probe = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        long visited = 0;
+        long lastDay = Math.floorDiv(toMillis, TickJournal.MILLIS_PER_DAY);
+        for (long day = Math.floorDiv(fromMillis, TickJournal.MILLIS_PER_DAY); day <= lastDay; day++) {
+            Path path = TickJournal.segmentPath(directory, day);
+            if (!Files.exists(path)) {
+                continue;
+            }
+            long result = scanSegment(path, day, symbol, fromMillis, toMillis, visitor, tick, probe);
+            if (result < 0) {
+                return visited - result - 1;
+            }
+            visited += result;
+        }
+        return visited;
+    }
+
+    /**
+     * @return Ticks visited, or {@code -(visited + 1)} if the visitor stopped the scan
+     */
+    private long scanSegment(Path path, long day, String symbol, long fromMillis, long toMillis,
+                             Visitor visitor, JournalTick tick, ByteBuffer probe) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < TickJournal.HEADER_SIZE) {
+                return 0;
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, TickJournal.HEADER_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if ((long) TickJournal.HEADER_LONGS.getAcquire(header, TickJournal.MAGIC_OFFSET) != TickJournal.MAGIC) {
+                return 0;
+            }
+            TickJournal.checkHeader(header, path);
+            long count = (long) TickJournal.HEADER_LONGS.getAcquire(header, TickJournal.COUNT_OFFSET);
+            Path symbolsPath = TickJournal.symbolsPath(directory, day);
+            String[] names = TickJournal.readSymbols(symbolsPath);
+            int wanted = symbol == null ? -1 : indexOf(names, symbol);
+            if (symbol != null && wanted < 0) {
+                return 0;
+            }
+            long visited = 0;
+            long first = firstAtOrAfter(channel, count, fromMillis, probe);
+            for (long start = first; start < count; start += WINDOW_RECORDS) {
+                int records = (int) Math.min(WINDOW_RECORDS, count - start);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY,
+                    TickJournal.HEADER_SIZE + start * TickJournal.RECORD_SIZE, (long) records * TickJournal.RECORD_SIZE);
+                window.order(ByteOrder.LITTLE_ENDIAN);
+                for (int i = 0; i < records; i++) {
+                    int at = i * TickJournal.RECORD_SIZE;
+                    long timestamp = window.getLong(at + TickJournal.TIMESTAMP);
+                    if (timestamp > toMillis) {
+                        return visited;
+                    }
+                    int segmentId = window.getInt(at + TickJournal.SYMBOL);
+                    if (timestamp < fromMillis || (wanted >= 0 && segmentId != wanted)) {
+                        continue;
+                    }
+                    if (segmentId >= names.length) {
+                        // Symbol added after the names were read
+                        names = TickJournal.readSymbols(symbolsPath);
+                    }
+                    tick.symbol = segmentId < names.length ? names[segmentId] : null;
+                    tick.timestamp = timestamp;
+                    tick.receivedNanos = window.getLong(at + TickJournal.RECEIVED);
+                    tick.last = window.getDouble(at + TickJournal.LAST);
+                    tick.bid = window.getDouble(at + TickJournal.BID);
+                    tick.ask = window.getDouble(at + TickJournal.ASK);
+                    tick.volume = window.getDouble(at + TickJournal.VOLUME);
+                    visited++;
+                    if (!visitor.onTick(tick)) {
+                        return -visited - 1;
+                    }
+                }
+            }
+            return visited;
+        }
+    }
+
+    /**
+     * Binary search for the first record whose timestamp is at or after {@code fromMillis}.
+     */
+    private static long firstAtOrAfter(FileChannel channel, long count, long fromMillis, ByteBuffer probe)
+            throws IOException {
+        long low = 0;
+        long high = count;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            probe.clear();
+            channel.read(probe, TickJournal.HEADER_SIZE + mid * TickJournal.RECORD_SIZE + TickJournal.TIMESTAMP);
+            if (probe.getLong(0) < fromMillis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int indexOf(String[] names, String symbol) {
+        for (int i = 0; i < names.length; i++) {
+            if (symbol.equals(names[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,231 @@
+package com.cryptotrading.service;
+
+import com.cryptotrading.websocket.CryptoWebSocketEndpoint;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Hands decoded ticks from the Kraken ingest thread to independent consumer stages.
+ *
+ * <p>The ingest thread only decodes and calls {@link #publish}; the price table update
+ * ({@code state}) and client broadcast ({@code fanout}) each run on their own thread with
+ * their own sequence, so a slow browser delays only the fan-out stage. When a
+ * {@link CandleEngine} is present a {@code candles} stage folds ticks into bars and streams
+ * closed bars to candle subscribers, and when the {@link TickJournal} is enabled a
+ * {@code journal} stage appends every tick from {@link #setJournalFrom} on to it. Further stages (analytics) can be attached
+ * with {@link #addStage}.</p>
+ */
+@Component
+public class TickPipeline {
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final PriceTable priceTable;
+    private final RingBuffer<TickEvent> ringBuffer;
+    private final List<Stage> stages = new CopyOnWriteArrayList<>();
+    private CandleEngine candleEngine;
+    private TickJournal tickJournal;
+    // First sequence the journal stage appends; ticks before it are another instance's to journal
+    private volatile long journalFrom;
+
+    public TickPipeline(PriceTable priceTable) {
+        this(priceTable, DEFAULT_BUFFER_SIZE);
+    }
+
+    @Autowired
+    public TickPipeline(PriceTable priceTable,
+                        @Value("${market-data.pipeline.buffer-size:8192}") int bufferSize) {
+        this.priceTable = priceTable;
+        this.ringBuffer = new RingBuffer<>(bufferSize, TickEvent::new);
+    }
+
+    @Autowired(required = false)
+    public void setCandleEngine(CandleEngine candleEngine) {
+        this.candleEngine = candleEngine;
+    }
+
+    @Autowired(required = false)
+    public void setTickJournal(TickJournal tickJournal) {
+        this.tickJournal = tickJournal;
+    }
+
+    @PostConstruct
+    public void start() {
+        addStage("state", (event, sequence, endOfBatch) ->
+            priceTable.update(event.symbolId, event.last, event.open, event.change24h,
+                event.bid, event.ask, event.volume, event.timestamp));
+        addStage("fanout", (event, sequence, endOfBatch) ->
+            CryptoWebSocketEndpoint.broadcastPriceUpdate(event.symbolId, event.symbol, event.last, event.change24h));
+        if (candleEngine != null) {
+            addStage("candles", (event, sequence, endOfBatch) -> {
+                int rolled = candleEngine.onTick(event.symbolId, event.last, event.volumeToday, event.timestamp);
+                if (rolled != 0) {
+                    CryptoWebSocketEndpoint.broadcastCandles(event.symbolId, event.symbol, rolled);
+                }
+            });
+        }
+        if (tickJournal != null && tickJournal.isEnabled()) {
+            addStage("journal", (event, sequence, endOfBatch) -> {
+                if (sequence < journalFrom) {
+                    return;
+                }
+                tickJournal.append(event.symbolId, event.symbol, event.timestamp, event.receivedNanos,
+                    event.last, event.bid, event.ask, event.volume);
+                if (endOfBatch) {
+                    tickJournal.onBatchEnd();
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        stages.forEach(stage -> stage.consumer.halt());
+        stages.clear();
+    }
+
+    /**
+     * Attaches a consumer stage running on its own thread. The stage sees every tick published
+     * after this call.
+     */
+    public void addStage(String name, RingBuffer.EventHandler<TickEvent> handler) {
+        Stage stage = new Stage();
+        stage.consumer = new RingBufferConsumer<>("tick-pipeline-" + name, ringBuffer, (event, sequence, endOfBatch) -> {
+            handler.onEvent(event, sequence, endOfBatch);
+            long latency = System.nanoTime() - event.receivedNanos;
+            stage.latency.record(latency);
+            if (endOfBatch) {
+                stage.lastLatencyNanos = latency;
+                if (latency > stage.maxLatencyNanos) {
+                    stage.maxLatencyNanos = latency;
+                }
+            }
+        });
+        stages.add(stage);
+        stage.consumer.start();
+    }
+
+    /**
+     * Copies a decoded tick into the next ring slot and publishes it. Synchronized so that a
+     * reconnecting client thread can never interleave with the previous one; the lock is
+     * uncontended in steady state.
+     */
+    public synchronized void publish(DecodedTick tick, int symbolId, double open, double change24h,
+                                     long timestamp, long receivedNanos) {
+        long sequence = ringBuffer.next();
+        ringBuffer.get(sequence).set(tick, symbolId, open, change24h, timestamp, receivedNanos);
+        ringBuffer.publish(sequence);
+    }
+
+    /**
+     * Makes the journal stage skip ticks published before the sequence, e.g. those a price bus
+     * follower republishes while the leader journals them. Pass {@link Long#MAX_VALUE} to stop
+     * journaling until the next call.
+     */
+    public void setJournalFrom(long sequence) {
+        this.journalFrom = sequence;
+    }
+
+    /**
+     * @return Number of ticks published so far; the next tick gets this sequence
+     */
+    public long getPublished() {
+        return ringBuffer.getCursor() + 1;
+    }
+
+    public PriceTable getPriceTable() {
+        return priceTable;
+    }
+
+    /**
+     * Clears the latency statistics of every stage, e.g. when a replay starts at a new speed.
+     */
+    public void resetLatency() {
+        for (Stage stage : stages) {
+            stage.latency.reset();
+            stage.maxLatencyNanos = 0;
+        }
+    }
+
+    /**
+     * Latency percentiles of one stage, measured from frame receipt to the end of the stage.
+     * @param quantile Between 0 and 1
+     * @return Latency in nanoseconds, or -1 if there is no stage with that name
+     */
+    public long getLatencyNanos(String name, double quantile) {
+        for (Stage stage : stages) {
+            if (stage.consumer.getName().equals("tick-pipeline-" + name)) {
+                return stage.latency.percentile(quantile);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Number of ticks a stage has completed, or -1 if there is no stage with that name
+     */
+    public long getProcessed(String name) {
+        for (Stage stage : stages) {
+            if (stage.consumer.getName().equals("tick-pipeline-" + name)) {
+                return stage.consumer.getSequence().get() + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Queue depth, producer back-pressure and per-stage lag and latency
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("capacity", ringBuffer.getCapacity());
+        metrics.put("published", getPublished());
+        metrics.put("depth", ringBuffer.getDepth());
+        metrics.put("producerWaits", ringBuffer.getProducerWaits());
+        List<Map<String, Object>> stageMetrics = new ArrayList<>();
+        for (Stage stage : stages) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("name", stage.consumer.getName());
+            entry.put("sequence", stage.consumer.getSequence().get());
+            entry.put("lag", stage.consumer.getLag());
+            entry.put("errors", stage.consumer.getErrors());
+            entry.put("lastLatencyMicros", stage.lastLatencyNanos / 1_000);
+            entry.put("maxLatencyMicros", stage.maxLatencyNanos / 1_000);
+            entry.put("p50LatencyMicros", stage.latency.percentile(0.50) / 1_000);
+            entry.put("p99LatencyMicros", stage.latency.percentile(0.99) / 1_000);
+            entry.put("p999LatencyMicros", stage.latency.percentile(0.999) / 1_000);
+            stageMetrics.add(entry);
+        }
+        metrics.put("stages", stageMetrics);
+        return metrics;
+    }
+
+    /**
+     * Blocks until every stage has processed everything published so far.
+     * @return false if the timeout elapsed first
+     */
+    public boolean awaitDrained(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (ringBuffer.getDepth() > 0) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    private static class Stage {
+        RingBufferConsumer<TickEvent> consumer;
+        final LatencyHistogram latency = new LatencyHistogram();
+        volatile long lastLatencyNanos;
+        volatile long maxLatencyNanos;
+    }
+}
@@ -0,0 +1,314 @@
+package com.cryptotrading.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.java_websocket.WebSocket;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Local stand-in for the Kraken WebSocket API that plays back ticks recorded by the
+ * {@link TickJournal}, so {@code kraken.ws.url} can point at it and the application decodes and
+ * publishes the recording exactly like a live feed.
+ *
+ * <p>Subscriptions are confirmed like Kraken does and every recorded tick of a subscribed pair
+ * is sent as a v1 {@code ticker} frame. A pass starts when the first connection subscribes to
+ * tickers and can be restarted with {@link #replay(double)}. Ticks are paced by their recorded
+ * timestamps divided by the speed factor; a speed of 0 sends as fast as the clients read, only
+ * waiting when a client's send buffer is not drained every {@link #MAX_SPEED_BATCH} frames.</p>
+ */
+public class TickReplayServer extends WebSocketServer {
+    private static final Logger log = LoggerFactory.getLogger(TickReplayServer.class);
+    static final int MAX_SPEED_BATCH = 256;
+
+    private final TickJournalReader reader;
+    private final long fromMillis;
+    private final long toMillis;
+    private final boolean loop;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final AtomicInteger channelIds = new AtomicInteger();
+    private final Map<String, Integer> channels = new ConcurrentHashMap<>();
+    private final StringBuilder frame = new StringBuilder(256);
+    private volatile double speed;
+    private volatile Thread player;
+
+    private volatile boolean running;
+    private volatile long passes;
+    private volatile long ticksSent;
+    private volatile long passStartNanos;
+    private volatile long passEndNanos;
+    private volatile long passTicks;
+    private volatile long recordedSpanMillis;
+    private volatile long maxBehindMicros;
+
+    /**
+     * @param speed Playback speed relative to the recording, 0 for as fast as possible
+     */
+    public TickReplayServer(InetSocketAddress address, TickJournalReader reader, long fromMillis, long toMillis,
+                            double speed, boolean loop) {
+        super(address);
+        if (speed < 0) {
+            throw new IllegalArgumentException("Replay speed must not be negative: " + speed);
+        }
+        this.reader = reader;
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+        this.speed = speed;
+        this.loop = loop;
+        setReuseAddr(true);
+    }
+
+    /**
+     * Starts the server and waits until it accepts connections.
+     */
+    public TickReplayServer startAndWait() throws InterruptedException {
+        start();
+        if (!started.await(5, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Tick replay server did not start on port " + getPort());
+        }
+        return this;
+    }
+
+    public String getUrl() {
+        return "ws://localhost:" + getPort();
+    }
+
+    /**
+     * Stops the current pass, if any, and plays the recording again at a new speed.
+     */
+    public synchronized void replay(double newSpeed) {
+        if (newSpeed < 0) {
+            throw new IllegalArgumentException("Replay speed must not be negative: " + newSpeed);
+        }
+        stopPlayer();
+        speed = newSpeed;
+        startPlayer();
+    }
+
+    /**
+     * Blocks until the current pass has sent every tick.
+     * @return false if the timeout elapsed first
+     */
+    public boolean awaitPass(long timeoutMillis) throws InterruptedException {
+        Thread current = player;
+        if (current != null) {
+            current.join(timeoutMillis);
+            return !current.isAlive();
+        }
+        return true;
+    }
+
+    private synchronized void startPlayer() {
+        if (player != null && player.isAlive()) {
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(this::play, "tick-replay");
+        thread.setDaemon(true);
+        player = thread;
+        thread.start();
+    }
+
+    private synchronized void stopPlayer() {
+        running = false;
+        Thread current = player;
+        if (current != null) {
+            current.interrupt();
+            try {
+                current.join(5_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        player = null;
+    }
+
+    private void play() {
+        do {
+            passes++;
+            passTicks = 0;
+            maxBehindMicros = 0;
+            passStartNanos = System.nanoTime();
+            passEndNanos = 0;
+            long[] firstTimestamp = {Long.MIN_VALUE};
+            long[] lastTimestamp = {0};
+            double passSpeed = speed;
+            try {
+                reader.scan(fromMillis, toMillis, tick -> {
+                    if (firstTimestamp[0] == Long.MIN_VALUE) {
+                        firstTimestamp[0] = tick.getTimestamp();
+                    }
+                    lastTimestamp[0] = tick.getTimestamp();
+                    if (passSpeed > 0) {
+                        pace((long) ((tick.getTimestamp() - firstTimestamp[0]) * 1_000_000L / passSpeed));
+                    } else if (passTicks % MAX_SPEED_BATCH == 0) {
+                        awaitDrained();
+                    }
+                    send(tick);
+                    return running;
+                });
+            } catch (IOException e) {
+                log.error("Failed to read the tick journal for replay", e);
+                running = false;
+            }
+            passEndNanos = System.nanoTime();
+            recordedSpanMillis = firstTimestamp[0] == Long.MIN_VALUE ? 0 : lastTimestamp[0] - firstTimestamp[0];
+            log.info("Replayed {} ticks at {} in {} ms", passTicks, passSpeed == 0 ? "max speed" : passSpeed + "x",
+                (passEndNanos - passStartNanos) / 1_000_000);
+        } while (running && loop);
+    }
+
+    private void pace(long offsetNanos) {
+        long target = passStartNanos + offsetNanos;
+        long now = System.nanoTime();
+        if (now < target) {
+            while (running && (now = System.nanoTime()) < target) {
+                LockSupport.parkNanos(target - now);
+            }
+        } else {
+            long behind = (now - target) / 1_000;
+            if (behind > maxBehindMicros) {
+                maxBehindMicros = behind;
+            }
+        }
+    }
+
+    private void awaitDrained() {
+        for (WebSocket connection : getConnections()) {
+            while (running && connection.isOpen() && connection.hasBufferedData()) {
+                LockSupport.parkNanos(10_000);
+            }
+        }
+    }
+
+    private void send(JournalTick tick) {
+        String pair = tick.getSymbol();
+        Integer channelId = channels.get(pair);
+        if (channelId == null) {
+            return;
+        }
+        frame.setLength(0);
+        frame.append('[').append(channelId)
+            .append(",{\"a\":[\"").append(tick.getAsk()).append("\",0,\"0\"]")
+            .append(",\"b\":[\"").append(tick.getBid()).append("\",0,\"0\"]")
+            .append(",\"c\":[\"").append(tick.getLast()).append("\",\"0\"]")
+            .append(",\"v\":[\"").append(tick.getVolume()).append("\",\"").append(tick.getVolume()).append("\"]")
+            .append("},\"ticker\",\"").append(pair).append("\"]");
+        String message = frame.toString();
+        boolean sent = false;
+        for (WebSocket connection : getConnections()) {
+            Set<String> pairs = connection.getAttachment();
+            if (pairs != null && pairs.contains(pair) && connection.isOpen()) {
+                connection.send(message);
+                sent = true;
+            }
+        }
+        if (sent) {
+            passTicks++;
+            ticksSent++;
+        }
+    }
+
+    @Override
+    public void onOpen(WebSocket conn, ClientHandshake handshake) {
+        conn.setAttachment(ConcurrentHashMap.newKeySet());
+    }
+
+    @Override
+    public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+    }
+
+    @Override
+    public void onMessage(WebSocket conn, String message) {
+        JsonNode request;
+        try {
+            request = objectMapper.readTree(message);
+        } catch (IOException e) {
+            conn.send("{\"event\":\"error\",\"errorMessage\":\"Malformed request\"}");
+            return;
+        }
+        String event = request.path("event").asText();
+        if ("ping".equals(event)) {
+            conn.send("{\"event\":\"pong\"}");
+            return;
+        }
+        if (!"subscribe".equals(event) && !"unsubscribe".equals(event)) {
+            return;
+        }
+        boolean subscribe = "subscribe".equals(event);
+        String channel = request.path("subscription").path("name").asText();
+        Set<String> pairs = conn.getAttachment();
+        for (JsonNode node : request.path("pair")) {
+            String pair = node.asText();
+            int channelId = channels.computeIfAbsent(channel + ":" + pair, key -> channelIds.incrementAndGet());
+            if ("ticker".equals(channel)) {
+                channels.putIfAbsent(pair, channelId);
+                if (subscribe) {
+                    pairs.add(pair);
+                } else {
+                    pairs.remove(pair);
+                }
+            }
+            // Other channels are confirmed so the client settles, but the journal has no data for them
+            conn.send("{\"channelID\":" + channelId + ",\"channelName\":\"" + channel
+                + "\",\"event\":\"subscriptionStatus\",\"pair\":\"" + pair + "\",\"status\":\""
+                + (subscribe ? "subscribed" : "unsubscribed") + "\",\"subscription\":"
+                + request.path("subscription") + "}");
+        }
+        if (subscribe && "ticker".equals(channel)) {
+            startPlayer();
+        }
+    }
+
+    @Override
+    public void onError(WebSocket conn, Exception ex) {
+        log.warn("Tick replay connection error", ex);
+    }
+
+    @Override
+    public void onStart() {
+        started.countDown();
+        log.info("Tick replay server listening on {}", getUrl());
+    }
+
+    @Override
+    public void stop(int timeout) throws InterruptedException {
+        stopPlayer();
+        super.stop(timeout);
+    }
+
+    /**
+     * @return Speed, ticks sent and sustained send rate of the current or last pass
+     */
+    public Map<String, Object> getMetrics() {
+        long start = passStartNanos;
+        long end = passEndNanos == 0 ? System.nanoTime() : passEndNanos;
+        long elapsedNanos = start == 0 ? 0 : end - start;
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("url", getUrl());
+        metrics.put("speed", speed);
+        metrics.put("playing", player != null && player.isAlive());
+        metrics.put("passes", passes);
+        metrics.put("ticksSent", ticksSent);
+        metrics.put("passTicks", passTicks);
+        metrics.put("passMillis", elapsedNanos / 1_000_000);
+        metrics.put("recordedSpanMillis", recordedSpanMillis);
+        metrics.put("ticksPerSecond", elapsedNanos == 0 ? 0 : (long) (passTicks * 1e9 / elapsedNanos));
+        metrics.put("maxBehindMicros", maxBehindMicros);
+        return metrics;
+    }
+}
@@ -0,0 +1,114 @@
+package com.cryptotrading.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs a {@link TickReplayServer} inside the application when {@code replay.enabled} is set.
+ *
+ * <p>Point {@code kraken.ws.url} at {@code ws://localhost:<replay.port>} and the recorded ticks
+ * go through the same decoder, pipeline and WebSocket broadcast as live data. The metrics
+ * combine the replay's send rate with the throughput and receive-to-broadcast latency of the
+ * pipeline's {@code fanout} stage, which shows where client broadcasting saturates as the
+ * speed is raised.</p>
+ */
+@Component
+public class TickReplayService {
+    private static final Logger log = LoggerFactory.getLogger(TickReplayService.class);
+
+    @Value("${replay.enabled:false}")
+    private boolean enabled;
+
+    @Value("${replay.port:9001}")
+    private int port;
+
+    @Value("${replay.directory:${market-data.journal.directory:data/journal}}")
+    private String directory;
+
+    @Value("${replay.from:}")
+    private String from;
+
+    @Value("${replay.to:}")
+    private String to;
+
+    @Value("${replay.speed:1.0}")
+    private double speed;
+
+    @Value("${replay.loop:false}")
+    private boolean loop;
+
+    @Autowired
+    private TickPipeline tickPipeline;
+
+    private TickReplayServer server;
+    private long fanoutProcessedAtStart;
+
+    @PostConstruct
+    public void start() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        long fromMillis = from.isEmpty() ? 0 : Instant.parse(from).toEpochMilli();
+        long toMillis = to.isEmpty() ? System.currentTimeMillis() : Instant.parse(to).toEpochMilli();
+        server = new TickReplayServer(new InetSocketAddress("localhost", port),
+            new TickJournalReader(Paths.get(directory)), fromMillis, toMillis, speed, loop);
+        fanoutProcessedAtStart = tickPipeline.getProcessed("fanout");
+        server.startAndWait();
+        log.info("Replaying ticks from {} at {}; set kraken.ws.url={} to feed them to the application",
+            directory, speed == 0 ? "max speed" : speed + "x", server.getUrl());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (server != null) {
+            server.stop(1000);
+        }
+    }
+
+    public boolean isEnabled() {
+        return server != null;
+    }
+
+    /**
+     * Plays the recording again from the start at a new speed and clears the pipeline's
+     * latency statistics so the metrics describe this run only.
+     * @param newSpeed Speed relative to the recording, 0 for as fast as possible
+     * @throws IllegalStateException if replay is not enabled
+     */
+    public synchronized void replay(double newSpeed) {
+        if (server == null) {
+            throw new IllegalStateException("Replay is not enabled");
+        }
+        tickPipeline.resetLatency();
+        fanoutProcessedAtStart = tickPipeline.getProcessed("fanout");
+        server.replay(newSpeed);
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", server != null);
+        if (server == null) {
+            return metrics;
+        }
+        Map<String, Object> replay = server.getMetrics();
+        metrics.putAll(replay);
+        long passMillis = (Long) replay.get("passMillis");
+        long broadcast = tickPipeline.getProcessed("fanout") - fanoutProcessedAtStart;
+        metrics.put("ticksBroadcast", broadcast);
+        metrics.put("broadcastPerSecond", passMillis == 0 ? 0 : broadcast * 1000 / passMillis);
+        metrics.put("p50LatencyMicros", tickPipeline.getLatencyNanos("fanout", 0.50) / 1_000);
+        metrics.put("p99LatencyMicros", tickPipeline.getLatencyNanos("fanout", 0.99) / 1_000);
+        metrics.put("p999LatencyMicros", tickPipeline.getLatencyNanos("fanout", 0.999) / 1_000);
+        return metrics;
+    }
+}
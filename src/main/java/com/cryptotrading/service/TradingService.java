@@ -1,162 +1,376 @@
 package com.cryptotrading.service;
 
+import com.cryptotrading.model.CostBasisMethod;
+import com.cryptotrading.model.FixedPoint;
+import com.cryptotrading.model.Position;
 import com.cryptotrading.model.Transaction;
+import com.cryptotrading.model.UserPortfolio;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Executes trades against paper-trading accounts addressed by account ID.
+ *
+ * <p>Each account is a {@link UserPortfolio}, created with the initial balance by its first
+ * trade; reading or resetting an account that has never traded returns the initial state
+ * without creating it. At most {@code trading.accounts.max} accounts are created, so client
+ * chosen IDs cannot grow the map without bound. Trades, resets and state reads lock only the
+ * account they touch, so trades on different
+ * accounts run in parallel while trades on one account stay linearizable. Methods without an
+ * account ID use {@link #DEFAULT_ACCOUNT}.</p>
+ *
+ * <p>Cash, quantities and cost bases are fixed-point {@code long}s. An amount is rounded down to
+ * the pair's quantity decimals from {@link PairPrecision} and a price half-even to
+ * {@link FixedPoint#PRICE_DECIMALS}; a buy's cost is rounded up and a sale's proceeds down to
+ * the pair's cost decimals. Everything after that is exact, so balances never drift however
+ * many trades an account makes.</p>
+ *
+ * <p>Each buy adds a lot to the position. Realized profit/loss is the proceeds less the cost of
+ * the lots sold, taken in the order set by {@code trading.cost-basis} (FIFO, LIFO or HIFO); a
+ * lot sold in part keeps the rest of its cost.</p>
+ *
+ * <p>Market orders from clients ({@link #executeMarketTrade}, {@link #marketTrade}) fill at the
+ * live quote in the {@link PriceTable}: a buy at Kraken's ask, a sale at its bid. The price a
+ * client sends is only what it expects to pay; the order is rejected if the quote is worse by
+ * more than the slippage tolerance, or older than {@code trading.fills.max-quote-age-ms}.
+ * Without a price table the client's price is used as is.</p>
+ */
 @Service
 @Slf4j
 public class TradingService {
-    private static final double INITIAL_BALANCE = 10000.00;
-    private double accountBalance = INITIAL_BALANCE;
-    private final Map<String, Double> portfolio = new ConcurrentHashMap<>();
-    private final List<Transaction> transactions = Collections.synchronizedList(new ArrayList<>());
-    private final Map<String, List<Double>> purchasePrices = new ConcurrentHashMap<>();
+    public static final String DEFAULT_ACCOUNT = "default";
+    private final Map<String, UserPortfolio> accounts = new ConcurrentHashMap<>();
+    private final PairPrecision pairPrecision;
+    private final CostBasisMethod costBasisMethod;
+    // Null when there is no live feed to price market orders from
+    private final PriceTable priceTable;
+    private final long maxQuoteAgeMillis;
+    private final double defaultMaxSlippage;
+    private final int maxAccounts;
+    private final ThreadLocal<PriceSnapshot> quotes = ThreadLocal.withInitial(PriceSnapshot::new);
 
-    public synchronized Map<String, Object> executeTrade(String type, String symbol, double amount, double price) {
-        validateTradeParameters(type, amount);
+    public TradingService() {
+        this(new PairPrecision());
+    }
 
-        double total = amount * price;
+    public TradingService(PairPrecision pairPrecision) {
+        this(pairPrecision, CostBasisMethod.FIFO);
+    }
 
-        if ("BUY".equals(type)) {
-            validateSufficientFunds(total);
-            executeBuy(symbol, amount, price);
-        } else {
-            validateSufficientCryptoBalance(symbol, amount);
-            executeSell(symbol, amount, price);
-        }
+    public TradingService(PairPrecision pairPrecision, CostBasisMethod costBasisMethod) {
+        this(pairPrecision, costBasisMethod, null, 0, 0, Integer.MAX_VALUE);
+    }
 
-        return getUpdatedState();
+    @Autowired
+    public TradingService(PairPrecision pairPrecision,
+                          @Value("${trading.cost-basis:FIFO}") CostBasisMethod costBasisMethod,
+                          PriceTable priceTable,
+                          @Value("${trading.fills.max-quote-age-ms:30000}") long maxQuoteAgeMillis,
+                          @Value("${trading.fills.max-slippage:0.01}") double defaultMaxSlippage,
+                          @Value("${trading.accounts.max:100000}") int maxAccounts) {
+        this.pairPrecision = pairPrecision;
+        this.costBasisMethod = costBasisMethod;
+        this.priceTable = priceTable;
+        this.maxQuoteAgeMillis = maxQuoteAgeMillis;
+        this.defaultMaxSlippage = defaultMaxSlippage;
+        this.maxAccounts = maxAccounts;
     }
 
-    private void validateTradeParameters(String type, double amount) {
-        if (amount <= 0) {
-            throw new IllegalArgumentException("Amount must be greater than 0");
-        }
-        if (!"BUY".equals(type) && !"SELL".equals(type)) {
-            throw new IllegalArgumentException("Invalid trade type");
+    /**
+     * Outcome of one trade: the fill and the account figures it changed.
+     * @param amount Amount traded, after rounding to the pair's quantity decimals
+     * @param holding Amount of the symbol held after the trade
+     */
+    public record Fill(String type, String symbol, double amount, double price, double total,
+                       double profitLoss, double balance, double holding) {
+    }
+
+    public Map<String, Object> executeTrade(String type, String symbol, double amount, double price) {
+        return executeTrade(DEFAULT_ACCOUNT, type, symbol, amount, price);
+    }
+
+    public Map<String, Object> executeTrade(String accountId, String type, String symbol, double amount, double price) {
+        UserPortfolio account = account(accountId);
+        synchronized (account) {
+            trade(account, type, symbol, amount, price);
+            return stateOf(account);
         }
     }
 
-    private void validateSufficientFunds(double total) {
-        if (total > accountBalance) {
-            throw new IllegalArgumentException("Insufficient funds");
+    public Fill trade(String type, String symbol, double amount, double price) {
+        return trade(DEFAULT_ACCOUNT, type, symbol, amount, price);
+    }
+
+    /**
+     * Executes a trade like {@link #executeTrade} but returns only the fill and the new balance
+     * instead of copying the whole account state.
+     * @throws IllegalArgumentException if the trade is invalid or not covered by the account
+     */
+    public Fill trade(String accountId, String type, String symbol, double amount, double price) {
+        UserPortfolio account = account(accountId);
+        synchronized (account) {
+            return trade(account, type, symbol, amount, price);
         }
     }
 
-    private void validateSufficientCryptoBalance(String symbol, double amount) {
-        if (amount > portfolio.getOrDefault(symbol, 0.0)) {
-            throw new IllegalArgumentException("Insufficient cryptocurrency balance");
+    /**
+     * Executes a market order at the live quote and returns the account state.
+     * @param expectedPrice Price the client expects to fill at, or NaN to accept any live quote
+     * @param maxSlippage Fraction by which the fill may be worse than the expected price, e.g.
+     *                    0.005; NaN for {@code trading.fills.max-slippage}
+     * @throws IllegalArgumentException if there is no fresh quote, the quote moved beyond the
+     *                                  tolerance, or the trade is invalid or not covered
+     */
+    public Map<String, Object> executeMarketTrade(String accountId, String type, String symbol, double amount,
+                                                  double expectedPrice, double maxSlippage) {
+        return executeTrade(accountId, type, symbol, amount, fillPrice(type, symbol, expectedPrice, maxSlippage));
+    }
+
+    /**
+     * Executes a market order like {@link #executeMarketTrade} but returns only the fill.
+     */
+    public Fill marketTrade(String accountId, String type, String symbol, double amount, double expectedPrice,
+                            double maxSlippage) {
+        return trade(accountId, type, symbol, amount, fillPrice(type, symbol, expectedPrice, maxSlippage));
+    }
+
+    /**
+     * @return The ask for a buy or the bid for a sale, or the expected price if there is no
+     * price table. Reads the quote without locking.
+     */
+    double fillPrice(String type, String symbol, double expectedPrice, double maxSlippage) {
+        boolean buy = "BUY".equals(type);
+        if (!buy && !"SELL".equals(type)) {
+            throw new IllegalArgumentException("Invalid trade type");
+        }
+        if (!Double.isNaN(expectedPrice) && !(expectedPrice > 0 && expectedPrice < Double.POSITIVE_INFINITY)) {
+            throw new IllegalArgumentException("Invalid amount or price");
+        }
+        if (!Double.isNaN(maxSlippage) && !(maxSlippage >= 0 && maxSlippage < 1)) {
+            throw new IllegalArgumentException("Slippage tolerance must be between 0 and 1");
+        }
+        if (priceTable == null) {
+            if (Double.isNaN(expectedPrice)) {
+                throw new IllegalArgumentException("Price is required without a live price feed");
+            }
+            return expectedPrice;
+        }
+        int symbolId = symbol == null ? -1 : priceTable.getSymbolRegistry().idOf(symbol);
+        PriceSnapshot quote = quotes.get();
+        if (symbolId < 0 || !priceTable.read(symbolId, quote)) {
+            throw new IllegalArgumentException("No live price for " + symbol);
+        }
+        // Only the side of the book the order trades against; never the last trade
+        double price = buy ? quote.ask : quote.bid;
+        if (!(price > 0)) {
+            throw new IllegalArgumentException("No live quote for " + symbol);
         }
+        if (System.currentTimeMillis() - quote.updatedAt > maxQuoteAgeMillis) {
+            throw new IllegalArgumentException("Price of " + symbol + " is stale");
+        }
+        if (!Double.isNaN(expectedPrice)) {
+            double tolerance = Double.isNaN(maxSlippage) ? defaultMaxSlippage : maxSlippage;
+            if (buy ? price > expectedPrice * (1 + tolerance) : price < expectedPrice * (1 - tolerance)) {
+                throw new IllegalArgumentException("Price of " + symbol + " moved beyond the slippage tolerance");
+            }
+        }
+        return price;
     }
 
-    private void executeBuy(String symbol, double amount, double price) {
-        double total = amount * price;
-        accountBalance -= total;
+    /**
+     * @return The account, created on first use; only trades call this. Callers lock it while
+     * using it
+     * @throws IllegalArgumentException if the account is new and the account limit is reached
+     */
+    UserPortfolio account(String accountId) {
+        UserPortfolio account = existing(accountId);
+        return account != null ? account : accounts.computeIfAbsent(accountId, this::open);
+    }
 
-        portfolio.merge(symbol, amount, Double::sum);
-        purchasePrices.computeIfAbsent(symbol, k -> new ArrayList<>()).add(price);
+    /**
+     * @return The account, or null if it has never traded
+     */
+    private UserPortfolio existing(String accountId) {
+        if (accountId == null || accountId.isEmpty()) {
+            throw new IllegalArgumentException("Account ID is required");
+        }
+        return accounts.get(accountId);
+    }
 
-        recordTransaction("BUY", symbol, amount, price, total);
+    private UserPortfolio open(String accountId) {
+        // Approximate under concurrent creation, which is enough to bound the map
+        if (accounts.size() >= maxAccounts) {
+            throw new IllegalArgumentException("Too many accounts");
+        }
+        return new UserPortfolio();
     }
 
-    private void executeSell(String symbol, double amount, double price) {
-        double total = amount * price;  // Total from selling
-        accountBalance += total;
+    private Fill trade(UserPortfolio account, String type, String symbol, double amount, double price) {
+        validateTradeParameters(type, amount, price);
+        try {
+            return execute(account, type, symbol, amount, price);
+        } catch (ArithmeticException e) {
+            // Thrown before the account is changed
+            throw new IllegalArgumentException("Amount or price is out of range");
+        }
+    }
 
-        double avgPurchasePrice = calculateAveragePurchasePrice(symbol, amount);
-        double profitLoss = (price - avgPurchasePrice) * amount;  // Calculate profit/loss per unit * amount
+    private Fill execute(UserPortfolio account, String type, String symbol, double amount, double price) {
+        PairPrecision.Decimals decimals = pairPrecision.of(symbol);
+        Position position = account.getPositions().get(symbol);
+        int quantityDecimals = position != null ? position.getQuantityDecimals() : decimals.quantity();
+        // Never trade more than asked for
+        long quantity = FixedPoint.toUnits(amount, quantityDecimals, RoundingMode.DOWN);
+        if (quantity == 0) {
+            throw new IllegalArgumentException("Amount is below the smallest lot of " + symbol);
+        }
+        long priceUnits = FixedPoint.toUnits(price, FixedPoint.PRICE_DECIMALS, RoundingMode.HALF_EVEN);
+        int dropDecimals = quantityDecimals + FixedPoint.PRICE_DECIMALS - decimals.cost();
 
-        updatePortfolio(symbol, amount);
-        recordTransaction("SELL", symbol, amount, price, total, profitLoss);
-        updatePurchasePrices(symbol, amount);
+        if ("BUY".equals(type)) {
+            // Buyers pay any fraction of the smallest cost unit, sellers forgo it
+            long cost = FixedPoint.multiply(quantity, priceUnits, dropDecimals, RoundingMode.CEILING);
+            long total = FixedPoint.rescale(cost, decimals.cost(), FixedPoint.CASH_DECIMALS, RoundingMode.UNNECESSARY);
+            validateSufficientFunds(account, total);
+            position = executeBuy(account, position, quantityDecimals, symbol, quantity, priceUnits, total);
+            return fill(account, type, symbol, position, quantity, priceUnits, total, 0);
+        }
+        validateSufficientCryptoBalance(position, quantity);
+        long proceeds = FixedPoint.multiply(quantity, priceUnits, dropDecimals, RoundingMode.FLOOR);
+        long total = FixedPoint.rescale(proceeds, decimals.cost(), FixedPoint.CASH_DECIMALS, RoundingMode.UNNECESSARY);
+        long profitLoss = executeSell(account, position, symbol, quantity, priceUnits, total);
+        return fill(account, type, symbol, position, quantity, priceUnits, total, profitLoss);
     }
 
-    private void updatePortfolio(String symbol, double amount) {
-        double newAmount = portfolio.merge(symbol, -amount, Double::sum);
-        if (newAmount <= 0) {
-            portfolio.remove(symbol);
-            purchasePrices.remove(symbol);
+    private void validateTradeParameters(String type, double amount, double price) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount must be greater than 0");
+        }
+        if (!"BUY".equals(type) && !"SELL".equals(type)) {
+            throw new IllegalArgumentException("Invalid trade type");
+        }
+        if (Double.isInfinite(amount) || !(price >= 0) || Double.isInfinite(price)) {
+            throw new IllegalArgumentException("Invalid amount or price");
         }
     }
 
-    private double calculateAveragePurchasePrice(String symbol, double amount) {
-        List<Double> prices = purchasePrices.get(symbol);
-        if (prices == null || prices.isEmpty()) {
-            return 0.0;
+    private void validateSufficientFunds(UserPortfolio account, long total) {
+        if (total > account.getCash()) {
+            throw new IllegalArgumentException("Insufficient funds");
         }
-        
-        // For FIFO, we only need the first price(s) that cover our amount
-        double totalPrice = 0.0;
-        int numPrices = 0;
-        
-        for (Double price : prices) {
-            if (numPrices < amount) {
-                double units = Math.min(1.0, amount - numPrices);
-                totalPrice += price * units;
-                numPrices += units;
-            }
+    }
+
+    private void validateSufficientCryptoBalance(Position position, long quantity) {
+        if (position == null || quantity > position.getQuantity()) {
+            throw new IllegalArgumentException("Insufficient cryptocurrency balance");
         }
-        
-        return totalPrice / amount;
-    }
-
-    private void updatePurchasePrices(String symbol, double amount) {
-        List<Double> prices = purchasePrices.get(symbol);
-        if (prices != null) {
-            double remainingToRemove = amount;
-            
-            while (remainingToRemove > 0 && !prices.isEmpty()) {
-                if (remainingToRemove >= 1.0) {
-                    prices.remove(0);  // Remove whole unit
-                    remainingToRemove -= 1.0;
-                } else {
-                    // Handle fractional unit
-                    double currentPrice = prices.get(0);
-                    double remainingFraction = 1.0 - remainingToRemove;
-                    if (remainingFraction > 0) {
-                        prices.set(0, currentPrice);  // Keep the price for remaining fraction
-                    } else {
-                        prices.remove(0);
-                    }
-                    remainingToRemove = 0;
-                }
-            }
+    }
+
+    private Position executeBuy(UserPortfolio account, Position position, int quantityDecimals, String symbol,
+                                long quantity, long priceUnits, long total) {
+        Position bought = position != null ? position : new Position(quantityDecimals, costBasisMethod);
+        // Throws on overflow before anything is changed
+        bought.buy(quantity, total);
+        account.setCash(account.getCash() - total);
+        if (position == null) {
+            account.getPositions().put(symbol, bought);
         }
+
+        recordTransaction(account, "BUY", symbol, bought, quantity, priceUnits, total, 0);
+        return bought;
     }
 
-    private void recordTransaction(String type, String symbol, double amount, double price, double total) {
-        recordTransaction(type, symbol, amount, price, total, 0.0);
+    /**
+     * @return Realized profit/loss in cash units: the proceeds less the cost of the lots sold
+     */
+    private long executeSell(UserPortfolio account, Position position, String symbol, long quantity,
+                             long priceUnits, long total) {
+        long cash = Math.addExact(account.getCash(), total);
+        long profitLoss = total - position.sell(quantity);
+        account.setCash(cash);
+        if (position.getQuantity() == 0) {
+            account.getPositions().remove(symbol);
+        }
+        recordTransaction(account, "SELL", symbol, position, quantity, priceUnits, total, profitLoss);
+        return profitLoss;
     }
 
-    private void recordTransaction(String type, String symbol, double amount, double price, double total, double profitLoss) {
-        transactions.add(Transaction.builder()
+    private void recordTransaction(UserPortfolio account, String type, String symbol, Position position,
+                                   long quantity, long priceUnits, long total, long profitLoss) {
+        account.getTransactions().add(Transaction.builder()
                 .timestamp(LocalDateTime.now())
                 .type(type)
                 .symbol(symbol)
-                .amount(amount)
-                .price(price)
-                .total(total)
-                .profitLoss(profitLoss)
+                .amount(FixedPoint.toDouble(quantity, position.getQuantityDecimals()))
+                .price(FixedPoint.toDouble(priceUnits, FixedPoint.PRICE_DECIMALS))
+                .total(cash(total))
+                .profitLoss(cash(profitLoss))
                 .build());
     }
 
+    private static Fill fill(UserPortfolio account, String type, String symbol, Position position, long quantity,
+                             long priceUnits, long total, long profitLoss) {
+        int quantityDecimals = position.getQuantityDecimals();
+        return new Fill(type, symbol, FixedPoint.toDouble(quantity, quantityDecimals),
+            FixedPoint.toDouble(priceUnits, FixedPoint.PRICE_DECIMALS), cash(total), cash(profitLoss),
+            cash(account.getCash()), FixedPoint.toDouble(position.getQuantity(), quantityDecimals));
+    }
+
+    private static double cash(long units) {
+        return FixedPoint.toDouble(units, FixedPoint.CASH_DECIMALS);
+    }
+
     public Map<String, Object> resetAccount() {
-        accountBalance = INITIAL_BALANCE;
-        portfolio.clear();
-        transactions.clear();
-        purchasePrices.clear();
-        return getUpdatedState();
+        return resetAccount(DEFAULT_ACCOUNT);
+    }
+
+    public Map<String, Object> resetAccount(String accountId) {
+        UserPortfolio account = existing(accountId);
+        if (account == null) {
+            return initialState();
+        }
+        synchronized (account) {
+            account.reset();
+            return stateOf(account);
+        }
     }
 
     public Map<String, Object> getUpdatedState() {
+        return getUpdatedState(DEFAULT_ACCOUNT);
+    }
+
+    public Map<String, Object> getUpdatedState(String accountId) {
+        UserPortfolio account = existing(accountId);
+        if (account == null) {
+            return initialState();
+        }
+        synchronized (account) {
+            return stateOf(account);
+        }
+    }
+
+    /**
+     * @return Number of accounts that have traded
+     */
+    public int getAccountCount() {
+        return accounts.size();
+    }
+
+    private static Map<String, Object> initialState() {
+        return stateOf(new UserPortfolio());
+    }
+
+    private static Map<String, Object> stateOf(UserPortfolio account) {
         Map<String, Object> state = new HashMap<>();
-        state.put("balance", accountBalance);
-        state.put("portfolio", new HashMap<>(portfolio));
-        state.put("transactions", new ArrayList<>(transactions));
+        state.put("balance", account.getBalance());
+        state.put("portfolio", account.getHoldings());
+        state.put("transactions", new ArrayList<>(account.getTransactions()));
         return state;
     }
-}
\ No newline at end of file
+}
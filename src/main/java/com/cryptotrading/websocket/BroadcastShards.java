@@ -0,0 +1,169 @@
+package com.cryptotrading.websocket;
+
+import com.cryptotrading.service.RingBuffer;
+import com.cryptotrading.service.RingBufferConsumer;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits the sessions into shards that each fan price updates out to their own sessions.
+ *
+ * <p>Every shard has its own {@link SubscriptionIndex}, and a new session joins the shard with
+ * the fewest sessions. Without broadcaster threads there is a single shard, walked on the
+ * publishing thread. With them, each shard has a dedicated thread following a shared
+ * {@link RingBuffer} of updates: publishing hands an update to every shard at once, and the
+ * shards fan it out to their sessions in parallel. A session belongs to one shard, so its
+ * updates are still queued in sequence order by one thread. A shard a full ring behind holds up
+ * the publisher, as a slow fan-out did before.</p>
+ */
+final class BroadcastShards {
+    static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Queues an update for the sessions of one shard.
+     */
+    @FunctionalInterface
+    interface FanOut {
+        /**
+         * @return Number of sessions the update was queued for
+         */
+        int deliver(SubscriptionIndex index, PriceDeltaLog.Delta delta);
+    }
+
+    private static final class Slot {
+        PriceDeltaLog.Delta delta;
+    }
+
+    private final SubscriptionIndex[] indexes;
+    private final FanOut fanOut;
+    // Null without broadcaster threads
+    private final RingBuffer<Slot> ringBuffer;
+    private final List<RingBufferConsumer<Slot>> broadcasters = new ArrayList<>();
+
+    /**
+     * @param threads Broadcaster threads, one per shard; 0 fans out on the publishing thread
+     */
+    BroadcastShards(int threads, FanOut fanOut) {
+        this.fanOut = fanOut;
+        this.indexes = new SubscriptionIndex[Math.max(1, threads)];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = new SubscriptionIndex();
+        }
+        if (threads == 0) {
+            ringBuffer = null;
+            return;
+        }
+        ringBuffer = new RingBuffer<>(BUFFER_SIZE, Slot::new);
+        for (SubscriptionIndex index : indexes) {
+            RingBufferConsumer<Slot> broadcaster = new RingBufferConsumer<>("ws-broadcast-" + broadcasters.size(),
+                ringBuffer, (slot, sequence, endOfBatch) -> fanOut.deliver(index, slot.delta));
+            broadcasters.add(broadcaster);
+            broadcaster.start();
+        }
+    }
+
+    /**
+     * Numbers the update in the log and fans it out. Synchronized so that updates reach every
+     * shard in sequence order; the lock is uncontended in steady state.
+     * @return Number of sessions the update was queued for, or 0 when broadcaster threads queue it
+     */
+    synchronized int publish(PriceDeltaLog log, int symbolId, String symbol, double price, double change24h) {
+        // Logged before the sessions are looked up: a session missing from the lookup reads it in its initial state
+        PriceDeltaLog.Delta delta = log.append(symbolId, symbol, price, change24h);
+        if (ringBuffer == null) {
+            return fanOut.deliver(indexes[0], delta);
+        }
+        long sequence = ringBuffer.next();
+        ringBuffer.get(sequence).delta = delta;
+        ringBuffer.publish(sequence);
+        return 0;
+    }
+
+    /**
+     * Adds the session to the shard with the fewest sessions.
+     */
+    void add(SessionOutbox outbox) {
+        // Not the publishing lock, so connecting never waits for a fan-out
+        synchronized (indexes) {
+            SubscriptionIndex smallest = indexes[0];
+            for (SubscriptionIndex index : indexes) {
+                if (index.getSessions() < smallest.getSessions()) {
+                    smallest = index;
+                }
+            }
+            smallest.add(outbox);
+        }
+    }
+
+    /**
+     * Moves a session of other shards into these, keeping its subscriptions.
+     */
+    void adopt(SessionOutbox outbox) {
+        SubscriptionIndex previous = outbox.index;
+        boolean allSymbols = outbox.allSymbols;
+        BitSet symbols = (BitSet) outbox.symbols.clone();
+        previous.remove(outbox);
+        add(outbox);
+        SubscriptionIndex index = outbox.index;
+        index.setAllSymbols(outbox, allSymbols);
+        for (int id = symbols.nextSetBit(0); id >= 0; id = symbols.nextSetBit(id + 1)) {
+            index.subscribe(outbox, id);
+        }
+    }
+
+    /**
+     * Stops the broadcaster threads; updates they have not fanned out yet are dropped.
+     */
+    void halt() {
+        broadcasters.forEach(RingBufferConsumer::halt);
+    }
+
+    int getThreads() {
+        return broadcasters.size();
+    }
+
+    /**
+     * @return Updates published but not yet fanned out by the slowest broadcaster
+     */
+    long getLag() {
+        long lag = 0;
+        for (RingBufferConsumer<Slot> broadcaster : broadcasters) {
+            lag = Math.max(lag, broadcaster.getLag());
+        }
+        return lag;
+    }
+
+    int getAllSymbolSessions() {
+        int sessions = 0;
+        for (SubscriptionIndex index : indexes) {
+            sessions += index.getAllSymbolSessions();
+        }
+        return sessions;
+    }
+
+    int getSymbolSubscriptions() {
+        int subscriptions = 0;
+        for (SubscriptionIndex index : indexes) {
+            subscriptions += index.getSymbolSubscriptions();
+        }
+        return subscriptions;
+    }
+
+    List<Map<String, Object>> getMetrics() {
+        List<Map<String, Object>> shards = new ArrayList<>();
+        for (int i = 0; i < indexes.length; i++) {
+            Map<String, Object> shard = new LinkedHashMap<>();
+            shard.put("sessions", indexes[i].getSessions());
+            if (i < broadcasters.size()) {
+                shard.put("lag", broadcasters.get(i).getLag());
+                shard.put("errors", broadcasters.get(i).getErrors());
+            }
+            shards.add(shard);
+        }
+        return shards;
+    }
+}
@@ -1,63 +1,494 @@
 package com.cryptotrading.websocket;
 
+import com.cryptotrading.service.CandleEngine;
+import com.cryptotrading.service.Candles;
+import com.cryptotrading.service.SymbolRegistry;
+import com.cryptotrading.service.TradingService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import jakarta.websocket.*;
 import jakarta.websocket.server.ServerEndpoint;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Streams prices and candles to browser clients.
+ *
+ * <p>Nothing is written to a client on the broadcasting thread: every message goes into the
+ * session's {@link SessionOutbox}, which conflates price updates per symbol and sends
+ * asynchronously, so a slow client only ever falls behind on its own updates.</p>
+ *
+ * <p>A client can ask for {@code PRICE_BATCH} frames instead of one frame per tick by passing
+ * {@code flushIntervalMs} with {@code SUBSCRIBE}. Sessions with the same interval form a group
+ * flushed by one task on a shared scheduler thread, so a price is never held back longer than
+ * the interval the client chose.</p>
+ *
+ * <p>A new session receives every symbol. {@code SUBSCRIBE} with a {@code symbols} list narrows
+ * it to those symbols and {@code UNSUBSCRIBE} removes symbols again; ticks are routed through a
+ * {@link SubscriptionIndex}, so their cost grows with the sessions interested in the symbol
+ * rather than with all connected sessions.</p>
+ *
+ * <p>Price updates are fanned out on the thread that publishes them, or, with
+ * {@code websocket.broadcast.threads} set, by that many broadcaster threads that each own a share
+ * of the sessions; see {@link BroadcastShards}.</p>
+ *
+ * <p>{@code SUBSCRIBE} with {@code "format": "binary"} switches a session's price updates to
+ * {@link PriceFrame} records. The session first receives a {@code SYMBOL_DICTIONARY} naming the
+ * symbol IDs, and more entries whenever a new symbol appears. Each tick is then encoded once into
+ * a buffer that all binary recipients share.</p>
+ *
+ * <p>Price updates carry one global, increasing {@code seq}. A new client starts with a
+ * {@code SNAPSHOT} of every symbol's latest price. A client that reconnects with
+ * {@code ?lastSeq=} instead gets the {@code DELTAS} since then from the {@link PriceDeltaLog},
+ * or a snapshot when those are no longer kept.</p>
+ *
+ * <p>With a {@code deadband}, a session is only sent a symbol's price once it has moved by the
+ * threshold since the last price it was sent, or once {@code maxSilenceMs} has passed; see
+ * {@link DeadbandFilter}.</p>
+ *
+ * <p>A {@link SessionSupervisor} runs on the same timer thread as the batch flushes. It warns
+ * about, slows down and finally disconnects clients that cannot keep up, and reaps sessions
+ * that stop answering pings.</p>
+ *
+ * <p>A client can also trade over the socket it already holds: a {@code TRADE} message with a
+ * client-chosen {@code id} is answered by a {@code TRADE_ACK} carrying only the fill and the
+ * new balance, or by a {@code TRADE_REJECT}, with the same {@code id}. Orders are executed in
+ * the order they arrive, and a client need not wait for one answer before sending the next.</p>
+ */
 @Component
 @ServerEndpoint(value = "/ws", configurator = WebSocketConfig.class)
 public class CryptoWebSocketEndpoint {
     private static final Logger log = LoggerFactory.getLogger(CryptoWebSocketEndpoint.class);
-    private static final CopyOnWriteArraySet<Session> sessions = new CopyOnWriteArraySet<>();
+    private static final Map<Session, SessionOutbox> outboxes = new ConcurrentHashMap<>();
+    // Replaced only when the number of broadcaster threads is configured
+    private static volatile BroadcastShards shards = new BroadcastShards(0, CryptoWebSocketEndpoint::fanOut);
+    private static volatile SymbolRegistry symbolRegistry;
+    private static final int SLOWEST_SESSIONS = 10;
+    // Totals of closed sessions, so the counters do not go backwards when clients leave
+    private static final AtomicLong closedSent = new AtomicLong();
+    private static final AtomicLong closedConflated = new AtomicLong();
+    private static final AtomicLong closedBatches = new AtomicLong();
+    private static final AtomicLong closedBatchedUpdates = new AtomicLong();
+    private static final AtomicLong closedSuppressed = new AtomicLong();
+    static final int MAX_SILENCE_MS = 3_600_000;
+    private static volatile PriceDeltaLog deltaLog = new PriceDeltaLog(PriceDeltaLog.DEFAULT_CAPACITY);
+    private static final AtomicLong snapshotsSent = new AtomicLong();
+    private static final AtomicLong resumes = new AtomicLong();
+    private static final AtomicLong resumeFallbacks = new AtomicLong();
+    static final int MIN_FLUSH_INTERVAL_MS = 10;
+    static final int MAX_FLUSH_INTERVAL_MS = 60_000;
+    // Batching sessions by flush interval; changed under the class lock, iterated by the timer
+    private static final Map<Integer, FlushGroup> flushGroups = new ConcurrentHashMap<>();
+    private static final StringBuilder flushFrame = new StringBuilder(4096);
+    // Runs batch flushes and supervision passes; created under the class lock on first use
+    private static ScheduledExecutorService timer;
+    private static volatile SessionSupervisor supervisor;
+    private static ScheduledFuture<?> supervision;
     private static final ObjectMapper objectMapper = new ObjectMapper();
-    private static final Map<String, Double> lastPrices = new ConcurrentHashMap<>();
+    private static final int DEFAULT_CANDLE_HISTORY = 100;
+    private static final CandleEngine.Interval[] INTERVALS = CandleEngine.Interval.values();
+    // Candle subscriptions by pair. Container threads add and remove them (SUBSCRIBE_CANDLES,
+    // UNSUBSCRIBE, session close) under the pair's compute lock, while the candles pipeline stage
+    // reads the copy-on-write sets without locking when broadcasting
+    private static final Map<String, Set<CandleSubscription>> candleSubscriptions = new ConcurrentHashMap<>();
+    private static final Candles broadcastCandles = new Candles();
+    private static volatile CandleEngine candleEngine;
+    private static volatile TradingService tradingService;
+    private static final AtomicLong tradesFilled = new AtomicLong();
+    private static final AtomicLong tradesRejected = new AtomicLong();
+
+    @Value("${websocket.supervisor.interval-ms:1000}")
+    private long supervisorIntervalMillis;
+
+    @Value("${websocket.supervisor.warn-lag-ms:1000}")
+    private long warnLagMillis;
+
+    @Value("${websocket.supervisor.degrade-lag-ms:5000}")
+    private long degradeLagMillis;
+
+    @Value("${websocket.supervisor.disconnect-lag-ms:30000}")
+    private long disconnectLagMillis;
+
+    @Value("${websocket.supervisor.warn-pending-bytes:262144}")
+    private long warnPendingBytes;
+
+    @Value("${websocket.supervisor.degrade-pending-bytes:1048576}")
+    private long degradePendingBytes;
+
+    @Value("${websocket.supervisor.disconnect-pending-bytes:4194304}")
+    private long disconnectPendingBytes;
+
+    @Value("${websocket.supervisor.degraded-flush-ms:1000}")
+    private int degradedFlushMillis;
+
+    @Value("${websocket.supervisor.ping-interval-ms:15000}")
+    private long pingIntervalMillis;
+
+    @Value("${websocket.supervisor.ping-timeout-ms:45000}")
+    private long pingTimeoutMillis;
+
+    private record CandleSubscription(Session session, CandleEngine.Interval interval) {
+    }
+
+    private static final class FlushGroup {
+        final Set<SessionOutbox> members = new CopyOnWriteArraySet<>();
+        ScheduledFuture<?> task;
+    }
+
+    /**
+     * Receives the candle engine from Spring; endpoint instances are created by the WebSocket
+     * container, so shared state is static.
+     */
+    @Autowired
+    public void setCandleEngine(CandleEngine engine) {
+        candleEngine = engine;
+    }
+
+    /**
+     * Receives the service that executes {@code TRADE} messages.
+     */
+    @Autowired(required = false)
+    public void setTradingService(TradingService service) {
+        tradingService = service;
+    }
+
+    /**
+     * Receives the registry that maps subscribed symbol names to the IDs ticks are routed by.
+     */
+    @Autowired
+    public void setSymbolRegistry(SymbolRegistry registry) {
+        symbolRegistry = registry;
+    }
+
+    /**
+     * Sets how many price updates are kept for clients that reconnect with {@code lastSeq}.
+     * Replaces the log, so it is only meant to be called at startup.
+     */
+    @Autowired
+    public void setDeltaLogCapacity(@Value("${websocket.delta-log.capacity:" + PriceDeltaLog.DEFAULT_CAPACITY + "}") int capacity) {
+        if (capacity != deltaLog.capacity()) {
+            deltaLog = new PriceDeltaLog(capacity);
+        }
+    }
+
+    /**
+     * Sets how many broadcaster threads fan price updates out, 0 to fan out on the publishing
+     * thread. Open sessions are moved to the new shards, but updates published meanwhile may be
+     * missed, so it is only meant to be called at startup.
+     */
+    @Autowired
+    public void setBroadcastThreads(@Value("${websocket.broadcast.threads:0}") int threads) {
+        useBroadcastThreads(threads);
+    }
+
+    static synchronized void useBroadcastThreads(int threads) {
+        BroadcastShards previous = shards;
+        if (threads == previous.getThreads()) {
+            return;
+        }
+        BroadcastShards created = new BroadcastShards(threads, CryptoWebSocketEndpoint::fanOut);
+        outboxes.values().forEach(created::adopt);
+        shards = created;
+        previous.halt();
+    }
+
+    /**
+     * @return Price updates published but not yet fanned out by the slowest broadcaster thread
+     */
+    static long getBroadcastLag() {
+        return shards.getLag();
+    }
+
+    /**
+     * Starts supervising sessions with the configured policy; runs on the Spring-managed
+     * instance only.
+     */
+    @PostConstruct
+    public void startSupervision() {
+        if (supervisorIntervalMillis > 0) {
+            startSupervisor(new SessionSupervisor.Policy(warnLagMillis, degradeLagMillis, disconnectLagMillis,
+                warnPendingBytes, degradePendingBytes, disconnectPendingBytes, degradedFlushMillis,
+                pingIntervalMillis, pingTimeoutMillis), supervisorIntervalMillis);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopSupervisor();
+        useBroadcastThreads(0);
+    }
+
+    /**
+     * Replaces the supervisor and schedules its passes on the shared timer.
+     */
+    static synchronized void startSupervisor(SessionSupervisor.Policy policy, long intervalMillis) {
+        stopSupervisor();
+        SessionSupervisor created = new SessionSupervisor(policy, new SessionSupervisor.Actions() {
+            @Override
+            public void setFlushInterval(SessionOutbox outbox, int millis) {
+                CryptoWebSocketEndpoint.setFlushInterval(outbox, millis);
+            }
+
+            @Override
+            public void evict(SessionOutbox outbox, String reason) {
+                CryptoWebSocketEndpoint.evict(outbox, reason);
+            }
+        });
+        supervisor = created;
+        supervision = timer().scheduleWithFixedDelay(() -> created.supervise(outboxes.values(), System.nanoTime()),
+            intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    static synchronized void stopSupervisor() {
+        if (supervision != null) {
+            supervision.cancel(false);
+            supervision = null;
+        }
+        supervisor = null;
+    }
+
+    /**
+     * Closes a session the supervisor gave up on and forgets it, even if the container never
+     * reports the close.
+     */
+    private static void evict(SessionOutbox outbox, String reason) {
+        Session session = outbox.getSession();
+        if (session.isOpen()) {
+            CloseReason.CloseCode code = SessionSupervisor.SLOW_CONSUMER.equals(reason)
+                ? CloseReason.CloseCodes.TRY_AGAIN_LATER : CloseReason.CloseCodes.VIOLATED_POLICY;
+            try {
+                session.close(new CloseReason(code, reason));
+            } catch (IOException | RuntimeException e) {
+                log.debug("Error closing session {}: {}", session.getId(), e.getMessage());
+            }
+        }
+        removeSession(session);
+    }
 
     @OnOpen
     public void onOpen(Session session) {
-        sessions.add(session);
+        SessionOutbox outbox = new SessionOutbox(session);
+        outboxes.put(session, outbox);
+        // Registered before the initial state is read, so no update falls between the two
+        shards.add(outbox);
         log.info("New WebSocket connection established. Session ID: {}", session.getId());
         session.setMaxIdleTimeout(0); // Disable idle timeout
-        sendLastPrices(session);
+        sendInitialState(session, outbox);
     }
 
     @OnMessage
     public void onMessage(String message, Session session) {
+        SessionOutbox outbox = outboxes.get(session);
+        if (outbox != null) {
+            outbox.lastHeardNanos = System.nanoTime();
+        }
         try {
             Map<String, Object> data = objectMapper.readValue(message, new com.fasterxml.jackson.core.type.TypeReference<Map<String, Object>>() {});
             if ("SUBSCRIBE".equals(data.get("type"))) {
-                handleSubscription(session);
+                handleSubscription(session, data);
+            } else if ("UNSUBSCRIBE".equals(data.get("type"))) {
+                handleUnsubscription(session, data);
+            } else if ("SUBSCRIBE_CANDLES".equals(data.get("type"))) {
+                handleCandleSubscription(session, data);
+            } else if ("UNSUBSCRIBE_CANDLES".equals(data.get("type"))) {
+                handleCandleUnsubscription(session, data);
+            } else if ("TRADE".equals(data.get("type"))) {
+                handleTrade(session, data);
             }
         } catch (IOException e) {
             log.error("Error processing WebSocket message", e);
         }
     }
 
+    /**
+     * Records that the client answered a ping.
+     */
+    @OnMessage
+    public void onPong(PongMessage pong, Session session) {
+        SessionOutbox outbox = outboxes.get(session);
+        if (outbox != null) {
+            outbox.lastHeardNanos = System.nanoTime();
+        }
+    }
+
     @OnClose
     public void onClose(Session session) {
-        sessions.remove(session);
+        removeSession(session);
         log.info("WebSocket connection closed. Session ID: {}", session.getId());
     }
 
+    private static void removeSession(Session session) {
+        SessionOutbox outbox = outboxes.remove(session);
+        if (outbox != null) {
+            outbox.index.remove(outbox);
+            setFlushInterval(outbox, 0);
+            closedSent.addAndGet(outbox.getSent());
+            closedConflated.addAndGet(outbox.getConflated());
+            closedBatches.addAndGet(outbox.getBatches());
+            closedBatchedUpdates.addAndGet(outbox.getBatchedUpdates());
+            DeadbandFilter deadband = outbox.deadband;
+            if (deadband != null) {
+                closedSuppressed.addAndGet(deadband.getSuppressed());
+            }
+        }
+        for (String symbol : candleSubscriptions.keySet()) {
+            removeCandleSubscriptions(symbol, subscription -> subscription.session() == session);
+        }
+    }
+
     @OnError
     public void onError(Session session, Throwable error) {
         log.error("WebSocket error for session {}: {}", session.getId(), error.getMessage());
     }
 
-    private void handleSubscription(Session session) {
+    /**
+     * Executes a market order at the live bid or ask and answers with the fill and the new
+     * balance, or with the reason it was rejected. An optional {@code price} and
+     * {@code maxSlippage} bound how far the fill may be from what the client expects. The
+     * answer echoes the client's {@code id}, so a client can have several orders in flight and
+     * match the answers up as they arrive.
+     */
+    private void handleTrade(Session session, Map<String, Object> data) throws IOException {
+        Map<String, Object> reply = new LinkedHashMap<>();
+        reply.put("type", "TRADE_ACK");
+        reply.put("id", data.get("id"));
+        try {
+            TradingService service = tradingService;
+            if (service == null) {
+                throw new IllegalArgumentException("Trading is not available");
+            }
+            if (data.get("id") == null) {
+                throw new IllegalArgumentException("id is required");
+            }
+            if (!(data.get("symbol") instanceof String symbol) || !(data.get("amount") instanceof Number amount)) {
+                throw new IllegalArgumentException("symbol and amount are required");
+            }
+            double price = data.get("price") instanceof Number expected ? expected.doubleValue() : Double.NaN;
+            double maxSlippage = data.get("maxSlippage") instanceof Number slippage
+                ? slippage.doubleValue() : Double.NaN;
+            Object account = data.getOrDefault("accountId", TradingService.DEFAULT_ACCOUNT);
+            String accountId = account instanceof String value ? value : null;
+            String side = data.get("side") instanceof String value ? value : null;
+            TradingService.Fill fill = service.marketTrade(accountId, side, symbol, amount.doubleValue(), price,
+                maxSlippage);
+            reply.put("side", fill.type());
+            reply.put("symbol", fill.symbol());
+            reply.put("amount", fill.amount());
+            reply.put("price", fill.price());
+            reply.put("total", fill.total());
+            reply.put("profitLoss", fill.profitLoss());
+            reply.put("balance", fill.balance());
+            reply.put("holding", fill.holding());
+            tradesFilled.incrementAndGet();
+        } catch (IllegalArgumentException e) {
+            reply.put("type", "TRADE_REJECT");
+            reply.put("message", e.getMessage());
+            tradesRejected.incrementAndGet();
+        }
+        sendMessage(session, reply);
+    }
+
+    private void handleSubscription(Session session, Map<String, Object> data) {
         try {
             log.info("Subscription request received from session: {}", session.getId());
+            Object requested = data.getOrDefault("flushIntervalMs", 0);
+            int flushInterval = requested instanceof Number number ? number.intValue() : -1;
+            if (flushInterval != 0 && (flushInterval < MIN_FLUSH_INTERVAL_MS || flushInterval > MAX_FLUSH_INTERVAL_MS)) {
+                sendMessage(session, Map.of(
+                    "type", "ERROR",
+                    "message", "flushIntervalMs must be 0 or between " + MIN_FLUSH_INTERVAL_MS
+                        + " and " + MAX_FLUSH_INTERVAL_MS + ": " + requested
+                ));
+                return;
+            }
+            Object symbols = data.get("symbols");
+            if (symbols != null && !(symbols instanceof List)) {
+                sendMessage(session, Map.of("type", "ERROR", "message", "symbols must be a list of pairs"));
+                return;
+            }
+            Object format = data.getOrDefault("format", "json");
+            if (!"json".equals(format) && !"binary".equals(format)) {
+                sendMessage(session, Map.of("type", "ERROR", "message", "format must be json or binary: " + format));
+                return;
+            }
+            List<String> unknown = new ArrayList<>();
+            DeadbandFilter.Threshold deadband;
+            DeadbandFilter.Threshold[] deadbands;
+            int maxSilence;
+            try {
+                deadband = data.containsKey("deadband") ? threshold(data.get("deadband")) : null;
+                deadbands = symbolThresholds(data.get("deadbands"), unknown);
+                maxSilence = data.containsKey("maxSilenceMs") ? maxSilence(data.get("maxSilenceMs")) : 0;
+            } catch (IllegalArgumentException e) {
+                sendMessage(session, Map.of("type", "ERROR", "message", e.getMessage()));
+                return;
+            }
+            SessionOutbox outbox = outboxes.get(session);
+            if (outbox == null) {
+                return;
+            }
+            setFlushInterval(outbox, flushInterval);
+            setDeadband(outbox, deadband, deadbands, maxSilence);
+            Map<String, Object> confirmation = new LinkedHashMap<>();
+            confirmation.put("type", "SUBSCRIPTION_CONFIRMED");
+            confirmation.put("message", "Successfully subscribed to price updates");
+            confirmation.put("flushIntervalMs", flushInterval);
+            confirmation.put("format", format);
+            if (outbox.deadband != null) {
+                confirmation.put("maxSilenceMs", maxSilence);
+            }
+            if (symbols == null) {
+                outbox.index.unsubscribeAll(outbox);
+                outbox.index.setAllSymbols(outbox, true);
+            } else {
+                List<String> subscribed = new ArrayList<>();
+                outbox.index.setAllSymbols(outbox, false);
+                for (Object symbol : (List<?>) symbols) {
+                    int symbolId = idOf(String.valueOf(symbol));
+                    if (symbolId < 0) {
+                        unknown.add(String.valueOf(symbol));
+                    } else {
+                        outbox.index.subscribe(outbox, symbolId);
+                        subscribed.add(String.valueOf(symbol));
+                    }
+                }
+                confirmation.put("symbols", subscribed);
+            }
+            if (!unknown.isEmpty()) {
+                confirmation.put("unknownSymbols", unknown);
+            }
             // Send subscription confirmation
-            sendMessage(session, Map.of(
-                "type", "SUBSCRIPTION_CONFIRMED",
-                "message", "Successfully subscribed to price updates"
-            ));
+            sendMessage(session, confirmation);
+            if ("binary".equals(format)) {
+                // The dictionary goes out before the first binary record can be queued
+                extendDictionary(outbox);
+                outbox.setBinary(true);
+            } else {
+                outbox.setBinary(false);
+            }
         } catch (IOException e) {
             log.error("Error handling subscription", e);
             try {
@@ -71,41 +502,566 @@ public class CryptoWebSocketEndpoint {
         }
     }
 
-    private void sendLastPrices(Session session) {
-        lastPrices.forEach((symbol, price) -> {
+    /**
+     * Parses {@code {"abs": x}} or {@code {"bps": x}}.
+     */
+    private static DeadbandFilter.Threshold threshold(Object spec) {
+        if (spec instanceof Map<?, ?> fields && fields.size() == 1) {
+            Object absolute = fields.get("abs");
+            Object bps = fields.get("bps");
+            Object value = absolute != null ? absolute : bps;
+            if (value instanceof Number number && number.doubleValue() >= 0) {
+                return absolute != null
+                    ? new DeadbandFilter.Threshold(number.doubleValue(), 0)
+                    : new DeadbandFilter.Threshold(0, number.doubleValue());
+            }
+        }
+        throw new IllegalArgumentException("deadband must be {\"abs\": x} or {\"bps\": x} with x >= 0: " + spec);
+    }
+
+    /**
+     * Parses {@code {"BTC/USD": {"abs": x}, ...}} into thresholds by symbol ID.
+     * @param unknown Receives the symbols that have no ID yet
+     * @return Null if there are none
+     */
+    private static DeadbandFilter.Threshold[] symbolThresholds(Object spec, List<String> unknown) {
+        if (spec == null) {
+            return null;
+        }
+        if (!(spec instanceof Map<?, ?> bySymbol)) {
+            throw new IllegalArgumentException("deadbands must map symbols to thresholds: " + spec);
+        }
+        DeadbandFilter.Threshold[] thresholds = new DeadbandFilter.Threshold[0];
+        for (Map.Entry<?, ?> entry : bySymbol.entrySet()) {
+            DeadbandFilter.Threshold threshold = threshold(entry.getValue());
+            int symbolId = idOf(String.valueOf(entry.getKey()));
+            if (symbolId < 0) {
+                unknown.add(String.valueOf(entry.getKey()));
+                continue;
+            }
+            if (symbolId >= thresholds.length) {
+                thresholds = Arrays.copyOf(thresholds, symbolId + 1);
+            }
+            thresholds[symbolId] = threshold;
+        }
+        return thresholds;
+    }
+
+    private static int maxSilence(Object value) {
+        if (value instanceof Number number && number.intValue() >= 0 && number.intValue() <= MAX_SILENCE_MS) {
+            return number.intValue();
+        }
+        throw new IllegalArgumentException("maxSilenceMs must be between 0 and " + MAX_SILENCE_MS + ": " + value);
+    }
+
+    /**
+     * Installs or replaces the session's deadband; without thresholds every update is sent.
+     */
+    private static void setDeadband(SessionOutbox outbox, DeadbandFilter.Threshold global,
+                                    DeadbandFilter.Threshold[] bySymbol, int maxSilenceMillis) {
+        if (global == null && bySymbol == null) {
+            outbox.deadband = null;
+            return;
+        }
+        DeadbandFilter.Threshold all = global == null ? DeadbandFilter.Threshold.NONE : global;
+        DeadbandFilter.Threshold[] symbols = bySymbol == null ? new DeadbandFilter.Threshold[0] : bySymbol;
+        DeadbandFilter current = outbox.deadband;
+        if (current == null) {
+            outbox.deadband = new DeadbandFilter(all, symbols, maxSilenceMillis);
+        } else {
+            current.configure(all, symbols, maxSilenceMillis);
+        }
+    }
+
+    /**
+     * Removes the listed symbols, or every symbol when none are listed.
+     */
+    private void handleUnsubscription(Session session, Map<String, Object> data) throws IOException {
+        SessionOutbox outbox = outboxes.get(session);
+        if (outbox == null) {
+            return;
+        }
+        List<String> removed = new ArrayList<>();
+        if (data.get("symbols") instanceof List<?> symbols) {
+            for (Object symbol : symbols) {
+                int symbolId = idOf(String.valueOf(symbol));
+                if (symbolId >= 0 && outbox.index.unsubscribe(outbox, symbolId)) {
+                    removed.add(String.valueOf(symbol));
+                }
+            }
+        } else {
+            outbox.index.setAllSymbols(outbox, false);
+            outbox.index.unsubscribeAll(outbox);
+        }
+        Map<String, Object> confirmation = new LinkedHashMap<>();
+        confirmation.put("type", "UNSUBSCRIPTION_CONFIRMED");
+        if (data.get("symbols") != null) {
+            confirmation.put("symbols", removed);
+        }
+        sendMessage(session, confirmation);
+    }
+
+    /**
+     * Sends a binary session the names of the symbol IDs registered since its last dictionary.
+     * Entries are sent as control messages, so they reach the client before any record queued
+     * after this call.
+     */
+    private static void extendDictionary(SessionOutbox outbox) {
+        SymbolRegistry registry = symbolRegistry;
+        if (registry == null) {
+            return;
+        }
+        synchronized (outbox) {
+            int from = outbox.dictionarySize;
+            int to = registry.size();
+            if (to <= from) {
+                return;
+            }
+            List<String> names = new ArrayList<>(to - from);
+            for (int id = from; id < to; id++) {
+                names.add(registry.nameOf(id));
+            }
+            Map<String, Object> dictionary = new LinkedHashMap<>();
+            dictionary.put("type", "SYMBOL_DICTIONARY");
+            dictionary.put("offset", from);
+            dictionary.put("symbols", names);
             try {
-                sendMessage(session, Map.of(
-                    "type", "PRICE_UPDATE",
-                    "symbol", symbol,
-                    "price", price,
-                    "change24h", 0.0
-                ));
+                outbox.send(objectMapper.writeValueAsString(dictionary));
             } catch (IOException e) {
-                log.error("Error sending last prices to session {}: {}", session.getId(), e.getMessage());
+                log.error("Error creating symbol dictionary", e);
+                return;
+            }
+            outbox.dictionarySize = to;
+        }
+    }
+
+    private static int idOf(String symbol) {
+        SymbolRegistry registry = symbolRegistry;
+        return registry == null ? -1 : registry.idOf(symbol);
+    }
+
+    private void handleCandleSubscription(Session session, Map<String, Object> data) throws IOException {
+        CandleEngine engine = candleEngine;
+        Object symbol = data.get("symbol");
+        CandleEngine.Interval interval;
+        try {
+            interval = CandleEngine.Interval.fromLabel(String.valueOf(data.getOrDefault("interval", "1m")));
+        } catch (IllegalArgumentException e) {
+            sendMessage(session, Map.of("type", "ERROR", "message", e.getMessage()));
+            return;
+        }
+        // Only pairs the feed has registered, so clients cannot grow the subscription map
+        int symbolId = engine == null || symbol == null ? -1 : engine.getSymbolRegistry().idOf(symbol.toString());
+        if (symbolId < 0) {
+            sendMessage(session, Map.of("type", "ERROR", "message", "Candles are not available for " + symbol));
+            return;
+        }
+        // Added under the key's lock so that a concurrent removal of the empty set cannot drop it
+        candleSubscriptions.compute(symbol.toString(), (key, subscriptions) -> {
+            Set<CandleSubscription> updated = subscriptions != null ? subscriptions : new CopyOnWriteArraySet<>();
+            updated.add(new CandleSubscription(session, interval));
+            return updated;
+        });
+
+        // Start the stream with the bars kept so far
+        int limit = data.get("limit") instanceof Number number ? number.intValue() : DEFAULT_CANDLE_HISTORY;
+        List<Map<String, Object>> bars = new ArrayList<>();
+        Candles candles = new Candles();
+        if (engine.read(symbolId, interval, Math.max(1, limit), candles)) {
+            for (int i = 0; i < candles.getCount(); i++) {
+                bars.add(candleFields(candles, i));
             }
+        }
+        sendMessage(session, Map.of(
+            "type", "CANDLE_HISTORY",
+            "symbol", symbol,
+            "interval", interval.getLabel(),
+            "candles", bars
+        ));
+    }
+
+    private void handleCandleUnsubscription(Session session, Map<String, Object> data) {
+        Object interval = data.get("interval");
+        removeCandleSubscriptions(String.valueOf(data.get("symbol")), subscription -> subscription.session() == session
+            && (interval == null || subscription.interval().getLabel().equals(interval)));
+    }
+
+    /**
+     * Removes matching subscriptions of a symbol, and the symbol's entry once none are left.
+     */
+    private static void removeCandleSubscriptions(String symbol, Predicate<CandleSubscription> filter) {
+        candleSubscriptions.computeIfPresent(symbol, (key, subscriptions) -> {
+            subscriptions.removeIf(filter);
+            return subscriptions.isEmpty() ? null : subscriptions;
         });
     }
 
+    /**
+     * Sends the deltas since the {@code lastSeq} request parameter when the log still holds
+     * them, and a snapshot of every symbol otherwise.
+     */
+    private void sendInitialState(Session session, SessionOutbox outbox) {
+        PriceDeltaLog history = deltaLog;
+        long lastSeq = requestedLastSeq(session);
+        // Everything up to the head read here is reflected in what is read next
+        long seq = history.head();
+        List<PriceDeltaLog.Delta> deltas = lastSeq < 0 ? null : history.since(lastSeq);
+        Map<String, Object> message = new LinkedHashMap<>();
+        if (deltas != null) {
+            resumes.incrementAndGet();
+            message.put("type", "DELTAS");
+            message.put("fromSeq", lastSeq);
+        } else {
+            if (lastSeq >= 0) {
+                resumeFallbacks.incrementAndGet();
+            }
+            snapshotsSent.incrementAndGet();
+            deltas = history.snapshot();
+            message.put("type", "SNAPSHOT");
+        }
+        List<Map<String, Object>> prices = new ArrayList<>(deltas.size());
+        for (PriceDeltaLog.Delta delta : deltas) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("symbol", delta.symbol());
+            entry.put("price", delta.price());
+            entry.put("change24h", delta.change24h());
+            entry.put("seq", delta.seq());
+            prices.add(entry);
+            seq = Math.max(seq, delta.seq());
+        }
+        message.put("seq", seq);
+        message.put("prices", prices);
+        try {
+            outbox.send(objectMapper.writeValueAsString(message));
+        } catch (IOException e) {
+            log.error("Error sending initial prices to session {}: {}", session.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * @return The {@code lastSeq} request parameter, or -1 if it is absent or not a number
+     */
+    private static long requestedLastSeq(Session session) {
+        Map<String, List<String>> parameters = session.getRequestParameterMap();
+        List<String> values = parameters == null ? null : parameters.get("lastSeq");
+        if (values == null || values.isEmpty()) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(values.get(0));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Queues a price update for the sessions subscribed to the symbol, looking its ID up in the
+     * registry. Prefer {@link #broadcastPriceUpdate(int, String, double, double)} when the ID is known.
+     */
     public static void broadcastPriceUpdate(String symbol, double price, double change24h) {
-        String message = createPriceUpdateMessage(symbol, price, change24h);
-        sessions.forEach(session -> {
-            if (session.isOpen()) {
-                try {
-                    session.getBasicRemote().sendText(message);
-                } catch (IOException e) {
-                    log.error("Error sending message to session {}: {}", session.getId(), e.getMessage());
+        broadcastPriceUpdate(idOf(symbol), symbol, price, change24h);
+    }
+
+    /**
+     * Queues a price update for every open session subscribed to the symbol or to all symbols.
+     * A session that still has an unsent update for the symbol gets it replaced by this one.
+     * With broadcaster threads, the update is handed to them and queued asynchronously.
+     * @param symbolId Registry ID of the symbol, or -1 to reach only all-symbol sessions
+     * @return Number of sessions the update was queued for, or 0 when broadcaster threads queue it
+     */
+    public static int broadcastPriceUpdate(int symbolId, String symbol, double price, double change24h) {
+        return shards.publish(deltaLog, symbolId, symbol, price, change24h);
+    }
+
+    /**
+     * Queues an update for the sessions of one shard, on the thread that owns the shard. The
+     * JSON text and the binary record are each built at most once, on the first recipient that
+     * needs them.
+     */
+    private static int fanOut(SubscriptionIndex index, PriceDeltaLog.Delta delta) {
+        int symbolId = delta.symbolId();
+        String symbol = delta.symbol();
+        double price = delta.price();
+        // Bitsets first: a slot they name is already filled in the slot table read after them
+        AtomicLongArray interested = index.subscribers(symbolId);
+        AtomicLongArray all = index.allSymbols();
+        AtomicReferenceArray<SessionOutbox> slots = index.slots();
+        String message = null;
+        ByteBuffer frame = null;
+        long now = 0;
+        int delivered = 0;
+        int words = Math.max(interested.length(), all.length());
+        for (int w = 0; w < words; w++) {
+            long word = (w < interested.length() ? interested.get(w) : 0) | (w < all.length() ? all.get(w) : 0);
+            while (word != 0) {
+                int slot = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                SessionOutbox outbox = slot < slots.length() ? slots.get(slot) : null;
+                if (outbox == null || !outbox.getSession().isOpen()) {
+                    continue;
                 }
+                DeadbandFilter deadband = outbox.deadband;
+                if (deadband != null && symbolId >= 0) {
+                    if (now == 0) {
+                        now = System.currentTimeMillis();
+                    }
+                    if (!deadband.admit(symbolId, price, now)) {
+                        continue;
+                    }
+                }
+                delivered++;
+                // Symbols without an ID cannot be named in a record and still go out as JSON
+                if (outbox.isBinary() && symbolId >= 0) {
+                    if (symbolId >= outbox.dictionarySize) {
+                        extendDictionary(outbox);
+                    }
+                    if (frame == null) {
+                        frame = PriceFrame.encode(symbolId, price, delta.change24h(), delta.seq());
+                    }
+                    outbox.offer(symbol, frame);
+                    continue;
+                }
+                if (message == null) {
+                    // Nothing is serialized for a symbol nobody watches
+                    message = createPriceUpdateMessage(symbol, price, delta.change24h(), delta.seq());
+                }
+                outbox.offer(symbol, message);
             }
-        });
+        }
+        return delivered;
+    }
+
+    /**
+     * Moves a session into the flush group of its interval, starting the group's task when it
+     * is the first member and cancelling it when the last member leaves.
+     * @param millis Flush interval, 0 to send price updates as they arrive
+     */
+    private static synchronized void setFlushInterval(SessionOutbox outbox, int millis) {
+        int previous = outbox.getFlushIntervalMillis();
+        if (previous == millis) {
+            return;
+        }
+        if (previous > 0) {
+            FlushGroup group = flushGroups.get(previous);
+            group.members.remove(outbox);
+            if (group.members.isEmpty()) {
+                group.task.cancel(false);
+                flushGroups.remove(previous);
+            }
+        }
+        if (millis > 0) {
+            FlushGroup group = flushGroups.get(millis);
+            if (group == null) {
+                FlushGroup created = new FlushGroup();
+                created.task = timer().scheduleAtFixedRate(() -> flush(created), millis, millis, TimeUnit.MILLISECONDS);
+                flushGroups.put(millis, created);
+                group = created;
+            }
+            group.members.add(outbox);
+        }
+        outbox.setFlushIntervalMillis(millis);
     }
 
-    private static String createPriceUpdateMessage(String symbol, double price, double change24h) {
+    private static synchronized ScheduledExecutorService timer() {
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ws-timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return timer;
+    }
+
+    private static void flush(FlushGroup group) {
+        for (SessionOutbox outbox : group.members) {
+            try {
+                if (outbox.getSession().isOpen()) {
+                    outbox.flush(flushFrame);
+                }
+            } catch (Exception e) {
+                log.error("Error flushing price batch to session {}: {}", outbox.getSession().getId(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return Outbound totals over all sessions and the sessions that are furthest behind
+     */
+    public static Map<String, Object> getOutboundMetrics() {
+        List<SessionOutbox> current = new ArrayList<>(outboxes.values());
+        long sent = closedSent.get();
+        long conflated = closedConflated.get();
+        long batches = closedBatches.get();
+        long batchedUpdates = closedBatchedUpdates.get();
+        long suppressed = closedSuppressed.get();
+        int deadbandSessions = 0;
+        long deadbandBytes = 0;
+        int batching = 0;
+        int binary = 0;
+        long pending = 0;
+        long pendingBytes = 0;
+        long controlDropped = 0;
+        long errors = 0;
+        long maxLagNanos = 0;
+        for (SessionOutbox outbox : current) {
+            sent += outbox.getSent();
+            conflated += outbox.getConflated();
+            batches += outbox.getBatches();
+            batchedUpdates += outbox.getBatchedUpdates();
+            if (outbox.getFlushIntervalMillis() > 0) {
+                batching++;
+            }
+            if (outbox.isBinary()) {
+                binary++;
+            }
+            DeadbandFilter deadband = outbox.deadband;
+            if (deadband != null) {
+                deadbandSessions++;
+                suppressed += deadband.getSuppressed();
+                deadbandBytes += deadband.getStateBytes();
+            }
+            pending += outbox.getPending();
+            pendingBytes += outbox.getPendingBytes();
+            controlDropped += outbox.getControlDropped();
+            errors += outbox.getErrors();
+            maxLagNanos = Math.max(maxLagNanos, outbox.getLagNanos());
+        }
+        current.sort(Comparator.comparingLong(SessionOutbox::getLagNanos).reversed());
+        List<Map<String, Object>> slowest = new ArrayList<>();
+        for (SessionOutbox outbox : current.subList(0, Math.min(SLOWEST_SESSIONS, current.size()))) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("id", outbox.getSession().getId());
+            entry.put("flushIntervalMillis", outbox.getFlushIntervalMillis());
+            entry.put("binary", outbox.isBinary());
+            entry.put("pending", outbox.getPending());
+            entry.put("pendingBytes", outbox.getPendingBytes());
+            entry.put("sent", outbox.getSent());
+            entry.put("conflated", outbox.getConflated());
+            entry.put("lagMillis", outbox.getLagNanos() / 1_000_000);
+            entry.put("maxLagMillis", outbox.getMaxLagNanos() / 1_000_000);
+            entry.put("sendMillis", outbox.getLastSendNanos() / 1_000_000);
+            entry.put("maxSendMillis", outbox.getMaxSendNanos() / 1_000_000);
+            entry.put("level", outbox.level.name());
+            slowest.add(entry);
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("sessions", current.size());
+        BroadcastShards currentShards = shards;
+        metrics.put("allSymbolSessions", currentShards.getAllSymbolSessions());
+        metrics.put("symbolSubscriptions", currentShards.getSymbolSubscriptions());
+        metrics.put("sent", sent);
+        metrics.put("conflatedDrops", conflated);
+        metrics.put("batchingSessions", batching);
+        metrics.put("binarySessions", binary);
+        metrics.put("deadbandSessions", deadbandSessions);
+        metrics.put("deadbandSuppressed", suppressed);
+        metrics.put("deadbandStateBytes", deadbandBytes);
+        metrics.put("batches", batches);
+        metrics.put("batchedUpdates", batchedUpdates);
+        metrics.put("pending", pending);
+        metrics.put("pendingBytes", pendingBytes);
+        metrics.put("controlDrops", controlDropped);
+        metrics.put("sendErrors", errors);
+        metrics.put("maxLagMillis", maxLagNanos / 1_000_000);
+        metrics.put("priceSeq", deltaLog.head());
+        metrics.put("snapshots", snapshotsSent.get());
+        metrics.put("resumes", resumes.get());
+        metrics.put("resumeFallbacks", resumeFallbacks.get());
+        metrics.put("trades", tradesFilled.get());
+        metrics.put("tradeRejects", tradesRejected.get());
+        metrics.put("broadcastThreads", currentShards.getThreads());
+        metrics.put("broadcastLag", currentShards.getLag());
+        metrics.put("shards", currentShards.getMetrics());
+        metrics.put("slowest", slowest);
+        SessionSupervisor running = supervisor;
+        metrics.put("supervisor", running == null ? Map.of() : running.getMetrics());
+        return metrics;
+    }
+
+    /**
+     * Streams bars to candle subscribers of a pair. For each subscribed interval whose bar
+     * closed, the closed bar is sent with {@code closed=true}; the bar in progress is sent
+     * whenever the 1s bar rolls over, so live charts update at most once per second.
+     * Called from the single candles pipeline stage thread.
+     * @param rolled Bit mask of closed intervals as returned by {@link CandleEngine#onTick}
+     */
+    public static void broadcastCandles(int symbolId, String symbol, int rolled) {
+        Set<CandleSubscription> subscriptions = candleSubscriptions.get(symbol);
+        CandleEngine engine = candleEngine;
+        if (subscriptions == null || subscriptions.isEmpty() || engine == null) {
+            return;
+        }
+        for (CandleEngine.Interval interval : INTERVALS) {
+            boolean closed = (rolled & (1 << interval.ordinal())) != 0;
+            if (!closed && (rolled & 1) == 0) {
+                continue;
+            }
+            String closedMessage = null;
+            String currentMessage = null;
+            String currentKey = null;
+            for (CandleSubscription subscription : subscriptions) {
+                if (subscription.interval() != interval || !subscription.session().isOpen()) {
+                    continue;
+                }
+                if (currentMessage == null) {
+                    if (!engine.read(symbolId, interval, 2, broadcastCandles)) {
+                        break;
+                    }
+                    int current = broadcastCandles.getCount() - 1;
+                    currentMessage = createCandleMessage(broadcastCandles, current, false);
+                    // Bars in progress conflate like prices; closed bars are always delivered
+                    currentKey = symbol + "@" + interval.getLabel();
+                    if (closed && current > 0) {
+                        closedMessage = createCandleMessage(broadcastCandles, current - 1, true);
+                    }
+                }
+                SessionOutbox outbox = outboxes.get(subscription.session());
+                if (outbox == null) {
+                    continue;
+                }
+                if (closedMessage != null) {
+                    outbox.send(closedMessage);
+                }
+                outbox.offer(currentKey, currentMessage);
+            }
+        }
+    }
+
+    private static Map<String, Object> candleFields(Candles candles, int bar) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("time", candles.getTime(bar));
+        fields.put("open", candles.getOpen(bar));
+        fields.put("high", candles.getHigh(bar));
+        fields.put("low", candles.getLow(bar));
+        fields.put("close", candles.getClose(bar));
+        fields.put("volume", candles.getVolume(bar));
+        return fields;
+    }
+
+    private static String createCandleMessage(Candles candles, int bar, boolean closed) {
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("type", "CANDLE");
+        message.put("symbol", candles.getSymbol());
+        message.put("interval", candles.getInterval().getLabel());
+        message.putAll(candleFields(candles, bar));
+        message.put("closed", closed);
+        try {
+            return objectMapper.writeValueAsString(message);
+        } catch (IOException e) {
+            log.error("Error creating candle message", e);
+            return "";
+        }
+    }
+
+    static String createPriceUpdateMessage(String symbol, double price, double change24h, long seq) {
         try {
             return objectMapper.writeValueAsString(Map.of(
                 "type", "PRICE_UPDATE",
                 "symbol", symbol,
                 "price", price,
-                "change24h", change24h
+                "change24h", change24h,
+                "seq", seq
             ));
         } catch (IOException e) {
             log.error("Error creating price update message", e);
@@ -113,7 +1069,14 @@ public class CryptoWebSocketEndpoint {
         }
     }
 
+    /**
+     * Sends a reply through the session's outbox; dropped if the session has already been
+     * removed, so a reply racing a close does not recreate its outbox.
+     */
     private void sendMessage(Session session, Map<String, Object> message) throws IOException {
-        session.getBasicRemote().sendText(objectMapper.writeValueAsString(message));
+        SessionOutbox outbox = outboxes.get(session);
+        if (outbox != null) {
+            outbox.send(objectMapper.writeValueAsString(message));
+        }
     }
 }
\ No newline at end of file
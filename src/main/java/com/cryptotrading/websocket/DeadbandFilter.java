@@ -0,0 +1,101 @@
+package com.cryptotrading.websocket;
+
+import java.util.Arrays;
+
+/**
+ * Suppresses the price updates of one session that moved less than the session's threshold
+ * since the last update it was sent.
+ *
+ * <p>A threshold is absolute or in basis points of the last sent price, and can be set for
+ * every symbol and overridden per symbol. With a maximum silence, a suppressed update still goes
+ * out once that long has passed since the symbol's last one, on the symbol's next tick. The last
+ * sent price and time are kept in primitive arrays indexed by symbol ID, 12 bytes per symbol the
+ * session has been sent, so the state of many sessions stays small.</p>
+ */
+final class DeadbandFilter {
+    // Times are stored as int milliseconds since this base; differences wrap only after 24 days
+    private static final long BASE_MILLIS = System.currentTimeMillis();
+
+    /**
+     * Threshold of one symbol or of all symbols; at most one of the two is non-zero.
+     */
+    record Threshold(double absolute, double bps) {
+        static final Threshold NONE = new Threshold(0, 0);
+
+        double of(double lastPrice) {
+            return absolute > 0 ? absolute : Math.abs(lastPrice) * bps / 10_000;
+        }
+    }
+
+    private record Settings(Threshold global, Threshold[] bySymbol, int maxSilenceMillis) {
+    }
+
+    private volatile Settings settings;
+    // Owned by the broadcasting thread
+    private double[] lastPrice = new double[0];
+    private int[] lastSentAt = new int[0];
+    private volatile long suppressed;
+
+    /**
+     * @param bySymbol Thresholds by symbol ID overriding {@code global}; null entries use {@code global}
+     * @param maxSilenceMillis Longest a changed price is held back, 0 for no limit
+     */
+    DeadbandFilter(Threshold global, Threshold[] bySymbol, int maxSilenceMillis) {
+        configure(global, bySymbol, maxSilenceMillis);
+    }
+
+    /**
+     * Replaces the thresholds, keeping the prices already sent.
+     */
+    void configure(Threshold global, Threshold[] bySymbol, int maxSilenceMillis) {
+        settings = new Settings(global, bySymbol, maxSilenceMillis);
+    }
+
+    /**
+     * Decides whether an update goes out and, if it does, records it as the last one sent.
+     * Called from the broadcasting thread only.
+     */
+    boolean admit(int symbolId, double price, long nowMillis) {
+        if (symbolId >= lastPrice.length) {
+            grow(symbolId + 1);
+        }
+        int now = (int) (nowMillis - BASE_MILLIS);
+        double last = lastPrice[symbolId];
+        if (!Double.isNaN(last)) {
+            Settings current = settings;
+            Threshold threshold = symbolId < current.bySymbol().length && current.bySymbol()[symbolId] != null
+                ? current.bySymbol()[symbolId] : current.global();
+            int silence = now - lastSentAt[symbolId];
+            if (Math.abs(price - last) < threshold.of(last)
+                && (current.maxSilenceMillis() == 0 || (silence >= 0 && silence < current.maxSilenceMillis()))) {
+                suppressed++;
+                return false;
+            }
+        }
+        lastPrice[symbolId] = price;
+        lastSentAt[symbolId] = now;
+        return true;
+    }
+
+    private void grow(int size) {
+        int capacity = Math.max(size, lastPrice.length * 2);
+        int from = lastPrice.length;
+        lastPrice = Arrays.copyOf(lastPrice, capacity);
+        Arrays.fill(lastPrice, from, capacity, Double.NaN);
+        lastSentAt = Arrays.copyOf(lastSentAt, capacity);
+    }
+
+    /**
+     * @return Updates held back because they were within the threshold
+     */
+    long getSuppressed() {
+        return suppressed;
+    }
+
+    /**
+     * @return Bytes used by the per-symbol state arrays
+     */
+    long getStateBytes() {
+        return (long) lastPrice.length * (Double.BYTES + Integer.BYTES);
+    }
+}
@@ -0,0 +1,112 @@
+package com.cryptotrading.websocket;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Numbers broadcast price updates and keeps the most recent ones for clients that reconnect.
+ *
+ * <p>Every update gets the next value of one global sequence. The last {@code capacity}
+ * updates are kept in a ring, so a client that reconnects with the last sequence it saw can be
+ * sent what changed since then; the latest update of every symbol is kept as well, for the
+ * snapshot a new client starts from. Updates are appended under the log's lock and read
+ * without it.</p>
+ */
+final class PriceDeltaLog {
+    static final int DEFAULT_CAPACITY = 65_536;
+
+    record Delta(long seq, int symbolId, String symbol, double price, double change24h) {
+    }
+
+    private final AtomicReferenceArray<Delta> ring;
+    private final int mask;
+    // Latest update by symbol ID; replaced by a larger copy when a new ID does not fit
+    private volatile AtomicReferenceArray<Delta> latest = new AtomicReferenceArray<>(64);
+    private volatile long head;
+
+    /**
+     * @param capacity Updates kept for resuming clients, rounded up to a power of 2
+     */
+    PriceDeltaLog(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Numbers and records an update. Sessions must be looked up after this returns: a session
+     * registered too late to be found then is guaranteed to see the update in
+     * {@link #snapshot()} or {@link #since}.
+     * @param symbolId Registry ID, or -1 for a symbol that is only resumable, not part of snapshots
+     */
+    synchronized Delta append(int symbolId, String symbol, double price, double change24h) {
+        Delta delta = new Delta(head + 1, symbolId, symbol, price, change24h);
+        if (symbolId >= 0) {
+            AtomicReferenceArray<Delta> current = latest;
+            if (symbolId >= current.length()) {
+                AtomicReferenceArray<Delta> grown = new AtomicReferenceArray<>(Math.max(current.length() * 2, symbolId + 1));
+                for (int i = 0; i < current.length(); i++) {
+                    grown.set(i, current.get(i));
+                }
+                latest = current = grown;
+            }
+            current.set(symbolId, delta);
+        }
+        ring.set((int) delta.seq() & mask, delta);
+        head = delta.seq();
+        return delta;
+    }
+
+    /**
+     * @return Sequence of the newest update, 0 before the first
+     */
+    long head() {
+        return head;
+    }
+
+    int capacity() {
+        return ring.length();
+    }
+
+    /**
+     * @return The latest update of every symbol, in sequence order
+     */
+    List<Delta> snapshot() {
+        AtomicReferenceArray<Delta> current = latest;
+        List<Delta> deltas = new ArrayList<>();
+        for (int i = 0; i < current.length(); i++) {
+            Delta delta = current.get(i);
+            if (delta != null) {
+                deltas.add(delta);
+            }
+        }
+        deltas.sort(Comparator.comparingLong(Delta::seq));
+        return deltas;
+    }
+
+    /**
+     * @return The latest update of every symbol that changed after {@code lastSeq}, in sequence
+     * order, or null if some of those updates are no longer kept (or {@code lastSeq} was never issued)
+     */
+    List<Delta> since(long lastSeq) {
+        long newest = head;
+        if (lastSeq < 0 || lastSeq > newest || newest - lastSeq > ring.length()) {
+            return null;
+        }
+        Map<String, Delta> bySymbol = new HashMap<>();
+        for (long seq = lastSeq + 1; seq <= newest; seq++) {
+            Delta delta = ring.get((int) seq & mask);
+            if (delta == null || delta.seq() != seq) {
+                return null; // overwritten while we were reading
+            }
+            bySymbol.put(delta.symbol(), delta);
+        }
+        List<Delta> deltas = new ArrayList<>(bySymbol.values());
+        deltas.sort(Comparator.comparingLong(Delta::seq));
+        return deltas;
+    }
+}
@@ -0,0 +1,28 @@
+package com.cryptotrading.websocket;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Layout of the binary price frames sent to sessions that subscribed with {@code "format": "binary"}.
+ *
+ * <p>A binary frame holds one or more fixed-size big-endian records: the symbol ID as an int,
+ * the price and the 24h change as doubles, and the update's sequence number as a long. Symbol
+ * IDs are resolved through the {@code SYMBOL_DICTIONARY} text messages sent before the first
+ * record that uses them.</p>
+ */
+final class PriceFrame {
+    static final int BYTES = Integer.BYTES + 2 * Double.BYTES + Long.BYTES;
+
+    private PriceFrame() {
+    }
+
+    /**
+     * Encodes one record into a new buffer, ready to read. The buffer is shared by every
+     * recipient, each of which sends its own {@link ByteBuffer#duplicate() duplicate}.
+     */
+    static ByteBuffer encode(int symbolId, double price, double change24h, long sequence) {
+        ByteBuffer frame = ByteBuffer.allocate(BYTES);
+        frame.putInt(symbolId).putDouble(price).putDouble(change24h).putLong(sequence);
+        return frame.flip();
+    }
+}
@@ -0,0 +1,471 @@
+package com.cryptotrading.websocket;
+
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Outbound queue of one WebSocket session, drained by non-blocking sends.
+ *
+ * <p>Price updates are conflated: the outbox holds at most one unsent message per key (the
+ * symbol), and a newer update replaces the pending one in place, so a client that cannot keep
+ * up skips stale prices instead of building a backlog. Messages that must all arrive, such as
+ * confirmations, candle history and closed bars, go through a bounded FIFO that is drained
+ * first. Only one send is in flight per session, as the container requires; each completion
+ * starts the next send, so the thread that offered a message never waits on the client.</p>
+ *
+ * <p>With a flush interval set, price updates are not sent as they arrive. They accumulate in
+ * the same per-symbol slots and {@link #flush} sends them as one {@code PRICE_BATCH} frame, so
+ * the client gets one frame per interval carrying the latest price of every changed symbol.</p>
+ *
+ * <p>Without a flush interval, an update that replaces a pending one also moves to the back
+ * of the queue, so updates leave in the order they were offered and a client that has received
+ * an update has also received every earlier one it was not skipped past.</p>
+ *
+ * <p>Price updates of a binary session are {@link PriceFrame} buffers shared with the other
+ * recipients; each send writes a duplicate, and a batch concatenates the records into one
+ * binary frame.</p>
+ */
+class SessionOutbox {
+    private static final Logger log = LoggerFactory.getLogger(SessionOutbox.class);
+    static final int MAX_CONTROL_MESSAGES = 256;
+
+    private final Session session;
+    // Latest unsent message per key: a String for text frames, a ByteBuffer for binary ones
+    private final ConcurrentHashMap<String, Object> pending = new ConcurrentHashMap<>();
+    // Keys with a pending message, in the order they became pending
+    private final Queue<String> dirty = new ConcurrentLinkedQueue<>();
+    private final Queue<String> control = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger controlSize = new AtomicInteger();
+    private final AtomicBoolean sending = new AtomicBoolean();
+    private final AtomicLong conflated = new AtomicLong();
+    // Characters of queued text plus bytes of queued binary frames
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private volatile long backlogSinceNanos;
+    private volatile long maxLagNanos;
+    // Counted from the sending threads and the container's completion threads
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong controlDropped = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    // Start of the send in flight, 0 when none is
+    private volatile long sendStartedNanos;
+    private volatile long lastSendNanos;
+    private volatile long maxSendNanos;
+    // Last time anything, including a pong, arrived from the client
+    volatile long lastHeardNanos = System.nanoTime();
+    // Supervision state, owned by the supervisor's timer thread
+    SessionSupervisor.Level level = SessionSupervisor.Level.OK;
+    int flushBeforeDegrade;
+    long lastPingNanos;
+    long unansweredPingNanos;
+    private volatile int flushIntervalMillis;
+    private volatile boolean binary;
+    // Null unless the client asked for a deadband; used by the broadcasting thread
+    volatile DeadbandFilter deadband;
+    // Symbol IDs below this have been sent in SYMBOL_DICTIONARY messages; changed under this outbox's lock
+    volatile int dictionarySize;
+    // Subscription state, owned by SubscriptionIndex and only changed under its lock
+    volatile SubscriptionIndex index = SubscriptionIndex.NONE;
+    int slot = -1;
+    boolean allSymbols;
+    final BitSet symbols = new BitSet();
+    private volatile long batches;
+    private volatile long batchedUpdates;
+
+    SessionOutbox(Session session) {
+        this.session = session;
+    }
+
+    Session getSession() {
+        return session;
+    }
+
+    /**
+     * Queues the latest message for a key, replacing the pending one if it has not been sent.
+     */
+    void offer(String key, String message) {
+        enqueue(key, message);
+    }
+
+    /**
+     * Queues the latest binary frame for a key, replacing the pending message if it has not
+     * been sent. The frame is not modified, so it can be shared with other sessions.
+     */
+    void offer(String key, ByteBuffer frame) {
+        enqueue(key, frame);
+    }
+
+    private void enqueue(String key, Object message) {
+        boolean immediate = flushIntervalMillis == 0;
+        // A client that keeps up has nothing queued: hand the message straight to the container
+        if (immediate && control.isEmpty() && dirty.isEmpty() && sending.compareAndSet(false, true)) {
+            if (control.isEmpty() && dirty.isEmpty()) {
+                // Another thread may have queued while the slot was held; it left the send to us
+                if (transmit(message) && hasSendable()) {
+                    drain();
+                }
+                return;
+            }
+            sending.set(false);
+        }
+        Object previous = pending.put(key, message);
+        pendingBytes.addAndGet(sizeOf(message) - (previous == null ? 0 : sizeOf(previous)));
+        if (previous == null) {
+            markBacklog();
+            dirty.offer(key);
+        } else {
+            conflated.incrementAndGet();
+            // Keeps sends in offer order; linear in the pending keys, paid only while behind
+            if (immediate && dirty.remove(key)) {
+                dirty.offer(key);
+            }
+        }
+        if (immediate) {
+            drain();
+        }
+    }
+
+    /**
+     * Sends every pending price update as one {@code PRICE_BATCH} frame, unless the previous
+     * send is still in flight; the updates then stay conflated until the next flush.
+     * Called by the single flush thread, which owns {@code frame}.
+     * @return Whether a frame was sent
+     */
+    boolean flush(StringBuilder frame) {
+        if (dirty.isEmpty() || !sending.compareAndSet(false, true)) {
+            return false;
+        }
+        boolean binaryBatch = binary;
+        ByteBuffer records = binaryBatch ? ByteBuffer.allocate(pending.size() * PriceFrame.BYTES) : null;
+        frame.setLength(0);
+        frame.append("{\"type\":\"PRICE_BATCH\",\"updates\":[");
+        int count = 0;
+        String key;
+        while ((key = dirty.poll()) != null) {
+            Object message = pending.remove(key);
+            if (message != null) {
+                pendingBytes.addAndGet(-sizeOf(message));
+            }
+            // An update queued in the other format just before the session switched is dropped
+            if (binaryBatch && message instanceof ByteBuffer record) {
+                if (records.remaining() < record.remaining()) {
+                    records = ByteBuffer.allocate(records.capacity() * 2 + record.remaining()).put(records.flip());
+                }
+                records.put(record.duplicate());
+                count++;
+            } else if (!binaryBatch && message instanceof String text) {
+                if (count++ > 0) {
+                    frame.append(',');
+                }
+                frame.append(text);
+            }
+        }
+        if (count == 0) {
+            sending.set(false);
+            return false;
+        }
+        frame.append("]}");
+        batches++;
+        batchedUpdates += count;
+        if (transmit(binaryBatch ? records.flip() : frame.toString())) {
+            drain();
+        }
+        return true;
+    }
+
+    /**
+     * @param millis Interval between {@code PRICE_BATCH} frames, 0 to send every update as it arrives
+     */
+    void setFlushIntervalMillis(int millis) {
+        flushIntervalMillis = millis;
+        if (millis == 0) {
+            drain();
+        }
+    }
+
+    int getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    /**
+     * @param binary Whether price updates are sent as {@link PriceFrame} records instead of JSON
+     */
+    void setBinary(boolean binary) {
+        this.binary = binary;
+    }
+
+    boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * Queues a message that must not be conflated away; it is dropped only if the session
+     * already has {@link #MAX_CONTROL_MESSAGES} of them waiting.
+     */
+    void send(String message) {
+        if (controlSize.incrementAndGet() <= MAX_CONTROL_MESSAGES) {
+            markBacklog();
+            pendingBytes.addAndGet(message.length());
+            control.offer(message);
+        } else {
+            controlSize.decrementAndGet();
+            controlDropped.incrementAndGet();
+            log.warn("Outbound queue of session {} is full; dropping message", session.getId());
+        }
+        drain();
+    }
+
+    private void markBacklog() {
+        if (backlogSinceNanos == 0) {
+            backlogSinceNanos = System.nanoTime();
+        }
+    }
+
+    private void drain() {
+        while (sending.compareAndSet(false, true)) {
+            Object message = next();
+            if (message == null) {
+                if (control.isEmpty() && dirty.isEmpty()) {
+                    caughtUp();
+                }
+                sending.set(false);
+                // A message offered after next() came up empty would otherwise wait for the next offer
+                if (!hasSendable()) {
+                    return;
+                }
+                continue;
+            }
+            if (!transmit(message)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sends a message while holding the send slot.
+     * @return true if the send completed before returning and the slot was released, false if
+     * the completion handler or an error released it
+     */
+    private boolean transmit(Object message) {
+        Send send = new Send();
+        sendStartedNanos = System.nanoTime();
+        try {
+            if (message instanceof ByteBuffer frame) {
+                // Each send reads its own view, so one encoded frame serves every recipient
+                session.getAsyncRemote().sendBinary(frame.duplicate(), send);
+            } else {
+                session.getAsyncRemote().sendText((String) message, send);
+            }
+        } catch (RuntimeException e) {
+            sendStartedNanos = 0;
+            errors.incrementAndGet();
+            log.debug("Error sending message to session {}: {}", session.getId(), e.getMessage());
+            sending.set(false);
+            return false;
+        }
+        if (send.state.compareAndSet(Send.IN_TRANSMIT, Send.RETURNED)) {
+            // Still in flight; its completion releases the slot
+            return false;
+        }
+        // Completed before sendText returned, on this thread or another: loop instead of recursing
+        sending.set(false);
+        return true;
+    }
+
+    private boolean hasSendable() {
+        return !control.isEmpty() || (flushIntervalMillis == 0 && !dirty.isEmpty());
+    }
+
+    private Object next() {
+        String control = this.control.poll();
+        if (control != null) {
+            controlSize.decrementAndGet();
+            pendingBytes.addAndGet(-control.length());
+            return control;
+        }
+        if (flushIntervalMillis > 0) {
+            return null; // price updates wait for the next flush
+        }
+        String key;
+        while ((key = dirty.poll()) != null) {
+            Object message = pending.remove(key);
+            if (message != null) {
+                pendingBytes.addAndGet(-sizeOf(message));
+                return message;
+            }
+        }
+        return null;
+    }
+
+    private void caughtUp() {
+        long since = backlogSinceNanos;
+        if (since != 0) {
+            long lag = System.nanoTime() - since;
+            if (lag > maxLagNanos) {
+                maxLagNanos = lag;
+            }
+            backlogSinceNanos = 0;
+        }
+    }
+
+    private static int sizeOf(Object message) {
+        return message instanceof ByteBuffer frame ? frame.remaining() : ((String) message).length();
+    }
+
+    /**
+     * Sends a ping unless a message is in flight, in which case the send itself shows whether
+     * the client is alive. Holds the send slot meanwhile, so the ping never interleaves with a
+     * message.
+     * @return Whether the ping was sent
+     */
+    boolean ping(ByteBuffer payload) {
+        if (!sending.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            session.getAsyncRemote().sendPing(payload.duplicate());
+        } catch (IOException | RuntimeException e) {
+            errors.incrementAndGet();
+            log.debug("Error pinging session {}: {}", session.getId(), e.getMessage());
+        } finally {
+            sending.set(false);
+        }
+        if (hasSendable()) {
+            drain();
+        }
+        return true;
+    }
+
+    /**
+     * Completion handler of one send. Whichever of the completion and the return from
+     * {@code sendText} comes second releases the send slot, so a completion never releases a
+     * slot that has since been taken by a later send.
+     */
+    private final class Send implements SendHandler {
+        static final int IN_TRANSMIT = 0;
+        static final int RETURNED = 1;
+        static final int COMPLETED = 2;
+
+        final AtomicInteger state = new AtomicInteger(IN_TRANSMIT);
+
+        @Override
+        public void onResult(SendResult result) {
+            completed(result);
+            if (state.compareAndSet(IN_TRANSMIT, COMPLETED)) {
+                // The thread that started the send is still inside transmit and continues the drain
+                return;
+            }
+            sending.set(false);
+            drain();
+        }
+    }
+
+    private void completed(SendResult result) {
+        long started = sendStartedNanos;
+        if (started != 0) {
+            long elapsed = System.nanoTime() - started;
+            lastSendNanos = elapsed;
+            if (elapsed > maxSendNanos) {
+                maxSendNanos = elapsed;
+            }
+            sendStartedNanos = 0;
+        }
+        if (result.isOK()) {
+            sent.incrementAndGet();
+        } else {
+            errors.incrementAndGet();
+            log.debug("Error sending message to session {}: {}", session.getId(),
+                result.getException() == null ? "unknown" : result.getException().getMessage());
+        }
+    }
+
+    /**
+     * @return Updates waiting to be sent
+     */
+    int getPending() {
+        return pending.size() + controlSize.get();
+    }
+
+    /**
+     * @return Updates replaced by a newer one before they were sent
+     */
+    long getConflated() {
+        return conflated.get();
+    }
+
+    long getSent() {
+        return sent.get();
+    }
+
+    /**
+     * @return {@code PRICE_BATCH} frames sent
+     */
+    long getBatches() {
+        return batches;
+    }
+
+    /**
+     * @return Price updates sent inside {@code PRICE_BATCH} frames
+     */
+    long getBatchedUpdates() {
+        return batchedUpdates;
+    }
+
+    long getControlDropped() {
+        return controlDropped.get();
+    }
+
+    long getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * @return How long the session has had unsent messages, 0 when it is caught up
+     */
+    long getLagNanos() {
+        long since = backlogSinceNanos;
+        return since == 0 ? 0 : Math.max(0, System.nanoTime() - since);
+    }
+
+    long getMaxLagNanos() {
+        return Math.max(maxLagNanos, getLagNanos());
+    }
+
+    /**
+     * @return Characters of queued text and bytes of queued binary frames
+     */
+    long getPendingBytes() {
+        return pendingBytes.get();
+    }
+
+    /**
+     * @return How long the send in flight has been waiting for the client, 0 if none is
+     */
+    long getInFlightNanos() {
+        long started = sendStartedNanos;
+        return started == 0 ? 0 : Math.max(0, System.nanoTime() - started);
+    }
+
+    /**
+     * @return Time the last completed send took
+     */
+    long getLastSendNanos() {
+        return lastSendNanos;
+    }
+
+    long getMaxSendNanos() {
+        return Math.max(maxSendNanos, getInFlightNanos());
+    }
+}
@@ -0,0 +1,226 @@
+package com.cryptotrading.websocket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches every session from one timer and acts on clients that fall behind or stop answering.
+ *
+ * <p>Each pass measures how long a session has been behind, from its oldest unsent message or
+ * its send in flight, and how many bytes wait in its outbox. A session past the warning limits is
+ * logged once. Past the degrade limits it is moved to a slow {@code PRICE_BATCH} cadence, so it
+ * gets one conflated frame per interval instead of every tick, and is moved back once it has
+ * caught up. Past the disconnect limits it is closed. The same pass pings sessions that have
+ * been quiet for a ping interval and closes those that leave a ping unanswered for the ping
+ * timeout, as well as sessions the container closed without telling the endpoint.</p>
+ */
+final class SessionSupervisor {
+    private static final Logger log = LoggerFactory.getLogger(SessionSupervisor.class);
+    static final String SLOW_CONSUMER = "slowConsumer";
+    static final String PING_TIMEOUT = "pingTimeout";
+    static final String CLOSED = "closed";
+    private static final int RECENT_EVICTIONS = 20;
+    private static final ByteBuffer PING = ByteBuffer.wrap(new byte[]{'p', 'i', 'n', 'g'});
+
+    enum Level { OK, WARNED, DEGRADED }
+
+    /**
+     * Limits that trigger each step; a lag or byte limit of 0 disables that check, as does a ping
+     * interval of 0.
+     */
+    record Policy(long warnLagMillis, long degradeLagMillis, long disconnectLagMillis,
+                  long warnPendingBytes, long degradePendingBytes, long disconnectPendingBytes,
+                  int degradedFlushMillis, long pingIntervalMillis, long pingTimeoutMillis) {
+        static final Policy DEFAULT = new Policy(1_000, 5_000, 30_000,
+            256 * 1024, 1024 * 1024, 4 * 1024 * 1024, 1_000, 15_000, 45_000);
+    }
+
+    /**
+     * What the supervisor asks of the endpoint.
+     */
+    interface Actions {
+        void setFlushInterval(SessionOutbox outbox, int millis);
+
+        void evict(SessionOutbox outbox, String reason);
+    }
+
+    private final Policy policy;
+    private final Actions actions;
+    // Counters are written by the timer thread only
+    private volatile long passes;
+    private volatile long warnings;
+    private volatile long degradations;
+    private volatile long recoveries;
+    private volatile long pings;
+    private volatile int degraded;
+    private volatile long slowConsumers;
+    private volatile long pingTimeouts;
+    private volatile long closed;
+    private final Deque<Map<String, Object>> recentEvictions = new ArrayDeque<>();
+
+    SessionSupervisor(Policy policy, Actions actions) {
+        this.policy = policy;
+        this.actions = actions;
+    }
+
+    Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Runs one pass over the sessions. Called from the shared timer thread only.
+     */
+    void supervise(Iterable<SessionOutbox> outboxes, long nowNanos) {
+        int degradedNow = 0;
+        for (SessionOutbox outbox : outboxes) {
+            try {
+                if (review(outbox, nowNanos) && outbox.level == Level.DEGRADED) {
+                    degradedNow++;
+                }
+            } catch (RuntimeException e) {
+                log.error("Error supervising session {}: {}", outbox.getSession().getId(), e.getMessage());
+            }
+        }
+        degraded = degradedNow;
+        passes++;
+    }
+
+    /**
+     * @return false if the session was evicted
+     */
+    private boolean review(SessionOutbox outbox, long now) {
+        if (!outbox.getSession().isOpen()) {
+            evict(outbox, CLOSED);
+            return false;
+        }
+        if (!checkPing(outbox, now)) {
+            return false;
+        }
+        // A batching session holds updates for its interval on purpose
+        long held = TimeUnit.MILLISECONDS.toNanos(outbox.getFlushIntervalMillis());
+        long behindMillis = TimeUnit.NANOSECONDS.toMillis(
+            Math.max(outbox.getLagNanos() - held, outbox.getInFlightNanos()));
+        long bytes = outbox.getPendingBytes();
+        if (exceeds(behindMillis, policy.disconnectLagMillis()) || exceeds(bytes, policy.disconnectPendingBytes())) {
+            log.warn("Disconnecting slow session {}: {} ms behind, {} bytes pending",
+                outbox.getSession().getId(), behindMillis, bytes);
+            evict(outbox, SLOW_CONSUMER);
+            return false;
+        }
+        if (exceeds(behindMillis, policy.degradeLagMillis()) || exceeds(bytes, policy.degradePendingBytes())) {
+            if (outbox.level != Level.DEGRADED) {
+                outbox.level = Level.DEGRADED;
+                outbox.flushBeforeDegrade = outbox.getFlushIntervalMillis();
+                if (outbox.flushBeforeDegrade < policy.degradedFlushMillis()) {
+                    actions.setFlushInterval(outbox, policy.degradedFlushMillis());
+                }
+                degradations++;
+                log.warn("Session {} is {} ms behind with {} bytes pending; batching its prices every {} ms",
+                    outbox.getSession().getId(), behindMillis, bytes, policy.degradedFlushMillis());
+            }
+        } else if (exceeds(behindMillis, policy.warnLagMillis()) || exceeds(bytes, policy.warnPendingBytes())) {
+            if (outbox.level == Level.OK) {
+                outbox.level = Level.WARNED;
+                warnings++;
+                log.warn("Session {} is {} ms behind with {} bytes pending",
+                    outbox.getSession().getId(), behindMillis, bytes);
+            }
+        } else if (outbox.level == Level.DEGRADED) {
+            // Caught up: back to the cadence the client asked for, unless it has chosen another since
+            if (outbox.getFlushIntervalMillis() == policy.degradedFlushMillis()
+                && outbox.flushBeforeDegrade != policy.degradedFlushMillis()) {
+                actions.setFlushInterval(outbox, outbox.flushBeforeDegrade);
+            }
+            outbox.level = Level.OK;
+            recoveries++;
+        } else {
+            outbox.level = Level.OK;
+        }
+        return true;
+    }
+
+    /**
+     * Pings a session that has been quiet for a ping interval.
+     * @return false if the session was evicted for leaving a ping unanswered
+     */
+    private boolean checkPing(SessionOutbox outbox, long now) {
+        long interval = TimeUnit.MILLISECONDS.toNanos(policy.pingIntervalMillis());
+        if (interval == 0) {
+            return true;
+        }
+        long heard = outbox.lastHeardNanos;
+        if (outbox.unansweredPingNanos != 0 && heard - outbox.unansweredPingNanos >= 0) {
+            outbox.unansweredPingNanos = 0;
+        }
+        if (outbox.unansweredPingNanos != 0
+            && now - outbox.unansweredPingNanos > TimeUnit.MILLISECONDS.toNanos(policy.pingTimeoutMillis())) {
+            log.warn("Disconnecting session {}: no pong for {} ms", outbox.getSession().getId(),
+                TimeUnit.NANOSECONDS.toMillis(now - outbox.unansweredPingNanos));
+            evict(outbox, PING_TIMEOUT);
+            return false;
+        }
+        if (now - heard >= interval && now - outbox.lastPingNanos >= interval && outbox.ping(PING)) {
+            outbox.lastPingNanos = now;
+            if (outbox.unansweredPingNanos == 0) {
+                outbox.unansweredPingNanos = now;
+            }
+            pings++;
+        }
+        return true;
+    }
+
+    private static boolean exceeds(long value, long limit) {
+        return limit > 0 && value >= limit;
+    }
+
+    private void evict(SessionOutbox outbox, String reason) {
+        switch (reason) {
+            case SLOW_CONSUMER -> slowConsumers++;
+            case PING_TIMEOUT -> pingTimeouts++;
+            default -> closed++;
+        }
+        Map<String, Object> eviction = new LinkedHashMap<>();
+        eviction.put("id", outbox.getSession().getId());
+        eviction.put("reason", reason);
+        eviction.put("atMillis", System.currentTimeMillis());
+        eviction.put("lagMillis", outbox.getLagNanos() / 1_000_000);
+        eviction.put("pendingBytes", outbox.getPendingBytes());
+        synchronized (recentEvictions) {
+            if (recentEvictions.size() == RECENT_EVICTIONS) {
+                recentEvictions.removeFirst();
+            }
+            recentEvictions.addLast(eviction);
+        }
+        actions.evict(outbox, reason);
+    }
+
+    Map<String, Object> getMetrics() {
+        Map<String, Object> evictions = new LinkedHashMap<>();
+        evictions.put(SLOW_CONSUMER, slowConsumers);
+        evictions.put(PING_TIMEOUT, pingTimeouts);
+        evictions.put(CLOSED, closed);
+        List<Map<String, Object>> recent;
+        synchronized (recentEvictions) {
+            recent = new ArrayList<>(recentEvictions);
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("passes", passes);
+        metrics.put("warnings", warnings);
+        metrics.put("degradations", degradations);
+        metrics.put("recoveries", recoveries);
+        metrics.put("degradedSessions", degraded);
+        metrics.put("pings", pings);
+        metrics.put("evictions", evictions);
+        metrics.put("recentEvictions", recent);
+        return metrics;
+    }
+}
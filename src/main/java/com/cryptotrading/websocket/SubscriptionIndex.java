@@ -0,0 +1,186 @@
+package com.cryptotrading.websocket;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Inverted index from symbol ID to the sessions subscribed to it.
+ *
+ * <p>Every session gets a dense slot number, and each symbol holds a bitset of the slots
+ * subscribed to it. Sessions that want every symbol are kept in one shared bitset instead of
+ * in every symbol's. Subscription changes set and clear bits in place under the index lock,
+ * so a connect or disconnect costs the same however many sessions there are; an array is only
+ * copied when a slot beyond its end is first used. The broadcasting thread reads the words
+ * without locking, so a tick only visits the sessions interested in its symbol.</p>
+ */
+final class SubscriptionIndex {
+    private static final AtomicLongArray EMPTY = new AtomicLongArray(0);
+    // Index of sessions that were never added; every change to it is a no-op
+    static final SubscriptionIndex NONE = new SubscriptionIndex();
+
+    // Grown on demand; rewriting the field after changing an element publishes the element
+    private volatile AtomicLongArray[] bySymbol = new AtomicLongArray[64];
+    private volatile AtomicLongArray allSymbols = new AtomicLongArray(1);
+    private volatile AtomicReferenceArray<SessionOutbox> slots = new AtomicReferenceArray<>(64);
+    private final BitSet usedSlots = new BitSet();
+    private int sessions;
+    private int symbolSubscriptions;
+
+    /**
+     * Gives the session a slot, subscribed to every symbol.
+     */
+    synchronized void add(SessionOutbox outbox) {
+        if (outbox.slot >= 0) {
+            return;
+        }
+        int slot = usedSlots.nextClearBit(0);
+        usedSlots.set(slot);
+        AtomicReferenceArray<SessionOutbox> current = slots;
+        if (slot >= current.length()) {
+            AtomicReferenceArray<SessionOutbox> grown = new AtomicReferenceArray<>(current.length() * 2);
+            for (int i = 0; i < current.length(); i++) {
+                grown.set(i, current.get(i));
+            }
+            current = grown;
+        }
+        // Written before any bit naming the slot is set
+        current.set(slot, outbox);
+        slots = current;
+        outbox.slot = slot;
+        outbox.index = this;
+        sessions++;
+        setAllSymbols(outbox, true);
+    }
+
+    /**
+     * Clears every subscription of the session and frees its slot.
+     */
+    synchronized void remove(SessionOutbox outbox) {
+        int slot = outbox.slot;
+        if (slot < 0 || outbox.index != this) {
+            return;
+        }
+        setAllSymbols(outbox, false);
+        unsubscribeAll(outbox);
+        slots.set(slot, null);
+        usedSlots.clear(slot);
+        outbox.slot = -1;
+        sessions--;
+    }
+
+    synchronized void setAllSymbols(SessionOutbox outbox, boolean enabled) {
+        if (outbox.slot < 0 || outbox.allSymbols == enabled) {
+            return;
+        }
+        allSymbols = withBit(allSymbols, outbox.slot, enabled);
+        outbox.allSymbols = enabled;
+    }
+
+    /**
+     * @return false if the session already was subscribed to the symbol
+     */
+    synchronized boolean subscribe(SessionOutbox outbox, int symbolId) {
+        if (outbox.slot < 0 || outbox.symbols.get(symbolId)) {
+            return false;
+        }
+        AtomicLongArray bits = subscribers(symbolId);
+        AtomicLongArray updated = withBit(bits == EMPTY ? new AtomicLongArray(1) : bits, outbox.slot, true);
+        if (updated != bits) {
+            setSubscribers(symbolId, updated);
+        }
+        outbox.symbols.set(symbolId);
+        symbolSubscriptions++;
+        return true;
+    }
+
+    synchronized boolean unsubscribe(SessionOutbox outbox, int symbolId) {
+        if (outbox.slot < 0 || !outbox.symbols.get(symbolId)) {
+            return false;
+        }
+        withBit(subscribers(symbolId), outbox.slot, false);
+        outbox.symbols.clear(symbolId);
+        symbolSubscriptions--;
+        return true;
+    }
+
+    synchronized void unsubscribeAll(SessionOutbox outbox) {
+        for (int id = outbox.symbols.nextSetBit(0); id >= 0; id = outbox.symbols.nextSetBit(id + 1)) {
+            unsubscribe(outbox, id);
+        }
+    }
+
+    /**
+     * @return Slots subscribed to the symbol itself, not counting all-symbol sessions; bits
+     * change in place as sessions subscribe and unsubscribe
+     */
+    AtomicLongArray subscribers(int symbolId) {
+        AtomicLongArray[] current = bySymbol;
+        AtomicLongArray bits = symbolId >= 0 && symbolId < current.length ? current[symbolId] : null;
+        return bits == null ? EMPTY : bits;
+    }
+
+    private void setSubscribers(int symbolId, AtomicLongArray bits) {
+        AtomicLongArray[] current = bySymbol;
+        if (symbolId >= current.length) {
+            current = Arrays.copyOf(current, Math.max(current.length * 2, symbolId + 1));
+        }
+        current[symbolId] = bits;
+        bySymbol = current;
+    }
+
+    /**
+     * @return Slots subscribed to every symbol; bits change in place
+     */
+    AtomicLongArray allSymbols() {
+        return allSymbols;
+    }
+
+    /**
+     * @return Sessions by slot; read after the bitsets, a slot named by a bit is filled in
+     */
+    AtomicReferenceArray<SessionOutbox> slots() {
+        return slots;
+    }
+
+    synchronized int getSessions() {
+        return sessions;
+    }
+
+    synchronized int getSymbolSubscriptions() {
+        return symbolSubscriptions;
+    }
+
+    synchronized int getAllSymbolSessions() {
+        AtomicLongArray bits = allSymbols;
+        int count = 0;
+        for (int w = 0; w < bits.length(); w++) {
+            count += Long.bitCount(bits.get(w));
+        }
+        return count;
+    }
+
+    /**
+     * Sets or clears a bit in place, first copying the words into a larger array if the slot
+     * lies beyond them.
+     * @return The array now holding the bit, which the caller publishes if it is a new one
+     */
+    private static AtomicLongArray withBit(AtomicLongArray bits, int slot, boolean set) {
+        int word = slot >>> 6;
+        if (word >= bits.length()) {
+            if (!set) {
+                return bits;
+            }
+            AtomicLongArray grown = new AtomicLongArray(Math.max(bits.length() * 2, word + 1));
+            for (int i = 0; i < bits.length(); i++) {
+                grown.set(i, bits.get(i));
+            }
+            bits = grown;
+        }
+        // Writers hold the index lock, so a plain read and a volatile write are enough
+        long current = bits.get(word);
+        bits.set(word, set ? current | 1L << slot : current & ~(1L << slot));
+        return bits;
+    }
+}
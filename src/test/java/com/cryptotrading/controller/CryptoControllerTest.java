@@ -1,12 +1,20 @@
 package com.cryptotrading.controller;
 
+import com.cryptotrading.service.CandleEngine;
+import com.cryptotrading.service.DecodedBookUpdate;
+import com.cryptotrading.service.DecodedTick;
+import com.cryptotrading.service.KrakenFrameDecoder;
 import com.cryptotrading.service.KrakenWebSocketService;
+import com.cryptotrading.service.OrderBookStore;
+import com.cryptotrading.service.PriceTable;
+import com.cryptotrading.service.SymbolRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
@@ -34,6 +42,17 @@ class CryptoControllerTest {
     @Mock(lenient = true)
     private RestTemplate restTemplate; // Mock REST client for external API calls
 
+    @Spy
+    private PriceTable priceTable = new PriceTable(new SymbolRegistry()); // Real price table with test data
+
+    private final SymbolRegistry bookSymbols = new SymbolRegistry();
+
+    @Spy
+    private OrderBookStore orderBookStore = new OrderBookStore(bookSymbols); // Real book store
+
+    @Spy
+    private CandleEngine candleEngine = new CandleEngine(bookSymbols); // Real candle engine
+
     @InjectMocks
     private CryptoController cryptoController; // Controller instance with injected mocks
     // Test utilities
@@ -57,14 +76,62 @@ class CryptoControllerTest {
         when(restTemplate.getForObject(anyString(), eq(String.class))).thenReturn(mockApiResponse);
     }
 
+    // Test case: GET request for a tracked order book should return the top levels
+    @Test
+    void getOrderBook_ShouldReturnTopLevels() throws Exception {
+        // Setup a book from a Kraken snapshot frame
+        orderBookStore.track("XBT/USD", 10);
+        DecodedBookUpdate update = new DecodedBookUpdate();
+        new KrakenFrameDecoder(bookSymbols).decode("[0,{\"as\":[[\"5541.30000\",\"2.50700000\",\"1534614248.123678\"],"
+            + "[\"5541.80000\",\"0.33000000\",\"1534614098.345543\"]],\"bs\":[[\"5541.20000\",\"1.52900000\",\"1534614248.765567\"]]},"
+            + "\"book-10\",\"XBT/USD\"]", new DecodedTick(), update);
+        orderBookStore.apply(update, 1L);
+
+        mockMvc.perform(get("/api/order-book").param("symbol", "XBT/USD").param("depth", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.synced").value(true))
+                .andExpect(jsonPath("$.asks.length()").value(1))
+                .andExpect(jsonPath("$.asks[0][0]").value(5541.3))
+                .andExpect(jsonPath("$.bids[0][1]").value(1.529));
+    }
+
+    // Test case: GET request for an untracked order book should return 404
+    @Test
+    void getOrderBook_WhenNotTracked_ShouldReturnNotFound() throws Exception {
+        mockMvc.perform(get("/api/order-book").param("symbol", "DOGE/USD"))
+                .andExpect(status().isNotFound());
+    }
+
+    // Test case: GET request for candles should return bars oldest first
+    @Test
+    void getCandles_ShouldReturnBarsOldestFirst() throws Exception {
+        // Setup two one-minute bars
+        int id = bookSymbols.register("XBT/USD");
+        candleEngine.onTick(id, 100.0, Double.NaN, 1_711_034_400_000L);
+        candleEngine.onTick(id, 102.0, Double.NaN, 1_711_034_460_000L);
+
+        mockMvc.perform(get("/api/candles").param("symbol", "XBT/USD").param("interval", "1m"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.interval").value("1m"))
+                .andExpect(jsonPath("$.candles.length()").value(2))
+                .andExpect(jsonPath("$.candles[0].close").value(100.0))
+                .andExpect(jsonPath("$.candles[1].open").value(102.0));
+    }
+
+    // Test case: GET request for candles with an unknown interval should be rejected
+    @Test
+    void getCandles_WithUnknownInterval_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/candles").param("symbol", "XBT/USD").param("interval", "2h"))
+                .andExpect(status().isBadRequest());
+    }
+
     // Test case: GET request to fetch crypto data should return latest prices
     @Test
     void getCryptoData_ShouldReturnLatestPrices() throws Exception {
-        // Setup mock price data
-        Map<String, Double> mockPrices = new HashMap<>();
-        mockPrices.put("BTC/USD", 50000.0);
-        mockPrices.put("ETH/USD", 3000.0);
-        when(krakenWebSocketService.getLatestPrices()).thenReturn(mockPrices);
+        // Setup price data
+        SymbolRegistry symbols = priceTable.getSymbolRegistry();
+        priceTable.update(symbols.register("BTC/USD"), 50000.0, 48000.0, 4.17, 49999.0, 50001.0, 100.0, 1L);
+        priceTable.update(symbols.register("ETH/USD"), 3000.0, 3000.0, 0.0, 2999.0, 3001.0, 50.0, 1L);
 
         // Perform GET request and verify response structure
         mockMvc.perform(get("/api/crypto-data"))
@@ -72,9 +139,10 @@ class CryptoControllerTest {
                 .andExpect(jsonPath("$.prices").isArray()) // Prices should be an array
                 .andExpect(jsonPath("$.prices[0].symbol").exists()) // Each item has symbol
                 .andExpect(jsonPath("$.prices[0].price").exists()) // Each item has price
-                .andExpect(jsonPath("$.prices[0].change24h").exists()); // Each item has 24h change
-
-        verify(krakenWebSocketService).getLatestPrices(); // Verify service method was called
+                .andExpect(jsonPath("$.prices[0].change24h").exists()) // Each item has 24h change
+                .andExpect(jsonPath("$.prices[0].symbol").value("BTC/USD"))
+                .andExpect(jsonPath("$.prices[0].price").value(50000.0))
+                .andExpect(jsonPath("$.prices[1].change24h").value(0.0));
     }
 
     // Test case: Valid subscription request should return success
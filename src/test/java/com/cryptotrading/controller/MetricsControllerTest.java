@@ -0,0 +1,224 @@
+package com.cryptotrading.controller;
+
+import com.cryptotrading.service.CandleEngine;
+import com.cryptotrading.service.KrakenWebSocketService;
+import com.cryptotrading.service.OrderBookStore;
+import com.cryptotrading.service.PriceBusService;
+import com.cryptotrading.service.RestingOrderService;
+import com.cryptotrading.service.SubscriptionManager;
+import com.cryptotrading.service.TickJournal;
+import com.cryptotrading.service.TickPipeline;
+import com.cryptotrading.service.TickReplayService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(MockitoExtension.class)
+class MetricsControllerTest {
+
+    @Mock
+    private TickPipeline tickPipeline;
+
+    @Mock
+    private KrakenWebSocketService krakenWebSocketService;
+
+    @Mock
+    private OrderBookStore orderBookStore;
+
+    @Mock
+    private CandleEngine candleEngine;
+
+    @Mock
+    private TickJournal tickJournal;
+
+    @Mock
+    private TickReplayService tickReplayService;
+
+    @Mock
+    private PriceBusService priceBusService;
+
+    @Mock
+    private RestingOrderService restingOrderService;
+
+    @InjectMocks
+    private MetricsController metricsController;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(metricsController).build();
+    }
+
+    @Test
+    void getPipelineMetrics_ShouldReturnPipelineMetrics() throws Exception {
+        // Given
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("capacity", 8192);
+        metrics.put("depth", 3L);
+        metrics.put("stages", List.of(Map.of("name", "tick-pipeline-fanout", "lag", 3L)));
+        when(tickPipeline.getMetrics()).thenReturn(metrics);
+
+        // When & Then
+        mockMvc.perform(get("/api/metrics/pipeline"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.capacity").value(8192))
+                .andExpect(jsonPath("$.depth").value(3))
+                .andExpect(jsonPath("$.stages[0].name").value("tick-pipeline-fanout"));
+
+        verify(tickPipeline).getMetrics();
+    }
+
+    @Test
+    void getSubscriptionMetrics_ShouldReturnSubscriptionStates() throws Exception {
+        // Given
+        SubscriptionManager subscriptionManager = new SubscriptionManager();
+        subscriptionManager.request("XBT/USD", "ETH/USD");
+        subscriptionManager.onSubscribed("XBT/USD");
+        when(krakenWebSocketService.getSubscriptionMetrics()).thenReturn(subscriptionManager.getMetrics());
+
+        // When & Then
+        mockMvc.perform(get("/api/metrics/subscriptions"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.confirmed").value(1))
+                .andExpect(jsonPath("$.pending").value(1))
+                .andExpect(jsonPath("$.failed").value(0));
+    }
+
+    @Test
+    void getFeedMetrics_ShouldReturnActiveConnection() throws Exception {
+        // Given
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("failoverEnabled", true);
+        metrics.put("active", "standby");
+        metrics.put("failovers", 1L);
+        when(krakenWebSocketService.getFeedMetrics()).thenReturn(metrics);
+
+        // When & Then
+        mockMvc.perform(get("/api/metrics/feed"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.active").value("standby"))
+                .andExpect(jsonPath("$.failovers").value(1));
+    }
+
+    @Test
+    void getSessionMetrics_ShouldReturnOutboundCounters() throws Exception {
+        // When & Then
+        mockMvc.perform(get("/api/metrics/sessions"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.sessions").isNumber())
+                .andExpect(jsonPath("$.conflatedDrops").isNumber())
+                .andExpect(jsonPath("$.maxLagMillis").isNumber())
+                .andExpect(jsonPath("$.slowest").isArray());
+    }
+
+    @Test
+    void getOrderBookMetrics_ShouldReturnChecksumMismatches() throws Exception {
+        // Given
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("books", 2);
+        metrics.put("synced", 1);
+        metrics.put("checksumMismatches", 1L);
+        when(orderBookStore.getMetrics()).thenReturn(metrics);
+
+        // When & Then
+        mockMvc.perform(get("/api/metrics/order-books"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.books").value(2))
+                .andExpect(jsonPath("$.checksumMismatches").value(1));
+    }
+
+    @Test
+    void getCandleMetrics_ShouldReturnBarStorage() throws Exception {
+        // Given
+        when(candleEngine.getMetrics()).thenReturn(Map.of("pairs", 21, "bytesPerPair", 28872L));
+
+        // When & Then
+        mockMvc.perform(get("/api/metrics/candles"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.pairs").value(21))
+                .andExpect(jsonPath("$.bytesPerPair").value(28872));
+    }
+
+    @Test
+    void getJournalMetrics_ShouldReturnSegmentAndForceTimings() throws Exception {
+        // Given
+        when(tickJournal.getMetrics()).thenReturn(Map.of(
+            "segment", "ticks-2024-03-21.journal", "records", 1843200L, "errors", 0L));
+
+        // When & Then
+        mockMvc.perform(get("/api/metrics/journal"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.segment").value("ticks-2024-03-21.journal"))
+                .andExpect(jsonPath("$.records").value(1843200))
+                .andExpect(jsonPath("$.errors").value(0));
+    }
+
+    @Test
+    void getBusMetrics_ShouldReturnBusMetrics() throws Exception {
+        // Given
+        when(priceBusService.getMetrics()).thenReturn(Map.of("role", "follower", "received", 1200L, "overruns", 0L));
+
+        // When & Then
+        mockMvc.perform(get("/api/metrics/bus"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.role").value("follower"))
+                .andExpect(jsonPath("$.received").value(1200))
+                .andExpect(jsonPath("$.overruns").value(0));
+    }
+
+    @Test
+    void restartReplay_ShouldReplayAtTheRequestedSpeed() throws Exception {
+        // Given
+        when(tickReplayService.isEnabled()).thenReturn(true);
+        when(tickReplayService.getMetrics()).thenReturn(Map.of("speed", 50.0, "playing", true));
+
+        // When & Then
+        mockMvc.perform(post("/api/metrics/replay").param("speed", "50"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.speed").value(50.0))
+                .andExpect(jsonPath("$.playing").value(true));
+        verify(tickReplayService).replay(50.0);
+    }
+
+    @Test
+    void restartReplay_WhenReplayIsDisabled_ShouldReturnConflict() throws Exception {
+        // Given
+        when(tickReplayService.isEnabled()).thenReturn(false);
+
+        // When & Then
+        mockMvc.perform(post("/api/metrics/replay").param("speed", "10"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.error").value("Replay is not enabled"));
+        verify(tickReplayService, never()).replay(anyDouble());
+    }
+
+    @Test
+    void getOrderMetrics_ShouldReturnRestingOrderMetrics() throws Exception {
+        // Given
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("open", 12);
+        metrics.put("filled", 3L);
+        when(restingOrderService.getMetrics()).thenReturn(metrics);
+
+        // When & Then
+        mockMvc.perform(get("/api/metrics/orders"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.open").value(12))
+                .andExpect(jsonPath("$.filled").value(3));
+    }
+}
@@ -1,5 +1,6 @@
 package com.cryptotrading.controller;
 
+import com.cryptotrading.service.RestingOrderService;
 import com.cryptotrading.service.TradingService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
@@ -13,11 +14,13 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.anyDouble;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -28,6 +31,9 @@ class TradingControllerTest {
     @Mock
     private TradingService tradingService;
 
+    @Mock
+    private RestingOrderService restingOrderService;
+
     @InjectMocks
     private TradingController tradingController;
 
@@ -53,7 +59,7 @@ class TradingControllerTest {
         response.put("success", true);
         response.put("balance", 5000.0);
 
-        when(tradingService.executeTrade(anyString(), anyString(), anyDouble(), anyDouble()))
+        when(tradingService.executeMarketTrade(anyString(), anyString(), anyString(), anyDouble(), anyDouble(), anyDouble()))
                 .thenReturn(response);
 
         // When & Then
@@ -64,7 +70,54 @@ class TradingControllerTest {
                 .andExpect(jsonPath("$.success").value(true))
                 .andExpect(jsonPath("$.balance").value(5000.0));
 
-        verify(tradingService).executeTrade("BUY", "BTC/USD", 1.0, 50000.0);
+        verify(tradingService).executeMarketTrade(TradingService.DEFAULT_ACCOUNT, "BUY", "BTC/USD", 1.0, 50000.0,
+            Double.NaN);
+    }
+
+    @Test
+    void executeTrade_WithAccountId_ShouldTradeOnThatAccount() throws Exception {
+        // Given
+        Map<String, Object> request = new HashMap<>();
+        request.put("accountId", "alice");
+        request.put("type", "SELL");
+        request.put("symbol", "ETH/USD");
+        request.put("amount", 2.0);
+        request.put("price", 3000.0);
+
+        when(tradingService.executeMarketTrade(anyString(), anyString(), anyString(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(Map.of("balance", 16000.0));
+
+        // When & Then
+        mockMvc.perform(post("/api/trade")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance").value(16000.0));
+
+        verify(tradingService).executeMarketTrade("alice", "SELL", "ETH/USD", 2.0, 3000.0, Double.NaN);
+    }
+
+    @Test
+    void executeTrade_WithoutPrice_ShouldTradeAtTheLiveQuote() throws Exception {
+        // Given
+        Map<String, Object> request = new HashMap<>();
+        request.put("type", "BUY");
+        request.put("symbol", "BTC/USD");
+        request.put("amount", 0.5);
+        request.put("maxSlippage", 0.002);
+
+        when(tradingService.executeMarketTrade(anyString(), anyString(), anyString(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(Map.of("balance", 7500.0));
+
+        // When & Then
+        mockMvc.perform(post("/api/trade")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance").value(7500.0));
+
+        verify(tradingService).executeMarketTrade(TradingService.DEFAULT_ACCOUNT, "BUY", "BTC/USD", 0.5, Double.NaN,
+            0.002);
     }
 
     @Test
@@ -76,7 +129,7 @@ class TradingControllerTest {
         request.put("amount", -1.0);
         request.put("price", 50000.0);
 
-        when(tradingService.executeTrade(anyString(), anyString(), anyDouble(), anyDouble()))
+        when(tradingService.executeMarketTrade(anyString(), anyString(), anyString(), anyDouble(), anyDouble(), anyDouble()))
                 .thenThrow(new IllegalArgumentException("Amount must be greater than 0"));
 
         // When & Then
@@ -96,7 +149,7 @@ class TradingControllerTest {
         request.put("amount", 1.0);
         request.put("price", 50000.0);
 
-        when(tradingService.executeTrade(anyString(), anyString(), anyDouble(), anyDouble()))
+        when(tradingService.executeMarketTrade(anyString(), anyString(), anyString(), anyDouble(), anyDouble(), anyDouble()))
                 .thenThrow(new RuntimeException("Unexpected error"));
 
         // When & Then
@@ -114,7 +167,7 @@ class TradingControllerTest {
         response.put("balance", 10000.0);
         response.put("portfolio", new HashMap<>());
 
-        when(tradingService.resetAccount()).thenReturn(response);
+        when(tradingService.resetAccount(TradingService.DEFAULT_ACCOUNT)).thenReturn(response);
 
         // When & Then
         mockMvc.perform(post("/api/reset"))
@@ -122,13 +175,13 @@ class TradingControllerTest {
                 .andExpect(jsonPath("$.balance").value(10000.0))
                 .andExpect(jsonPath("$.portfolio").exists());
 
-        verify(tradingService).resetAccount();
+        verify(tradingService).resetAccount(TradingService.DEFAULT_ACCOUNT);
     }
 
     @Test
     void resetAccount_WhenServiceThrowsException_ShouldReturnInternalServerError() throws Exception {
         // Given
-        when(tradingService.resetAccount()).thenThrow(new RuntimeException("Unexpected error"));
+        when(tradingService.resetAccount(TradingService.DEFAULT_ACCOUNT)).thenThrow(new RuntimeException("Unexpected error"));
 
         // When & Then
         mockMvc.perform(post("/api/reset"))
@@ -143,7 +196,7 @@ class TradingControllerTest {
         response.put("balance", 10000.0);
         response.put("portfolio", new HashMap<>());
 
-        when(tradingService.getUpdatedState()).thenReturn(response);
+        when(tradingService.getUpdatedState(TradingService.DEFAULT_ACCOUNT)).thenReturn(response);
 
         // When & Then
         mockMvc.perform(get("/api/initial-data"))
@@ -151,17 +204,92 @@ class TradingControllerTest {
                 .andExpect(jsonPath("$.balance").value(10000.0))
                 .andExpect(jsonPath("$.portfolio").exists());
 
-        verify(tradingService).getUpdatedState();
+        verify(tradingService).getUpdatedState(TradingService.DEFAULT_ACCOUNT);
+    }
+
+    @Test
+    void getInitialData_WithAccountId_ShouldReturnThatAccount() throws Exception {
+        // Given
+        when(tradingService.getUpdatedState("alice")).thenReturn(Map.of("balance", 2500.0));
+
+        // When & Then
+        mockMvc.perform(get("/api/initial-data").param("accountId", "alice"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance").value(2500.0));
     }
 
     @Test
     void getInitialData_WhenServiceThrowsException_ShouldReturnInternalServerError() throws Exception {
         // Given
-        when(tradingService.getUpdatedState()).thenThrow(new RuntimeException("Unexpected error"));
+        when(tradingService.getUpdatedState(TradingService.DEFAULT_ACCOUNT)).thenThrow(new RuntimeException("Unexpected error"));
 
         // When & Then
         mockMvc.perform(get("/api/initial-data"))
                 .andExpect(status().isInternalServerError())
                 .andExpect(jsonPath("$.message").value("Internal server error"));
     }
-} 
\ No newline at end of file
+
+    @Test
+    void placeOrder_WithValidRequest_ShouldReturnTheOpenOrder() throws Exception {
+        // Given
+        Map<String, Object> request = new HashMap<>();
+        request.put("accountId", "alice");
+        request.put("type", "STOP_LOSS");
+        request.put("side", "SELL");
+        request.put("symbol", "BTC/USD");
+        request.put("amount", 0.5);
+        request.put("price", 45000.0);
+        when(restingOrderService.place("alice", "STOP_LOSS", "SELL", "BTC/USD", 0.5, 45000.0))
+                .thenReturn(Map.of("id", 7L, "type", "STOP_LOSS"));
+
+        // When & Then
+        mockMvc.perform(post("/api/orders")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(7))
+                .andExpect(jsonPath("$.type").value("STOP_LOSS"));
+    }
+
+    @Test
+    void placeOrder_WithoutPrice_ShouldReturnBadRequest() throws Exception {
+        // Given
+        Map<String, Object> request = Map.of("type", "LIMIT", "side", "BUY", "symbol", "BTC/USD", "amount", 1.0);
+
+        // When & Then
+        mockMvc.perform(post("/api/orders")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Amount and price are required"));
+
+        verifyNoInteractions(restingOrderService);
+    }
+
+    @Test
+    void getOpenOrders_ShouldListTheAccountsOrders() throws Exception {
+        // Given
+        when(restingOrderService.getOpenOrders("alice")).thenReturn(List.of(Map.of("id", 7L, "symbol", "BTC/USD")));
+
+        // When & Then
+        mockMvc.perform(get("/api/orders").param("accountId", "alice"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(7))
+                .andExpect(jsonPath("$[0].symbol").value("BTC/USD"));
+    }
+
+    @Test
+    void cancelOrder_WhenNotOpen_ShouldReturnNotFound() throws Exception {
+        // Given
+        when(restingOrderService.cancel(TradingService.DEFAULT_ACCOUNT, 7L)).thenReturn(false);
+        when(restingOrderService.cancel("alice", 7L)).thenReturn(true);
+
+        // When & Then
+        mockMvc.perform(delete("/api/orders/7"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.message").value("Order not found"));
+        mockMvc.perform(delete("/api/orders/7").param("accountId", "alice"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cancelled").value(true));
+    }
+}
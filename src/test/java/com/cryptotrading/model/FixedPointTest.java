@@ -0,0 +1,115 @@
+package com.cryptotrading.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FixedPointTest {
+
+    @Test
+    void toUnits_ShouldConvertDecimalsExactly() {
+        // 0.1, 0.29 and 1.005 are not exact doubles; their nearest doubles still mean those decimals
+        assertEquals(10_000_000L, FixedPoint.toUnits(0.1, 8, RoundingMode.UNNECESSARY));
+        assertEquals(29L, FixedPoint.toUnits(0.29, 2, RoundingMode.UNNECESSARY));
+        assertEquals(1005L, FixedPoint.toUnits(1.005, 3, RoundingMode.DOWN));
+        assertEquals(-123_456_789L, FixedPoint.toUnits(-1.23456789, 8, RoundingMode.UNNECESSARY));
+        assertEquals(1_000_000_000_000L, FixedPoint.toUnits(10000.0, 8, RoundingMode.UNNECESSARY));
+    }
+
+    @Test
+    void toUnits_WithMoreDecimalPlaces_ShouldRoundWithTheMode() {
+        assertEquals(123L, FixedPoint.toUnits(1.2399, 2, RoundingMode.DOWN));
+        assertEquals(124L, FixedPoint.toUnits(1.2301, 2, RoundingMode.CEILING));
+        assertEquals(-124L, FixedPoint.toUnits(-1.2301, 2, RoundingMode.FLOOR));
+        assertEquals(-123L, FixedPoint.toUnits(-1.2399, 2, RoundingMode.DOWN));
+        assertEquals(12L, FixedPoint.toUnits(1.25, 1, RoundingMode.HALF_EVEN));
+        assertEquals(14L, FixedPoint.toUnits(1.35, 1, RoundingMode.HALF_EVEN));
+        assertEquals(13L, FixedPoint.toUnits(1.25, 1, RoundingMode.HALF_UP));
+        assertThrows(ArithmeticException.class, () -> FixedPoint.toUnits(1.234, 2, RoundingMode.UNNECESSARY));
+        assertThrows(ArithmeticException.class, () -> FixedPoint.toUnits(Double.NaN, 2, RoundingMode.DOWN));
+        assertThrows(ArithmeticException.class, () -> FixedPoint.toUnits(1e12, 8, RoundingMode.DOWN));
+    }
+
+    @Test
+    void toUnits_ShouldRoundTripEveryDecimalThroughToDouble() {
+        // Given
+        Random random = new Random(42);
+
+        for (int i = 0; i < 1_000_000; i++) {
+            int decimals = random.nextInt(11);
+            long units = random.nextLong() % FixedPoint.pow10(1 + random.nextInt(FixedPoint.MAX_DECIMALS));
+
+            // When
+            double value = FixedPoint.toDouble(units, decimals);
+
+            // Then
+            assertEquals(BigDecimal.valueOf(units, decimals).doubleValue(), value);
+            // Doubles tell apart all decimals of up to 15 significant digits
+            if (Math.abs(units) < 1_000_000_000_000_000L) {
+                assertEquals(units, FixedPoint.toUnits(value, decimals, RoundingMode.UNNECESSARY));
+            }
+        }
+    }
+
+    @Test
+    void divide_ShouldMatchBigDecimalForEveryMode() {
+        // Given
+        Random random = new Random(7);
+        RoundingMode[] modes = {RoundingMode.UP, RoundingMode.DOWN, RoundingMode.CEILING, RoundingMode.FLOOR,
+            RoundingMode.HALF_UP, RoundingMode.HALF_DOWN, RoundingMode.HALF_EVEN};
+
+        for (int i = 0; i < 200_000; i++) {
+            long dividend = random.nextInt(2_001) - 1_000;
+            long divisor = random.nextBoolean() ? 10 : random.nextInt(199) - 99;
+            if (divisor == 0) {
+                continue;
+            }
+            for (RoundingMode mode : modes) {
+                // When
+                long quotient = FixedPoint.divide(dividend, divisor, mode);
+
+                // Then
+                assertEquals(BigDecimal.valueOf(dividend).divide(BigDecimal.valueOf(divisor), 0, mode).longValueExact(),
+                    quotient, dividend + " / " + divisor + " " + mode);
+            }
+        }
+        assertThrows(ArithmeticException.class, () -> FixedPoint.divide(7, 2, RoundingMode.UNNECESSARY));
+    }
+
+    @Test
+    void multiply_WhenTheProductOverflowsALong_ShouldStillBeExact() {
+        // Given: 5,000 BTC at 90,000.12345678 USD, both with 8 decimals
+        long quantity = 500_000_000_000L;
+        long price = 9_000_012_345_678L;
+
+        // When
+        long cost = FixedPoint.multiply(quantity, price, 8, RoundingMode.CEILING);
+        long share = FixedPoint.multiplyDivide(cost, 1_000_000_000_000L, 3_000_000_000_000L, RoundingMode.HALF_EVEN);
+
+        // Then
+        assertEquals(45_000_061_728_390_000L, cost);
+        assertEquals(15_000_020_576_130_000L, share);
+        assertThrows(ArithmeticException.class,
+            () -> FixedPoint.multiply(Long.MAX_VALUE, Long.MAX_VALUE, 0, RoundingMode.DOWN));
+    }
+
+    @Test
+    void multiply_ShouldRoundTheDroppedDecimals() {
+        // 0.00000003 BTC at 1.5 USD is 0.000000045 USD
+        assertEquals(5L, FixedPoint.multiply(3, 150_000_000, 8, RoundingMode.CEILING));
+        assertEquals(4L, FixedPoint.multiply(3, 150_000_000, 8, RoundingMode.FLOOR));
+        assertEquals(4L, FixedPoint.multiply(3, 150_000_000, 8, RoundingMode.HALF_EVEN));
+    }
+
+    @Test
+    void rescale_ShouldAddOrDropDecimalPlaces() {
+        assertEquals(1_234_500_000L, FixedPoint.rescale(1_234_500, 5, 8, RoundingMode.UNNECESSARY));
+        assertEquals(1_235L, FixedPoint.rescale(1_234_500, 5, 2, RoundingMode.HALF_UP));
+        assertEquals(1_234L, FixedPoint.rescale(1_234_500, 5, 2, RoundingMode.HALF_EVEN));
+        assertThrows(ArithmeticException.class, () -> FixedPoint.rescale(Long.MAX_VALUE / 10, 0, 2, RoundingMode.DOWN));
+    }
+}
@@ -0,0 +1,273 @@
+package com.cryptotrading.model;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LotQueueTest {
+    private static final Logger log = LoggerFactory.getLogger(LotQueueTest.class);
+
+    @Test
+    void remove_WithFifo_ShouldTakeTheOldestLotsAndSplitTheLast() {
+        // Given
+        LotQueue lots = lots(CostBasisMethod.FIFO, 10, 100, 20, 300, 30, 600);
+
+        // When
+        long basis = lots.remove(25);
+
+        // Then: all of the first lot and three quarters of the second
+        assertEquals(325, basis);
+        assertEquals("FIFO[[5, 75], [30, 600]]", lots.toString());
+        assertEquals(35, lots.getQuantity());
+        assertEquals(675, lots.getCost());
+    }
+
+    @Test
+    void remove_WithLifo_ShouldTakeTheNewestLotsFirst() {
+        // Given
+        LotQueue lots = lots(CostBasisMethod.LIFO, 10, 100, 20, 300, 30, 600);
+
+        // When
+        long basis = lots.remove(40);
+
+        // Then
+        assertEquals(750, basis);
+        assertEquals("LIFO[[10, 100], [10, 150]]", lots.toString());
+    }
+
+    @Test
+    void remove_WithHifo_ShouldTakeTheDearestUnitsFirst() {
+        // Given: 10 per unit, 20 per unit, 5 per unit and 15 per unit
+        LotQueue lots = lots(CostBasisMethod.HIFO, 10, 100, 5, 100, 40, 200, 10, 150);
+
+        // When
+        long first = lots.remove(5);
+        long second = lots.remove(15);
+
+        // Then
+        assertEquals(100, first);
+        assertEquals(150 + 50, second);
+        assertEquals(2, lots.size());
+        assertEquals(45, lots.getQuantity());
+        assertEquals(250, lots.getCost());
+        assertEquals(250, lots.remove(45));
+    }
+
+    @Test
+    void remove_OfEverything_ShouldTakeTheWholeCostDespiteRounding() {
+        // Given: thirds of a lot round, the rest of the lot keeps the remainder
+        LotQueue lots = lots(CostBasisMethod.FIFO, 3, 100);
+
+        // When
+        long first = lots.remove(1);
+        long second = lots.remove(1);
+        long third = lots.remove(1);
+
+        // Then
+        assertEquals(33, first);
+        assertEquals(34, second);
+        assertEquals(33, third);
+        assertEquals(0, lots.size());
+        assertEquals(0, lots.getCost());
+    }
+
+    @Test
+    void add_BeyondTheCapacity_ShouldKeepTheOrderAcrossTheWrap() {
+        // Given: the head has moved on before the ring grows
+        LotQueue lots = lots(CostBasisMethod.FIFO, 1, 1, 1, 2, 1, 3);
+        lots.remove(2);
+
+        // When
+        for (int i = 4; i <= 10; i++) {
+            lots.add(1, i);
+        }
+
+        // Then
+        assertEquals(8, lots.size());
+        for (int i = 3; i <= 10; i++) {
+            assertEquals(i, lots.remove(1));
+        }
+    }
+
+    @Test
+    void remove_ShouldRejectMoreThanTheLotsHold() {
+        // Given
+        LotQueue lots = lots(CostBasisMethod.LIFO, 10, 100);
+
+        // When / Then
+        assertThrows(IllegalArgumentException.class, () -> lots.remove(11));
+        assertThrows(IllegalArgumentException.class, () -> lots.remove(0));
+        assertThrows(IllegalArgumentException.class, () -> lots.add(0, 1));
+        assertThrows(ArithmeticException.class, () -> lots.add(Long.MAX_VALUE, 1));
+        assertEquals("LIFO[[10, 100]]", lots.toString());
+    }
+
+    @Test
+    void remove_ShouldMatchASimpleListOfLotsForRandomTrades() {
+        for (CostBasisMethod method : CostBasisMethod.values()) {
+            // Given
+            Random random = new Random(method.ordinal());
+            LotQueue lots = new LotQueue(method);
+            List<long[]> expected = new ArrayList<>();
+
+            for (int i = 0; i < 100_000; i++) {
+                if (expected.isEmpty() || random.nextInt(5) < 3) {
+                    long quantity = 1 + random.nextInt(1_000);
+                    // Distinct prices per unit for HIFO, so both sides agree on which lot is dearest
+                    long cost = method == CostBasisMethod.HIFO ? quantity * (1 + i * 7_919L % 1_000_003)
+                        : random.nextInt(1_000_000);
+                    lots.add(quantity, cost);
+                    expected.add(new long[]{quantity, cost});
+                    continue;
+                }
+                long held = expected.stream().mapToLong(lot -> lot[0]).sum();
+                long quantity = 1 + (long) (random.nextDouble() * held);
+
+                // When
+                long basis = lots.remove(quantity);
+
+                // Then
+                assertEquals(removeFrom(expected, method, quantity, held), basis, method + " trade " + i);
+                assertEquals(expected.size(), lots.size());
+                assertEquals(expected.stream().mapToLong(lot -> lot[1]).sum(), lots.getCost());
+            }
+        }
+    }
+
+    /**
+     * 100k lots bought one unit at a time, then sold one unit per sale: the per-unit
+     * {@code List<Double>} of purchase prices the service used to keep (an average over a scan
+     * of the list, then {@code remove(0)}), against the lot queue.
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmark_SellingFrom100kLots() {
+        int lots = 100_000;
+        int listSales = 2_000;
+        for (int round = 0; round < 2; round++) {
+            List<Double> purchasePrices = new ArrayList<>();
+            for (int i = 0; i < lots; i++) {
+                purchasePrices.add(100.0 + i % 1_000);
+            }
+            double listSink = 0;
+            long started = System.nanoTime();
+            for (int i = 0; i < listSales; i++) {
+                listSink += averagePurchasePrice(purchasePrices, 1.0);
+                removePurchasePrices(purchasePrices, 1.0);
+            }
+            double listNanos = (System.nanoTime() - started) / (double) listSales;
+            assertEquals(lots - listSales, purchasePrices.size());
+
+            Map<CostBasisMethod, Double> queueNanos = new HashMap<>();
+            long queueSink = 0;
+            for (CostBasisMethod method : CostBasisMethod.values()) {
+                LotQueue queue = new LotQueue(method);
+                for (int i = 0; i < lots; i++) {
+                    queue.add(100_000_000, (100L + i % 1_000) * 100_000_000);
+                }
+                started = System.nanoTime();
+                for (int i = 0; i < lots; i++) {
+                    queueSink += queue.remove(100_000_000);
+                }
+                queueNanos.put(method, (System.nanoTime() - started) / (double) lots);
+                assertEquals(0, queue.size());
+            }
+            assertTrue(listSink > 0 && queueSink > 0);
+            if (round == 1) {
+                log.info(String.format(
+                    "Sale from %d lots: List<Double> %.0f ns, FIFO %.0f ns, LIFO %.0f ns, HIFO %.0f ns",
+                    lots, listNanos, queueNanos.get(CostBasisMethod.FIFO), queueNanos.get(CostBasisMethod.LIFO),
+                    queueNanos.get(CostBasisMethod.HIFO)));
+            }
+        }
+    }
+
+    private static LotQueue lots(CostBasisMethod method, long... quantitiesAndCosts) {
+        LotQueue lots = new LotQueue(method);
+        for (int i = 0; i < quantitiesAndCosts.length; i += 2) {
+            lots.add(quantitiesAndCosts[i], quantitiesAndCosts[i + 1]);
+        }
+        return lots;
+    }
+
+    /**
+     * The lots sold by scanning the whole list for the next one, without any of the queue's structure.
+     */
+    private static long removeFrom(List<long[]> lots, CostBasisMethod method, long quantity, long held) {
+        if (quantity == held) {
+            long all = lots.stream().mapToLong(lot -> lot[1]).sum();
+            lots.clear();
+            return all;
+        }
+        long basis = 0;
+        while (quantity > 0) {
+            int next = switch (method) {
+                case FIFO -> 0;
+                case LIFO -> lots.size() - 1;
+                case HIFO -> dearest(lots);
+            };
+            long[] lot = lots.get(next);
+            if (lot[0] <= quantity) {
+                quantity -= lot[0];
+                basis += lot[1];
+                lots.remove(next);
+            } else {
+                long part = FixedPoint.multiplyDivide(lot[1], quantity, lot[0], RoundingMode.HALF_EVEN);
+                lot[0] -= quantity;
+                lot[1] -= part;
+                basis += part;
+                quantity = 0;
+            }
+        }
+        return basis;
+    }
+
+    private static int dearest(List<long[]> lots) {
+        int dearest = 0;
+        for (int i = 1; i < lots.size(); i++) {
+            long[] lot = lots.get(i);
+            long[] best = lots.get(dearest);
+            if (lot[1] * best[0] > best[1] * lot[0]) {
+                dearest = i;
+            }
+        }
+        return dearest;
+    }
+
+    // The service's former purchase price bookkeeping, one entry per unit bought
+
+    private static double averagePurchasePrice(List<Double> prices, double amount) {
+        double totalPrice = 0.0;
+        int numPrices = 0;
+        for (Double price : prices) {
+            if (numPrices < amount) {
+                double units = Math.min(1.0, amount - numPrices);
+                totalPrice += price * units;
+                numPrices += units;
+            }
+        }
+        return totalPrice / amount;
+    }
+
+    private static void removePurchasePrices(List<Double> prices, double amount) {
+        double remainingToRemove = amount;
+        while (remainingToRemove > 0 && !prices.isEmpty()) {
+            if (remainingToRemove >= 1.0) {
+                prices.remove(0);
+                remainingToRemove -= 1.0;
+            } else {
+                remainingToRemove = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.cryptotrading.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CandleEngineTest {
+    private static final Logger log = LoggerFactory.getLogger(CandleEngineTest.class);
+
+    private static final long T0 = 1_711_034_400_000L; // a 1h boundary
+    private static final int S1 = 1 << CandleEngine.Interval.S1.ordinal();
+    private static final int M1 = 1 << CandleEngine.Interval.M1.ordinal();
+
+    private SymbolRegistry symbolRegistry;
+    private CandleEngine engine;
+    private int btc;
+    private final Candles candles = new Candles();
+
+    @BeforeEach
+    void setUp() {
+        symbolRegistry = new SymbolRegistry();
+        engine = new CandleEngine(symbolRegistry, 4);
+        btc = symbolRegistry.register("XBT/USD");
+    }
+
+    @Test
+    void onTick_WithinOneBucket_ShouldTrackOpenHighLowClose() {
+        // When
+        engine.onTick(btc, 100.0, 10.0, T0);
+        engine.onTick(btc, 105.0, 11.0, T0 + 100);
+        engine.onTick(btc, 98.0, 12.5, T0 + 200);
+        int rolled = engine.onTick(btc, 101.0, 13.0, T0 + 900);
+
+        // Then
+        assertEquals(0, rolled);
+        assertTrue(engine.read(btc, CandleEngine.Interval.M1, 10, candles));
+        assertEquals(1, candles.getCount());
+        assertEquals(T0, candles.getTime(0));
+        assertEquals(100.0, candles.getOpen(0));
+        assertEquals(105.0, candles.getHigh(0));
+        assertEquals(98.0, candles.getLow(0));
+        assertEquals(101.0, candles.getClose(0));
+        assertEquals(3.0, candles.getVolume(0), 1e-9, "volume is the increase of volume-today");
+    }
+
+    @Test
+    void onTick_OnBucketBoundary_ShouldRollOverAndReportClosedIntervals() {
+        // Given
+        engine.onTick(btc, 100.0, Double.NaN, T0 + 59_500);
+
+        // When
+        int rolled = engine.onTick(btc, 102.0, Double.NaN, T0 + 60_000);
+
+        // Then
+        assertEquals(S1 | M1, rolled);
+        engine.read(btc, CandleEngine.Interval.M1, 10, candles);
+        assertEquals(2, candles.getCount());
+        assertEquals(100.0, candles.getClose(0));
+        assertEquals(T0 + 60_000, candles.getTime(1));
+        assertEquals(102.0, candles.getOpen(1));
+        engine.read(btc, CandleEngine.Interval.H1, 10, candles);
+        assertEquals(1, candles.getCount());
+    }
+
+    @Test
+    void onTick_BeyondHistory_ShouldKeepOnlyLatestBars() {
+        // When: ten one-second bars into a ring of four
+        for (int i = 0; i < 10; i++) {
+            engine.onTick(btc, 100.0 + i, Double.NaN, T0 + i * 1000L);
+        }
+
+        // Then
+        engine.read(btc, CandleEngine.Interval.S1, 10, candles);
+        assertEquals(4, candles.getCount());
+        assertEquals(T0 + 6000, candles.getTime(0));
+        assertEquals(109.0, candles.getClose(3));
+        engine.read(btc, CandleEngine.Interval.S1, 2, candles);
+        assertEquals(2, candles.getCount());
+        assertEquals(T0 + 8000, candles.getTime(0));
+    }
+
+    @Test
+    void onTick_WhenVolumeTodayResets_ShouldCountNewDayVolume() {
+        // Given
+        long beforeMidnight = T0 - Math.floorMod(T0, 86_400_000L) + 86_399_000L;
+        engine.onTick(btc, 100.0, 500.0, beforeMidnight);
+
+        // When
+        engine.onTick(btc, 100.0, 2.0, beforeMidnight + 1000);
+
+        // Then
+        engine.read(btc, CandleEngine.Interval.D1, 10, candles);
+        assertEquals(2, candles.getCount());
+        assertEquals(2.0, candles.getVolume(1));
+    }
+
+    @Test
+    void onTrade_ShouldTakeOverFromTickerAndReportRolloverOnNextTick() {
+        // Given
+        engine.onTick(btc, 100.0, 10.0, T0);
+
+        // When
+        engine.onTrade(btc, 200.0, 0.5, T0 + 100);
+        engine.onTrade(btc, 201.0, 0.25, T0 + 1100);
+        int rolled = engine.onTick(btc, 999.0, 11.0, T0 + 1200);
+
+        // Then
+        assertEquals(S1, rolled);
+        engine.read(btc, CandleEngine.Interval.M1, 10, candles);
+        assertEquals(1, candles.getCount());
+        assertEquals(200.0, candles.getOpen(0));
+        assertEquals(201.0, candles.getClose(0), "ticker prices are ignored once trades arrive");
+        assertEquals(0.75, candles.getVolume(0));
+    }
+
+    @Test
+    void onTrade_WhenOlderThanCurrentBar_ShouldCountLateUpdate() {
+        // Given
+        engine.onTrade(btc, 100.0, 1.0, T0 + 5000);
+
+        // When
+        engine.onTrade(btc, 90.0, 1.0, T0 + 1000);
+
+        // Then
+        engine.read(btc, CandleEngine.Interval.S1, 10, candles);
+        assertEquals(1, candles.getCount());
+        assertEquals(100.0, candles.getLow(0));
+        assertEquals(1L, engine.getMetrics().get("lateUpdates"));
+    }
+
+    @Test
+    void read_WhenPairHasNoBars_ShouldReturnFalse() {
+        assertFalse(engine.read(symbolRegistry.register("ETH/USD"), CandleEngine.Interval.M1, 10, candles));
+    }
+
+    /**
+     * Feeds 1,000 pairs for an hour of simulated ticks and reports throughput and the memory
+     * the bars use, which only depends on the number of pairs and the configured history.
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmark_ThousandPairs_ShouldKeepMemoryBounded() {
+        // Given
+        CandleEngine bounded = new CandleEngine(new SymbolRegistry(), CandleEngine.DEFAULT_HISTORY);
+        int pairs = 1_000;
+        int ticksPerPair = 3_600;
+
+        // When
+        long start = System.nanoTime();
+        for (int t = 0; t < ticksPerPair; t++) {
+            for (int pair = 0; pair < pairs; pair++) {
+                bounded.onTick(pair, 100.0 + (t % 50), 0.1 * t, T0 + t * 1000L + pair);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        // Then
+        long allocated = (long) bounded.getMetrics().get("allocatedBytes");
+        log.info(String.format("Candles: %.0f ticks/s over %d pairs, %d KB of bars (%d B per pair)",
+            (double) pairs * ticksPerPair * 1e9 / elapsed, pairs, allocated / 1024, bounded.getBytesPerPair()));
+        assertEquals(pairs * bounded.getBytesPerPair(), allocated);
+        assertTrue(bounded.getBytesPerPair() < 32 * 1024);
+    }
+}
@@ -0,0 +1,88 @@
+package com.cryptotrading.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class FeedArbiterTest {
+
+    private static final long STALENESS_NANOS = 500_000_000L;
+
+    private FeedArbiter arbiter;
+    private KrakenConnection primary;
+    private KrakenConnection standby;
+
+    @BeforeEach
+    void setUp() {
+        arbiter = new FeedArbiter(16, 500);
+        primary = mock(KrakenConnection.class);
+        standby = mock(KrakenConnection.class);
+        when(primary.getName()).thenReturn("primary");
+        when(standby.getName()).thenReturn("standby");
+        arbiter.setActive(primary);
+    }
+
+    @Test
+    void accept_ShouldDropTicksFromStandby() {
+        assertFalse(arbiter.accept(standby, tick(3, 100.0)));
+        assertTrue(arbiter.accept(primary, tick(3, 100.0)));
+        assertEquals(1L, arbiter.getMetrics().get("standbyTicksDropped"));
+    }
+
+    @Test
+    void accept_ShouldDropRepeatedTickForSamePair() {
+        assertTrue(arbiter.accept(primary, tick(3, 100.0)));
+        assertFalse(arbiter.accept(primary, tick(3, 100.0)));
+        assertTrue(arbiter.accept(primary, tick(4, 100.0)));
+        assertTrue(arbiter.accept(primary, tick(3, 101.0)));
+        assertEquals(1L, arbiter.getMetrics().get("duplicatesDropped"));
+    }
+
+    @Test
+    void checkStaleness_WhenActiveIsFresh_ShouldKeepIt() {
+        long now = 10 * STALENESS_NANOS;
+        when(primary.isOpen()).thenReturn(true);
+        when(primary.getLastMessageNanos()).thenReturn(now - STALENESS_NANOS / 2);
+
+        assertNull(arbiter.checkStaleness(List.of(primary, standby), now));
+        assertSame(primary, arbiter.getActive());
+    }
+
+    @Test
+    void checkStaleness_WhenActiveIsSilent_ShouldPromoteFreshStandby() {
+        long now = 10 * STALENESS_NANOS;
+        when(primary.isOpen()).thenReturn(true);
+        when(primary.getLastMessageNanos()).thenReturn(now - 2 * STALENESS_NANOS);
+        when(standby.isOpen()).thenReturn(true);
+        when(standby.getLastMessageNanos()).thenReturn(now - 1_000_000);
+
+        assertSame(primary, arbiter.checkStaleness(List.of(primary, standby), now));
+        assertSame(standby, arbiter.getActive());
+        assertEquals(1L, arbiter.getMetrics().get("failovers"));
+    }
+
+    @Test
+    void checkStaleness_WhenStandbyIsAlsoSilent_ShouldNotSwitch() {
+        long now = 10 * STALENESS_NANOS;
+        when(primary.isOpen()).thenReturn(false);
+        when(standby.isOpen()).thenReturn(true);
+        when(standby.getLastMessageNanos()).thenReturn(now - 2 * STALENESS_NANOS);
+
+        assertNull(arbiter.checkStaleness(List.of(primary, standby), now));
+        assertSame(primary, arbiter.getActive());
+    }
+
+    private static DecodedTick tick(int symbolId, double last) {
+        DecodedTick tick = new DecodedTick();
+        tick.setSymbolId(symbolId);
+        tick.setLast(last);
+        tick.setBid(last - 1);
+        tick.setAsk(last + 1);
+        tick.setVolume(10.0);
+        return tick;
+    }
+}
@@ -0,0 +1,203 @@
+package com.cryptotrading.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KrakenFrameDecoderTest {
+    private static final Logger log = LoggerFactory.getLogger(KrakenFrameDecoderTest.class);
+
+    private static final String TICKER_FRAME = "[340,{\"a\":[\"96250.10000\",1,\"1.000\"],"
+        + "\"b\":[\"96249.90000\",3,\"3.000\"],\"c\":[\"96250.00000\",\"0.00150000\"],"
+        + "\"v\":[\"1520.12345678\",\"3112.87654321\"],\"p\":[\"95880.1\",\"95500.2\"],"
+        + "\"t\":[12345,23456],\"l\":[\"94000.0\",\"93800.0\"],\"h\":[\"97000.0\",\"97100.0\"],"
+        + "\"o\":[\"95000.00000\",\"94500.00000\"]},\"ticker\",\"XBT/USD\"]";
+
+    private SymbolRegistry symbolRegistry;
+    private KrakenFrameDecoder decoder;
+    private DecodedTick tick;
+
+    @BeforeEach
+    void setUp() {
+        symbolRegistry = new SymbolRegistry();
+        decoder = new KrakenFrameDecoder(symbolRegistry);
+        tick = new DecodedTick();
+    }
+
+    @Test
+    void decode_WhenTickerFrame_ShouldExtractPrimitiveFields() {
+        // When
+        KrakenFrameDecoder.FrameType type = decoder.decode(TICKER_FRAME, tick);
+
+        // Then
+        assertEquals(KrakenFrameDecoder.FrameType.TICKER, type);
+        assertEquals("XBT/USD", tick.getPair());
+        assertEquals(symbolRegistry.idOf("XBT/USD"), tick.getSymbolId());
+        assertEquals(96250.0, tick.getLast());
+        assertEquals(95000.0, tick.getOpen());
+        assertEquals(96250.1, tick.getAsk());
+        assertEquals(96249.9, tick.getBid());
+        assertEquals(3112.87654321, tick.getVolume());
+        assertEquals(1520.12345678, tick.getVolumeToday());
+    }
+
+    @Test
+    void decode_WhenFieldsMissing_ShouldReportNaN() {
+        // When
+        KrakenFrameDecoder.FrameType type = decoder.decode(
+            "[ 1 , { \"c\" : [ \"1.5\" ] } , \"ticker\" , \"ETH/USD\" ]\n", tick);
+
+        // Then
+        assertEquals(KrakenFrameDecoder.FrameType.TICKER, type);
+        assertEquals(1.5, tick.getLast());
+        assertTrue(Double.isNaN(tick.getOpen()));
+        assertTrue(Double.isNaN(tick.getVolume()));
+    }
+
+    @Test
+    void decode_WhenEventFrame_ShouldRouteByEventName() {
+        assertEquals(KrakenFrameDecoder.FrameType.HEARTBEAT,
+            decoder.decode("{\"event\":\"heartbeat\"}", tick));
+        assertEquals(KrakenFrameDecoder.FrameType.EVENT,
+            decoder.decode("{\"channelID\":10,\"event\":\"subscriptionStatus\",\"status\":\"subscribed\"}", tick));
+    }
+
+    @Test
+    void decode_WhenOtherChannel_ShouldNotTouchPayload() {
+        // When
+        KrakenFrameDecoder.FrameType type = decoder.decode(
+            "[321,[[\"5541.2\",\"0.15\",\"1534614057.32\",\"s\",\"l\",\"\"]],\"trade\",\"XBT/USD\"]", tick);
+
+        // Then
+        assertEquals(KrakenFrameDecoder.FrameType.OTHER, type);
+    }
+
+    @Test
+    void decode_WhenBookUpdateHasBothSides_ShouldKeepExactMantissas() {
+        // Given
+        DecodedBookUpdate book = new DecodedBookUpdate();
+        String frame = "[1234,{\"a\":[[\"5541.30000\",\"2.50700000\",\"1534614248.456738\"]]},"
+            + "{\"b\":[[\"5541.20000\",\"0.00000000\",\"1534614248.765567\",\"r\"]],\"c\":\"974942666\"},"
+            + "\"book-10\",\"XBT/USD\"]";
+
+        // When
+        KrakenFrameDecoder.FrameType type = decoder.decode(frame, tick, book);
+
+        // Then
+        assertEquals(KrakenFrameDecoder.FrameType.BOOK, type);
+        assertEquals("XBT/USD", book.getPair());
+        assertFalse(book.isSnapshot());
+        assertEquals(2, book.getCount());
+        assertTrue(book.isAsk(0));
+        assertEquals(554130000L, book.getPrice(0));
+        assertEquals(5, book.getPriceScale(0));
+        assertEquals(250700000L, book.getVolume(0));
+        assertFalse(book.isAsk(1));
+        assertEquals(0L, book.getVolume(1));
+        assertEquals(974942666L, book.getChecksum());
+        // Without a book holder the frame is routed like any other unhandled channel
+        assertEquals(KrakenFrameDecoder.FrameType.OTHER, decoder.decode(frame, tick));
+    }
+
+    @Test
+    void decode_WhenTradeFrame_ShouldExtractEveryTrade() {
+        // Given
+        DecodedTrades trades = new DecodedTrades();
+        String frame = "[0,[[\"5541.20000\",\"0.15850568\",\"1534614057.321597\",\"s\",\"l\",\"\"],"
+            + "[\"6060.00000\",\"0.02455000\",\"1534614057.324998\",\"b\",\"l\",\"\"]],\"trade\",\"XBT/USD\"]";
+
+        // When
+        KrakenFrameDecoder.FrameType type = decoder.decode(frame, tick, null, trades);
+
+        // Then
+        assertEquals(KrakenFrameDecoder.FrameType.TRADE, type);
+        assertEquals("XBT/USD", trades.getPair());
+        assertEquals(2, trades.getCount());
+        assertEquals(5541.2, trades.getPrice(0));
+        assertEquals(0.15850568, trades.getVolume(0));
+        assertEquals(1534614057321L, trades.getTime(0));
+        assertEquals(6060.0, trades.getPrice(1));
+    }
+
+    @Test
+    void decode_WhenMalformed_ShouldThrow() {
+        assertThrows(IllegalArgumentException.class,
+            () -> decoder.decode("[1,{\"c\":[\"1.5\"],\"ticker\",\"ETH/USD\"]", tick));
+        assertThrows(IllegalArgumentException.class,
+            () -> decoder.decode("[1,{\"c\":[\"abc\"]},\"ticker\",\"ETH/USD\"]", tick));
+    }
+
+    @Test
+    void parseDecimal_ShouldMatchDoubleParseDouble() {
+        String[] samples = {"0.1", "96250.10000", "0.00000001", "123456789.123456", "-42.5", "7", "1e-3",
+            "0.30000000000000004441", "98765432109876543210.5"};
+        for (String sample : samples) {
+            String frame = "[1,{\"c\":[\"" + sample + "\"]},\"ticker\",\"X/Y\"]";
+            decoder.decode(frame, tick);
+            assertEquals(Double.parseDouble(sample), tick.getLast(), "parsing " + sample);
+        }
+    }
+
+    /**
+     * Reports bytes allocated per frame by the streaming decoder and by the JsonNode tree path.
+     * Allocation is measured with the HotSpot per-thread allocation counter, which is exact
+     * enough to compare the two paths without a dedicated benchmark harness.
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmark_AllocationsPerFrame_StreamingShouldAllocateFarLessThanTree() throws Exception {
+        // Given
+        ObjectMapper objectMapper = new ObjectMapper();
+        int frames = 200_000;
+
+        // When
+        long streamingBytes = measureAllocatedBytes(() -> {
+            for (int i = 0; i < frames; i++) {
+                decoder.decode(TICKER_FRAME, tick);
+            }
+        });
+        long treeBytes = measureAllocatedBytes(() -> {
+            for (int i = 0; i < frames; i++) {
+                try {
+                    JsonNode data = objectMapper.readTree(TICKER_FRAME);
+                    JsonNode payload = data.get(1);
+                    tick.setPair(data.get(3).asText());
+                    tick.setLast(Double.parseDouble(payload.get("c").get(0).asText()));
+                    tick.setOpen(Double.parseDouble(payload.get("o").get(0).asText()));
+                    tick.setAsk(Double.parseDouble(payload.get("a").get(0).asText()));
+                    tick.setBid(Double.parseDouble(payload.get("b").get(0).asText()));
+                    tick.setVolume(Double.parseDouble(payload.get("v").get(1).asText()));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+
+        // Then
+        long streamingPerFrame = streamingBytes / frames;
+        long treePerFrame = treeBytes / frames;
+        log.info(String.format("Ticker decode allocation: streaming=%d B/frame, tree=%d B/frame",
+            streamingPerFrame, treePerFrame));
+        assertTrue(streamingPerFrame < 16, "streaming decoder should not allocate for a known pair");
+        assertTrue(streamingPerFrame * 10 < treePerFrame,
+            "streaming decoder should allocate at least 10x less than the tree path");
+    }
+
+    private static long measureAllocatedBytes(Runnable workload) {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        workload.run(); // warm-up so JIT and class loading are not counted
+        long before = threads.getThreadAllocatedBytes(threadId);
+        workload.run();
+        return threads.getThreadAllocatedBytes(threadId) - before;
+    }
+}
@@ -12,9 +12,14 @@ import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.net.URI;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.Set;
 import java.util.HashSet;
 
@@ -24,6 +29,7 @@ import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class KrakenWebSocketServiceTest {
+    private static final Logger log = LoggerFactory.getLogger(KrakenWebSocketServiceTest.class);
 
     private KrakenWebSocketService krakenWebSocketService;
     
@@ -32,14 +38,45 @@ class KrakenWebSocketServiceTest {
     
     @Mock
     private ObjectMapper objectMapper;
+
+    @Mock
+    private TickPipeline tickPipeline;
+
+    private PriceTable priceTable;
+
+    private KrakenConnection connection;
     
     @BeforeEach
     void setUp() {
         krakenWebSocketService = new KrakenWebSocketService();
-        ReflectionTestUtils.setField(krakenWebSocketService, "webSocketClient", webSocketClient);
-        ReflectionTestUtils.setField(krakenWebSocketService, "objectMapper", objectMapper);
+        priceTable = new PriceTable(new SymbolRegistry());
+        krakenWebSocketService.setPriceTable(priceTable);
+        ReflectionTestUtils.setField(krakenWebSocketService, "tickPipeline", tickPipeline);
         ReflectionTestUtils.setField(krakenWebSocketService, "krakenWsUrl", "wss://ws.kraken.com");
-        ReflectionTestUtils.setField(krakenWebSocketService, "subscribedPairs", new HashSet<String>());
+        krakenWebSocketService.initConnections();
+        connection = (KrakenConnection) ReflectionTestUtils.getField(krakenWebSocketService, "primary");
+        ReflectionTestUtils.setField(connection, "webSocketClient", webSocketClient);
+        useObjectMapper(objectMapper);
+    }
+
+    private void useObjectMapper(ObjectMapper mapper) {
+        ReflectionTestUtils.setField(krakenWebSocketService, "objectMapper", mapper);
+        ReflectionTestUtils.setField(connection, "objectMapper", mapper);
+    }
+
+    @Test
+    void connect_WhenFollowingThePriceBus_ShouldWaitUntilElected() {
+        // Given
+        PriceBusService priceBus = mock(PriceBusService.class);
+        when(priceBus.isIngesting()).thenReturn(false);
+        krakenWebSocketService.setPriceBus(priceBus);
+
+        // When
+        krakenWebSocketService.connect();
+
+        // Then
+        verify(priceBus).whenIngesting(any(Runnable.class));
+        verifyNoInteractions(webSocketClient);
     }
 
     @Test
@@ -57,10 +94,7 @@ class KrakenWebSocketServiceTest {
     void subscribeToPairs_WhenAlreadySubscribed_ShouldSkipSubscription() throws Exception {
         // Given
         when(webSocketClient.isOpen()).thenReturn(true);
-        @SuppressWarnings("unchecked")
-        Set<String> subscribedPairs = (Set<String>) ReflectionTestUtils.getField(krakenWebSocketService, "subscribedPairs");
-        assertNotNull(subscribedPairs, "subscribedPairs should not be null");
-        subscribedPairs.add("BTC/USD");
+        krakenWebSocketService.getSubscriptionManager().request("BTC/USD");
 
         // When
         krakenWebSocketService.subscribeToPairs("BTC/USD");
@@ -82,11 +116,48 @@ class KrakenWebSocketServiceTest {
         // Then
         verify(webSocketClient).send(expectedMessage);
         assertTrue(krakenWebSocketService.isSubscribed("BTC/USD"));
+        assertEquals(SubscriptionManager.State.PENDING,
+            krakenWebSocketService.getSubscriptionManager().getState("BTC/USD"));
+    }
+
+    @Test
+    void subscribeToPairs_WithManyPairs_ShouldSendBatchedMessages() throws Exception {
+        // Given
+        when(webSocketClient.isOpen()).thenReturn(true);
+        useObjectMapper(new ObjectMapper());
+        String[] pairs = new String[250];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = "P" + i + "/USD";
+        }
+
+        // When
+        krakenWebSocketService.subscribeToPairs(pairs);
+
+        // Then
+        verify(webSocketClient, times(3)).send(argThat((String message) -> message.contains("\"subscribe\"")));
+        assertEquals(250, krakenWebSocketService.getSubscribedPairs().size());
+    }
+
+    @Test
+    void handleMessage_WhenSubscriptionConfirmed_ShouldMarkPairConfirmed() throws Exception {
+        // Given
+        useObjectMapper(new ObjectMapper());
+        krakenWebSocketService.getSubscriptionManager().request("BTC/USD");
+        String message = "{\"channelID\":1,\"channelName\":\"ticker\",\"event\":\"subscriptionStatus\","
+            + "\"pair\":\"BTC/USD\",\"status\":\"subscribed\",\"subscription\":{\"name\":\"ticker\"}}";
+
+        // When
+        ReflectionTestUtils.invokeMethod(krakenWebSocketService, "handleMessage", connection, message, 0L);
+
+        // Then
+        assertEquals(SubscriptionManager.State.CONFIRMED,
+            krakenWebSocketService.getSubscriptionManager().getState("BTC/USD"));
     }
 
     @Test
     void handleMessage_WhenValidTickerMessage_ShouldUpdatePrices() throws Exception {
         // Given
+        ReflectionTestUtils.setField(krakenWebSocketService, "streamingDecoder", false);
         String message = """
             [
               123,
@@ -101,21 +172,69 @@ class KrakenWebSocketServiceTest {
         JsonNode messageNode = new ObjectMapper().readTree(message);
         when(objectMapper.readTree(message)).thenReturn(messageNode);
 
-        try (MockedStatic<CryptoWebSocketEndpoint> mockedStatic = mockStatic(CryptoWebSocketEndpoint.class)) {
-            // When
-            ReflectionTestUtils.invokeMethod(krakenWebSocketService, "handleMessage", message);
+        // When
+        ReflectionTestUtils.invokeMethod(krakenWebSocketService, "handleMessage", connection, message, 0L);
 
-            // Then
-            Map<String, Double> lastPrices = krakenWebSocketService.getLatestPrices();
-            assertEquals(50000.0, lastPrices.get("BTC/USD"));
-            mockedStatic.verify(() -> 
-                CryptoWebSocketEndpoint.broadcastPriceUpdate(
-                    eq("BTC/USD"), 
-                    eq(50000.0), 
-                    doubleThat(change -> Math.abs(change - 4.166666666666667) < 0.0001)
-                )
-            );
-        }
+        // Then
+        verify(tickPipeline).publish(
+            argThat(tick -> "BTC/USD".equals(tick.getPair()) && tick.getLast() == 50000.0),
+            eq(priceTable.getSymbolRegistry().idOf("BTC/USD")),
+            eq(48000.0),
+            doubleThat(change -> Math.abs(change - 4.166666666666667) < 0.0001),
+            anyLong(),
+            anyLong()
+        );
+    }
+
+    @Test
+    void handleMessage_WhenStreamingDecoderEnabled_ShouldUpdatePricesWithoutTreeParsing() throws Exception {
+        // Given
+        String message = "[123,{\"a\":[\"50001.0\",1,\"1.0\"],\"b\":[\"49999.0\",2,\"2.0\"],"
+            + "\"c\":[\"50000.0\",\"0.1\"],\"v\":[\"10.0\",\"250.5\"],\"o\":[\"48000.0\",\"47000.0\"]},"
+            + "\"ticker\",\"BTC/USD\"]";
+
+        // When
+        ReflectionTestUtils.invokeMethod(krakenWebSocketService, "handleMessage", connection, message, 0L);
+
+        // Then
+        verify(tickPipeline).publish(
+            argThat(tick -> "BTC/USD".equals(tick.getPair()) && tick.getLast() == 50000.0
+                && tick.getBid() == 49999.0 && tick.getAsk() == 50001.0 && tick.getVolume() == 250.5),
+            eq(priceTable.getSymbolRegistry().idOf("BTC/USD")),
+            eq(48000.0),
+            doubleThat(change -> Math.abs(change - 4.166666666666667) < 0.0001),
+            anyLong(),
+            anyLong()
+        );
+        verify(objectMapper, never()).readTree(anyString());
+    }
+
+    @Test
+    void handleMessage_WhenBookChecksumMismatches_ShouldRequestFreshSnapshot() throws Exception {
+        // Given
+        useObjectMapper(new ObjectMapper());
+        OrderBook book = krakenWebSocketService.getOrderBookStore().track("XBT/USD", 10);
+        String message = "[0,{\"as\":[[\"5541.30000\",\"2.50700000\",\"1534614248.123678\"]],"
+            + "\"bs\":[[\"5541.20000\",\"1.52900000\",\"1534614248.765567\"]],\"c\":\"1\"},\"book-10\",\"XBT/USD\"]";
+
+        // When
+        ReflectionTestUtils.invokeMethod(krakenWebSocketService, "handleMessage", connection, message, 0L);
+
+        // Then
+        assertFalse(book.isSynced());
+        verify(webSocketClient).send(argThat((String sent) -> sent.contains("\"unsubscribe\"") && sent.contains("\"book\"")));
+        verify(webSocketClient).send(argThat((String sent) -> sent.contains("\"subscribe\"") && sent.contains("\"book\"")));
+    }
+
+    @Test
+    void getLatestPrices_ShouldReadFromPriceTable() {
+        // Given
+        int id = priceTable.getSymbolRegistry().register("BTC/USD");
+        priceTable.update(id, 50000.0, 48000.0, 4.17, 49999.0, 50001.0, 10.0, 1L);
+
+        // When & Then
+        assertEquals(50000.0, krakenWebSocketService.getLatestPrices().get("BTC/USD"));
+        assertEquals(4.17, krakenWebSocketService.get24hChanges().get("BTC/USD"));
     }
 
     @Test
@@ -131,17 +250,16 @@ class KrakenWebSocketServiceTest {
             """;
         JsonNode messageNode = new ObjectMapper().readTree(message);
         when(objectMapper.readTree(message)).thenReturn(messageNode);
-        @SuppressWarnings("unchecked")
-        Set<String> subscribedPairs = (Set<String>) ReflectionTestUtils.getField(krakenWebSocketService, "subscribedPairs");
-        assertNotNull(subscribedPairs, "subscribedPairs should not be null");
-        subscribedPairs.add("BTC/USD");
+        krakenWebSocketService.getSubscriptionManager().request("BTC/USD");
 
         try (MockedStatic<CryptoWebSocketEndpoint> mockedStatic = mockStatic(CryptoWebSocketEndpoint.class)) {
             // When
-            ReflectionTestUtils.invokeMethod(krakenWebSocketService, "handleMessage", message);
+            ReflectionTestUtils.invokeMethod(krakenWebSocketService, "handleMessage", connection, message, 0L);
 
             // Then
             assertFalse(krakenWebSocketService.isSubscribed("BTC/USD"));
+            assertEquals(SubscriptionManager.State.FAILED,
+                krakenWebSocketService.getSubscriptionManager().getState("BTC/USD"));
             mockedStatic.verify(() -> 
                 CryptoWebSocketEndpoint.broadcastPriceUpdate("BTC/USD", 0.0, 0.0)
             );
@@ -155,7 +273,7 @@ class KrakenWebSocketServiceTest {
 
         // Then
         verify(webSocketClient).close();
-        Boolean isConnecting = (Boolean) ReflectionTestUtils.getField(krakenWebSocketService, "isConnecting");
+        Boolean isConnecting = (Boolean) ReflectionTestUtils.getField(connection, "isConnecting");
         assertNotNull(isConnecting, "isConnecting should not be null");
         assertTrue(isConnecting, "isConnecting should be true as reconnection is initiated");
     }
@@ -168,4 +286,273 @@ class KrakenWebSocketServiceTest {
         // Then
         verify(webSocketClient).close();
     }
-} 
\ No newline at end of file
+
+    /**
+     * Measures how long it takes to get back to full coverage after a dropped connection
+     * with 600 pairs, against a local stand-in for the Kraken API.
+     */
+    @Test
+    void reconnect_With600Pairs_ShouldRestoreFullCoverageInBatches() throws Exception {
+        // Given
+        StubKrakenServer server = new StubKrakenServer().startAndWait();
+        KrakenWebSocketService service = new KrakenWebSocketService();
+        service.setPriceTable(new PriceTable(new SymbolRegistry()));
+        ReflectionTestUtils.setField(service, "krakenWsUrl", server.getUrl());
+        try {
+            service.connect();
+            awaitCondition(service::isConnected);
+            String[] pairs = new String[600];
+            for (int i = 0; i < pairs.length; i++) {
+                pairs[i] = "PAIR" + i + "/USD";
+            }
+            service.subscribeToPairs(pairs);
+            SubscriptionManager manager = service.getSubscriptionManager();
+            int expected = pairs.length + 21; // user pairs plus DEFAULT_PAIRS
+            awaitCondition(() -> manager.getPairs(SubscriptionManager.State.CONFIRMED).size() == expected);
+            int messagesBeforeDrop = server.getSubscribeMessages();
+            long recoveriesBeforeDrop = manager.getRecoveries();
+
+            // When
+            server.dropAllConnections();
+            awaitCondition(() -> manager.getRecoveries() > recoveriesBeforeDrop);
+
+            // Then
+            log.info(String.format("Resubscribed %d pairs in %d ms using %d message(s)",
+                expected, manager.getLastRecoveryMillis(), server.getSubscribeMessages() - messagesBeforeDrop));
+            assertEquals(expected, manager.getPairs(SubscriptionManager.State.CONFIRMED).size());
+            assertEquals(7, server.getSubscribeMessages() - messagesBeforeDrop);
+        } finally {
+            service.disconnect();
+            server.stop(1000);
+        }
+    }
+
+    /**
+     * Runs a primary and a hot standby against two local stand-ins, stops the primary's frames
+     * and measures how long the standby takes to become the active feed.
+     */
+    @Test
+    void failover_WhenPrimaryGoesSilent_ShouldPromoteStandbyWithinStalenessWindow() throws Exception {
+        // Given
+        StubKrakenServer primaryServer = new StubKrakenServer().startAndWait();
+        StubKrakenServer standbyServer = new StubKrakenServer().startAndWait();
+        KrakenWebSocketService service = newFailoverService(primaryServer, standbyServer);
+        AtomicBoolean primaryLive = new AtomicBoolean(true);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread heartbeats = startHeartbeats(running, primaryLive, primaryServer, standbyServer);
+        try {
+            service.connect();
+            awaitCondition(() -> primaryServer.getConnectionCount() == 1 && standbyServer.getConnectionCount() == 1);
+            awaitCondition(() -> "primary".equals(service.getFeedMetrics().get("active"))
+                && service.getSubscriptionManager().getPairs(SubscriptionManager.State.CONFIRMED).size() == 21);
+
+            // When
+            long silencedAt = System.nanoTime();
+            primaryLive.set(false);
+            awaitCondition(() -> "standby".equals(service.getFeedMetrics().get("active")));
+            long takeoverMillis = (System.nanoTime() - silencedAt) / 1_000_000;
+
+            // Then
+            log.info(String.format("Standby took over %d ms after the primary went silent (staleness window 200 ms)",
+                takeoverMillis));
+            assertTrue(takeoverMillis < 1000, "takeover took " + takeoverMillis + " ms");
+            assertEquals(1L, service.getFeedMetrics().get("failovers"));
+            // Once silent for twice the window the primary is dropped and reconnected as the next standby
+            awaitCondition(() -> primaryServer.getConnectionCount() == 2);
+        } finally {
+            running.set(false);
+            heartbeats.join();
+            service.disconnect();
+            primaryServer.stop(1000);
+            standbyServer.stop(1000);
+        }
+    }
+
+    @Test
+    void failover_WhenDemotedPrimaryResumesHeartbeats_ShouldKeepItOpenAsStandby() throws Exception {
+        // Given
+        StubKrakenServer primaryServer = new StubKrakenServer().startAndWait();
+        StubKrakenServer standbyServer = new StubKrakenServer().startAndWait();
+        KrakenWebSocketService service = newFailoverService(primaryServer, standbyServer);
+        AtomicBoolean primaryLive = new AtomicBoolean(true);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread heartbeats = startHeartbeats(running, primaryLive, primaryServer, standbyServer);
+        try {
+            service.connect();
+            awaitCondition(() -> primaryServer.getConnectionCount() == 1 && standbyServer.getConnectionCount() == 1);
+            awaitCondition(() -> "primary".equals(service.getFeedMetrics().get("active")));
+
+            // When - the primary misses heartbeats just long enough to be demoted, then recovers
+            primaryLive.set(false);
+            awaitCondition(() -> "standby".equals(service.getFeedMetrics().get("active")));
+            primaryLive.set(true);
+            Thread.sleep(1000);
+
+            // Then
+            assertEquals("standby", service.getFeedMetrics().get("active"));
+            assertEquals(1L, service.getFeedMetrics().get("failovers"));
+            assertEquals(1, primaryServer.getConnectionCount());
+            assertEquals(1, standbyServer.getConnectionCount());
+        } finally {
+            running.set(false);
+            heartbeats.join();
+            service.disconnect();
+            primaryServer.stop(1000);
+            standbyServer.stop(1000);
+        }
+    }
+
+    @Test
+    void failover_WhenPrimaryDropped_ShouldPublishEachTickOnce() throws Exception {
+        // Given
+        StubKrakenServer primaryServer = new StubKrakenServer().startAndWait();
+        StubKrakenServer standbyServer = new StubKrakenServer().startAndWait();
+        KrakenWebSocketService service = newFailoverService(primaryServer, standbyServer);
+        List<Double> published = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> published.add(invocation.<DecodedTick>getArgument(0).getLast()))
+            .when(tickPipeline).publish(any(), anyInt(), anyDouble(), anyDouble(), anyLong(), anyLong());
+        ReflectionTestUtils.setField(service, "tickPipeline", tickPipeline);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread heartbeats = startHeartbeats(running, new AtomicBoolean(true), primaryServer, standbyServer);
+        try {
+            service.connect();
+            awaitCondition(() -> primaryServer.getConnectionCount() == 1 && standbyServer.getConnectionCount() == 1);
+            awaitCondition(() -> "primary".equals(service.getFeedMetrics().get("active")));
+
+            // When: both feeds deliver the same tick, then the primary drops and the standby
+            // replays that tick before moving on
+            primaryServer.broadcast(tickerFrame("50000.0"));
+            standbyServer.broadcast(tickerFrame("50000.0"));
+            awaitCondition(() -> published.size() == 1
+                && Long.valueOf(1).equals(service.getFeedMetrics().get("standbyTicksDropped")));
+            primaryServer.dropAllConnections();
+            awaitCondition(() -> "standby".equals(service.getFeedMetrics().get("active")));
+            standbyServer.broadcast(tickerFrame("50000.0"));
+            standbyServer.broadcast(tickerFrame("50010.0"));
+            awaitCondition(() -> published.size() == 2);
+
+            // Then
+            assertEquals(List.of(50000.0, 50010.0), published);
+            assertEquals(1L, service.getFeedMetrics().get("duplicatesDropped"));
+        } finally {
+            running.set(false);
+            heartbeats.join();
+            service.disconnect();
+            primaryServer.stop(1000);
+            standbyServer.stop(1000);
+        }
+    }
+
+    /**
+     * Splits the default pairs over two connections and checks that each one carries only its
+     * own shard while both feed the same price table.
+     */
+    @Test
+    void connect_WithTwoShards_ShouldSubscribeEachPairOnOneConnection() throws Exception {
+        // Given
+        StubKrakenServer server = new StubKrakenServer().startAndWait();
+        PriceTable table = new PriceTable(new SymbolRegistry());
+        TickPipeline pipeline = new TickPipeline(table, 1024);
+        pipeline.start();
+        KrakenWebSocketService service = new KrakenWebSocketService();
+        service.setPriceTable(table);
+        ReflectionTestUtils.setField(service, "tickPipeline", pipeline);
+        ReflectionTestUtils.setField(service, "krakenWsUrl", server.getUrl());
+        ReflectionTestUtils.setField(service, "shardCount", 2);
+        String[] defaults = (String[]) ReflectionTestUtils.getField(KrakenWebSocketService.class, "DEFAULT_PAIRS");
+        try {
+            service.connect();
+            awaitCondition(() -> service.getSubscribedPairs().size() == defaults.length
+                && ((Number) service.getSubscriptionMetrics().get("confirmed")).intValue() == defaults.length);
+
+            // When
+            for (String pair : defaults) {
+                assertEquals(1, server.sendToSubscribers(pair, tickerFrame(pair, "100.0")), pair);
+            }
+            awaitCondition(() -> java.util.Arrays.stream(defaults)
+                .map(table.getSymbolRegistry()::idOf)
+                .allMatch(id -> id >= 0 && table.last(id) == 100.0));
+
+            // Then
+            assertEquals(2, server.getConnectionCount());
+            Map<String, Object> feed = service.getFeedMetrics();
+            assertEquals(2, feed.get("shardCount"));
+            assertEquals("primary-0,primary-1", feed.get("active"));
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> shards = (List<Map<String, Object>>) feed.get("shards");
+            long ticks = 0;
+            for (Map<String, Object> shard : shards) {
+                int index = (Integer) shard.get("shard");
+                long owned = java.util.Arrays.stream(defaults)
+                    .filter(pair -> PairSharding.shardOf(pair, 2) == index).count();
+                assertEquals((int) owned, shard.get("pairs"));
+                assertEquals(owned, shard.get("ticks"));
+                assertEquals(true, shard.get("healthy"));
+                ticks += (Long) shard.get("ticks");
+            }
+            assertEquals(defaults.length, ticks);
+            for (String pair : defaults) {
+                assertTrue(service.isSubscribed(pair), pair);
+                assertEquals(100.0, table.last(table.getSymbolRegistry().idOf(pair)));
+            }
+        } finally {
+            service.disconnect();
+            server.stop(1000);
+            pipeline.stop();
+        }
+    }
+
+    private KrakenWebSocketService newFailoverService(StubKrakenServer primaryServer, StubKrakenServer standbyServer) {
+        KrakenWebSocketService service = new KrakenWebSocketService();
+        service.setPriceTable(new PriceTable(new SymbolRegistry()));
+        ReflectionTestUtils.setField(service, "tickPipeline", mock(TickPipeline.class));
+        ReflectionTestUtils.setField(service, "krakenWsUrl", primaryServer.getUrl());
+        ReflectionTestUtils.setField(service, "failoverEnabled", true);
+        ReflectionTestUtils.setField(service, "standbyWsUrl", standbyServer.getUrl());
+        ReflectionTestUtils.setField(service, "stalenessMillis", 200L);
+        ReflectionTestUtils.setField(service, "reconnectDelayMillis", 50L);
+        return service;
+    }
+
+    /**
+     * Sends Kraken heartbeats every 20 ms on both stand-ins, the primary only while {@code primaryLive} is set.
+     */
+    private static Thread startHeartbeats(AtomicBoolean running, AtomicBoolean primaryLive,
+                                          StubKrakenServer primaryServer, StubKrakenServer standbyServer) {
+        Thread thread = new Thread(() -> {
+            while (running.get()) {
+                if (primaryLive.get()) {
+                    primaryServer.broadcast("{\"event\":\"heartbeat\"}");
+                }
+                standbyServer.broadcast("{\"event\":\"heartbeat\"}");
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "stub-heartbeats");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static String tickerFrame(String last) {
+        return tickerFrame("XBT/USD", last);
+    }
+
+    private static String tickerFrame(String pair, String last) {
+        return "[1,{\"a\":[\"50001.0\",1,\"1.0\"],\"b\":[\"49999.0\",2,\"2.0\"],\"c\":[\"" + last
+            + "\",\"0.1\"],\"v\":[\"10.0\",\"250.5\"],\"o\":[\"48000.0\",\"47000.0\"]},\"ticker\",\"" + pair + "\"]";
+    }
+
+    private static void awaitCondition(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Condition not met within 10 seconds");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.cryptotrading.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void percentile_ShouldBeWithinOneSubBucketOfTheTrueValue() {
+        // Given
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 100_000; nanos++) {
+            histogram.record(nanos);
+        }
+
+        // When
+        long p50 = histogram.percentile(0.50);
+        long p99 = histogram.percentile(0.99);
+
+        // Then
+        assertEquals(100_000, histogram.count());
+        assertTrue(p50 >= 50_000 && p50 <= 50_000 * 1.25, "p50 " + p50);
+        assertTrue(p99 >= 99_000 && p99 <= 99_000 * 1.25, "p99 " + p99);
+        assertTrue(histogram.percentile(1.0) >= 100_000);
+    }
+
+    @Test
+    void bucketBounds_ShouldCoverEveryValueExactlyOnce() {
+        for (long value : new long[]{0, 1, 3, 4, 7, 8, 9, 1_000, 123_456_789L, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(value <= LatencyHistogram.upperBound(index), "upper bound of " + value);
+            assertTrue(index == 0 || value > LatencyHistogram.upperBound(index - 1), "lower bound of " + value);
+        }
+    }
+
+    @Test
+    void reset_ShouldClearTheDistribution() {
+        // Given
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5_000);
+
+        // When
+        histogram.reset();
+
+        // Then
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentile(0.99));
+    }
+}
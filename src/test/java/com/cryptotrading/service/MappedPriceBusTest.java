@@ -0,0 +1,232 @@
+package com.cryptotrading.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedPriceBusTest {
+
+    private static final long T0 = 1_711_034_400_000L; // 2024-03-21T15:20:00Z
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void poll_ShouldReturnPublishedTicksInOrder() throws Exception {
+        // Given
+        try (MappedPriceBus leader = new MappedPriceBus(directory, 64);
+             MappedPriceBus follower = new MappedPriceBus(directory, 64)) {
+            assertTrue(leader.tryLead());
+            leader.publish(tick("XBT/USD", 0, 50_000));
+            leader.publish(tick("ETH/USD", 1, 3_000));
+
+            // When
+            List<String> received = new ArrayList<>();
+            int count = follower.poll((tick, open, change24h, timestamp) -> received.add(
+                tick.getPair() + " " + tick.getLast() + " " + tick.getBid() + " " + tick.getAsk()
+                    + " " + tick.getVolumeToday() + " " + open + " " + change24h + " " + timestamp));
+
+            // Then
+            assertEquals(2, count);
+            assertEquals(List.of(
+                "XBT/USD 50000.0 49999.0 50001.0 1000.0 49000.0 2.0 " + T0,
+                "ETH/USD 3000.0 2999.0 3001.0 1000.0 2940.0 2.0 " + (T0 + 1)), received);
+            assertEquals(0, follower.poll((tick, open, change24h, timestamp) -> fail("No new ticks")));
+        }
+    }
+
+    @Test
+    void poll_WhenLappedByTheWriter_ShouldSkipToTheOldestTickInTheRing() throws Exception {
+        // Given
+        try (MappedPriceBus leader = new MappedPriceBus(directory, 16);
+             MappedPriceBus follower = new MappedPriceBus(directory, 16)) {
+            assertTrue(leader.tryLead());
+            for (int i = 0; i < 40; i++) {
+                leader.publish(tick("XBT/USD", i, 100 + i));
+            }
+
+            // When
+            List<Double> prices = new ArrayList<>();
+            follower.poll((tick, open, change24h, timestamp) -> prices.add(tick.getLast()));
+
+            // Then
+            assertEquals(16, prices.size());
+            assertEquals(124.0, prices.get(0));
+            assertEquals(139.0, prices.get(15));
+            assertEquals(1L, follower.getMetrics().get("overruns"));
+            assertEquals(24L, follower.getMetrics().get("skipped"));
+        }
+    }
+
+    @Test
+    void tryLead_ShouldSucceedForOneBusUntilItIsClosed() throws Exception {
+        // Given
+        MappedPriceBus first = new MappedPriceBus(directory, 64);
+        try (MappedPriceBus second = new MappedPriceBus(directory, 64)) {
+            assertTrue(first.tryLead());
+            first.publish(tick("XBT/USD", 0, 50_000));
+
+            // When
+            boolean ledWhileFirstOpen = second.tryLead();
+            first.close();
+            boolean ledAfterClose = second.tryLead();
+            second.publish(tick("XBT/USD", 1, 50_001));
+
+            // Then
+            assertFalse(ledWhileFirstOpen);
+            assertTrue(ledAfterClose);
+            assertEquals(2L, second.getMetrics().get("head"));
+            assertEquals(2L, second.getMetrics().get("epoch"));
+        }
+    }
+
+    @Test
+    void threeProcesses_ShouldFailOverToExactlyOneFollower() throws Exception {
+        // Given: this JVM leads, two child JVMs follow
+        MappedPriceBus bus = new MappedPriceBus(directory, 4096);
+        assertTrue(bus.tryLead());
+        Process[] children = {startInstance(), startInstance()};
+        List<BlockingQueue<String>> output = new ArrayList<>();
+        try {
+            for (Process child : children) {
+                output.add(lines(child));
+            }
+            for (BlockingQueue<String> lines : output) {
+                assertEquals("READY", lines.poll(30, TimeUnit.SECONDS));
+            }
+
+            // When
+            for (int i = 0; i < 1000; i++) {
+                bus.publish(tick("A/USD", i, i));
+            }
+            for (BlockingQueue<String> lines : output) {
+                assertEquals("FOLLOWING 1000", lines.poll(30, TimeUnit.SECONDS));
+            }
+            bus.close();
+
+            // Then: one child takes over and the other receives its ticks
+            String first = output.get(0).poll(30, TimeUnit.SECONDS);
+            String second = output.get(1).poll(30, TimeUnit.SECONDS);
+            int leader = "LEADING".equals(first) ? 0 : 1;
+            assertEquals(List.of("LEADING", "RECEIVED 500"),
+                leader == 0 ? List.of(first, second) : List.of(second, first));
+            assertTrue(children[1 - leader].waitFor(30, TimeUnit.SECONDS));
+            assertEquals(0, children[1 - leader].exitValue());
+            try (Writer stdin = new OutputStreamWriter(children[leader].getOutputStream(), StandardCharsets.UTF_8)) {
+                stdin.write("exit\n");
+            }
+            assertTrue(children[leader].waitFor(30, TimeUnit.SECONDS));
+            assertEquals(0, children[leader].exitValue());
+        } finally {
+            bus.close();
+            for (Process child : children) {
+                child.destroyForcibly();
+            }
+        }
+    }
+
+    private Process startInstance() throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+            Instance.class.getName(), directory.toString())
+            .redirectError(ProcessBuilder.Redirect.INHERIT)
+            .start();
+    }
+
+    private static BlockingQueue<String> lines(Process process) {
+        BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        Thread reader = new Thread(() -> {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                for (String line = in.readLine(); line != null; line = in.readLine()) {
+                    // Log output of the bus goes to stdout as well
+                    if (line.matches("[A-Z]+( \\d+)?")) {
+                        lines.add(line);
+                    }
+                }
+            } catch (IOException ignored) {
+            }
+        });
+        reader.setDaemon(true);
+        reader.start();
+        return lines;
+    }
+
+    private static TickEvent tick(String symbol, int i, double last) {
+        DecodedTick decoded = new DecodedTick();
+        decoded.setPair(symbol);
+        decoded.setLast(last);
+        decoded.setBid(last - 1);
+        decoded.setAsk(last + 1);
+        decoded.setVolume(1);
+        decoded.setVolumeToday(1_000);
+        TickEvent event = new TickEvent();
+        event.set(decoded, 0, last * 0.98, 2.0, T0 + i, System.nanoTime());
+        return event;
+    }
+
+    /**
+     * Another instance on the bus: follows until it receives 1000 ticks of A/USD, then either
+     * takes over and publishes 500 ticks of B/USD, or receives those from whoever did.
+     */
+    static class Instance {
+        public static void main(String[] args) throws Exception {
+            long deadline = System.currentTimeMillis() + 60_000;
+            try (MappedPriceBus bus = new MappedPriceBus(Paths.get(args[0]), 4096)) {
+                System.out.println("READY");
+                int[] counts = new int[2];
+                boolean[] inOrder = {true};
+                PriceBus.Handler handler = (tick, open, change24h, timestamp) -> {
+                    int channel = tick.getPair().equals("A/USD") ? 0 : 1;
+                    inOrder[0] &= tick.getLast() == counts[channel];
+                    counts[channel]++;
+                };
+                while (counts[0] < 1000) {
+                    if (bus.poll(handler) == 0) {
+                        Thread.sleep(1);
+                    }
+                    check(deadline);
+                }
+                System.out.println((inOrder[0] ? "FOLLOWING " : "OUT_OF_ORDER ") + counts[0]);
+                while (true) {
+                    check(deadline);
+                    bus.poll(handler);
+                    if (counts[1] == 500) {
+                        System.out.println((inOrder[0] ? "RECEIVED " : "OUT_OF_ORDER ") + counts[1]);
+                        return;
+                    }
+                    if (counts[1] == 0 && bus.tryLead()) {
+                        for (int i = 0; i < 500; i++) {
+                            bus.publish(tick("B/USD", i, i));
+                        }
+                        System.out.println("LEADING");
+                        new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)).readLine();
+                        return;
+                    }
+                    Thread.sleep(20);
+                }
+            }
+        }
+
+        private static void check(long deadline) {
+            if (System.currentTimeMillis() > deadline) {
+                System.out.println("TIMEOUT");
+                System.exit(2);
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.cryptotrading.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderBookTest {
+    private static final Logger log = LoggerFactory.getLogger(OrderBookTest.class);
+
+    /** Snapshot from Kraken's book checksum guide; its published checksum is 974947235. */
+    private static final String[] ASKS = {"0.05005", "0.05010", "0.05015", "0.05020", "0.05025",
+        "0.05030", "0.05035", "0.05040", "0.05045", "0.05050"};
+    private static final String[] BIDS = {"0.05000", "0.04995", "0.04990", "0.04980", "0.04975",
+        "0.04970", "0.04965", "0.04960", "0.04955", "0.04950"};
+    private static final String VOLUME = "0.00000500";
+
+    private SymbolRegistry symbolRegistry;
+    private KrakenFrameDecoder decoder;
+    private OrderBookStore store;
+    private OrderBook book;
+    private final DecodedTick tick = new DecodedTick();
+    private final DecodedBookUpdate update = new DecodedBookUpdate();
+
+    @BeforeEach
+    void setUp() {
+        symbolRegistry = new SymbolRegistry();
+        decoder = new KrakenFrameDecoder(symbolRegistry);
+        store = new OrderBookStore(symbolRegistry);
+        book = store.track("XBT/USD", 10);
+    }
+
+    @Test
+    void snapshot_ShouldMatchKrakenPublishedChecksum() {
+        // When
+        boolean valid = apply(snapshotFrame(974947235L));
+
+        // Then
+        assertTrue(valid);
+        assertTrue(book.isSynced());
+        OrderBookSnapshot snapshot = read(10);
+        assertEquals(10, snapshot.getAskCount());
+        assertEquals(0.05005, snapshot.getAskPrice(0));
+        assertEquals(0.05000, snapshot.getBidPrice(0));
+        assertEquals(0.000005, snapshot.getBidVolume(0));
+    }
+
+    @Test
+    void update_ShouldInsertReplaceRemoveAndTruncateToDepth() {
+        // Given
+        apply(snapshotFrame(-1));
+
+        // When: a better ask pushes the worst ask out, a bid is removed and another replaced
+        apply(updateFrame("{\"a\":[[\"0.05001\",\"0.00000100\",\"1.0\"]]},"
+            + "{\"b\":[[\"0.04995\",\"0.00000000\",\"1.0\"],[\"0.04990\",\"0.00000900\",\"1.0\"]]}"));
+
+        // Then
+        OrderBookSnapshot snapshot = read(10);
+        assertEquals(10, snapshot.getAskCount());
+        assertEquals(0.05001, snapshot.getAskPrice(0));
+        assertEquals(0.05045, snapshot.getAskPrice(9));
+        assertEquals(9, snapshot.getBidCount());
+        assertEquals(0.04990, snapshot.getBidPrice(1));
+        assertEquals(0.000009, snapshot.getBidVolume(1));
+        assertEquals(expectedChecksum(snapshot), book.checksum());
+    }
+
+    @Test
+    void update_WhenChecksumMismatches_ShouldInvalidateUntilNextSnapshot() {
+        // Given
+        apply(snapshotFrame(974947235L));
+
+        // When
+        boolean valid = apply(updateFrame("{\"a\":[[\"0.05005\",\"0.00000600\",\"1.0\"]],\"c\":\"12345\"}"));
+        apply(updateFrame("{\"a\":[[\"0.05005\",\"0.00000700\",\"1.0\"]]}"));
+
+        // Then
+        assertFalse(valid);
+        assertFalse(book.isSynced());
+        assertEquals(0.000006, read(1).getAskVolume(0), "updates are ignored while out of sync");
+        assertEquals(1L, store.getMetrics().get("checksumMismatches"));
+        assertEquals(1L, store.getMetrics().get("updatesWhileUnsynced"));
+
+        // When a fresh snapshot arrives
+        assertTrue(apply(snapshotFrame(974947235L)));
+        assertTrue(book.isSynced());
+    }
+
+    @Test
+    void reads_ShouldNeverObserveHalfAppliedUpdates() throws Exception {
+        // Given
+        apply(snapshotFrame(-1));
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            OrderBookSnapshot snapshot = new OrderBookSnapshot();
+            while (running.get()) {
+                book.read(snapshot, 10);
+                for (int i = 1; i < snapshot.getAskCount(); i++) {
+                    if (snapshot.getAskPrice(i) <= snapshot.getAskPrice(i - 1)) {
+                        failure.set("asks out of order at level " + i);
+                    }
+                }
+                for (int i = 1; i < snapshot.getBidCount(); i++) {
+                    if (snapshot.getBidPrice(i) >= snapshot.getBidPrice(i - 1)) {
+                        failure.set("bids out of order at level " + i);
+                    }
+                }
+                if (snapshot.getAskCount() != 10 || snapshot.getBidCount() != 10) {
+                    failure.set("book lost levels: " + snapshot.getAskCount() + "/" + snapshot.getBidCount());
+                }
+            }
+        });
+        reader.start();
+
+        // When: keep inserting a new best ask and deleting it again
+        String insert = updateFrame("{\"a\":[[\"0.05001\",\"0.00000100\",\"1.0\"],[\"0.05050\",\"0.00000000\",\"1.0\"]]}");
+        String restore = updateFrame("{\"a\":[[\"0.05001\",\"0.00000000\",\"1.0\"],[\"0.05050\",\"0.00000500\",\"1.0\"]]}");
+        for (int i = 0; i < 200_000; i++) {
+            apply(insert);
+            apply(restore);
+        }
+        running.set(false);
+        reader.join();
+
+        // Then
+        assertNull(failure.get());
+    }
+
+    /**
+     * Decodes and applies update frames on one thread, reporting throughput and the bytes
+     * allocated per update.
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmark_Updates_ShouldNotAllocate() {
+        // Given
+        apply(snapshotFrame(-1));
+        String insert = updateFrame("{\"b\":[[\"0.04985\",\"0.00000100\",\"1.0\"]]}");
+        String remove = updateFrame("{\"b\":[[\"0.04985\",\"0.00000000\",\"1.0\"]]}");
+        int updates = 500_000;
+        Runnable workload = () -> {
+            for (int i = 0; i < updates / 2; i++) {
+                apply(insert);
+                apply(remove);
+            }
+        };
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        workload.run(); // warm-up
+
+        // When
+        long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        workload.run();
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+        // Then
+        log.info(String.format("Order book: %.0f updates/s (decode + apply), %d B/update",
+            updates * 1e9 / elapsed, allocated / updates));
+        assertTrue(allocated / updates < 8, "book updates should not allocate");
+    }
+
+    private boolean apply(String frame) {
+        assertEquals(KrakenFrameDecoder.FrameType.BOOK, decoder.decode(frame, tick, update));
+        return store.apply(update, 1L);
+    }
+
+    private OrderBookSnapshot read(int levels) {
+        OrderBookSnapshot snapshot = new OrderBookSnapshot();
+        book.read(snapshot, levels);
+        return snapshot;
+    }
+
+    private static String snapshotFrame(long checksum) {
+        StringBuilder frame = new StringBuilder("[0,{\"as\":[");
+        appendLevels(frame, ASKS);
+        frame.append("],\"bs\":[");
+        appendLevels(frame, BIDS);
+        frame.append(']');
+        if (checksum >= 0) {
+            frame.append(",\"c\":\"").append(checksum).append('"');
+        }
+        return frame.append("},\"book-10\",\"XBT/USD\"]").toString();
+    }
+
+    private static void appendLevels(StringBuilder frame, String[] prices) {
+        for (int i = 0; i < prices.length; i++) {
+            if (i > 0) {
+                frame.append(',');
+            }
+            frame.append("[\"").append(prices[i]).append("\",\"").append(VOLUME).append("\",\"1582905487.684110\"]");
+        }
+    }
+
+    private static String updateFrame(String payloads) {
+        return "[1234," + payloads + ",\"book-10\",\"XBT/USD\"]";
+    }
+
+    /**
+     * Kraken's checksum computed the way its guide describes, from formatted strings.
+     */
+    private static long expectedChecksum(OrderBookSnapshot snapshot) {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < snapshot.getAskCount(); i++) {
+            input.append(digits(snapshot.getAskPrice(i), 5)).append(digits(snapshot.getAskVolume(i), 8));
+        }
+        for (int i = 0; i < snapshot.getBidCount(); i++) {
+            input.append(digits(snapshot.getBidPrice(i), 5)).append(digits(snapshot.getBidVolume(i), 8));
+        }
+        CRC32 crc = new CRC32();
+        crc.update(input.toString().getBytes());
+        return crc.getValue();
+    }
+
+    private static String digits(double value, int scale) {
+        return String.format("%." + scale + "f", value).replace(".", "").replaceFirst("^0+", "");
+    }
+}
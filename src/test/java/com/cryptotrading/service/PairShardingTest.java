@@ -0,0 +1,63 @@
+package com.cryptotrading.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PairShardingTest {
+
+    private static String[] pairs(int count) {
+        String[] pairs = new String[count];
+        for (int i = 0; i < count; i++) {
+            pairs[i] = "PAIR" + i + "/USD";
+        }
+        return pairs;
+    }
+
+    @Test
+    void shardOf_ShouldSpreadPairsEvenly() {
+        // Given
+        String[] pairs = pairs(1_000);
+        int[] counts = new int[8];
+
+        // When
+        for (String pair : pairs) {
+            counts[PairSharding.shardOf(pair, counts.length)]++;
+        }
+
+        // Then - 125 per shard on average
+        for (int count : counts) {
+            assertTrue(count > 90 && count < 160, "shard sizes " + java.util.Arrays.toString(counts));
+        }
+    }
+
+    @Test
+    void shardOf_WhenAddingAShard_ShouldOnlyMovePairsToTheNewShard() {
+        // Given
+        String[] pairs = pairs(1_000);
+
+        for (int shards = 1; shards < 16; shards++) {
+            // When
+            int moved = 0;
+            for (String pair : pairs) {
+                int before = PairSharding.shardOf(pair, shards);
+                int after = PairSharding.shardOf(pair, shards + 1);
+                if (before != after) {
+                    assertEquals(shards, after, pair + " moved between existing shards");
+                    moved++;
+                }
+            }
+
+            // Then - about 1/(K+1) of the pairs move
+            double expected = pairs.length / (shards + 1.0);
+            assertTrue(Math.abs(moved - expected) < expected * 0.35 + 10,
+                moved + " pairs moved going from " + shards + " to " + (shards + 1) + " shards");
+        }
+    }
+
+    @Test
+    void shardOf_WithOneShard_ShouldAlwaysReturnZero() {
+        assertEquals(0, PairSharding.shardOf("XBT/USD", 1));
+        assertThrows(IllegalArgumentException.class, () -> PairSharding.shardOf("XBT/USD", 0));
+    }
+}
@@ -0,0 +1,112 @@
+package com.cryptotrading.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriceTableTest {
+
+    private SymbolRegistry symbolRegistry;
+    private PriceTable priceTable;
+
+    @BeforeEach
+    void setUp() {
+        symbolRegistry = new SymbolRegistry(16);
+        priceTable = new PriceTable(symbolRegistry);
+    }
+
+    @Test
+    void read_WhenNeverUpdated_ShouldReturnFalse() {
+        // Given
+        int id = symbolRegistry.register("XBT/USD");
+
+        // When & Then
+        assertFalse(priceTable.read(id, new PriceSnapshot()));
+        assertTrue(Double.isNaN(priceTable.last(id)));
+        assertEquals(0, priceTable.version(id));
+    }
+
+    @Test
+    void update_ShouldBeVisibleToReaders() {
+        // Given
+        int id = symbolRegistry.register("XBT/USD");
+        PriceSnapshot snapshot = new PriceSnapshot();
+
+        // When
+        priceTable.update(id, 50000.0, 48000.0, 4.1667, 49999.5, 50000.5, 1234.5, 42L);
+
+        // Then
+        assertTrue(priceTable.read(id, snapshot));
+        assertEquals("XBT/USD", snapshot.getSymbol());
+        assertEquals(id, snapshot.getSymbolId());
+        assertEquals(50000.0, snapshot.getLast());
+        assertEquals(48000.0, snapshot.getOpen());
+        assertEquals(4.1667, snapshot.getChange24h());
+        assertEquals(49999.5, snapshot.getBid());
+        assertEquals(50000.5, snapshot.getAsk());
+        assertEquals(1234.5, snapshot.getVolume());
+        assertEquals(42L, snapshot.getUpdatedAt());
+        assertEquals(50000.0, priceTable.last(id));
+        assertEquals(1, priceTable.version(id));
+    }
+
+    @Test
+    void forEach_ShouldSkipSymbolsWithoutData() {
+        // Given
+        int btc = symbolRegistry.register("XBT/USD");
+        symbolRegistry.register("ETH/USD");
+        priceTable.update(btc, 1.0, 1.0, 0.0, 1.0, 1.0, 1.0, 1L);
+        List<String> visited = new ArrayList<>();
+
+        // When
+        priceTable.forEach(new PriceSnapshot(), snapshot -> visited.add(snapshot.getSymbol()));
+
+        // Then
+        assertEquals(List.of("XBT/USD"), visited);
+    }
+
+    @Test
+    void read_WhileWritersUpdate_ShouldNeverObserveTornRows() throws Exception {
+        // Given
+        int id = symbolRegistry.register("XBT/USD");
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong torn = new AtomicLong();
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < 2; w++) {
+            Thread writer = new Thread(() -> {
+                double value = 0;
+                while (running.get()) {
+                    value++;
+                    priceTable.update(id, value, value, value, value, value, value, (long) value);
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+
+        // When
+        PriceSnapshot snapshot = new PriceSnapshot();
+        for (int i = 0; i < 2_000_000; i++) {
+            if (priceTable.read(id, snapshot)) {
+                double v = snapshot.getLast();
+                if (snapshot.getOpen() != v || snapshot.getChange24h() != v || snapshot.getBid() != v
+                        || snapshot.getAsk() != v || snapshot.getVolume() != v || snapshot.getUpdatedAt() != (long) v) {
+                    torn.incrementAndGet();
+                }
+            }
+        }
+        running.set(false);
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        // Then
+        assertEquals(0, torn.get());
+    }
+}
@@ -0,0 +1,151 @@
+package com.cryptotrading.service;
+
+import com.cryptotrading.model.Transaction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RestingOrderServiceTest {
+
+    private SymbolRegistry symbolRegistry;
+    private TickPipeline tickPipeline;
+    private TradingService tradingService;
+    private RestingOrderService restingOrderService;
+
+    @BeforeEach
+    void setUp() {
+        symbolRegistry = new SymbolRegistry();
+        for (String pair : new String[]{"XBT/USD", "ETH/USD", "SOL/USD"}) {
+            symbolRegistry.register(pair);
+        }
+        tickPipeline = new TickPipeline(new PriceTable(symbolRegistry), 1024);
+        tradingService = new TradingService();
+        restingOrderService = new RestingOrderService(tickPipeline, symbolRegistry, tradingService, 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        tickPipeline.stop();
+    }
+
+    @Test
+    void onTick_ShouldFillTriggeredOrdersAtTheQuote() {
+        // Given
+        Map<String, Object> limit = restingOrderService.place("alice", "LIMIT", "BUY", "XBT/USD", 0.1, 50_000.0);
+        restingOrderService.place("alice", "TAKE_PROFIT", "SELL", "XBT/USD", 0.1, 55_000.0);
+        int symbolId = symbolRegistry.idOf("XBT/USD");
+
+        // When: the ask gaps below the limit, then the bid rises past the target
+        int bought = restingOrderService.onTick(symbolId, 49_900.0, 49_910.0);
+        int sold = restingOrderService.onTick(symbolId, 55_050.0, 55_150.0);
+
+        // Then
+        assertEquals(1, bought);
+        assertEquals(1, sold);
+        assertEquals("LIMIT", limit.get("type"));
+        assertEquals(50_000.0, limit.get("price"));
+        Map<String, Object> state = tradingService.getUpdatedState("alice");
+        @SuppressWarnings("unchecked")
+        List<Transaction> transactions = (List<Transaction>) state.get("transactions");
+        assertEquals(49_910.0, transactions.get(0).getPrice());
+        assertEquals(55_050.0, transactions.get(1).getPrice());
+        assertEquals(10_000.0 + 0.1 * (55_050.0 - 49_910.0), (Double) state.get("balance"), 1e-9);
+        assertEquals(Map.of("open", 0, "maxOpen", 3, "placed", 2L, "cancelled", 0L, "filled", 2L, "rejected", 0L),
+            restingOrderService.getMetrics());
+    }
+
+    @Test
+    void onTick_WhenTheAccountCannotCoverTheOrder_ShouldDropIt() {
+        // Given: a stop-loss with nothing to sell
+        restingOrderService.place("bob", "STOP_LOSS", "SELL", "ETH/USD", 1.0, 3_000.0);
+
+        // When
+        int triggered = restingOrderService.onTick(symbolRegistry.idOf("ETH/USD"), 2_989.0, 2_991.0);
+
+        // Then
+        assertEquals(1, triggered);
+        assertEquals(1L, restingOrderService.getMetrics().get("rejected"));
+        assertTrue(restingOrderService.getOpenOrders("bob").isEmpty());
+        assertEquals(10_000.0, (Double) tradingService.getUpdatedState("bob").get("balance"));
+    }
+
+    @Test
+    void place_ShouldValidateTheOrderAndTheLimitOfOpenOrders() {
+        // Given
+        long id = (Long) restingOrderService.place("alice", "LIMIT", "SELL", "XBT/USD", 1.0, 60_000.0).get("id");
+        restingOrderService.place("alice", "LIMIT", "BUY", "XBT/USD", 1.0, 40_000.0);
+        restingOrderService.place("bob", "LIMIT", "BUY", "XBT/USD", 1.0, 40_000.0);
+
+        // When / Then
+        assertThrows(IllegalArgumentException.class,
+            () -> restingOrderService.place("alice", "MARKET", "BUY", "XBT/USD", 1.0, 1.0));
+        assertThrows(IllegalArgumentException.class,
+            () -> restingOrderService.place("alice", "LIMIT", "HOLD", "XBT/USD", 1.0, 1.0));
+        assertThrows(IllegalArgumentException.class,
+            () -> restingOrderService.place("alice", "LIMIT", "BUY", "XBT/USD", 0.0, 1.0));
+        assertThrows(IllegalArgumentException.class,
+            () -> restingOrderService.place("alice", "LIMIT", "BUY", "XBT/USD", 1.0, Double.NaN));
+        IllegalArgumentException unknown = assertThrows(IllegalArgumentException.class,
+            () -> restingOrderService.place("alice", "LIMIT", "BUY", "MADE/UP", 1.0, 1.0));
+        assertEquals("Unknown symbol", unknown.getMessage());
+        assertEquals(-1, symbolRegistry.idOf("MADE/UP"));
+        IllegalArgumentException full = assertThrows(IllegalArgumentException.class,
+            () -> restingOrderService.place("carol", "LIMIT", "BUY", "XBT/USD", 1.0, 1.0));
+        assertEquals("Too many open orders", full.getMessage());
+        assertFalse(restingOrderService.cancel("bob", id));
+        assertTrue(restingOrderService.cancel("alice", id));
+        assertEquals(1, restingOrderService.getOpenOrders("alice").size());
+    }
+
+    @Test
+    void start_ShouldTriggerOrdersFromThePipeline() throws Exception {
+        // Given
+        tickPipeline.start();
+        restingOrderService.start();
+        restingOrderService.place("alice", "LIMIT", "BUY", "SOL/USD", 2.0, 150.0);
+        int symbolId = symbolRegistry.idOf("SOL/USD");
+        DecodedTick tick = new DecodedTick();
+        tick.setPair("SOL/USD");
+        tick.setSymbolId(symbolId);
+        tick.setLast(149.0);
+        tick.setBid(148.9);
+        tick.setAsk(149.1);
+
+        // When
+        tickPipeline.publish(tick, symbolId, 150.0, -0.7, 123L, System.nanoTime());
+
+        // Then
+        assertTrue(tickPipeline.awaitDrained(5000));
+        assertEquals(1L, restingOrderService.getMetrics().get("filled"));
+        assertEquals(10_000.0 - 2 * 149.1, (Double) tradingService.getUpdatedState("alice").get("balance"), 1e-9);
+    }
+
+    @Test
+    void start_WithATickCarryingOnlyALastPrice_ShouldTriggerNothing() throws Exception {
+        // Given
+        tickPipeline.start();
+        restingOrderService.start();
+        restingOrderService.place("alice", "LIMIT", "BUY", "SOL/USD", 2.0, 150.0);
+        restingOrderService.place("alice", "STOP_LOSS", "SELL", "SOL/USD", 2.0, 155.0);
+        int symbolId = symbolRegistry.idOf("SOL/USD");
+        DecodedTick tick = new DecodedTick();
+        tick.setPair("SOL/USD");
+        tick.setSymbolId(symbolId);
+        tick.setLast(149.0);
+
+        // When: the last trade crosses both orders but there is no bid or ask
+        tickPipeline.publish(tick, symbolId, 150.0, -0.7, 123L, System.nanoTime());
+
+        // Then
+        assertTrue(tickPipeline.awaitDrained(5000));
+        assertEquals(0L, restingOrderService.getMetrics().get("filled"));
+        assertEquals(0L, restingOrderService.getMetrics().get("rejected"));
+        assertEquals(2, restingOrderService.getOpenOrders("alice").size());
+        assertEquals(10_000.0, (Double) tradingService.getUpdatedState("alice").get("balance"));
+    }
+}
@@ -0,0 +1,224 @@
+package com.cryptotrading.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RestingOrdersTest {
+    private static final Logger log = LoggerFactory.getLogger(RestingOrdersTest.class);
+
+    private static final long UNIT = 100_000_000L;
+
+    @Test
+    void trigger_ShouldFireTheBuysTheAskReachesHighestFirst() {
+        // Given
+        RestingOrders orders = new RestingOrders(16);
+        long at98 = orders.add("alice", 1, RestingOrders.Type.LIMIT, true, 1.0, 98 * UNIT);
+        long at100 = orders.add("alice", 1, RestingOrders.Type.LIMIT, true, 1.0, 100 * UNIT);
+        long at99 = orders.add("bob", 1, RestingOrders.Type.LIMIT, true, 1.0, 99 * UNIT);
+        orders.add("bob", 2, RestingOrders.Type.LIMIT, true, 1.0, 200 * UNIT);
+        List<Long> fired = new ArrayList<>();
+
+        // When
+        int first = orders.trigger(1, 101 * UNIT, 100 * UNIT, (id, account, symbol, type, buy, amount, price) -> fired.add(id));
+        int second = orders.trigger(1, 99 * UNIT, 98 * UNIT, (id, account, symbol, type, buy, amount, price) -> fired.add(id));
+
+        // Then
+        assertEquals(0, first);
+        assertEquals(2, second);
+        assertEquals(List.of(at100, at99), fired);
+        assertEquals(2, orders.size());
+        assertEquals(1, orders.trigger(1, 98 * UNIT, 0, (id, account, symbol, type, buy, amount, price) ->
+            assertEquals(at98, id)));
+    }
+
+    @Test
+    void trigger_ShouldFireStopLossesOnAFallingBidAndTakeProfitsOnARisingOne() {
+        // Given
+        RestingOrders orders = new RestingOrders(16);
+        long stopLoss = orders.add("alice", 3, RestingOrders.Type.STOP_LOSS, false, 0.5, 90 * UNIT);
+        long takeProfit = orders.add("alice", 3, RestingOrders.Type.TAKE_PROFIT, false, 0.5, 120 * UNIT);
+        long stopBuy = orders.add("alice", 3, RestingOrders.Type.STOP_LOSS, true, 0.5, 110 * UNIT);
+        List<String> fired = new ArrayList<>();
+        RestingOrders.OrderHandler record = (id, account, symbol, type, buy, amount, price) ->
+            fired.add(type + (buy ? " BUY " : " SELL ") + price / UNIT);
+
+        // When
+        orders.trigger(3, 105 * UNIT, 100 * UNIT, record);
+        orders.trigger(3, 111 * UNIT, 110 * UNIT, record);
+        orders.trigger(3, 95 * UNIT, 89 * UNIT, record);
+        orders.trigger(3, 125 * UNIT, 124 * UNIT, record);
+
+        // Then
+        assertEquals(List.of("STOP_LOSS BUY 110", "STOP_LOSS SELL 90", "TAKE_PROFIT SELL 120"), fired);
+        assertEquals(0, orders.size());
+        assertFalse(orders.remove(stopLoss, "alice"));
+        assertFalse(orders.remove(takeProfit, "alice"));
+        assertFalse(orders.remove(stopBuy, "alice"));
+    }
+
+    @Test
+    void remove_ShouldOnlyCancelOpenOrdersOfTheAccount() {
+        // Given
+        RestingOrders orders = new RestingOrders(16);
+        long first = orders.add("alice", 0, RestingOrders.Type.LIMIT, false, 1.0, 50 * UNIT);
+        long second = orders.add("alice", 0, RestingOrders.Type.LIMIT, false, 2.0, 60 * UNIT);
+        long third = orders.add("alice", 0, RestingOrders.Type.LIMIT, false, 3.0, 70 * UNIT);
+
+        // When
+        boolean byOther = orders.remove(second, "bob");
+        boolean byOwner = orders.remove(second, "alice");
+        boolean again = orders.remove(second, "alice");
+        // Reuses the slot of the cancelled order under a new ID
+        long fourth = orders.add("alice", 0, RestingOrders.Type.LIMIT, false, 4.0, 80 * UNIT);
+
+        // Then
+        assertFalse(byOther);
+        assertTrue(byOwner);
+        assertFalse(again);
+        assertNotEquals(second, fourth);
+        assertEquals((int) second, (int) fourth);
+        assertFalse(orders.remove(second, "alice"));
+        List<Double> amounts = new ArrayList<>();
+        orders.forEachOfAccount("alice", (id, account, symbol, type, buy, amount, price) -> amounts.add(amount));
+        assertEquals(List.of(4.0, 3.0, 1.0), amounts);
+        List<Long> fired = new ArrayList<>();
+        orders.trigger(0, 0, 75 * UNIT, (id, account, symbol, type, buy, amount, price) -> fired.add(id));
+        assertEquals(List.of(first, third), fired);
+    }
+
+    @Test
+    void trigger_ShouldMatchAScanOfAllOrdersForRandomTicks() {
+        // Given
+        Random random = new Random(11);
+        RestingOrders orders = new RestingOrders(4);
+        List<long[]> open = new ArrayList<>(); // id, symbol, type, buy, price, account
+        RestingOrders.Type[] types = RestingOrders.Type.values();
+
+        for (int i = 0; i < 50_000; i++) {
+            int action = random.nextInt(10);
+            if (action < 6 || open.isEmpty()) {
+                int symbol = random.nextInt(8);
+                RestingOrders.Type type = types[random.nextInt(types.length)];
+                boolean buy = random.nextBoolean();
+                long price = (900 + random.nextInt(200)) * UNIT / 10;
+                int account = random.nextInt(5);
+                long id = orders.add("account-" + account, symbol, type, buy, 1.0, price);
+                open.add(new long[]{id, symbol, type.ordinal(), buy ? 1 : 0, price, account});
+            } else if (action < 8) {
+                long[] order = open.remove(random.nextInt(open.size()));
+                assertTrue(orders.remove(order[0], "account-" + order[5]), "Cancel " + i);
+            } else {
+                int symbol = random.nextInt(8);
+                long bid = (900 + random.nextInt(200)) * UNIT / 10;
+                long ask = bid + random.nextInt(3) * UNIT / 10;
+
+                // When
+                Set<Long> fired = new HashSet<>();
+                orders.trigger(symbol, ask, bid, (id, account, symbolId, type, buy, amount, price) -> {
+                    assertEquals(symbol, symbolId);
+                    fired.add(id);
+                });
+
+                // Then
+                Set<Long> expected = new HashSet<>();
+                open.removeIf(order -> {
+                    if (order[1] != symbol) {
+                        return false;
+                    }
+                    boolean buy = order[3] == 1;
+                    long quote = buy ? ask : bid;
+                    boolean below = types[(int) order[2]].firesBelow(buy);
+                    boolean reached = below ? quote <= order[4] : quote >= order[4];
+                    if (reached) {
+                        expected.add(order[0]);
+                    }
+                    return reached;
+                });
+                assertEquals(expected, fired, "Tick " + i);
+            }
+            assertEquals(open.size(), orders.size());
+        }
+    }
+
+    /**
+     * A million orders across 500 symbols, then random-walk ticks: the heaps against scanning
+     * the symbol's orders on every tick.
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmark_MillionOrdersAcross500Symbols() {
+        int symbols = 500;
+        int perSymbol = 2_000;
+        int ticks = 200_000;
+        Random random = new Random(500);
+        RestingOrders orders = new RestingOrders(symbols);
+        // The same orders grouped by symbol for the scan: trigger price and whether it fires below
+        long[][] scanPrices = new long[symbols][perSymbol];
+        boolean[][] scanBelow = new boolean[symbols][perSymbol];
+        long started = System.nanoTime();
+        for (int s = 0; s < symbols; s++) {
+            for (int i = 0; i < perSymbol; i++) {
+                boolean buy = random.nextBoolean();
+                RestingOrders.Type type = random.nextBoolean() ? RestingOrders.Type.LIMIT : RestingOrders.Type.STOP_LOSS;
+                // Within 20% of a price of 100, so the walk keeps triggering some
+                long price = 100 * UNIT + (long) (random.nextGaussian() * 10 * UNIT);
+                orders.add("account-" + (i % 1_000), s, type, buy, 0.01, price);
+                scanPrices[s][i] = price;
+                scanBelow[s][i] = type.firesBelow(buy);
+            }
+        }
+        long placeNanos = System.nanoTime() - started;
+        assertEquals(symbols * perSymbol, orders.size());
+
+        long[] walk = new long[symbols];
+        Arrays.fill(walk, 100 * UNIT);
+        int[] symbolOf = new int[ticks];
+        long[] priceOf = new long[ticks];
+        for (int t = 0; t < ticks; t++) {
+            int s = random.nextInt(symbols);
+            walk[s] += (long) (random.nextGaussian() * UNIT / 4);
+            symbolOf[t] = s;
+            priceOf[t] = walk[s];
+        }
+
+        int[] fired = new int[1];
+        RestingOrders.OrderHandler count = (id, account, symbol, type, buy, amount, price) -> fired[0]++;
+        started = System.nanoTime();
+        for (int t = 0; t < ticks; t++) {
+            orders.trigger(symbolOf[t], priceOf[t], priceOf[t], count);
+        }
+        long heapNanos = System.nanoTime() - started;
+
+        int scanned = 0;
+        started = System.nanoTime();
+        for (int t = 0; t < ticks; t++) {
+            long[] prices = scanPrices[symbolOf[t]];
+            boolean[] below = scanBelow[symbolOf[t]];
+            long price = priceOf[t];
+            for (int i = 0; i < prices.length; i++) {
+                if (below[i] ? price <= prices[i] : price >= prices[i]) {
+                    scanned++;
+                }
+            }
+        }
+        long scanNanos = System.nanoTime() - started;
+
+        log.info(String.format("%d orders across %d symbols: placed in %d ms, %d fired over %d ticks, "
+                + "%.0f ns per tick (%.0f ns per order fired) with heaps, %.0f ns per tick scanning (%d matches)",
+            symbols * perSymbol, symbols, placeNanos / 1_000_000, fired[0], ticks, heapNanos / (double) ticks,
+            heapNanos / (double) fired[0], scanNanos / (double) ticks, scanned));
+        assertEquals(symbols * perSymbol - fired[0], orders.size());
+        assertTrue(fired[0] > 0);
+    }
+}
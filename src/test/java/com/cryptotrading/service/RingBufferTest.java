@@ -0,0 +1,99 @@
+package com.cryptotrading.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RingBufferTest {
+
+    private static class LongEvent {
+        long value;
+    }
+
+    @Test
+    void constructor_WithNonPowerOfTwoCapacity_ShouldThrowException() {
+        assertThrows(IllegalArgumentException.class, () -> new RingBuffer<>(1000, LongEvent::new));
+    }
+
+    @Test
+    void publish_ShouldDeliverEveryEventInOrderToEachConsumer() throws Exception {
+        // Given
+        RingBuffer<LongEvent> ringBuffer = new RingBuffer<>(64, LongEvent::new);
+        int events = 100_000;
+        CountDownLatch done = new CountDownLatch(2);
+        AtomicLong outOfOrder = new AtomicLong();
+        RingBufferConsumer<LongEvent> fast = orderedConsumer("fast", ringBuffer, events, done, outOfOrder, 0);
+        RingBufferConsumer<LongEvent> slow = orderedConsumer("slow", ringBuffer, events, done, outOfOrder, 1);
+        fast.start();
+        slow.start();
+
+        // When
+        for (long i = 0; i < events; i++) {
+            long sequence = ringBuffer.next();
+            ringBuffer.get(sequence).value = i;
+            ringBuffer.publish(sequence);
+        }
+
+        // Then
+        assertTrue(done.await(30, TimeUnit.SECONDS), "consumers should see every event");
+        assertEquals(0, outOfOrder.get());
+        assertTrue(ringBuffer.getProducerWaits() > 0, "a slow consumer should gate the producer");
+        // Consumers publish their sequence after the batch, shortly after handling its last event
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (ringBuffer.getDepth() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(0, ringBuffer.getDepth());
+        fast.halt();
+        slow.halt();
+    }
+
+    @Test
+    void consumer_WhenHandlerThrows_ShouldCountErrorAndContinue() throws Exception {
+        // Given
+        RingBuffer<LongEvent> ringBuffer = new RingBuffer<>(8, LongEvent::new);
+        CountDownLatch seen = new CountDownLatch(2);
+        RingBufferConsumer<LongEvent> consumer = new RingBufferConsumer<>("failing", ringBuffer,
+            (event, sequence, endOfBatch) -> {
+                seen.countDown();
+                if (event.value == 0) {
+                    throw new IllegalStateException("boom");
+                }
+            });
+        consumer.start();
+
+        // When
+        for (long i = 0; i < 2; i++) {
+            long sequence = ringBuffer.next();
+            ringBuffer.get(sequence).value = i;
+            ringBuffer.publish(sequence);
+        }
+
+        // Then
+        assertTrue(seen.await(5, TimeUnit.SECONDS));
+        consumer.halt();
+        assertEquals(1, consumer.getErrors());
+    }
+
+    private static RingBufferConsumer<LongEvent> orderedConsumer(String name, RingBuffer<LongEvent> ringBuffer,
+                                                                 int events, CountDownLatch done,
+                                                                 AtomicLong outOfOrder, long pauseNanos) {
+        long[] expected = {0};
+        return new RingBufferConsumer<>(name, ringBuffer, (event, sequence, endOfBatch) -> {
+            if (event.value != expected[0]) {
+                outOfOrder.incrementAndGet();
+            }
+            expected[0]++;
+            if (pauseNanos > 0 && expected[0] % 1024 == 0) {
+                Thread.sleep(pauseNanos);
+            }
+            if (expected[0] == events) {
+                done.countDown();
+            }
+        });
+    }
+}
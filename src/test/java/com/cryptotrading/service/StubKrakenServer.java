@@ -0,0 +1,127 @@
+package com.cryptotrading.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.java_websocket.WebSocket;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+
+import java.net.InetSocketAddress;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for the Kraken WebSocket API used by integration tests.
+ * Confirms every subscribed pair with a {@code subscriptionStatus} event (or rejects the pairs
+ * in {@link #rejectPairs}), remembers each connection's ticker pairs so frames can be sent only
+ * to the connections that subscribed them, and can drop all client connections on demand.
+ */
+class StubKrakenServer extends WebSocketServer {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final AtomicInteger subscribeMessages = new AtomicInteger();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger channelIds = new AtomicInteger();
+    final Set<String> rejectPairs = ConcurrentHashMap.newKeySet();
+
+    StubKrakenServer() {
+        super(new InetSocketAddress("localhost", 0));
+        setReuseAddr(true);
+    }
+
+    /**
+     * Starts the server and waits until it accepts connections.
+     */
+    StubKrakenServer startAndWait() throws InterruptedException {
+        start();
+        if (!started.await(5, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Stub Kraken server did not start");
+        }
+        return this;
+    }
+
+    String getUrl() {
+        return "ws://localhost:" + getPort();
+    }
+
+    int getSubscribeMessages() {
+        return subscribeMessages.get();
+    }
+
+    int getConnectionCount() {
+        return connections.get();
+    }
+
+    /**
+     * Sends a frame to every connection subscribed to the pair's ticker, like Kraken does.
+     * @return Number of connections the frame was sent to
+     */
+    int sendToSubscribers(String pair, String frame) {
+        int sent = 0;
+        for (WebSocket connection : getConnections()) {
+            Set<String> pairs = connection.getAttachment();
+            if (pairs != null && pairs.contains(pair)) {
+                connection.send(frame);
+                sent++;
+            }
+        }
+        return sent;
+    }
+
+    /**
+     * Closes every client connection as if the upstream had dropped them.
+     */
+    void dropAllConnections() {
+        getConnections().forEach(connection -> connection.closeConnection(1006, "dropped by test"));
+    }
+
+    @Override
+    public void onOpen(WebSocket conn, ClientHandshake handshake) {
+        connections.incrementAndGet();
+        conn.setAttachment(ConcurrentHashMap.newKeySet());
+    }
+
+    @Override
+    public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+    }
+
+    @Override
+    public void onMessage(WebSocket conn, String message) {
+        try {
+            JsonNode request = objectMapper.readTree(message);
+            if (!"subscribe".equals(request.path("event").asText())) {
+                return;
+            }
+            subscribeMessages.incrementAndGet();
+            String channel = request.path("subscription").path("name").asText();
+            for (JsonNode pair : request.path("pair")) {
+                String name = pair.asText();
+                if (rejectPairs.contains(name)) {
+                    conn.send("{\"errorMessage\":\"Currency pair not supported " + name + "\","
+                        + "\"event\":\"subscriptionStatus\",\"pair\":\"" + name + "\",\"status\":\"error\"}");
+                } else {
+                    if ("ticker".equals(channel)) {
+                        conn.<Set<String>>getAttachment().add(name);
+                    }
+                    conn.send("{\"channelID\":" + channelIds.incrementAndGet() + ",\"channelName\":\"" + channel
+                        + "\",\"event\":\"subscriptionStatus\",\"pair\":\"" + name + "\",\"status\":\"subscribed\","
+                        + "\"subscription\":{\"name\":\"" + channel + "\"}}");
+                }
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void onError(WebSocket conn, Exception ex) {
+    }
+
+    @Override
+    public void onStart() {
+        started.countDown();
+    }
+}
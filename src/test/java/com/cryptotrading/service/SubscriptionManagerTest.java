@@ -0,0 +1,85 @@
+package com.cryptotrading.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SubscriptionManagerTest {
+
+    private SubscriptionManager subscriptionManager;
+
+    @BeforeEach
+    void setUp() {
+        subscriptionManager = new SubscriptionManager();
+    }
+
+    @Test
+    void request_ShouldMarkNewPairsPendingAndSkipLiveOnes() {
+        // Given
+        subscriptionManager.request("XBT/USD");
+        subscriptionManager.onSubscribed("XBT/USD");
+
+        // When
+        List<String> toSend = subscriptionManager.request("XBT/USD", "ETH/USD", "ETH/USD");
+
+        // Then
+        assertEquals(List.of("ETH/USD"), toSend);
+        assertEquals(SubscriptionManager.State.CONFIRMED, subscriptionManager.getState("XBT/USD"));
+        assertEquals(SubscriptionManager.State.PENDING, subscriptionManager.getState("ETH/USD"));
+    }
+
+    @Test
+    void onFailed_ShouldRecordReasonAndAllowRetry() {
+        // Given
+        subscriptionManager.request("BAD/USD");
+
+        // When
+        subscriptionManager.onFailed("BAD/USD", "Currency pair not supported");
+
+        // Then
+        assertFalse(subscriptionManager.isActive("BAD/USD"));
+        assertEquals(Map.of("BAD/USD", "Currency pair not supported"), subscriptionManager.getMetrics().get("failures"));
+        assertEquals(List.of("BAD/USD"), subscriptionManager.request("BAD/USD"));
+    }
+
+    @Test
+    void beginResubscribe_AfterDisconnect_ShouldRestoreEveryLivePairButNotFailedOnes() {
+        // Given
+        subscriptionManager.request("XBT/USD", "ETH/USD", "BAD/USD", "SOL/USD");
+        subscriptionManager.onSubscribed("XBT/USD");
+        subscriptionManager.onSubscribed("ETH/USD");
+        subscriptionManager.onFailed("BAD/USD", "invalid");
+
+        // When
+        subscriptionManager.onDisconnect();
+        List<String> toSend = subscriptionManager.beginResubscribe();
+
+        // Then
+        assertEquals(List.of("XBT/USD", "ETH/USD", "SOL/USD"), toSend);
+        assertEquals(Set.of(), subscriptionManager.getPairs(SubscriptionManager.State.CONFIRMED));
+        assertEquals(-1, subscriptionManager.getLastRecoveryMillis());
+    }
+
+    @Test
+    void onSubscribed_WhenAllPairsConfirmedAfterReconnect_ShouldRecordRecoveryTime() {
+        // Given
+        subscriptionManager.request("XBT/USD", "ETH/USD");
+        subscriptionManager.beginResubscribe();
+
+        // When
+        subscriptionManager.onSubscribed("XBT/USD");
+        Object recoveringAfterFirst = subscriptionManager.getMetrics().get("recovering");
+        subscriptionManager.onSubscribed("ETH/USD");
+
+        // Then
+        assertEquals(true, recoveringAfterFirst);
+        assertEquals(false, subscriptionManager.getMetrics().get("recovering"));
+        assertTrue(subscriptionManager.getLastRecoveryMillis() >= 0);
+        assertEquals(2, subscriptionManager.getMetrics().get("confirmed"));
+    }
+}
@@ -0,0 +1,58 @@
+package com.cryptotrading.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SymbolRegistryTest {
+
+    @Test
+    void register_ShouldAssignDenseStableIds() {
+        // Given
+        SymbolRegistry registry = new SymbolRegistry(8);
+
+        // When
+        int btc = registry.register("XBT/USD");
+        int eth = registry.register("ETH/USD");
+        int btcAgain = registry.register("XBT/USD");
+
+        // Then
+        assertEquals(0, btc);
+        assertEquals(1, eth);
+        assertEquals(btc, btcAgain);
+        assertEquals(2, registry.size());
+        assertEquals("ETH/USD", registry.nameOf(eth));
+    }
+
+    @Test
+    void idOf_WithFrameRegion_ShouldResolveWithoutSubstring() {
+        // Given
+        SymbolRegistry registry = new SymbolRegistry();
+        int id = registry.register("SOL/USD");
+        String frame = "[1,{},\"ticker\",\"SOL/USD\"]";
+        int start = frame.indexOf("SOL");
+
+        // When & Then
+        assertEquals(id, registry.idOf(frame, start, start + "SOL/USD".length()));
+        assertEquals(-1, registry.idOf(frame, start, start + 3));
+        assertEquals(-1, registry.idOf("DOGE/USD"));
+    }
+
+    @Test
+    void register_WhenFull_ShouldThrowException() {
+        // Given
+        SymbolRegistry registry = new SymbolRegistry(2);
+        registry.register("A/USD");
+        registry.register("B/USD");
+
+        // When & Then
+        assertThrows(IllegalStateException.class, () -> registry.register("C/USD"));
+        assertEquals(1, registry.register("B/USD"));
+    }
+
+    @Test
+    void nameOf_WithUnknownId_ShouldThrowException() {
+        SymbolRegistry registry = new SymbolRegistry();
+        assertThrows(IllegalArgumentException.class, () -> registry.nameOf(0));
+    }
+}
@@ -0,0 +1,255 @@
+package com.cryptotrading.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TickJournalTest {
+    private static final Logger log = LoggerFactory.getLogger(TickJournalTest.class);
+
+    private static final long T0 = 1_711_034_400_000L; // 2024-03-21T15:20:00Z
+
+    @TempDir
+    Path directory;
+
+    private SymbolRegistry symbolRegistry;
+    private TickJournal journal;
+    private TickJournalReader reader;
+    private int btc;
+    private int eth;
+
+    @BeforeEach
+    void setUp() {
+        symbolRegistry = new SymbolRegistry();
+        journal = new TickJournal(symbolRegistry, directory);
+        reader = new TickJournalReader(directory);
+        btc = symbolRegistry.register("XBT/USD");
+        eth = symbolRegistry.register("ETH/USD");
+    }
+
+    @AfterEach
+    void tearDown() {
+        journal.close();
+    }
+
+    @Test
+    void scan_ShouldReturnTicksOfOneSymbolWithinRange() throws Exception {
+        // Given
+        for (int i = 0; i < 10; i++) {
+            journal.append(btc, "XBT/USD", T0 + i * 1_000, 1_000 + i, 50_000 + i, 49_999 + i, 50_001 + i, 10 + i);
+            journal.append(eth, "ETH/USD", T0 + i * 1_000, 2_000 + i, 3_000 + i, 2_999 + i, 3_001 + i, 20 + i);
+        }
+
+        // When
+        List<Double> prices = new ArrayList<>();
+        long visited = reader.scan("XBT/USD", T0 + 2_000, T0 + 5_000, tick -> {
+            assertEquals("XBT/USD", tick.getSymbol());
+            prices.add(tick.getLast());
+            return true;
+        });
+
+        // Then
+        assertEquals(4, visited);
+        assertEquals(List.of(50_002.0, 50_003.0, 50_004.0, 50_005.0), prices);
+        reader.scan("ETH/USD", T0 + 9_000, T0 + 9_000, tick -> {
+            assertEquals(T0 + 9_000, tick.getTimestamp());
+            assertEquals(2_009, tick.getReceivedNanos());
+            assertEquals(3_008.0, tick.getBid());
+            assertEquals(3_010.0, tick.getAsk());
+            assertEquals(29.0, tick.getVolume());
+            return true;
+        });
+        assertEquals(0, reader.scan("SOL/USD", T0, T0 + 10_000, tick -> true));
+        assertEquals(20L, journal.getMetrics().get("records"));
+    }
+
+    @Test
+    void append_AcrossMidnight_ShouldRollToANewDailySegment() throws Exception {
+        // Given
+        long midnight = Math.floorDiv(T0, TickJournal.MILLIS_PER_DAY) * TickJournal.MILLIS_PER_DAY
+            + TickJournal.MILLIS_PER_DAY;
+
+        // When
+        journal.append(btc, "XBT/USD", midnight - 1, 1, 100.0, 99.0, 101.0, 1.0);
+        journal.append(btc, "XBT/USD", midnight, 2, 101.0, 100.0, 102.0, 1.0);
+        journal.append(btc, "XBT/USD", midnight + 1, 3, 102.0, 101.0, 103.0, 1.0);
+
+        // Then
+        assertTrue(Files.exists(directory.resolve("ticks-2024-03-21.journal")));
+        assertTrue(Files.exists(directory.resolve("ticks-2024-03-22.journal")));
+        assertEquals(2L, journal.getMetrics().get("segmentsOpened"));
+        List<Double> prices = new ArrayList<>();
+        reader.scan(midnight - 1, midnight + 1, tick -> prices.add(tick.getLast()));
+        assertEquals(List.of(100.0, 101.0, 102.0), prices);
+    }
+
+    @Test
+    void append_AfterRestart_ShouldContinueSegmentWithStableSymbols() throws Exception {
+        // Given
+        journal.append(btc, "XBT/USD", T0, 1, 100.0, 99.0, 101.0, 1.0);
+        journal.close();
+
+        // When - the next process assigns different registry IDs
+        SymbolRegistry restarted = new SymbolRegistry();
+        int ethAfterRestart = restarted.register("ETH/USD");
+        int btcAfterRestart = restarted.register("XBT/USD");
+        journal = new TickJournal(restarted, directory);
+        journal.append(btcAfterRestart, "XBT/USD", T0 + 1, 2, 110.0, 109.0, 111.0, 1.0);
+        journal.append(ethAfterRestart, "ETH/USD", T0 + 2, 3, 3_000.0, 2_999.0, 3_001.0, 1.0);
+
+        // Then
+        List<String> ticks = new ArrayList<>();
+        reader.scan(T0, T0 + 2, tick -> ticks.add(tick.getSymbol() + "@" + tick.getLast()));
+        assertEquals(List.of("XBT/USD@100.0", "XBT/USD@110.0", "ETH/USD@3000.0"), ticks);
+    }
+
+    @Test
+    void scan_AcrossChunksAndWindows_ShouldVisitEveryRecordInOrder() throws Exception {
+        // Given - 1 MB chunks hold 18724 records, so this spans several chunks and two read windows
+        journal.close();
+        journal = new TickJournal(symbolRegistry, true, directory.toString(), 1, 1000);
+        int records = TickJournalReader.WINDOW_RECORDS + 10_000;
+        for (int i = 0; i < records; i++) {
+            journal.append(i % 2 == 0 ? btc : eth, i % 2 == 0 ? "XBT/USD" : "ETH/USD", T0 + i, i, i, i, i, i);
+        }
+
+        // When
+        long[] expected = {1};
+        long visited = reader.scan("ETH/USD", T0, T0 + records, tick -> {
+            assertEquals((double) expected[0], tick.getLast());
+            expected[0] += 2;
+            return true;
+        });
+        long stoppedAfter = reader.scan(T0, T0 + records, tick -> tick.getLast() < 9);
+
+        // Then
+        assertEquals(records / 2, visited);
+        assertEquals(10, stoppedAfter);
+    }
+
+    @Test
+    void pipeline_WithJournal_ShouldJournalTicksOffTheIngestThread() throws Exception {
+        // Given
+        PriceTable priceTable = new PriceTable(symbolRegistry);
+        TickPipeline pipeline = new TickPipeline(priceTable, 1024);
+        pipeline.setTickJournal(journal);
+        pipeline.start();
+        DecodedTick tick = new DecodedTick();
+        tick.setPair("XBT/USD");
+        tick.setSymbolId(btc);
+        tick.setLast(50_000.0);
+        tick.setBid(49_999.0);
+        tick.setAsk(50_001.0);
+
+        try {
+            // When
+            pipeline.publish(tick, btc, 49_000.0, 2.0, T0, 42);
+            assertTrue(pipeline.awaitDrained(5_000));
+
+            // Then
+            List<Long> received = new ArrayList<>();
+            reader.scan("XBT/USD", T0, T0, journaled -> received.add(journaled.getReceivedNanos()));
+            assertEquals(List.of(42L), received);
+        } finally {
+            pipeline.stop();
+        }
+    }
+
+    @Test
+    void append_WhileAnotherWriterHoldsTheDirectory_ShouldJournalNothing() throws Exception {
+        // Given
+        journal.append(btc, "XBT/USD", T0, 1, 100.0, 99.0, 101.0, 1.0);
+        TickJournal second = new TickJournal(symbolRegistry, directory);
+
+        try {
+            // When
+            second.append(btc, "XBT/USD", T0 + 1, 2, 200.0, 199.0, 201.0, 1.0);
+            second.append(eth, "ETH/USD", T0 + 2, 3, 3_000.0, 2_999.0, 3_001.0, 1.0);
+
+            // Then
+            assertTrue(second.isHeldElsewhere());
+            assertEquals(0L, second.getMetrics().get("records"));
+            List<String> ticks = new ArrayList<>();
+            reader.scan(T0, T0 + 2, tick -> ticks.add(tick.getSymbol() + "@" + tick.getLast()));
+            assertEquals(List.of("XBT/USD@100.0"), ticks);
+            assertEquals(List.of("0,XBT/USD"), Files.readAllLines(TickJournal.symbolsPath(directory,
+                Math.floorDiv(T0, TickJournal.MILLIS_PER_DAY))));
+        } finally {
+            second.close();
+        }
+        assertFalse(journal.isHeldElsewhere());
+    }
+
+    @Test
+    void pipeline_WithJournalFrom_ShouldOnlyJournalLaterTicks() throws Exception {
+        // Given - a price bus follower republishes the first tick and then takes over
+        PriceTable priceTable = new PriceTable(symbolRegistry);
+        TickPipeline pipeline = new TickPipeline(priceTable, 1024);
+        pipeline.setTickJournal(journal);
+        pipeline.start();
+        pipeline.setJournalFrom(Long.MAX_VALUE);
+        DecodedTick tick = new DecodedTick();
+        tick.setPair("XBT/USD");
+        tick.setSymbolId(btc);
+        tick.setLast(50_000.0);
+
+        try {
+            // When
+            pipeline.publish(tick, btc, 49_000.0, 2.0, T0, 1);
+            pipeline.setJournalFrom(pipeline.getPublished());
+            pipeline.publish(tick, btc, 49_000.0, 2.0, T0 + 1, 2);
+            assertTrue(pipeline.awaitDrained(5_000));
+
+            // Then
+            List<Long> received = new ArrayList<>();
+            reader.scan("XBT/USD", T0, T0 + 1, journaled -> received.add(journaled.getReceivedNanos()));
+            assertEquals(List.of(2L), received);
+        } finally {
+            pipeline.stop();
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void benchmark_Append_ShouldNotAllocatePerTick() throws Exception {
+        // Given
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int warmup = 100_000;
+        int ticks = 1_000_000;
+        for (int i = 0; i < warmup; i++) {
+            journal.append(btc, "XBT/USD", T0, i, 50_000.0, 49_999.0, 50_001.0, 1.0);
+        }
+
+        // When
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ticks; i++) {
+            journal.append(i % 2 == 0 ? btc : eth, i % 2 == 0 ? "XBT/USD" : "ETH/USD", T0 + i / 1_000, i, 50_000.0 + i, 49_999.0, 50_001.0, 1.0);
+        }
+        journal.onBatchEnd();
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        // Then
+        long[] scanned = {0};
+        long scanStart = System.nanoTime();
+        reader.scan("ETH/USD", T0, T0 + ticks, tick -> ++scanned[0] > 0);
+        long scanElapsed = System.nanoTime() - scanStart;
+        log.info(String.format("Journal: %.0f appends/s (%.1f B allocated per tick), scan %.0f records/s",
+            ticks * 1e9 / elapsed, (double) allocated / ticks, (warmup + ticks) * 1e9 / scanElapsed));
+        assertEquals(ticks / 2, scanned[0]);
+        assertTrue(allocated < ticks / 10, "append allocated " + allocated + " bytes");
+    }
+}
@@ -0,0 +1,111 @@
+package com.cryptotrading.service;
+
+import com.cryptotrading.websocket.CryptoWebSocketEndpoint;
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TickPipelineTest {
+
+    private PriceTable priceTable;
+    private TickPipeline tickPipeline;
+    private CryptoWebSocketEndpoint endpoint;
+
+    @Mock(lenient = true)
+    private Session session;
+
+    @Mock(lenient = true)
+    private RemoteEndpoint.Async asyncRemote;
+
+    @BeforeEach
+    void setUp() {
+        priceTable = new PriceTable(new SymbolRegistry());
+        tickPipeline = new TickPipeline(priceTable, 1024);
+        tickPipeline.start();
+        endpoint = new CryptoWebSocketEndpoint();
+        when(session.getId()).thenReturn("pipeline-session");
+        when(session.isOpen()).thenReturn(true);
+        when(session.getAsyncRemote()).thenReturn(asyncRemote);
+        // Complete sends at once, so the snapshot sent at open does not hold back the update
+        doAnswer(invocation -> {
+            invocation.<SendHandler>getArgument(1).onResult(new SendResult());
+            return null;
+        }).when(asyncRemote).sendText(anyString(), any(SendHandler.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        endpoint.onClose(session);
+        tickPipeline.stop();
+    }
+
+    @Test
+    void publish_ShouldUpdatePriceTableAndBroadcastOffTheIngestThread() throws Exception {
+        // Given
+        endpoint.onOpen(session);
+        int id = priceTable.getSymbolRegistry().register("XBT/USD");
+        DecodedTick tick = new DecodedTick();
+        tick.setPair("XBT/USD");
+        tick.setSymbolId(id);
+        tick.setLast(50000.0);
+        tick.setBid(49999.0);
+        tick.setAsk(50001.0);
+
+        // When
+        tickPipeline.publish(tick, id, 48000.0, 4.17, 123L, System.nanoTime());
+
+        // Then
+        assertTrue(tickPipeline.awaitDrained(5000));
+        assertEquals(50000.0, priceTable.last(id));
+        PriceSnapshot snapshot = new PriceSnapshot();
+        priceTable.read(id, snapshot);
+        assertEquals(49999.0, snapshot.getBid());
+        assertEquals(123L, snapshot.getUpdatedAt());
+        verify(asyncRemote, timeout(5000)).sendText(argThat(message ->
+            message.contains("PRICE_UPDATE") && message.contains("XBT/USD") && message.contains("50000.0")),
+            any(SendHandler.class));
+    }
+
+    @Test
+    void getMetrics_ShouldReportDepthAndStageLag() throws Exception {
+        // Given
+        DecodedTick tick = new DecodedTick();
+        tick.setPair("ETH/USD");
+        tick.setLast(3000.0);
+        int id = priceTable.getSymbolRegistry().register("ETH/USD");
+        for (int i = 0; i < 10; i++) {
+            tickPipeline.publish(tick, id, 3000.0, 0.0, i, System.nanoTime());
+        }
+        assertTrue(tickPipeline.awaitDrained(5000));
+
+        // When
+        Map<String, Object> metrics = tickPipeline.getMetrics();
+
+        // Then
+        assertEquals(1024, metrics.get("capacity"));
+        assertEquals(10L, metrics.get("published"));
+        assertEquals(0L, metrics.get("depth"));
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> stages = (List<Map<String, Object>>) metrics.get("stages");
+        assertEquals(2, stages.size());
+        assertEquals("tick-pipeline-state", stages.get(0).get("name"));
+        assertEquals(0L, stages.get(1).get("lag"));
+    }
+}
@@ -0,0 +1,185 @@
+package com.cryptotrading.service;
+
+import com.cryptotrading.websocket.CryptoWebSocketEndpoint;
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TickReplayServerTest {
+    private static final Logger log = LoggerFactory.getLogger(TickReplayServerTest.class);
+
+    private static final long T0 = 1_711_034_400_000L;
+    private static final String[] PAIRS = {"XBT/USD", "ETH/USD", "SOL/USD"};
+
+    @TempDir
+    Path directory;
+
+    private PriceTable priceTable;
+    private TickPipeline tickPipeline;
+    private TickReplayServer server;
+    private KrakenWebSocketService service;
+
+    @BeforeEach
+    void setUp() {
+        priceTable = new PriceTable(new SymbolRegistry());
+        tickPipeline = new TickPipeline(priceTable, 8192);
+        tickPipeline.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (service != null) {
+            service.disconnect();
+        }
+        if (server != null) {
+            server.stop(1000);
+        }
+        tickPipeline.stop();
+    }
+
+    @Test
+    void replay_AtFourTimesSpeed_ShouldFeedRecordedTicksThroughTheLiveDecodePath() throws Exception {
+        // Given - 40 ticks per pair, 10 ms apart: a 390 ms recording
+        record(40, 10);
+        startReplay(4.0);
+        service.connect();
+
+        // When
+        assertTrue(server.awaitPass(10_000));
+        awaitCondition(() -> tickPipeline.getProcessed("fanout") == 120);
+
+        // Then
+        long passMillis = (Long) server.getMetrics().get("passMillis");
+        assertTrue(passMillis >= 90 && passMillis < 1_000, "4x pass of a 390 ms recording took " + passMillis + " ms");
+        assertEquals(120L, server.getMetrics().get("passTicks"));
+        assertEquals(390L, server.getMetrics().get("recordedSpanMillis"));
+        int btc = priceTable.getSymbolRegistry().idOf("XBT/USD");
+        assertEquals(50_039.0, priceTable.last(btc));
+        assertTrue(tickPipeline.getLatencyNanos("fanout", 0.99) > 0);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void benchmark_ReplayAtIncreasingSpeeds_ShouldReportThroughputAndLatency() throws Exception {
+        // Given - 30000 ticks over a 10 s recording, broadcast to 100 WebSocket sessions
+        record(10_000, 1);
+        CryptoWebSocketEndpoint endpoint = new CryptoWebSocketEndpoint();
+        List<Session> sessions = new ArrayList<>();
+        AtomicLong messages = new AtomicLong();
+        for (int i = 0; i < 100; i++) {
+            Session session = openSession("replay-" + i, messages);
+            endpoint.onOpen(session);
+            sessions.add(session);
+        }
+        startReplay(20.0);
+
+        try {
+            // When
+            log.info("Replay speed | sent ticks/s | broadcast ticks/s | fanout p50 | fanout p99");
+            for (double speed : new double[]{20.0, 100.0, 0.0}) {
+                long processedBefore = tickPipeline.getProcessed("fanout");
+                long start = System.nanoTime();
+                if (speed == 20.0) {
+                    service.connect(); // the first pass starts when the service subscribes
+                } else {
+                    tickPipeline.resetLatency();
+                    server.replay(speed);
+                }
+                assertTrue(server.awaitPass(30_000));
+                awaitCondition(() -> tickPipeline.getProcessed("fanout") - processedBefore == 30_000);
+                long elapsed = System.nanoTime() - start;
+
+                // Then
+                log.info(String.format("%12s | %12d | %17.0f | %7d us | %7d us",
+                    speed == 0 ? "max" : speed + "x", server.getMetrics().get("ticksPerSecond"),
+                    30_000 * 1e9 / elapsed, tickPipeline.getLatencyNanos("fanout", 0.50) / 1_000,
+                    tickPipeline.getLatencyNanos("fanout", 0.99) / 1_000));
+                assertEquals(30_000L, server.getMetrics().get("passTicks"));
+            }
+            // Every tick to every session, after the snapshot each one got at open
+            assertEquals(3 * 30_000 * 100L + 100, messages.get());
+        } finally {
+            sessions.forEach(endpoint::onClose);
+        }
+    }
+
+    /**
+     * A session that is always open, completes every send immediately and only counts what is
+     * sent to it. Mockito mocks record a stack trace per call, which would make the mock the
+     * bottleneck being measured.
+     */
+    private static Session openSession(String id, AtomicLong messages) {
+        Session[] session = new Session[1];
+        RemoteEndpoint.Async remote = (RemoteEndpoint.Async) Proxy.newProxyInstance(
+            RemoteEndpoint.Async.class.getClassLoader(), new Class<?>[]{RemoteEndpoint.Async.class},
+            (proxy, method, args) -> {
+                if (method.getName().equals("sendText")) {
+                    messages.incrementAndGet();
+                    ((SendHandler) args[1]).onResult(new SendResult());
+                }
+                return null;
+            });
+        session[0] = (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[]{Session.class},
+            (proxy, method, args) -> switch (method.getName()) {
+                case "getId" -> id;
+                case "isOpen" -> true;
+                case "getAsyncRemote" -> remote;
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                default -> null;
+            });
+        return session[0];
+    }
+
+    /**
+     * Journals {@code ticksPerPair} ticks for each pair, {@code stepMillis} apart.
+     */
+    private void record(int ticksPerPair, long stepMillis) {
+        SymbolRegistry symbols = new SymbolRegistry();
+        TickJournal journal = new TickJournal(symbols, directory);
+        for (int i = 0; i < ticksPerPair; i++) {
+            for (String pair : PAIRS) {
+                journal.append(symbols.register(pair), pair, T0 + i * stepMillis, i,
+                    50_000.0 + i, 49_999.0 + i, 50_001.0 + i, 100.0);
+            }
+        }
+        journal.close();
+    }
+
+    private void startReplay(double speed) throws InterruptedException {
+        server = new TickReplayServer(new InetSocketAddress("localhost", 0), new TickJournalReader(directory),
+            T0, T0 + 86_400_000L, speed, false).startAndWait();
+        service = new KrakenWebSocketService();
+        service.setPriceTable(priceTable);
+        ReflectionTestUtils.setField(service, "tickPipeline", tickPipeline);
+        ReflectionTestUtils.setField(service, "krakenWsUrl", server.getUrl());
+    }
+
+    private static void awaitCondition(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Condition not met within 30 seconds");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
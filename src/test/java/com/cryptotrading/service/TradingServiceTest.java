@@ -1,18 +1,36 @@
 package com.cryptotrading.service;
 
+import com.cryptotrading.model.CostBasisMethod;
+import com.cryptotrading.model.FixedPoint;
+import com.cryptotrading.model.Position;
 import com.cryptotrading.model.Transaction;
+import com.cryptotrading.model.UserPortfolio;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @ExtendWith(MockitoExtension.class)
 class TradingServiceTest {
+    private static final Logger log = LoggerFactory.getLogger(TradingServiceTest.class);
 
     private TradingService tradingService;
     private static final double INITIAL_BALANCE = 10000.00;
@@ -170,4 +188,531 @@ class TradingServiceTest {
         Map<String, Double> portfolio = (Map<String, Double>) result.get("portfolio");
         assertFalse(portfolio.containsKey(SYMBOL));
     }
-} 
\ No newline at end of file
+
+    @Test
+    void executeTrade_OnDifferentAccounts_ShouldKeepThemApart() {
+        // When
+        tradingService.executeTrade("alice", "BUY", SYMBOL, 1.0, 4000.0);
+        tradingService.executeTrade("bob", "BUY", SYMBOL, 0.5, 4000.0);
+        tradingService.resetAccount("bob");
+
+        // Then
+        assertEquals(6000.0, (Double) tradingService.getUpdatedState("alice").get("balance"), DELTA);
+        assertEquals(INITIAL_BALANCE, (Double) tradingService.getUpdatedState("bob").get("balance"), DELTA);
+        assertEquals(INITIAL_BALANCE, (Double) tradingService.getUpdatedState().get("balance"), DELTA);
+        assertEquals(2, tradingService.getAccountCount());
+        assertThrows(IllegalArgumentException.class, () -> tradingService.trade("", "BUY", SYMBOL, 1.0, 1.0));
+    }
+
+    @Test
+    void getUpdatedStateAndReset_ForUnknownAccounts_ShouldNotCreateThem() {
+        // When
+        Map<String, Object> state = tradingService.getUpdatedState("never-traded");
+        Map<String, Object> reset = tradingService.resetAccount("never-reset");
+
+        // Then
+        assertEquals(INITIAL_BALANCE, (Double) state.get("balance"), DELTA);
+        assertEquals(INITIAL_BALANCE, (Double) reset.get("balance"), DELTA);
+        assertEquals(0, tradingService.getAccountCount());
+    }
+
+    @Test
+    void trade_BeyondTheAccountLimit_ShouldRejectNewAccounts() {
+        // Given
+        TradingService service = new TradingService(new PairPrecision(), CostBasisMethod.FIFO, null, 0, 0, 2);
+        service.trade("alice", "BUY", SYMBOL, 1.0, 100.0);
+        service.trade("bob", "BUY", SYMBOL, 1.0, 100.0);
+
+        // When
+        IllegalArgumentException full = assertThrows(IllegalArgumentException.class,
+            () -> service.trade("carol", "BUY", SYMBOL, 1.0, 100.0));
+
+        // Then
+        assertEquals("Too many accounts", full.getMessage());
+        assertEquals(2, service.getAccountCount());
+        service.trade("alice", "SELL", SYMBOL, 1.0, 100.0);
+        assertEquals(INITIAL_BALANCE, (Double) service.getUpdatedState("alice").get("balance"), DELTA);
+    }
+
+    @Test
+    void trade_FromManyThreadsOnOneAccount_ShouldNeverOverspend() throws Exception {
+        // Given: 8 threads trying to spend twice the balance between them
+        int threads = 8;
+        int attempts = 2_500;
+        AtomicInteger fills = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                awaitQuietly(start);
+                for (int i = 0; i < attempts; i++) {
+                    try {
+                        tradingService.trade("shared", "BUY", SYMBOL, 1.0, 1.0);
+                        fills.incrementAndGet();
+                    } catch (IllegalArgumentException e) {
+                        assertEquals("Insufficient funds", e.getMessage());
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+
+        // When
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        // Then
+        Map<String, Object> state = tradingService.getUpdatedState("shared");
+        assertEquals(10_000, fills.get());
+        assertEquals(0.0, (Double) state.get("balance"), DELTA);
+        assertEquals(10_000, ((List<?>) state.get("transactions")).size());
+    }
+
+    /**
+     * Trades on random accounts out of 100k from 1, 8 and 32 threads, once behind one global
+     * lock (how the service used to serialize every trade) and once with the service's own
+     * per-account locking.
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmark_TradesAcross100kAccounts() throws Exception {
+        int accounts = 100_000;
+        int roundTrips = 100_000;
+        String[] ids = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            ids[i] = "account-" + i;
+        }
+        log.info(String.format("Trades across %d accounts on %d cores", accounts,
+            Runtime.getRuntime().availableProcessors()));
+        for (int round = 0; round < 2; round++) {
+            for (int threads : new int[]{1, 8, 32}) {
+                for (boolean global : new boolean[]{true, false}) {
+                    TradingService service = new TradingService();
+                    for (String id : ids) {
+                        service.getUpdatedState(id);
+                    }
+                    Object globalLock = new Object();
+                    CountDownLatch start = new CountDownLatch(1);
+                    List<Thread> workers = new ArrayList<>();
+                    for (int t = 0; t < threads; t++) {
+                        int perThread = roundTrips / threads;
+                        Thread worker = new Thread(() -> {
+                            awaitQuietly(start);
+                            ThreadLocalRandom random = ThreadLocalRandom.current();
+                            for (int i = 0; i < perThread; i++) {
+                                String id = ids[random.nextInt(accounts)];
+                                // Binary fractions, so holdings add up exactly and every sell is covered
+                                if (global) {
+                                    synchronized (globalLock) {
+                                        service.trade(id, "BUY", SYMBOL, 0.5, 2.0);
+                                        service.trade(id, "SELL", SYMBOL, 0.5, 2.0);
+                                    }
+                                } else {
+                                    service.trade(id, "BUY", SYMBOL, 0.5, 2.0);
+                                    service.trade(id, "SELL", SYMBOL, 0.5, 2.0);
+                                }
+                            }
+                        });
+                        workers.add(worker);
+                        worker.start();
+                    }
+                    long started = System.nanoTime();
+                    start.countDown();
+                    for (Thread worker : workers) {
+                        worker.join();
+                    }
+                    long elapsed = System.nanoTime() - started;
+                    assertEquals(accounts, service.getAccountCount());
+                    if (round == 1) {
+                        log.info(String.format("%2d threads, %-11s %8.0f trades/s", threads,
+                            global ? "global lock" : "per account", 2.0 * roundTrips * 1e9 / elapsed));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void executeTrade_ShouldNotDriftLikeDoubleArithmetic() {
+        // When: ten buys of 0.1 at 0.1, which add up to 0.09999999999999999 in doubles
+        for (int i = 0; i < 10; i++) {
+            tradingService.executeTrade("BUY", SYMBOL, 0.1, 0.1);
+        }
+        Map<String, Object> result = tradingService.executeTrade("SELL", SYMBOL, 1.0, 0.1);
+
+        // Then
+        assertEquals(INITIAL_BALANCE, (Double) result.get("balance"));
+        @SuppressWarnings("unchecked")
+        List<Transaction> transactions = (List<Transaction>) result.get("transactions");
+        assertEquals(0.01, transactions.get(0).getTotal());
+        assertEquals(0.0, transactions.get(10).getProfitLoss());
+    }
+
+    @Test
+    void trade_ShouldRoundToThePairsDecimals() {
+        // Given: whole units of DOGE and cents
+        PairPrecision precision = new PairPrecision();
+        precision.register("DOGE/USD", 0, 2);
+        TradingService service = new TradingService(precision);
+
+        // When
+        TradingService.Fill buy = service.trade("BUY", "DOGE/USD", 10.9, 0.123456789);
+        TradingService.Fill sell = service.trade("SELL", "DOGE/USD", 3.0, 0.125);
+
+        // Then: the amount rounds down, the price half-even to 8 places, the cost up and the proceeds down
+        assertEquals(10.0, buy.amount());
+        assertEquals(0.12345679, buy.price());
+        assertEquals(1.24, buy.total());
+        assertEquals(9998.76, buy.balance());
+        assertEquals(0.37, sell.total());
+        // 3 of the 10 DOGE bought for 1.24 cost 0.372
+        assertEquals(-0.00200000, sell.profitLoss(), 1e-12);
+        assertEquals(7.0, sell.holding());
+        assertThrows(IllegalArgumentException.class, () -> service.trade("BUY", "DOGE/USD", 0.5, 1.0));
+        assertThrows(IllegalArgumentException.class, () -> service.trade("BUY", SYMBOL, 1e300, 1.0));
+    }
+
+    @Test
+    void trade_ShouldTakeTheCostOfTheLotsInTheConfiguredOrder() {
+        // Given: lots of 1 at 100, 300 and 200, then half of the second lot left after a sale
+        Map<CostBasisMethod, Double> profitLoss = new EnumMap<>(CostBasisMethod.class);
+        for (CostBasisMethod method : CostBasisMethod.values()) {
+            TradingService service = new TradingService(new PairPrecision(), method);
+            service.trade("BUY", SYMBOL, 1.0, 100.0);
+            service.trade("BUY", SYMBOL, 1.0, 300.0);
+            service.trade("BUY", SYMBOL, 1.0, 200.0);
+
+            // When
+            profitLoss.put(method, service.trade("SELL", SYMBOL, 1.5, 250.0).profitLoss());
+        }
+
+        // Then: 375 proceeds less 100 + 150, 200 + 150 and 300 + 100
+        assertEquals(Map.of(CostBasisMethod.FIFO, 125.0, CostBasisMethod.LIFO, 25.0, CostBasisMethod.HIFO, -25.0),
+            profitLoss);
+    }
+
+    @Test
+    void marketTrade_ShouldFillBuysAtTheAskAndSalesAtTheBid() {
+        // Given
+        PriceTable prices = new PriceTable(new SymbolRegistry());
+        TradingService service = liveService(prices);
+        quote(prices, SYMBOL, 49_990.0, 50_010.0, System.currentTimeMillis());
+
+        // When: a fabricated client price does not set the fill
+        TradingService.Fill bought = service.marketTrade("alice", "BUY", SYMBOL, 0.1, Double.NaN, Double.NaN);
+        TradingService.Fill sold = service.marketTrade("alice", "SELL", SYMBOL, 0.1, 49_995.0, 0.001);
+
+        // Then
+        assertEquals(50_010.0, bought.price());
+        assertEquals(49_990.0, sold.price());
+        assertEquals(INITIAL_BALANCE - 0.1 * 20.0, sold.balance(), DELTA);
+    }
+
+    @Test
+    void marketTrade_WithoutAFreshQuote_ShouldReject() {
+        // Given
+        PriceTable prices = new PriceTable(new SymbolRegistry());
+        TradingService service = liveService(prices);
+        quote(prices, "ETH/USD", 2_999.0, 3_001.0, System.currentTimeMillis() - 60_000);
+
+        // When / Then
+        IllegalArgumentException missing = assertThrows(IllegalArgumentException.class,
+            () -> service.marketTrade("alice", "BUY", SYMBOL, 0.1, 50_000.0, Double.NaN));
+        IllegalArgumentException stale = assertThrows(IllegalArgumentException.class,
+            () -> service.marketTrade("alice", "BUY", "ETH/USD", 0.1, 3_000.0, Double.NaN));
+        assertEquals("No live price for BTC/USD", missing.getMessage());
+        assertEquals("Price of ETH/USD is stale", stale.getMessage());
+        assertEquals(INITIAL_BALANCE, service.getUpdatedState("alice").get("balance"));
+    }
+
+    @Test
+    void marketTrade_WithALastPriceButNoBidOrAsk_ShouldReject() {
+        // Given: a tick that carried only the last trade
+        PriceTable prices = new PriceTable(new SymbolRegistry());
+        TradingService service = liveService(prices);
+        int symbolId = prices.getSymbolRegistry().register(SYMBOL);
+        prices.update(symbolId, 50_000.0, 49_000.0, 2.0, 0.0, 0.0, 1.0, System.currentTimeMillis());
+
+        // When / Then
+        IllegalArgumentException buy = assertThrows(IllegalArgumentException.class,
+            () -> service.marketTrade("alice", "BUY", SYMBOL, 0.1, Double.NaN, Double.NaN));
+        IllegalArgumentException sell = assertThrows(IllegalArgumentException.class,
+            () -> service.marketTrade("alice", "SELL", SYMBOL, 0.1, 50_000.0, Double.NaN));
+        assertEquals("No live quote for BTC/USD", buy.getMessage());
+        assertEquals("No live quote for BTC/USD", sell.getMessage());
+        assertEquals(INITIAL_BALANCE, service.getUpdatedState("alice").get("balance"));
+    }
+
+    @Test
+    void marketTrade_WhenThePriceMovedBeyondTheTolerance_ShouldReject() {
+        // Given: the ask is 2% above the price the client saw
+        PriceTable prices = new PriceTable(new SymbolRegistry());
+        TradingService service = liveService(prices);
+        quote(prices, SYMBOL, 50_990.0, 51_000.0, System.currentTimeMillis());
+
+        // When / Then: beyond the default 1% and an explicit 1.5%, within 2.5%
+        assertThrows(IllegalArgumentException.class,
+            () -> service.marketTrade("alice", "BUY", SYMBOL, 0.1, 50_000.0, Double.NaN));
+        IllegalArgumentException moved = assertThrows(IllegalArgumentException.class,
+            () -> service.marketTrade("alice", "BUY", SYMBOL, 0.1, 50_000.0, 0.015));
+        assertEquals("Price of BTC/USD moved beyond the slippage tolerance", moved.getMessage());
+        assertEquals(51_000.0, service.marketTrade("alice", "BUY", SYMBOL, 0.1, 50_000.0, 0.025).price());
+        // A better price than expected always fills
+        assertEquals(50_990.0, service.marketTrade("alice", "SELL", SYMBOL, 0.1, 50_000.0, 0.0).price());
+        assertThrows(IllegalArgumentException.class,
+            () -> service.marketTrade("alice", "SELL", SYMBOL, 0.1, 50_000.0, -0.1));
+    }
+
+    @Test
+    void marketTrade_WithoutAPriceTable_ShouldFillAtTheClientsPrice() {
+        // When
+        TradingService.Fill fill = tradingService.marketTrade("alice", "BUY", SYMBOL, 0.1, 50_000.0, Double.NaN);
+
+        // Then
+        assertEquals(50_000.0, fill.price());
+        assertThrows(IllegalArgumentException.class,
+            () -> tradingService.marketTrade("alice", "BUY", SYMBOL, 0.1, Double.NaN, Double.NaN));
+    }
+
+    /**
+     * Latency of looking up the fill price while a feed thread keeps rewriting the same row, as
+     * the trading path sees it. Each call is timed on its own, so the figures include the cost of
+     * {@link System#nanoTime()}.
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmark_FillPriceLookup() throws Exception {
+        PriceTable prices = new PriceTable(new SymbolRegistry());
+        TradingService service = liveService(prices);
+        int symbolId = quote(prices, SYMBOL, 49_990.0, 50_010.0, System.currentTimeMillis());
+        AtomicInteger running = new AtomicInteger(1);
+        Thread feed = new Thread(() -> {
+            for (long i = 0; running.get() == 1; i++) {
+                double mid = 50_000.0 + i % 100;
+                prices.update(symbolId, mid, 50_000.0, 0.0, mid - 5, mid + 5, 1.0, System.currentTimeMillis());
+                if ((i & 1023) == 0) {
+                    Thread.yield();
+                }
+            }
+        });
+        feed.start();
+        try {
+            int lookups = 2_000_000;
+            double sink = 0;
+            LatencyHistogram histogram = new LatencyHistogram();
+            for (int round = 0; round < 2; round++) {
+                histogram.reset();
+                for (int i = 0; i < lookups; i++) {
+                    long started = System.nanoTime();
+                    sink += service.fillPrice((i & 1) == 0 ? "BUY" : "SELL", SYMBOL, 50_000.0, 0.01);
+                    histogram.record(System.nanoTime() - started);
+                }
+            }
+            log.info(String.format("Fill price lookup under a concurrent feed: p50 %d ns, p99 %d ns, p99.9 %d ns",
+                histogram.percentile(0.5), histogram.percentile(0.99), histogram.percentile(0.999)));
+            assertEquals(lookups, histogram.count());
+            assertTrue(sink > 0);
+        } finally {
+            running.set(0);
+            feed.join();
+        }
+    }
+
+    private static TradingService liveService(PriceTable prices) {
+        return new TradingService(new PairPrecision(), CostBasisMethod.FIFO, prices, 5_000, 0.01, 1_000);
+    }
+
+    private static int quote(PriceTable prices, String symbol, double bid, double ask, long updatedAt) {
+        int symbolId = prices.getSymbolRegistry().register(symbol);
+        prices.update(symbolId, (bid + ask) / 2, bid, 0.0, bid, ask, 1.0, updatedAt);
+        return symbolId;
+    }
+
+    /**
+     * Runs millions of random buys and sells on 100 accounts across pairs with different decimals
+     * and checks every account against an exact {@link BigDecimal} ledger of FIFO lots: cash, every
+     * position's quantity, cost basis and lot count, and that realized profit/loss accounts for all the cash that left
+     * or came back. The same totals added up in doubles are run alongside to show the drift they build up.
+     */
+    @Test
+    void trade_OverMillionsOfRandomTrades_ShouldNotDrift() {
+        // Given
+        PairPrecision precision = new PairPrecision();
+        precision.register("XBT/USD", 8, 5);
+        precision.register("ETH/USD", 6, 4);
+        precision.register("DOGE/USD", 0, 2);
+        precision.register("SOL/USD", 4, 8);
+        String[] symbols = {"XBT/USD", "ETH/USD", "DOGE/USD", "SOL/USD", "LTC/USD"};
+        TradingService service = new TradingService(precision);
+        Random random = new Random(20_240_321);
+        int accounts = 100;
+        int trades = 2_000_000;
+        int checkEvery = 100_000;
+        Ledger[] ledgers = new Ledger[accounts];
+        double[] naiveBalances = new double[accounts];
+        for (int a = 0; a < accounts; a++) {
+            ledgers[a] = new Ledger();
+            naiveBalances[a] = INITIAL_BALANCE;
+        }
+        int fills = 0;
+        int rejects = 0;
+        double maxNaiveDrift = 0;
+
+        // When
+        for (int i = 1; i <= trades; i++) {
+            int a = random.nextInt(accounts);
+            String id = "account-" + a;
+            String symbol = symbols[random.nextInt(symbols.length)];
+            PairPrecision.Decimals decimals = precision.of(symbol);
+            Ledger ledger = ledgers[a];
+            BigDecimal held = ledger.quantities.getOrDefault(symbol, BigDecimal.ZERO);
+            // Prices with up to 8 decimals between 0.01 and 10,000
+            BigDecimal price = BigDecimal.valueOf(1_000_000 + (long) (random.nextDouble() * 999_999_000_000L), 8);
+            boolean buy = held.signum() == 0 || random.nextInt(3) > 0;
+            BigDecimal amount;
+            if (buy) {
+                // Spend up to 1,000 USD, with two more decimals than the pair trades in
+                amount = BigDecimal.valueOf(random.nextDouble() * 1_000).divide(price, decimals.quantity() + 2, RoundingMode.DOWN);
+            } else if (random.nextInt(4) == 0) {
+                amount = held;
+            } else {
+                amount = held.multiply(BigDecimal.valueOf(random.nextInt(110) + 1, 2)).setScale(decimals.quantity() + 2, RoundingMode.DOWN);
+            }
+
+            BigDecimal quantity = amount.setScale(decimals.quantity(), RoundingMode.DOWN);
+            String expectedReject = null;
+            BigDecimal total = null;
+            if (amount.signum() == 0) {
+                expectedReject = "Amount must be greater than 0";
+            } else if (quantity.signum() == 0) {
+                expectedReject = "Amount is below the smallest lot of " + symbol;
+            } else if (buy) {
+                total = quantity.multiply(price).setScale(decimals.cost(), RoundingMode.CEILING);
+                if (total.compareTo(ledger.cash) > 0) {
+                    expectedReject = "Insufficient funds";
+                }
+            } else if (quantity.compareTo(held) > 0) {
+                expectedReject = "Insufficient cryptocurrency balance";
+            } else {
+                total = quantity.multiply(price).setScale(decimals.cost(), RoundingMode.FLOOR);
+            }
+
+            TradingService.Fill fill = null;
+            try {
+                fill = service.trade(id, buy ? "BUY" : "SELL", symbol, amount.doubleValue(), price.doubleValue());
+            } catch (IllegalArgumentException e) {
+                assertEquals(expectedReject, e.getMessage(), "Trade " + i);
+                rejects++;
+                continue;
+            }
+            assertNull(expectedReject, "Trade " + i);
+            fills++;
+            if (buy) {
+                ledger.cash = ledger.cash.subtract(total);
+                ledger.buy(symbol, quantity, total);
+                naiveBalances[a] -= total.doubleValue();
+            } else {
+                BigDecimal basisSold = ledger.sell(symbol, quantity);
+                ledger.cash = ledger.cash.add(total);
+                ledger.realized = ledger.realized.add(total.subtract(basisSold));
+                naiveBalances[a] += total.doubleValue();
+                assertEquals(total.subtract(basisSold).doubleValue(), fill.profitLoss(), "Trade " + i);
+            }
+            assertEquals(ledger.cash.doubleValue(), fill.balance(), "Trade " + i);
+
+            // Then
+            if (i % checkEvery == 0) {
+                for (int b = 0; b < accounts; b++) {
+                    UserPortfolio account = service.account("account-" + b);
+                    ledgers[b].check(account);
+                    maxNaiveDrift = Math.max(maxNaiveDrift, Math.abs(naiveBalances[b] - account.getBalance()));
+                    // Keep the transaction history from growing for the whole run
+                    account.getTransactions().clear();
+                }
+            }
+        }
+        log.info(String.format(
+            "%d random trades (%d filled, %d rejected): fixed-point drift 0, double drift up to %.2e USD",
+            trades, fills, rejects, maxNaiveDrift));
+        assertTrue(fills > trades / 2);
+    }
+
+    /**
+     * Exact account state for {@link #trade_OverMillionsOfRandomTrades_ShouldNotDrift}.
+     */
+    private static class Ledger {
+        BigDecimal cash = BigDecimal.valueOf(INITIAL_BALANCE);
+        BigDecimal realized = BigDecimal.ZERO;
+        final Map<String, BigDecimal> quantities = new HashMap<>();
+        final Map<String, BigDecimal> bases = new HashMap<>();
+        final Map<String, ArrayDeque<BigDecimal[]>> lots = new HashMap<>();
+
+        void buy(String symbol, BigDecimal quantity, BigDecimal total) {
+            quantities.merge(symbol, quantity, BigDecimal::add);
+            bases.merge(symbol, total, BigDecimal::add);
+            lots.computeIfAbsent(symbol, s -> new ArrayDeque<>()).addLast(new BigDecimal[]{quantity, total});
+        }
+
+        /**
+         * @return Cost of the oldest lots covering the quantity, splitting the last one pro rata
+         */
+        BigDecimal sell(String symbol, BigDecimal quantity) {
+            ArrayDeque<BigDecimal[]> queue = lots.get(symbol);
+            BigDecimal remaining = quantity;
+            BigDecimal basisSold = BigDecimal.ZERO;
+            while (remaining.signum() > 0) {
+                BigDecimal[] lot = queue.peekFirst();
+                if (lot[0].compareTo(remaining) <= 0) {
+                    queue.removeFirst();
+                    remaining = remaining.subtract(lot[0]);
+                    basisSold = basisSold.add(lot[1]);
+                } else {
+                    BigDecimal part = lot[1].multiply(remaining).divide(lot[0], FixedPoint.CASH_DECIMALS, RoundingMode.HALF_EVEN);
+                    lot[0] = lot[0].subtract(remaining);
+                    lot[1] = lot[1].subtract(part);
+                    basisSold = basisSold.add(part);
+                    remaining = BigDecimal.ZERO;
+                }
+            }
+            quantities.merge(symbol, quantity.negate(), BigDecimal::add);
+            bases.merge(symbol, basisSold.negate(), BigDecimal::add);
+            return basisSold;
+        }
+
+        void check(UserPortfolio account) {
+            assertEquals(units(cash, FixedPoint.CASH_DECIMALS), account.getCash());
+            BigDecimal invested = BigDecimal.ZERO;
+            int open = 0;
+            for (Map.Entry<String, BigDecimal> entry : quantities.entrySet()) {
+                Position position = account.getPositions().get(entry.getKey());
+                if (entry.getValue().signum() == 0) {
+                    assertNull(position, entry.getKey());
+                    continue;
+                }
+                open++;
+                assertEquals(units(entry.getValue(), position.getQuantityDecimals()), position.getQuantity());
+                assertEquals(units(bases.get(entry.getKey()), FixedPoint.CASH_DECIMALS), position.getCostBasis());
+                assertEquals(lots.get(entry.getKey()).size(), position.getLots().size());
+                invested = invested.add(bases.get(entry.getKey()));
+            }
+            assertEquals(open, account.getPositions().size());
+            // Every unit of cash is either still there, tied up at cost or realized as profit/loss
+            assertEquals(0, cash.add(invested).compareTo(BigDecimal.valueOf(INITIAL_BALANCE).add(realized)));
+        }
+
+        private static long units(BigDecimal value, int decimals) {
+            return value.setScale(decimals, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,23 +1,55 @@
 package com.cryptotrading.websocket;
 
+import com.cryptotrading.service.CandleEngine;
+import com.cryptotrading.controller.TradingController;
+import com.cryptotrading.service.SymbolRegistry;
+import com.cryptotrading.service.TradingService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.websocket.CloseReason;
 import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
 import jakarta.websocket.Session;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
 
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 
 @ExtendWith(MockitoExtension.class)
 class CryptoWebSocketEndpointTest {
+    private static final Logger log = LoggerFactory.getLogger(CryptoWebSocketEndpointTest.class);
 
     private CryptoWebSocketEndpoint endpoint;
     private ObjectMapper objectMapper;
@@ -26,7 +58,7 @@ class CryptoWebSocketEndpointTest {
     private Session session;
 
     @Mock
-    private RemoteEndpoint.Basic basicRemote;
+    private RemoteEndpoint.Async asyncRemote;
 
     @BeforeEach
     void setUp() {
@@ -34,9 +66,26 @@ class CryptoWebSocketEndpointTest {
         objectMapper = new ObjectMapper();
     }
 
+    @AfterEach
+    void tearDown() {
+        endpoint.onClose(session);
+    }
+
+    /**
+     * Makes the mocked remote complete every send before returning, like a client that keeps up.
+     */
+    private void completeSendsImmediately() {
+        when(session.getAsyncRemote()).thenReturn(asyncRemote);
+        doAnswer(invocation -> {
+            invocation.<SendHandler>getArgument(1).onResult(new SendResult());
+            return null;
+        }).when(asyncRemote).sendText(anyString(), any(SendHandler.class));
+    }
+
     @Test
     void onOpen_ShouldAddSessionAndDisableTimeout() throws IOException {
         // Given
+        completeSendsImmediately();
         when(session.getId()).thenReturn("test-session-id");
 
         // When
@@ -44,23 +93,25 @@ class CryptoWebSocketEndpointTest {
 
         // Then
         verify(session).setMaxIdleTimeout(0);
+        verify(asyncRemote).sendText(argThat(message -> message.contains("\"type\":\"SNAPSHOT\"")), any(SendHandler.class));
         verify(session).getId();
     }
 
     @Test
     void onMessage_WithValidSubscribeMessage_ShouldHandleSubscription() throws IOException {
         // Given
-        when(session.getBasicRemote()).thenReturn(basicRemote);
+        completeSendsImmediately();
+        endpoint.onOpen(session);
         String subscribeMessage = objectMapper.writeValueAsString(Map.of("type", "SUBSCRIBE"));
 
         // When
         endpoint.onMessage(subscribeMessage, session);
 
         // Then
-        verify(basicRemote).sendText(argThat(message -> 
+        verify(asyncRemote).sendText(argThat(message -> 
             message.contains("SUBSCRIPTION_CONFIRMED") && 
             message.contains("Successfully subscribed to price updates")
-        ));
+        ), any(SendHandler.class));
     }
 
     @Test
@@ -72,7 +123,7 @@ class CryptoWebSocketEndpointTest {
         endpoint.onMessage(invalidMessage, session);
 
         // Then
-        verify(basicRemote, never()).sendText(anyString());
+        verify(asyncRemote, never()).sendText(anyString(), any(SendHandler.class));
     }
 
     @Test
@@ -103,7 +154,7 @@ class CryptoWebSocketEndpointTest {
     @Test
     void broadcastPriceUpdate_ShouldSendToAllSessions() throws IOException {
         // Given
-        when(session.getBasicRemote()).thenReturn(basicRemote);
+        completeSendsImmediately();
         when(session.isOpen()).thenReturn(true);
         String symbol = "BTC/USD";
         double price = 50000.0;
@@ -114,12 +165,12 @@ class CryptoWebSocketEndpointTest {
         CryptoWebSocketEndpoint.broadcastPriceUpdate(symbol, price, change24h);
 
         // Then
-        verify(basicRemote).sendText(argThat(message ->
+        verify(asyncRemote).sendText(argThat(message ->
             message.contains("PRICE_UPDATE") &&
             message.contains(symbol) &&
             message.contains(String.valueOf(price)) &&
             message.contains(String.valueOf(change24h))
-        ));
+        ), any(SendHandler.class));
     }
 
     @Test
@@ -135,16 +186,16 @@ class CryptoWebSocketEndpointTest {
         CryptoWebSocketEndpoint.broadcastPriceUpdate(symbol, price, change24h);
 
         // Then
-        verify(basicRemote, never()).sendText(anyString());
+        verify(asyncRemote, never()).sendText(anyString(), any(SendHandler.class));
     }
 
     @Test
     void broadcastPriceUpdate_WhenSendFails_ShouldHandleError() throws IOException {
         // Given
-        when(session.getBasicRemote()).thenReturn(basicRemote);
+        when(session.getAsyncRemote()).thenReturn(asyncRemote);
         when(session.isOpen()).thenReturn(true);
         when(session.getId()).thenReturn("test-session-id");
-        doThrow(new IOException("Send failed")).when(basicRemote).sendText(anyString());
+        doThrow(new IllegalStateException("Send failed")).when(asyncRemote).sendText(anyString(), any(SendHandler.class));
         
         String symbol = "BTC/USD";
         double price = 50000.0;
@@ -154,8 +205,8 @@ class CryptoWebSocketEndpointTest {
         endpoint.onOpen(session);
         CryptoWebSocketEndpoint.broadcastPriceUpdate(symbol, price, change24h);
 
-        // Then
-        verify(basicRemote).sendText(anyString());
+        // Then - the snapshot sent at open failed as well
+        verify(asyncRemote, times(2)).sendText(anyString(), any(SendHandler.class));
         verify(session, atLeastOnce()).getId();
     }
 
@@ -168,6 +219,1038 @@ class CryptoWebSocketEndpointTest {
         endpoint.onMessage(nonSubscribeMessage, session);
 
         // Then
-        verify(basicRemote, never()).sendText(anyString());
+        verify(asyncRemote, never()).sendText(anyString(), any(SendHandler.class));
+    }
+
+    @Test
+    void subscribeCandles_ShouldSendHistoryAndStreamClosedBars() throws IOException {
+        // Given
+        SymbolRegistry symbols = new SymbolRegistry();
+        CandleEngine candleEngine = new CandleEngine(symbols);
+        endpoint.setCandleEngine(candleEngine);
+        int id = symbols.register("CANDLE/USD");
+        long t0 = 1_711_034_400_000L;
+        candleEngine.onTick(id, 100.0, Double.NaN, t0);
+        completeSendsImmediately();
+        endpoint.onOpen(session);
+        when(session.isOpen()).thenReturn(true);
+        String subscribe = objectMapper.writeValueAsString(
+            Map.of("type", "SUBSCRIBE_CANDLES", "symbol", "CANDLE/USD", "interval", "1m"));
+
+        try {
+            // When
+            endpoint.onMessage(subscribe, session);
+            int rolled = candleEngine.onTick(id, 101.0, Double.NaN, t0 + 60_000);
+            CryptoWebSocketEndpoint.broadcastCandles(id, "CANDLE/USD", rolled);
+
+            // Then
+            verify(asyncRemote).sendText(argThat(message ->
+                message.contains("CANDLE_HISTORY") && message.contains("\"open\":100.0")), any(SendHandler.class));
+            verify(asyncRemote).sendText(argThat(message ->
+                message.contains("\"type\":\"CANDLE\"") && message.contains("\"closed\":true")
+                    && message.contains("\"close\":100.0")), any(SendHandler.class));
+            verify(asyncRemote).sendText(argThat(message ->
+                message.contains("\"closed\":false") && message.contains("\"open\":101.0")), any(SendHandler.class));
+        } finally {
+            endpoint.onClose(session);
+        }
+    }
+
+    @Test
+    void subscribeCandles_WithUnknownInterval_ShouldSendError() throws IOException {
+        // Given
+        completeSendsImmediately();
+        endpoint.onOpen(session);
+        String subscribe = objectMapper.writeValueAsString(
+            Map.of("type", "SUBSCRIBE_CANDLES", "symbol", "CANDLE/USD", "interval", "2m"));
+
+        // When
+        endpoint.onMessage(subscribe, session);
+
+        // Then
+        verify(asyncRemote).sendText(argThat(message ->
+            message.contains("ERROR") && message.contains("Unknown candle interval: 2m")), any(SendHandler.class));
+    }
+
+    @Test
+    void subscribeCandles_ForUnknownPairs_ShouldSendErrorAndKeepNoEntry() throws IOException {
+        // Given
+        SymbolRegistry symbols = new SymbolRegistry();
+        endpoint.setCandleEngine(new CandleEngine(symbols));
+        symbols.register("CANDLE/USD");
+        completeSendsImmediately();
+        endpoint.onOpen(session);
+        @SuppressWarnings("unchecked")
+        Map<String, ?> subscriptions = (Map<String, ?>) ReflectionTestUtils.getField(CryptoWebSocketEndpoint.class,
+            "candleSubscriptions");
+
+        try {
+            // When
+            endpoint.onMessage(objectMapper.writeValueAsString(
+                Map.of("type", "SUBSCRIBE_CANDLES", "symbol", "MADE/UP", "interval", "1m")), session);
+            endpoint.onMessage(objectMapper.writeValueAsString(
+                Map.of("type", "SUBSCRIBE_CANDLES", "symbol", "CANDLE/USD", "interval", "1m")), session);
+            boolean subscribed = subscriptions.containsKey("CANDLE/USD");
+            endpoint.onMessage(objectMapper.writeValueAsString(
+                Map.of("type", "UNSUBSCRIBE_CANDLES", "symbol", "CANDLE/USD")), session);
+
+            // Then
+            verify(asyncRemote).sendText(argThat(message ->
+                message.contains("ERROR") && message.contains("Candles are not available for MADE/UP")),
+                any(SendHandler.class));
+            assertTrue(subscribed);
+            assertFalse(subscriptions.containsKey("MADE/UP"));
+            assertFalse(subscriptions.containsKey("CANDLE/USD"));
+        } finally {
+            endpoint.onClose(session);
+        }
+    }
+
+    @Test
+    void onMessage_WithFlushInterval_ShouldConfirmBatching() throws IOException {
+        // Given
+        completeSendsImmediately();
+        endpoint.onOpen(session);
+        String subscribe = objectMapper.writeValueAsString(Map.of("type", "SUBSCRIBE", "flushIntervalMs", 250));
+
+        // When
+        endpoint.onMessage(subscribe, session);
+
+        // Then
+        verify(asyncRemote).sendText(argThat(message ->
+            message.contains("SUBSCRIPTION_CONFIRMED") && message.contains("\"flushIntervalMs\":250")),
+            any(SendHandler.class));
+        assertEquals(1, CryptoWebSocketEndpoint.getOutboundMetrics().get("batchingSessions"));
+    }
+
+    @Test
+    void onMessage_AfterTheSessionClosed_ShouldNotRecreateItsOutbox() throws IOException {
+        // Given
+        completeSendsImmediately();
+        endpoint.onOpen(session);
+        endpoint.onClose(session);
+        Map<?, ?> outboxes = (Map<?, ?>) ReflectionTestUtils.getField(CryptoWebSocketEndpoint.class, "outboxes");
+
+        // When: a reply and a subscription racing the close
+        endpoint.onMessage(objectMapper.writeValueAsString(Map.of("type", "SUBSCRIBE", "format", "xml")), session);
+        endpoint.onMessage(objectMapper.writeValueAsString(Map.of("type", "SUBSCRIBE")), session);
+
+        // Then
+        assertFalse(outboxes.containsKey(session));
+        verify(asyncRemote, never()).sendText(argThat(message -> message.contains("xml")), any(SendHandler.class));
+    }
+
+    @Test
+    void onMessage_WithOutOfRangeFlushInterval_ShouldSendError() throws IOException {
+        // Given
+        completeSendsImmediately();
+        endpoint.onOpen(session);
+        String subscribe = objectMapper.writeValueAsString(Map.of("type", "SUBSCRIBE", "flushIntervalMs", 5));
+
+        // When
+        endpoint.onMessage(subscribe, session);
+
+        // Then
+        verify(asyncRemote).sendText(argThat(message ->
+            message.contains("ERROR") && message.contains("flushIntervalMs")), any(SendHandler.class));
+        verify(asyncRemote, never()).sendText(argThat(message -> message.contains("SUBSCRIPTION_CONFIRMED")),
+            any(SendHandler.class));
+    }
+
+    /**
+     * Streams 20 symbols at 200 ticks per second each to one session per flush interval and
+     * compares frame counts and the longest gap between frames.
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmark_BatchedSessions_ShouldCutFramesWithoutExceedingTheirInterval() throws Exception {
+        // Given
+        int[] intervals = {0, 50, 250, 1000};
+        List<Session> clients = new ArrayList<>();
+        List<List<Long>> frameTimes = new ArrayList<>();
+        for (int interval : intervals) {
+            List<Long> times = Collections.synchronizedList(new ArrayList<>());
+            Session client = timingSession("batch-" + interval, times);
+            endpoint.onOpen(client);
+            endpoint.onMessage(objectMapper.writeValueAsString(Map.of("type", "SUBSCRIBE", "flushIntervalMs", interval)), client);
+            clients.add(client);
+            frameTimes.add(times);
+        }
+        frameTimes.forEach(List::clear); // drop the confirmations
+        String[] pairs = new String[20];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = "PAIR" + i + "/USD";
+        }
+
+        try {
+            // When - 2 seconds of ticks, every pair every 5 ms
+            int ticks = 0;
+            long start = System.nanoTime();
+            for (int round = 0; round < 400; round++) {
+                for (String pair : pairs) {
+                    CryptoWebSocketEndpoint.broadcastPriceUpdate(pair, 100.0 + round, 0.5);
+                    ticks++;
+                }
+                java.util.concurrent.locks.LockSupport.parkNanos(start + (round + 1) * 5_000_000L - System.nanoTime());
+            }
+            Thread.sleep(1_100); // let the slowest group flush the last updates
+
+            // Then
+            log.info("Flush interval | frames | reduction | longest gap between frames");
+            for (int i = 0; i < intervals.length; i++) {
+                List<Long> times = new ArrayList<>(frameTimes.get(i));
+                long longestGap = 0;
+                for (int f = 1; f < times.size(); f++) {
+                    longestGap = Math.max(longestGap, times.get(f) - times.get(f - 1));
+                }
+                log.info(String.format("%14s | %6d | %8.0fx | %d ms", intervals[i] == 0 ? "none" : intervals[i] + " ms",
+                    times.size(), (double) ticks / times.size(), longestGap / 1_000_000));
+                if (intervals[i] > 0) {
+                    assertTrue(times.size() <= ticks / 10, intervals[i] + " ms sent " + times.size() + " frames");
+                    assertTrue(longestGap < (intervals[i] + 200) * 1_000_000L,
+                        intervals[i] + " ms gap " + longestGap / 1_000_000 + " ms");
+                }
+            }
+            assertEquals(ticks, frameTimes.get(0).size());
+        } finally {
+            clients.forEach(endpoint::onClose);
+        }
+    }
+
+    /**
+     * A session that is always open, completes sends immediately and records when each frame was sent.
+     */
+    private static Session timingSession(String id, List<Long> times) {
+        Session[] session = new Session[1];
+        RemoteEndpoint.Async remote = (RemoteEndpoint.Async) Proxy.newProxyInstance(
+            RemoteEndpoint.Async.class.getClassLoader(), new Class<?>[]{RemoteEndpoint.Async.class},
+            (proxy, method, args) -> {
+                if (method.getName().equals("sendText")) {
+                    times.add(System.nanoTime());
+                    ((SendHandler) args[1]).onResult(new SendResult());
+                }
+                return null;
+            });
+        session[0] = (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[]{Session.class},
+            (proxy, method, args) -> switch (method.getName()) {
+                case "getId" -> id;
+                case "isOpen" -> true;
+                case "getAsyncRemote" -> remote;
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                default -> null;
+            });
+        return session[0];
+    }
+
+    /**
+     * Broadcasts to 200 clients that keep up and one whose sends never complete, and checks that
+     * the stalled client neither slows the others down nor accumulates more than one update per
+     * symbol.
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmark_BroadcastWithAStalledClient_ShouldConflateOnlyThatClient() {
+        // Given
+        int symbols = 50;
+        int ticks = 10_000;
+        AtomicLong fastMessages = new AtomicLong();
+        List<Session> fast = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Session client = proxySession("fast-" + i, fastMessages, true);
+            endpoint.onOpen(client);
+            fast.add(client);
+        }
+        AtomicLong stalledMessages = new AtomicLong();
+        Session stalled = proxySession("stalled", stalledMessages, false);
+        endpoint.onOpen(stalled);
+        String[] pairs = new String[symbols];
+        for (int i = 0; i < symbols; i++) {
+            pairs[i] = "PAIR" + i + "/USD";
+        }
+
+        try {
+            // When
+            long start = System.nanoTime();
+            for (int i = 0; i < ticks; i++) {
+                CryptoWebSocketEndpoint.broadcastPriceUpdate(pairs[i % symbols], 100.0 + i, 0.5);
+            }
+            long elapsed = System.nanoTime() - start;
+
+            // Then
+            Map<String, Object> metrics = CryptoWebSocketEndpoint.getOutboundMetrics();
+            log.info(String.format("Broadcast %d ticks to %d sessions in %d ms (%.0f ticks/s); stalled client: "
+                    + "%d sent, %s conflated, max lag %s ms", ticks, fast.size() + 1, elapsed / 1_000_000,
+                ticks * 1e9 / elapsed, stalledMessages.get(), metrics.get("conflatedDrops"),
+                metrics.get("maxLagMillis")));
+            // Every client also got a snapshot at open; the stalled client's is its one send in flight
+            assertEquals((long) ticks * fast.size() + fast.size(), fastMessages.get());
+            assertEquals(1, stalledMessages.get());
+            @SuppressWarnings("unchecked")
+            Map<String, Object> slowest = ((List<Map<String, Object>>) metrics.get("slowest")).get(0);
+            assertEquals("stalled", slowest.get("id"));
+            assertEquals(symbols, slowest.get("pending"));
+            assertEquals((long) ticks - symbols, slowest.get("conflated"));
+        } finally {
+            fast.forEach(endpoint::onClose);
+            endpoint.onClose(stalled);
+        }
+    }
+
+    @Test
+    void onOpen_ShouldSendASnapshotOfTheLatestPrices() throws IOException {
+        // Given
+        SymbolRegistry symbols = new SymbolRegistry();
+        int btc = symbols.register("SNAP/USD");
+        endpoint.setSymbolRegistry(symbols);
+        CryptoWebSocketEndpoint.broadcastPriceUpdate(btc, "SNAP/USD", 50000.0, 2.5);
+        long seq = (long) CryptoWebSocketEndpoint.getOutboundMetrics().get("priceSeq");
+        completeSendsImmediately();
+        when(session.isOpen()).thenReturn(true);
+
+        // When
+        endpoint.onOpen(session);
+        CryptoWebSocketEndpoint.broadcastPriceUpdate(btc, "SNAP/USD", 50001.0, 2.6);
+
+        // Then
+        verify(asyncRemote).sendText(argThat(message -> message.startsWith("{\"type\":\"SNAPSHOT\",\"seq\":" + seq + ",")
+            && message.contains("{\"symbol\":\"SNAP/USD\",\"price\":50000.0,\"change24h\":2.5,\"seq\":" + seq + "}")),
+            any(SendHandler.class));
+        verify(asyncRemote).sendText(argThat(message -> message.contains("PRICE_UPDATE")
+            && message.contains("\"seq\":" + (seq + 1))), any(SendHandler.class));
+    }
+
+    @Test
+    void onOpen_WithLastSeq_ShouldSendOnlyTheDeltasSinceThen() throws IOException {
+        // Given
+        SymbolRegistry symbols = new SymbolRegistry();
+        int btc = symbols.register("RES/USD");
+        int eth = symbols.register("RES2/USD");
+        endpoint.setSymbolRegistry(symbols);
+        CryptoWebSocketEndpoint.broadcastPriceUpdate(btc, "RES/USD", 100.0, 0.0);
+        long lastSeq = (long) CryptoWebSocketEndpoint.getOutboundMetrics().get("priceSeq");
+        CryptoWebSocketEndpoint.broadcastPriceUpdate(eth, "RES2/USD", 200.0, 0.0);
+        CryptoWebSocketEndpoint.broadcastPriceUpdate(btc, "RES/USD", 101.0, 0.0);
+        completeSendsImmediately();
+        when(session.getRequestParameterMap()).thenReturn(Map.of("lastSeq", List.of(String.valueOf(lastSeq))));
+
+        // When
+        endpoint.onOpen(session);
+
+        // Then
+        verify(asyncRemote).sendText(eq("{\"type\":\"DELTAS\",\"fromSeq\":" + lastSeq + ",\"seq\":" + (lastSeq + 2)
+            + ",\"prices\":[{\"symbol\":\"RES2/USD\",\"price\":200.0,\"change24h\":0.0,\"seq\":" + (lastSeq + 1)
+            + "},{\"symbol\":\"RES/USD\",\"price\":101.0,\"change24h\":0.0,\"seq\":" + (lastSeq + 2) + "}]}"),
+            any(SendHandler.class));
+    }
+
+    @Test
+    void onOpen_WithALastSeqOlderThanTheLog_ShouldFallBackToASnapshot() throws IOException {
+        // Given
+        endpoint.setDeltaLogCapacity(4);
+        try {
+            SymbolRegistry symbols = new SymbolRegistry();
+            int btc = symbols.register("OLD/USD");
+            endpoint.setSymbolRegistry(symbols);
+            for (int i = 0; i < 10; i++) {
+                CryptoWebSocketEndpoint.broadcastPriceUpdate(btc, "OLD/USD", 100.0 + i, 0.0);
+            }
+            long fallbacks = (long) CryptoWebSocketEndpoint.getOutboundMetrics().get("resumeFallbacks");
+            completeSendsImmediately();
+            when(session.getRequestParameterMap()).thenReturn(Map.of("lastSeq", List.of("2")));
+
+            // When
+            endpoint.onOpen(session);
+
+            // Then
+            verify(asyncRemote).sendText(eq("{\"type\":\"SNAPSHOT\",\"seq\":10,"
+                + "\"prices\":[{\"symbol\":\"OLD/USD\",\"price\":109.0,\"change24h\":0.0,\"seq\":10}]}"),
+                any(SendHandler.class));
+            assertEquals(fallbacks + 1, CryptoWebSocketEndpoint.getOutboundMetrics().get("resumeFallbacks"));
+        } finally {
+            endpoint.setDeltaLogCapacity(PriceDeltaLog.DEFAULT_CAPACITY);
+        }
+    }
+
+    @Test
+    void subscribeWithDeadband_ShouldOnlySendMovesBeyondTheThreshold() throws IOException {
+        // Given
+        SymbolRegistry symbols = new SymbolRegistry();
+        int btc = symbols.register("DB/USD");
+        int eth = symbols.register("DB2/USD");
+        endpoint.setSymbolRegistry(symbols);
+        completeSendsImmediately();
+        when(session.isOpen()).thenReturn(true);
+        endpoint.onOpen(session);
+
+        // When
+        endpoint.onMessage(objectMapper.writeValueAsString(Map.of("type", "SUBSCRIBE",
+            "deadband", Map.of("bps", 10), "deadbands", Map.of("DB2/USD", Map.of("abs", 5)),
+            "maxSilenceMs", 60_000)), session);
+        int[] delivered = {
+            CryptoWebSocketEndpoint.broadcastPriceUpdate(btc, "DB/USD", 1000.0, 0.0),
+            CryptoWebSocketEndpoint.broadcastPriceUpdate(btc, "DB/USD", 1000.9, 0.0),
+            CryptoWebSocketEndpoint.broadcastPriceUpdate(btc, "DB/USD", 1001.0, 0.0),
+            CryptoWebSocketEndpoint.broadcastPriceUpdate(eth, "DB2/USD", 1000.0, 0.0),
+            CryptoWebSocketEndpoint.broadcastPriceUpdate(eth, "DB2/USD", 1004.0, 0.0),
+            CryptoWebSocketEndpoint.broadcastPriceUpdate(eth, "DB2/USD", 995.0, 0.0)
+        };
+
+        // Then
+        assertArrayEquals(new int[]{1, 0, 1, 1, 0, 1}, delivered);
+        verify(asyncRemote).sendText(argThat(message -> message.contains("SUBSCRIPTION_CONFIRMED")
+            && message.contains("\"maxSilenceMs\":60000")), any(SendHandler.class));
+        verify(asyncRemote, never()).sendText(argThat(message -> message.contains("1000.9")), any(SendHandler.class));
+        Map<String, Object> metrics = CryptoWebSocketEndpoint.getOutboundMetrics();
+        assertEquals(1, metrics.get("deadbandSessions"));
+        assertTrue((long) metrics.get("deadbandSuppressed") >= 2);
+    }
+
+    @Test
+    void subscribe_WithAnInvalidDeadband_ShouldSendError() throws IOException {
+        // Given
+        completeSendsImmediately();
+        endpoint.onOpen(session);
+
+        // When
+        endpoint.onMessage(objectMapper.writeValueAsString(
+            Map.of("type", "SUBSCRIBE", "deadband", Map.of("abs", 1, "bps", 2))), session);
+
+        // Then
+        verify(asyncRemote).sendText(argThat(message -> message.contains("ERROR") && message.contains("deadband")),
+            any(SendHandler.class));
+    }
+
+    @Test
+    void supervisor_ShouldDisconnectASessionWhoseSendNeverCompletes() throws IOException {
+        // Given - the snapshot sent at open stays in flight
+        when(session.getAsyncRemote()).thenReturn(asyncRemote);
+        when(session.isOpen()).thenReturn(true);
+        lenient().when(session.getId()).thenReturn("stalled");
+        CryptoWebSocketEndpoint.startSupervisor(new SessionSupervisor.Policy(0, 0, 100, 0, 0, 0, 1_000, 0, 0), 20);
+
+        try {
+            // When
+            endpoint.onOpen(session);
+
+            // Then
+            verify(session, timeout(2_000)).close(argThat(reason ->
+                reason.getCloseCode() == CloseReason.CloseCodes.TRY_AGAIN_LATER));
+            Map<String, Object> metrics = CryptoWebSocketEndpoint.getOutboundMetrics();
+            assertEquals(0, metrics.get("sessions"));
+            @SuppressWarnings("unchecked")
+            Map<String, Object> supervisor = (Map<String, Object>) metrics.get("supervisor");
+            assertEquals(1L, ((Map<?, ?>) supervisor.get("evictions")).get(SessionSupervisor.SLOW_CONSUMER));
+        } finally {
+            CryptoWebSocketEndpoint.stopSupervisor();
+        }
+    }
+
+    @Test
+    void subscribeSymbols_ShouldOnlyDeliverThoseSymbols() throws IOException {
+        // Given
+        SymbolRegistry symbols = new SymbolRegistry();
+        int btc = symbols.register("BTC/USD");
+        int eth = symbols.register("ETH/USD");
+        endpoint.setSymbolRegistry(symbols);
+        completeSendsImmediately();
+        when(session.isOpen()).thenReturn(true);
+        endpoint.onOpen(session);
+
+        // When
+        endpoint.onMessage(objectMapper.writeValueAsString(
+            Map.of("type", "SUBSCRIBE", "symbols", List.of("BTC/USD", "NOPE/USD"))), session);
+        CryptoWebSocketEndpoint.broadcastPriceUpdate(eth, "ETH/USD", 3000.0, 1.0);
+        int delivered = CryptoWebSocketEndpoint.broadcastPriceUpdate(btc, "BTC/USD", 50000.0, 2.5);
+
+        // Then
+        verify(asyncRemote).sendText(argThat(message -> message.contains("SUBSCRIPTION_CONFIRMED")
+            && message.contains("\"symbols\":[\"BTC/USD\"]")
+            && message.contains("\"unknownSymbols\":[\"NOPE/USD\"]")), any(SendHandler.class));
+        verify(asyncRemote, never()).sendText(argThat(message -> message.contains("ETH/USD")
+            && message.contains("PRICE_UPDATE")), any(SendHandler.class));
+        verify(asyncRemote).sendText(argThat(message -> message.contains("PRICE_UPDATE")
+            && message.contains("BTC/USD")), any(SendHandler.class));
+        assertEquals(1, delivered);
+    }
+
+    @Test
+    void unsubscribe_ShouldStopDeliveringTheSymbol() throws IOException {
+        // Given
+        SymbolRegistry symbols = new SymbolRegistry();
+        int btc = symbols.register("BTC/USD");
+        endpoint.setSymbolRegistry(symbols);
+        completeSendsImmediately();
+        endpoint.onOpen(session);
+        endpoint.onMessage(objectMapper.writeValueAsString(
+            Map.of("type", "SUBSCRIBE", "symbols", List.of("BTC/USD"))), session);
+
+        // When
+        endpoint.onMessage(objectMapper.writeValueAsString(
+            Map.of("type", "UNSUBSCRIBE", "symbols", List.of("BTC/USD"))), session);
+        int delivered = CryptoWebSocketEndpoint.broadcastPriceUpdate(btc, "BTC/USD", 50000.0, 2.5);
+
+        // Then
+        verify(asyncRemote).sendText(argThat(message -> message.contains("UNSUBSCRIPTION_CONFIRMED")
+            && message.contains("BTC/USD")), any(SendHandler.class));
+        assertEquals(0, delivered);
+        verify(asyncRemote, never()).sendText(argThat(message -> message.contains("PRICE_UPDATE")),
+            any(SendHandler.class));
+    }
+
+    /**
+     * 10,000 sessions each watch 5 of 500 symbols, so a tick concerns about 100 of them. The
+     * index visits only those; the baseline, where every session takes every symbol, shows the
+     * cost of visiting all sessions per tick.
+     */
+    @Test
+    void broadcastPriceUpdate_WithBroadcastThreads_ShouldDeliverEveryUpdateInSequence() throws Exception {
+        // Given
+        List<List<String>> received = new ArrayList<>();
+        List<Session> clients = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            List<String> messages = Collections.synchronizedList(new ArrayList<>());
+            received.add(messages);
+            clients.add(recordingSession("sharded-" + i, messages));
+        }
+        CryptoWebSocketEndpoint.useBroadcastThreads(2);
+
+        try {
+            clients.forEach(endpoint::onOpen);
+
+            // When
+            for (int i = 0; i < 200; i++) {
+                CryptoWebSocketEndpoint.broadcastPriceUpdate("SHARD" + (i % 3) + "/USD", 100.0 + i, 0.5);
+            }
+            awaitBroadcast();
+
+            // Then - every session got its snapshot and then each update, in seq order
+            for (List<String> messages : received) {
+                assertEquals(201, messages.size());
+                long previous = 0;
+                for (String message : messages.subList(1, messages.size())) {
+                    long seq = objectMapper.readTree(message).get("seq").asLong();
+                    assertTrue(seq > previous);
+                    previous = seq;
+                }
+            }
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> shards = (List<Map<String, Object>>) CryptoWebSocketEndpoint.getOutboundMetrics().get("shards");
+            assertEquals(2, shards.size());
+            assertEquals(5, shards.stream().mapToInt(shard -> (Integer) shard.get("sessions")).sum());
+        } finally {
+            clients.forEach(endpoint::onClose);
+            CryptoWebSocketEndpoint.useBroadcastThreads(0);
+        }
+    }
+
+    /**
+     * Fan-out throughput with the sessions split across 1, 2 and 4 broadcaster threads, against
+     * fanning out on the publishing thread. Each configuration queues about 1M messages to
+     * sessions whose sends complete immediately.
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmark_BroadcastThreads_ShouldFanOutAcrossShards() throws Exception {
+        int[] threadCounts = {0, 1, 2, 4};
+        String[] pairs = new String[50];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = "FAN" + i + "/USD";
+        }
+        log.info(String.format("Broadcast fan-out on %d cores", Runtime.getRuntime().availableProcessors()));
+        for (int sessions : new int[]{1_000, 10_000, 50_000}) {
+            LongAdder messages = new LongAdder();
+            List<Session> clients = new ArrayList<>();
+            for (int i = 0; i < sessions; i++) {
+                clients.add(countingSession("fan-" + i, messages));
+            }
+            clients.forEach(endpoint::onOpen);
+            int ticks = Math.max(20, 1_000_000 / sessions);
+            try {
+                for (int threads : threadCounts) {
+                    CryptoWebSocketEndpoint.useBroadcastThreads(threads);
+                    for (int i = 0; i < ticks / 4; i++) {
+                        CryptoWebSocketEndpoint.broadcastPriceUpdate(pairs[i % pairs.length], 100.0 + i, 0.5); // warm-up
+                    }
+                    awaitBroadcast();
+                    messages.reset();
+
+                    long start = System.nanoTime();
+                    for (int i = 0; i < ticks; i++) {
+                        CryptoWebSocketEndpoint.broadcastPriceUpdate(pairs[i % pairs.length], 200.0 + i, 0.5);
+                    }
+                    awaitBroadcast();
+                    long elapsed = System.nanoTime() - start;
+
+                    log.info(String.format("%6d sessions, %d broadcaster threads: %5.0f ticks/s, %5.2f M messages/s",
+                        sessions, threads, ticks * 1e9 / elapsed, messages.sum() * 1e3 / elapsed));
+                    assertEquals((long) ticks * sessions, messages.sum());
+                }
+            } finally {
+                CryptoWebSocketEndpoint.useBroadcastThreads(0);
+                clients.forEach(endpoint::onClose);
+            }
+        }
+    }
+
+    private static void awaitBroadcast() throws InterruptedException {
+        long deadline = System.nanoTime() + 60_000_000_000L;
+        while (CryptoWebSocketEndpoint.getBroadcastLag() > 0) {
+            assertTrue(System.nanoTime() < deadline, "broadcaster threads did not catch up");
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void benchmark_SymbolSubscriptions_ShouldOnlyVisitInterestedSessions() throws IOException {
+        // Given
+        int sessionCount = 10_000;
+        int symbolCount = 500;
+        int perSession = 5;
+        SymbolRegistry symbols = new SymbolRegistry();
+        String[] pairs = new String[symbolCount];
+        for (int i = 0; i < symbolCount; i++) {
+            pairs[i] = "SUB" + i + "/USD";
+            symbols.register(pairs[i]);
+        }
+        endpoint.setSymbolRegistry(symbols);
+        AtomicLong messages = new AtomicLong();
+        List<Session> clients = new ArrayList<>();
+        for (int i = 0; i < sessionCount; i++) {
+            clients.add(proxySession("sub-" + i, messages, true));
+        }
+
+        try {
+            clients.forEach(endpoint::onOpen);
+            int baselineTicks = 200;
+            long start = System.nanoTime();
+            long baselineDeliveries = 0;
+            for (int i = 0; i < baselineTicks; i++) {
+                baselineDeliveries += CryptoWebSocketEndpoint.broadcastPriceUpdate(
+                    i % symbolCount, pairs[i % symbolCount], 100.0 + i, 0.5);
+            }
+            long baselineNanos = System.nanoTime() - start;
+            for (int i = 0; i < sessionCount; i++) {
+                List<String> watched = new ArrayList<>();
+                for (int k = 0; k < perSession; k++) {
+                    watched.add(pairs[(i * perSession + k) % symbolCount]);
+                }
+                endpoint.onMessage(objectMapper.writeValueAsString(
+                    Map.of("type", "SUBSCRIBE", "symbols", watched)), clients.get(i));
+            }
+
+            // When
+            int ticks = 20_000;
+            messages.set(0);
+            start = System.nanoTime();
+            long deliveries = 0;
+            for (int i = 0; i < ticks; i++) {
+                deliveries += CryptoWebSocketEndpoint.broadcastPriceUpdate(
+                    i % symbolCount, pairs[i % symbolCount], 100.0 + i, 0.5);
+            }
+            long elapsed = System.nanoTime() - start;
+
+            // Then
+            log.info(String.format("All symbols: %d sessions, %.0f deliveries/tick, %.0f ticks/s; "
+                    + "%d of %d symbols each: %.0f deliveries/tick, %.0f ticks/s",
+                sessionCount, (double) baselineDeliveries / baselineTicks, baselineTicks * 1e9 / baselineNanos,
+                perSession, symbolCount, (double) deliveries / ticks, ticks * 1e9 / elapsed));
+            assertEquals((long) sessionCount * baselineTicks, baselineDeliveries);
+            assertEquals((long) ticks * sessionCount * perSession / symbolCount, deliveries);
+            assertEquals(deliveries, messages.get());
+            Map<String, Object> metrics = CryptoWebSocketEndpoint.getOutboundMetrics();
+            assertEquals(0, metrics.get("allSymbolSessions"));
+            assertEquals(sessionCount * perSession, metrics.get("symbolSubscriptions"));
+        } finally {
+            clients.forEach(endpoint::onClose);
+        }
+    }
+
+    @Test
+    void subscribeBinary_ShouldSendTheDictionaryThenBinaryRecords() throws IOException {
+        // Given
+        SymbolRegistry symbols = new SymbolRegistry();
+        symbols.register("BTC/USD");
+        endpoint.setSymbolRegistry(symbols);
+        completeSendsImmediately();
+        doAnswer(invocation -> {
+            invocation.<SendHandler>getArgument(1).onResult(new SendResult());
+            return null;
+        }).when(asyncRemote).sendBinary(any(ByteBuffer.class), any(SendHandler.class));
+        when(session.isOpen()).thenReturn(true);
+        endpoint.onOpen(session);
+
+        // When
+        endpoint.onMessage(objectMapper.writeValueAsString(Map.of("type", "SUBSCRIBE", "format", "binary")), session);
+        int eth = symbols.register("ETH/USD");
+        CryptoWebSocketEndpoint.broadcastPriceUpdate(eth, "ETH/USD", 3000.0, -1.5);
+
+        // Then
+        verify(asyncRemote).sendText(argThat(message -> message.contains("\"format\":\"binary\"")), any(SendHandler.class));
+        verify(asyncRemote).sendText(eq("{\"type\":\"SYMBOL_DICTIONARY\",\"offset\":0,\"symbols\":[\"BTC/USD\"]}"),
+            any(SendHandler.class));
+        verify(asyncRemote).sendText(eq("{\"type\":\"SYMBOL_DICTIONARY\",\"offset\":1,\"symbols\":[\"ETH/USD\"]}"),
+            any(SendHandler.class));
+        verify(asyncRemote, never()).sendText(argThat(message -> message.contains("PRICE_UPDATE")), any(SendHandler.class));
+        ArgumentCaptor<ByteBuffer> frame = ArgumentCaptor.forClass(ByteBuffer.class);
+        verify(asyncRemote).sendBinary(frame.capture(), any(SendHandler.class));
+        ByteBuffer record = frame.getValue();
+        assertEquals(PriceFrame.BYTES, record.remaining());
+        assertEquals(eth, record.getInt());
+        assertEquals(3000.0, record.getDouble());
+        assertEquals(-1.5, record.getDouble());
+        assertTrue(record.getLong() > 0);
+    }
+
+    @Test
+    void subscribe_WithUnknownFormat_ShouldSendError() throws IOException {
+        // Given
+        completeSendsImmediately();
+        endpoint.onOpen(session);
+
+        // When
+        endpoint.onMessage(objectMapper.writeValueAsString(Map.of("type", "SUBSCRIBE", "format", "xml")), session);
+
+        // Then
+        verify(asyncRemote).sendText(argThat(message -> message.contains("ERROR") && message.contains("xml")),
+            any(SendHandler.class));
+    }
+
+    /**
+     * Sends the same ticks to 1,000 sessions first as JSON, then as binary records, and compares
+     * the bytes per update and the broadcasting thread's CPU time per tick.
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmark_BinaryFrames_ShouldCutBytesAndCpuPerTick() throws IOException {
+        // Given
+        int sessionCount = 1_000;
+        int symbolCount = 50;
+        int ticks = 5_000;
+        SymbolRegistry symbols = new SymbolRegistry();
+        String[] pairs = new String[symbolCount];
+        for (int i = 0; i < symbolCount; i++) {
+            pairs[i] = "BIN" + i + "/USD";
+            symbols.register(pairs[i]);
+        }
+        endpoint.setSymbolRegistry(symbols);
+        AtomicLong bytes = new AtomicLong();
+        AtomicLong frames = new AtomicLong();
+        List<Session> clients = new ArrayList<>();
+        for (int i = 0; i < sessionCount; i++) {
+            clients.add(byteCountingSession("bin-" + i, bytes, frames));
+        }
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        try {
+            clients.forEach(endpoint::onOpen);
+            broadcastTicks(pairs, ticks, bytes, frames, threads); // warm-up
+            long[] json = broadcastTicks(pairs, ticks, bytes, frames, threads);
+            String subscribe = objectMapper.writeValueAsString(Map.of("type", "SUBSCRIBE", "format", "binary"));
+            for (Session client : clients) {
+                endpoint.onMessage(subscribe, client);
+            }
+
+            // When
+            broadcastTicks(pairs, ticks, bytes, frames, threads); // warm-up
+            long[] binary = broadcastTicks(pairs, ticks, bytes, frames, threads);
+            long jsonEncode = encodeNanos(threads, i -> CryptoWebSocketEndpoint.createPriceUpdateMessage(
+                pairs[i % symbolCount], 100.0 + i, 0.5, i));
+            long binaryEncode = encodeNanos(threads, i -> PriceFrame.encode(i % symbolCount, 100.0 + i, 0.5, i));
+
+            // Then
+            log.info(String.format("Fan-out to %d sessions | bytes/update | CPU us/tick | encode ns/tick%n"
+                    + "JSON   | %d | %.1f | %d%nbinary | %d | %.1f | %d", sessionCount,
+                json[0] / json[1], json[2] / 1e3 / ticks, jsonEncode,
+                binary[0] / binary[1], binary[2] / 1e3 / ticks, binaryEncode));
+            assertEquals((long) ticks * sessionCount, json[1]);
+            assertEquals((long) ticks * sessionCount, binary[1]);
+            assertEquals(PriceFrame.BYTES, binary[0] / binary[1]);
+            assertTrue(json[0] > 2 * binary[0], "JSON " + json[0] + " bytes, binary " + binary[0]);
+            assertEquals(sessionCount, CryptoWebSocketEndpoint.getOutboundMetrics().get("binarySessions"));
+        } finally {
+            clients.forEach(endpoint::onClose);
+        }
+    }
+
+    /**
+     * @return CPU nanoseconds per call of {@code encoder}, after a warm-up
+     */
+    private static long encodeNanos(ThreadMXBean threads, IntFunction<Object> encoder) {
+        int iterations = 200_000;
+        Object sink = null;
+        for (int i = 0; i < iterations; i++) {
+            sink = encoder.apply(i);
+        }
+        long cpuStart = threads.getCurrentThreadCpuTime();
+        for (int i = 0; i < iterations; i++) {
+            sink = encoder.apply(i);
+        }
+        assertNotNull(sink);
+        return (threads.getCurrentThreadCpuTime() - cpuStart) / iterations;
+    }
+
+    /**
+     * @return Bytes sent, frames sent and the CPU nanoseconds the broadcasting thread spent
+     */
+    private static long[] broadcastTicks(String[] pairs, int ticks, AtomicLong bytes, AtomicLong frames,
+                                         ThreadMXBean threads) {
+        // Confirmations and dictionaries were sent before; only price frames are counted
+        bytes.set(0);
+        frames.set(0);
+        long cpuStart = threads.getCurrentThreadCpuTime();
+        for (int i = 0; i < ticks; i++) {
+            int symbolId = i % pairs.length;
+            CryptoWebSocketEndpoint.broadcastPriceUpdate(symbolId, pairs[symbolId], 100.0 + i * 0.01, 0.5);
+        }
+        return new long[]{bytes.get(), frames.get(), threads.getCurrentThreadCpuTime() - cpuStart};
+    }
+
+    /**
+     * A session that is always open, completes sends immediately and counts its frames and
+     * their bytes.
+     */
+    private static Session byteCountingSession(String id, AtomicLong bytes, AtomicLong frames) {
+        RemoteEndpoint.Async remote = (RemoteEndpoint.Async) Proxy.newProxyInstance(
+            RemoteEndpoint.Async.class.getClassLoader(), new Class<?>[]{RemoteEndpoint.Async.class},
+            (proxy, method, args) -> {
+                if (method.getName().equals("sendBinary")) {
+                    bytes.addAndGet(((ByteBuffer) args[0]).remaining());
+                    frames.incrementAndGet();
+                    ((SendHandler) args[1]).onResult(new SendResult());
+                } else if (method.getName().equals("sendText")) {
+                    // Price messages are ASCII, so characters are bytes
+                    bytes.addAndGet(((String) args[0]).length());
+                    frames.incrementAndGet();
+                    ((SendHandler) args[1]).onResult(new SendResult());
+                }
+                return null;
+            });
+        return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[]{Session.class},
+            (proxy, method, args) -> switch (method.getName()) {
+                case "getId" -> id;
+                case "isOpen" -> true;
+                case "getAsyncRemote" -> remote;
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                default -> null;
+            });
+    }
+
+    @Test
+    void onMessage_WithPipelinedTrades_ShouldAnswerEachWithItsId() throws IOException {
+        // Given
+        endpoint.setTradingService(new TradingService());
+        List<String> messages = new ArrayList<>();
+        Session client = recordingSession("trader", messages);
+        endpoint.onOpen(client);
+        messages.clear();
+        try {
+            // When: three orders sent without waiting for answers
+            endpoint.onMessage("{\"type\":\"TRADE\",\"id\":\"a\",\"side\":\"BUY\",\"symbol\":\"XBT/USD\","
+                + "\"amount\":0.1,\"price\":50000}", client);
+            endpoint.onMessage("{\"type\":\"TRADE\",\"id\":7,\"side\":\"SELL\",\"symbol\":\"XBT/USD\","
+                + "\"amount\":0.04,\"price\":51000}", client);
+            endpoint.onMessage("{\"type\":\"TRADE\",\"id\":\"c\",\"side\":\"BUY\",\"symbol\":\"XBT/USD\","
+                + "\"amount\":1,\"price\":50000}", client);
+
+            // Then
+            assertEquals(3, messages.size());
+            Map<?, ?> buy = objectMapper.readValue(messages.get(0), Map.class);
+            assertEquals("TRADE_ACK", buy.get("type"));
+            assertEquals("a", buy.get("id"));
+            assertEquals(5000.0, (Double) buy.get("total"), 1e-9);
+            assertEquals(5000.0, (Double) buy.get("balance"), 1e-9);
+            assertEquals(0.1, (Double) buy.get("holding"), 1e-9);
+            assertFalse(buy.containsKey("transactions"));
+            Map<?, ?> sell = objectMapper.readValue(messages.get(1), Map.class);
+            assertEquals("TRADE_ACK", sell.get("type"));
+            assertEquals(7, sell.get("id"));
+            assertEquals(7040.0, (Double) sell.get("balance"), 1e-9);
+            assertEquals(40.0, (Double) sell.get("profitLoss"), 1e-9);
+            assertEquals(0.06, (Double) sell.get("holding"), 1e-9);
+            Map<?, ?> rejected = objectMapper.readValue(messages.get(2), Map.class);
+            assertEquals("TRADE_REJECT", rejected.get("type"));
+            assertEquals("c", rejected.get("id"));
+            assertEquals("Insufficient funds", rejected.get("message"));
+        } finally {
+            endpoint.onClose(client);
+            endpoint.setTradingService(null);
+        }
+    }
+
+    @Test
+    void onMessage_WithTradeMissingFields_ShouldReject() throws IOException {
+        // Given
+        endpoint.setTradingService(new TradingService());
+        List<String> messages = new ArrayList<>();
+        Session client = recordingSession("trader", messages);
+        endpoint.onOpen(client);
+        messages.clear();
+        try {
+            // When
+            endpoint.onMessage("{\"type\":\"TRADE\",\"id\":\"a\",\"side\":\"BUY\",\"symbol\":\"XBT/USD\"}", client);
+            endpoint.onMessage("{\"type\":\"TRADE\",\"side\":\"BUY\",\"symbol\":\"XBT/USD\","
+                + "\"amount\":1,\"price\":1}", client);
+
+            // Then
+            assertEquals(2, messages.size());
+            assertTrue(messages.get(0).contains("\"type\":\"TRADE_REJECT\""));
+            assertTrue(messages.get(0).contains("symbol and amount are required"));
+            assertTrue(messages.get(1).contains("id is required"));
+        } finally {
+            endpoint.onClose(client);
+            endpoint.setTradingService(null);
+        }
+    }
+
+    /**
+     * Compares a trade over REST, which binds a map and answers with the whole account state,
+     * with a trade over the socket. Runs in-process, so the numbers are the server-side cost per
+     * order; the container hands a session's frames to onMessage one at a time, so orders a
+     * client sends without waiting cost the server the same, and only save network round trips.
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmark_TradeOverWebSocket_ComparedWithRest() throws Exception {
+        // Given
+        TradingService service = new TradingService();
+        TradingController controller = new TradingController();
+        ReflectionTestUtils.setField(controller, "tradingService", service);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+        endpoint.setTradingService(service);
+        LongAdder acks = new LongAdder();
+        long[] ackBytes = new long[1];
+        Session client = immediateSession("trader", text -> {
+            acks.increment();
+            ackBytes[0] += text.length();
+        });
+        endpoint.onOpen(client);
+        int orders = 1_000;
+        String[] bodies = new String[2];
+        String[] frames = new String[2];
+        for (int i = 0; i < 2; i++) {
+            String side = i == 0 ? "BUY" : "SELL";
+            bodies[i] = "{\"type\":\"" + side + "\",\"symbol\":\"XBT/USD\",\"amount\":0.001,\"price\":50000}";
+            frames[i] = "{\"type\":\"TRADE\",\"id\":\"%d\",\"side\":\"" + side
+                + "\",\"symbol\":\"XBT/USD\",\"amount\":0.001,\"price\":50000}";
+        }
+        try {
+            for (int round = 0; round < 3; round++) {
+                // When: REST, one order at a time
+                long[] restNanos = new long[orders];
+                long restBytes = 0;
+                long restStart = System.nanoTime();
+                for (int i = 0; i < orders; i++) {
+                    if (i % 100 == 0) {
+                        service.resetAccount();
+                    }
+                    long start = System.nanoTime();
+                    String response = mockMvc.perform(post("/api/trade")
+                            .contentType(MediaType.APPLICATION_JSON).content(bodies[i & 1]))
+                        .andReturn().getResponse().getContentAsString();
+                    restNanos[i] = System.nanoTime() - start;
+                    restBytes += response.length();
+                }
+                long restElapsed = System.nanoTime() - restStart;
+
+                // WebSocket, one order at a time: the ack is delivered before onMessage returns
+                long[] wsNanos = new long[orders];
+                acks.reset();
+                ackBytes[0] = 0;
+                for (int i = 0; i < orders; i++) {
+                    if (i % 100 == 0) {
+                        service.resetAccount();
+                    }
+                    long start = System.nanoTime();
+                    endpoint.onMessage(String.format(frames[i & 1], i), client);
+                    wsNanos[i] = System.nanoTime() - start;
+                }
+                assertEquals(orders, acks.sum());
+                long wsBytes = ackBytes[0];
+
+                // Then
+                Arrays.sort(restNanos);
+                Arrays.sort(wsNanos);
+                if (round == 2) {
+                    log.info(String.format("REST:        p50 %5.1f us, p99 %6.1f us, %6.0f orders/s, %5d bytes/answer",
+                        restNanos[orders / 2] / 1e3, restNanos[orders * 99 / 100] / 1e3,
+                        orders * 1e9 / restElapsed, restBytes / orders));
+                    log.info(String.format("WebSocket:   p50 %5.1f us, p99 %6.1f us, %6.0f orders/s, %5d bytes/answer",
+                        wsNanos[orders / 2] / 1e3, wsNanos[orders * 99 / 100] / 1e3,
+                        orders * 1e9 / Arrays.stream(wsNanos).sum(), wsBytes / orders));
+                    assertTrue(wsBytes < restBytes / 5, "acks " + wsBytes + " bytes, REST " + restBytes + " bytes");
+                }
+            }
+        } finally {
+            endpoint.onClose(client);
+            endpoint.setTradingService(null);
+        }
+    }
+
+    /**
+     * A session that is always open, completes every send immediately and keeps the text it is sent.
+     */
+    private static Session recordingSession(String id, List<String> messages) {
+        return immediateSession(id, text -> messages.add(text));
+    }
+
+    /**
+     * A session that is always open, completes every send immediately and counts its sends
+     * without contending with other threads.
+     */
+    private static Session countingSession(String id, LongAdder messages) {
+        return immediateSession(id, text -> messages.increment());
+    }
+
+    private static Session immediateSession(String id, Consumer<String> onText) {
+        RemoteEndpoint.Async remote = (RemoteEndpoint.Async) Proxy.newProxyInstance(
+            RemoteEndpoint.Async.class.getClassLoader(), new Class<?>[]{RemoteEndpoint.Async.class},
+            (proxy, method, args) -> {
+                if (method.getName().equals("sendText")) {
+                    onText.accept((String) args[0]);
+                    ((SendHandler) args[1]).onResult(new SendResult());
+                }
+                return null;
+            });
+        return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[]{Session.class},
+            (proxy, method, args) -> switch (method.getName()) {
+                case "getId" -> id;
+                case "isOpen" -> true;
+                case "getAsyncRemote" -> remote;
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                default -> null;
+            });
+    }
+
+    /**
+     * A session that is always open and counts its sends; {@code completes} decides whether
+     * sends complete immediately or never.
+     */
+    private static Session proxySession(String id, AtomicLong messages, boolean completes) {
+        Session[] session = new Session[1];
+        RemoteEndpoint.Async remote = (RemoteEndpoint.Async) Proxy.newProxyInstance(
+            RemoteEndpoint.Async.class.getClassLoader(), new Class<?>[]{RemoteEndpoint.Async.class},
+            (proxy, method, args) -> {
+                if (method.getName().equals("sendText")) {
+                    messages.incrementAndGet();
+                    if (completes) {
+                        ((SendHandler) args[1]).onResult(new SendResult());
+                    }
+                }
+                return null;
+            });
+        session[0] = (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[]{Session.class},
+            (proxy, method, args) -> switch (method.getName()) {
+                case "getId" -> id;
+                case "isOpen" -> true;
+                case "getAsyncRemote" -> remote;
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                default -> null;
+            });
+        return session[0];
     }
-} 
\ No newline at end of file
+}
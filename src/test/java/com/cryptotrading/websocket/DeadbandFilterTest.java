@@ -0,0 +1,132 @@
+package com.cryptotrading.websocket;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeadbandFilterTest {
+
+    private static final Logger log = LoggerFactory.getLogger(DeadbandFilterTest.class);
+    private static final DeadbandFilter.Threshold[] NO_SYMBOLS = new DeadbandFilter.Threshold[0];
+    private static final long T0 = 1_711_034_400_000L;
+
+    @Test
+    void admit_WithAnAbsoluteThreshold_ShouldSuppressSmallerMoves() {
+        DeadbandFilter filter = new DeadbandFilter(new DeadbandFilter.Threshold(1.0, 0), NO_SYMBOLS, 0);
+
+        assertTrue(filter.admit(0, 100.0, T0), "first price always goes out");
+        assertFalse(filter.admit(0, 100.9, T0));
+        assertFalse(filter.admit(0, 99.1, T0));
+        assertTrue(filter.admit(0, 101.0, T0));
+        assertFalse(filter.admit(0, 101.5, T0), "measured from the last price sent");
+        assertEquals(3, filter.getSuppressed());
+    }
+
+    @Test
+    void admit_WithBasisPoints_ShouldScaleWithThePrice() {
+        DeadbandFilter filter = new DeadbandFilter(new DeadbandFilter.Threshold(0, 10), NO_SYMBOLS, 0);
+
+        filter.admit(0, 50_000.0, T0);
+        filter.admit(1, 2.0, T0);
+
+        assertFalse(filter.admit(0, 50_049.0, T0));
+        assertTrue(filter.admit(0, 50_050.0, T0));
+        assertFalse(filter.admit(1, 2.0019, T0));
+        assertTrue(filter.admit(1, 2.0021, T0));
+    }
+
+    @Test
+    void admit_WithASymbolThreshold_ShouldOverrideTheGlobalOne() {
+        DeadbandFilter.Threshold[] bySymbol = new DeadbandFilter.Threshold[3];
+        bySymbol[2] = new DeadbandFilter.Threshold(5.0, 0);
+        DeadbandFilter filter = new DeadbandFilter(DeadbandFilter.Threshold.NONE, bySymbol, 0);
+        filter.admit(1, 100.0, T0);
+        filter.admit(2, 100.0, T0);
+
+        assertTrue(filter.admit(1, 100.01, T0));
+        assertFalse(filter.admit(2, 104.0, T0));
+        assertTrue(filter.admit(2, 105.0, T0));
+    }
+
+    @Test
+    void admit_AfterMaxSilence_ShouldSendTheSuppressedPrice() {
+        DeadbandFilter filter = new DeadbandFilter(new DeadbandFilter.Threshold(1.0, 0), NO_SYMBOLS, 5_000);
+        filter.admit(0, 100.0, T0);
+
+        assertFalse(filter.admit(0, 100.1, T0 + 4_999));
+        assertTrue(filter.admit(0, 100.2, T0 + 5_000));
+        assertFalse(filter.admit(0, 100.3, T0 + 6_000), "silence restarts at the heartbeat");
+    }
+
+    @Test
+    void configure_ShouldKeepTheLastPricesSent() {
+        DeadbandFilter filter = new DeadbandFilter(new DeadbandFilter.Threshold(1.0, 0), NO_SYMBOLS, 0);
+        filter.admit(0, 100.0, T0);
+
+        filter.configure(new DeadbandFilter.Threshold(3.0, 0), NO_SYMBOLS, 0);
+
+        assertFalse(filter.admit(0, 102.0, T0));
+        assertTrue(filter.admit(0, 103.0, T0));
+    }
+
+    /**
+     * 100,000 sessions with a 5 bps deadband each receive 50 symbols whose prices random-walk in
+     * 1 bps steps. Reports the heap held by the filters, the share of updates suppressed and the
+     * cost of a decision.
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmark_100kSessions_ShouldFitInAModestHeap() {
+        // Given
+        int sessions = 100_000;
+        int symbols = 50;
+        DeadbandFilter.Threshold threshold = new DeadbandFilter.Threshold(0, 5);
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+        DeadbandFilter[] filters = new DeadbandFilter[sessions];
+        for (int i = 0; i < sessions; i++) {
+            filters[i] = new DeadbandFilter(threshold, NO_SYMBOLS, 10_000);
+        }
+        double[] prices = new double[symbols];
+        for (int s = 0; s < symbols; s++) {
+            prices[s] = 100.0 + s;
+            for (DeadbandFilter filter : filters) {
+                filter.admit(s, prices[s], T0);
+            }
+        }
+        System.gc();
+        long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+
+        // When
+        Random random = new Random(7);
+        int ticks = 2_000;
+        long admitted = 0;
+        long start = System.nanoTime();
+        for (int t = 0; t < ticks; t++) {
+            int s = t % symbols;
+            prices[s] *= random.nextBoolean() ? 1.0001 : 0.9999;
+            for (DeadbandFilter filter : filters) {
+                if (filter.admit(s, prices[s], T0 + t)) {
+                    admitted++;
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        // Then
+        long decisions = (long) ticks * sessions;
+        long stateBytes = filters[0].getStateBytes();
+        log.info(String.format("%d deadband sessions x %d symbols: %.1f MB heap (%d state bytes per session), "
+                + "%.1f%% of updates suppressed, %.1f ns per decision", sessions, symbols,
+            (heapAfter - heapBefore) / 1e6, stateBytes, 100.0 * (decisions - admitted) / decisions,
+            (double) elapsed / decisions));
+        assertTrue(admitted < decisions / 2, "admitted " + admitted);
+        assertTrue(heapAfter - heapBefore < 256L * 1024 * 1024, "heap " + (heapAfter - heapBefore));
+    }
+}
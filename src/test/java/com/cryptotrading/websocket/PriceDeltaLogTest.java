@@ -0,0 +1,64 @@
+package com.cryptotrading.websocket;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriceDeltaLogTest {
+
+    @Test
+    void append_ShouldNumberUpdatesInOrder() {
+        PriceDeltaLog log = new PriceDeltaLog(8);
+
+        PriceDeltaLog.Delta first = log.append(0, "XBT/USD", 50_000.0, 1.0);
+        PriceDeltaLog.Delta second = log.append(1, "ETH/USD", 3_000.0, -2.0);
+
+        assertEquals(1, first.seq());
+        assertEquals(2, second.seq());
+        assertEquals(2, log.head());
+    }
+
+    @Test
+    void snapshot_ShouldHoldTheLatestUpdatePerSymbol() {
+        PriceDeltaLog log = new PriceDeltaLog(8);
+        log.append(0, "XBT/USD", 50_000.0, 1.0);
+        log.append(1, "ETH/USD", 3_000.0, -2.0);
+        log.append(0, "XBT/USD", 50_100.0, 1.2);
+        log.append(-1, "UNKNOWN/USD", 1.0, 0.0);
+
+        List<PriceDeltaLog.Delta> snapshot = log.snapshot();
+
+        assertEquals(List.of("ETH/USD", "XBT/USD"), snapshot.stream().map(PriceDeltaLog.Delta::symbol).toList());
+        assertEquals(50_100.0, snapshot.get(1).price());
+        assertEquals(3, snapshot.get(1).seq());
+    }
+
+    @Test
+    void since_ShouldReturnTheLatestChangePerSymbolAfterTheGivenSeq() {
+        PriceDeltaLog log = new PriceDeltaLog(8);
+        log.append(0, "XBT/USD", 50_000.0, 1.0);
+        log.append(1, "ETH/USD", 3_000.0, -2.0);
+        log.append(0, "XBT/USD", 50_100.0, 1.2);
+        log.append(1, "ETH/USD", 3_010.0, -1.9);
+
+        List<PriceDeltaLog.Delta> deltas = log.since(2);
+
+        assertEquals(List.of(3L, 4L), deltas.stream().map(PriceDeltaLog.Delta::seq).toList());
+        assertEquals(List.of(), log.since(4));
+    }
+
+    @Test
+    void since_WhenTheUpdatesAreNoLongerKept_ShouldReturnNull() {
+        PriceDeltaLog log = new PriceDeltaLog(4);
+        for (int i = 0; i < 10; i++) {
+            log.append(i % 3, "PAIR" + (i % 3), i, 0.0);
+        }
+
+        assertNull(log.since(5), "seq 6 was overwritten");
+        assertNotNull(log.since(6));
+        assertNull(log.since(11), "never issued");
+        assertNull(log.since(-1));
+    }
+}
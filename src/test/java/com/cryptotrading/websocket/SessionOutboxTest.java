@@ -0,0 +1,378 @@
+package com.cryptotrading.websocket;
+
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionOutboxTest {
+
+    /**
+     * A session whose sends complete only when the test calls {@link #complete()}, or before
+     * returning when {@code inline} is set.
+     */
+    private static class FakeSession {
+        final List<String> sent = new ArrayList<>();
+        final List<ByteBuffer> binary = new ArrayList<>();
+        final List<SendHandler> inFlight = new ArrayList<>();
+        final boolean inline;
+        final Session session;
+
+        FakeSession(boolean inline) {
+            this.inline = inline;
+            RemoteEndpoint.Async remote = (RemoteEndpoint.Async) Proxy.newProxyInstance(
+                RemoteEndpoint.Async.class.getClassLoader(), new Class<?>[]{RemoteEndpoint.Async.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("sendText") || method.getName().equals("sendBinary")) {
+                        if (args[0] instanceof ByteBuffer frame) {
+                            binary.add(frame);
+                        } else {
+                            sent.add((String) args[0]);
+                        }
+                        SendHandler handler = (SendHandler) args[1];
+                        if (this.inline) {
+                            handler.onResult(new SendResult());
+                        } else {
+                            inFlight.add(handler);
+                        }
+                    }
+                    return null;
+                });
+            session = (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[]{Session.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getId" -> "fake";
+                    case "isOpen" -> true;
+                    case "getAsyncRemote" -> remote;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> null;
+                });
+        }
+
+        void complete() {
+            inFlight.remove(0).onResult(new SendResult());
+        }
+    }
+
+    @Test
+    void offer_WhileASendIsInFlight_ShouldKeepOnlyTheLatestUpdatePerKey() {
+        // Given
+        FakeSession client = new FakeSession(false);
+        SessionOutbox outbox = new SessionOutbox(client.session);
+
+        // When
+        outbox.offer("XBT/USD", "xbt-1");
+        outbox.offer("XBT/USD", "xbt-2");
+        outbox.offer("ETH/USD", "eth-1");
+        outbox.offer("XBT/USD", "xbt-3");
+
+        // Then - one send in flight, one pending update per symbol, in the order of the latest offers
+        assertEquals(List.of("xbt-1"), client.sent);
+        assertEquals(2, outbox.getPending());
+        assertEquals(1, outbox.getConflated());
+        client.complete();
+        client.complete();
+        assertEquals(List.of("xbt-1", "eth-1", "xbt-3"), client.sent);
+        client.complete();
+        assertEquals(0, outbox.getPending());
+        assertEquals(3, outbox.getSent());
+        assertEquals(0, outbox.getLagNanos());
+    }
+
+    @Test
+    void send_ShouldDeliverEveryMessageAheadOfConflatedUpdates() {
+        // Given
+        FakeSession client = new FakeSession(false);
+        SessionOutbox outbox = new SessionOutbox(client.session);
+        outbox.offer("XBT/USD", "xbt-1");
+
+        // When
+        outbox.offer("XBT/USD", "xbt-2");
+        outbox.send("confirmed-1");
+        outbox.send("confirmed-2");
+        while (!client.inFlight.isEmpty()) {
+            client.complete();
+        }
+
+        // Then
+        assertEquals(List.of("xbt-1", "confirmed-1", "confirmed-2", "xbt-2"), client.sent);
+    }
+
+    @Test
+    void send_WhenTheFifoIsFull_ShouldDropAndCount() {
+        // Given
+        FakeSession client = new FakeSession(false);
+        SessionOutbox outbox = new SessionOutbox(client.session);
+
+        // When - the first message goes straight into flight
+        for (int i = 0; i < SessionOutbox.MAX_CONTROL_MESSAGES + 11; i++) {
+            outbox.send("message-" + i);
+        }
+
+        // Then
+        assertEquals(SessionOutbox.MAX_CONTROL_MESSAGES, outbox.getPending());
+        assertEquals(10, outbox.getControlDropped());
+    }
+
+    @Test
+    void offer_WhenSendsCompleteInline_ShouldNotRecurse() {
+        // Given
+        FakeSession client = new FakeSession(true);
+        SessionOutbox outbox = new SessionOutbox(client.session);
+
+        // When
+        outbox.send("confirmed");
+        for (int i = 0; i < 100_000; i++) {
+            outbox.offer("XBT/USD", "xbt-" + i);
+        }
+
+        // Then
+        assertEquals(100_001, client.sent.size());
+        assertEquals(0, outbox.getConflated());
+        assertEquals(0, outbox.getPending());
+    }
+
+    /**
+     * Offers from several threads to a session whose sends complete inline, on a container
+     * thread while {@code sendText} is still running, or on the container thread later. The
+     * container rejects a send while another is in flight, so any overlap is a failure.
+     */
+    @Test
+    void offer_WithCompletionsOnOtherThreads_ShouldNeverOverlapSends() throws Exception {
+        // Given
+        Thread[] containerThread = new Thread[1];
+        ExecutorService container = Executors.newSingleThreadExecutor(task -> containerThread[0] = new Thread(task));
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        AtomicLong delivered = new AtomicLong();
+        RemoteEndpoint.Async remote = (RemoteEndpoint.Async) Proxy.newProxyInstance(
+            RemoteEndpoint.Async.class.getClassLoader(), new Class<?>[]{RemoteEndpoint.Async.class},
+            (proxy, method, args) -> {
+                if (method.getName().equals("sendText")) {
+                    if (inFlight.incrementAndGet() != 1) {
+                        overlaps.incrementAndGet();
+                    }
+                    SendHandler handler = (SendHandler) args[1];
+                    CountDownLatch written = new CountDownLatch(1);
+                    Runnable complete = () -> {
+                        delivered.incrementAndGet();
+                        inFlight.decrementAndGet();
+                        written.countDown();
+                        handler.onResult(new SendResult());
+                    };
+                    int mode = ThreadLocalRandom.current().nextInt(3);
+                    if (mode == 0) {
+                        complete.run();
+                    } else {
+                        container.execute(complete);
+                        if (mode == 1 && Thread.currentThread() != containerThread[0]) {
+                            // Returns from sendText while the container thread runs the completion
+                            written.await();
+                            Thread.yield();
+                        }
+                    }
+                }
+                return null;
+            });
+        Session session = (Session) Proxy.newProxyInstance(Session.class.getClassLoader(),
+            new Class<?>[]{Session.class}, (proxy, method, args) -> switch (method.getName()) {
+                case "getId" -> "concurrent";
+                case "getAsyncRemote" -> remote;
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                default -> null;
+            });
+        SessionOutbox outbox = new SessionOutbox(session);
+        int threads = 4;
+        int offers = 5_000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> offering = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String key = "PAIR-" + t;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < offers; i++) {
+                    if (i % 100 == 0) {
+                        outbox.send("control-" + i);
+                    }
+                    outbox.offer(key, key + "-" + i);
+                }
+            });
+            thread.start();
+            offering.add(thread);
+        }
+
+        try {
+            // When
+            start.countDown();
+            for (Thread thread : offering) {
+                thread.join();
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while ((outbox.getPending() > 0 || inFlight.get() > 0 || outbox.getSent() < delivered.get())
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+
+            // Then: every message was either sent or conflated away, one send at a time, and
+            // every completion was counted whichever thread ran it
+            assertEquals(0, overlaps.get());
+            assertEquals(delivered.get(), outbox.getSent());
+            assertEquals(0, outbox.getPending());
+            assertEquals(threads * (offers + offers / 100L),
+                delivered.get() + outbox.getConflated() + outbox.getControlDropped());
+        } finally {
+            container.shutdownNow();
+        }
+    }
+
+    @Test
+    void lag_ShouldGrowWhileStalledAndResetOnceCaughtUp() throws InterruptedException {
+        // Given
+        FakeSession client = new FakeSession(false);
+        SessionOutbox outbox = new SessionOutbox(client.session);
+        outbox.offer("XBT/USD", "xbt-1");
+        outbox.offer("XBT/USD", "xbt-2");
+
+        // When
+        Thread.sleep(20);
+        long stalledLag = outbox.getLagNanos();
+        client.complete();
+        client.complete();
+
+        // Then
+        assertTrue(stalledLag >= 20_000_000L, "lag " + stalledLag);
+        assertEquals(0, outbox.getLagNanos());
+        assertTrue(outbox.getMaxLagNanos() >= 20_000_000L);
+    }
+
+    @Test
+    void flush_ShouldSendOneFrameWithTheLatestUpdatePerSymbol() {
+        // Given
+        FakeSession client = new FakeSession(true);
+        SessionOutbox outbox = new SessionOutbox(client.session);
+        outbox.setFlushIntervalMillis(50);
+        outbox.offer("XBT/USD", "{\"p\":1}");
+        outbox.offer("ETH/USD", "{\"p\":2}");
+        outbox.offer("XBT/USD", "{\"p\":3}");
+        outbox.send("confirmed");
+
+        // When
+        assertEquals(List.of("confirmed"), client.sent);
+        boolean flushed = outbox.flush(new StringBuilder());
+
+        // Then
+        assertTrue(flushed);
+        assertEquals(List.of("confirmed", "{\"type\":\"PRICE_BATCH\",\"updates\":[{\"p\":3},{\"p\":2}]}"), client.sent);
+        assertEquals(1, outbox.getBatches());
+        assertEquals(2, outbox.getBatchedUpdates());
+        assertEquals(1, outbox.getConflated());
+        assertFalse(outbox.flush(new StringBuilder()));
+    }
+
+    @Test
+    void flush_WhileASendIsInFlight_ShouldKeepUpdatesForTheNextFlush() {
+        // Given
+        FakeSession client = new FakeSession(false);
+        SessionOutbox outbox = new SessionOutbox(client.session);
+        outbox.setFlushIntervalMillis(50);
+        outbox.offer("XBT/USD", "{\"p\":1}");
+        assertTrue(outbox.flush(new StringBuilder()));
+        outbox.offer("XBT/USD", "{\"p\":2}");
+
+        // When
+        boolean flushed = outbox.flush(new StringBuilder());
+        client.complete();
+        outbox.offer("XBT/USD", "{\"p\":3}");
+
+        // Then
+        assertFalse(flushed);
+        assertEquals(1, outbox.getPending());
+        assertTrue(outbox.flush(new StringBuilder()));
+        assertEquals("{\"type\":\"PRICE_BATCH\",\"updates\":[{\"p\":3}]}", client.sent.get(1));
+    }
+
+    @Test
+    void setFlushIntervalMillis_WhenBackToImmediate_ShouldSendWhatWasHeld() {
+        // Given
+        FakeSession client = new FakeSession(true);
+        SessionOutbox outbox = new SessionOutbox(client.session);
+        outbox.setFlushIntervalMillis(1000);
+        outbox.offer("XBT/USD", "xbt-1");
+
+        // When
+        outbox.setFlushIntervalMillis(0);
+
+        // Then
+        assertEquals(List.of("xbt-1"), client.sent);
+        assertEquals(0, outbox.getPending());
+    }
+
+    @Test
+    void offer_WithABinaryFrame_ShouldSendADuplicateAndLeaveTheSharedFrameUntouched() {
+        // Given
+        FakeSession first = new FakeSession(true);
+        FakeSession second = new FakeSession(true);
+        ByteBuffer frame = PriceFrame.encode(3, 50_000.0, 2.5, 42);
+
+        // When
+        new SessionOutbox(first.session).offer("XBT/USD", frame);
+        new SessionOutbox(second.session).offer("XBT/USD", frame);
+
+        // Then
+        assertEquals(PriceFrame.BYTES, frame.remaining());
+        assertNotSame(frame, first.binary.get(0));
+        ByteBuffer received = second.binary.get(0);
+        assertEquals(3, received.getInt());
+        assertEquals(50_000.0, received.getDouble());
+        assertEquals(2.5, received.getDouble());
+        assertEquals(42, received.getLong());
+    }
+
+    @Test
+    void flush_WhenBinary_ShouldConcatenateTheLatestRecordPerSymbol() {
+        // Given
+        FakeSession client = new FakeSession(true);
+        SessionOutbox outbox = new SessionOutbox(client.session);
+        outbox.setBinary(true);
+        outbox.setFlushIntervalMillis(50);
+        outbox.offer("XBT/USD", PriceFrame.encode(0, 1.0, 0.0, 1));
+        outbox.offer("ETH/USD", PriceFrame.encode(1, 2.0, 0.0, 2));
+        outbox.offer("XBT/USD", PriceFrame.encode(0, 3.0, 0.0, 3));
+
+        // When
+        boolean flushed = outbox.flush(new StringBuilder());
+
+        // Then
+        assertTrue(flushed);
+        assertEquals(List.of(), client.sent);
+        ByteBuffer batch = client.binary.get(0);
+        assertEquals(2 * PriceFrame.BYTES, batch.remaining());
+        assertEquals(0, batch.getInt());
+        assertEquals(3.0, batch.getDouble());
+        batch.getDouble();
+        assertEquals(3, batch.getLong());
+        assertEquals(1, batch.getInt());
+        assertEquals(2.0, batch.getDouble());
+        assertEquals(2, outbox.getBatchedUpdates());
+    }
+}
@@ -0,0 +1,239 @@
+package com.cryptotrading.websocket;
+
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionSupervisorTest {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionSupervisorTest.class);
+    private static final SessionSupervisor.Policy FAST = new SessionSupervisor.Policy(
+        20, 200, 600, 0, 0, 0, 1_000, 0, 0);
+
+    /**
+     * A session whose sends complete only when the test calls {@link #complete()}, or before
+     * returning when {@code inline} is set, and that counts pings.
+     */
+    private static class FakeClient {
+        final List<SendHandler> inFlight = new ArrayList<>();
+        final boolean inline;
+        boolean open = true;
+        int pings;
+        final Session session;
+
+        FakeClient(String id, boolean inline) {
+            this.inline = inline;
+            RemoteEndpoint.Async remote = (RemoteEndpoint.Async) Proxy.newProxyInstance(
+                RemoteEndpoint.Async.class.getClassLoader(), new Class<?>[]{RemoteEndpoint.Async.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "sendText", "sendBinary" -> {
+                            if (this.inline) {
+                                ((SendHandler) args[1]).onResult(new SendResult());
+                            } else {
+                                inFlight.add((SendHandler) args[1]);
+                            }
+                        }
+                        case "sendPing" -> pings++;
+                        default -> {
+                        }
+                    }
+                    return null;
+                });
+            session = (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[]{Session.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getId" -> id;
+                    case "isOpen" -> open;
+                    case "getAsyncRemote" -> remote;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> null;
+                });
+        }
+
+        void complete() {
+            inFlight.remove(0).onResult(new SendResult());
+        }
+    }
+
+    /**
+     * Records what the supervisor asked for and applies flush interval changes to the outbox.
+     */
+    private static class RecordingActions implements SessionSupervisor.Actions {
+        final List<String> evictions = new ArrayList<>();
+        final List<Integer> flushIntervals = new ArrayList<>();
+
+        @Override
+        public void setFlushInterval(SessionOutbox outbox, int millis) {
+            flushIntervals.add(millis);
+            outbox.setFlushIntervalMillis(millis);
+        }
+
+        @Override
+        public void evict(SessionOutbox outbox, String reason) {
+            evictions.add(outbox.getSession().getId() + ":" + reason);
+        }
+    }
+
+    @Test
+    void supervise_WhenASessionStaysBehind_ShouldWarnThenDegradeThenDisconnect() throws InterruptedException {
+        // Given
+        RecordingActions actions = new RecordingActions();
+        SessionSupervisor supervisor = new SessionSupervisor(FAST, actions);
+        FakeClient client = new FakeClient("stalled", false);
+        SessionOutbox outbox = new SessionOutbox(client.session);
+        outbox.offer("XBT/USD", "xbt-1");
+        outbox.offer("XBT/USD", "xbt-2");
+
+        // When - Then
+        supervisor.supervise(List.of(outbox), System.nanoTime());
+        assertEquals(SessionSupervisor.Level.OK, outbox.level);
+        Thread.sleep(25);
+        supervisor.supervise(List.of(outbox), System.nanoTime());
+        assertEquals(SessionSupervisor.Level.WARNED, outbox.level);
+        Thread.sleep(200);
+        supervisor.supervise(List.of(outbox), System.nanoTime());
+        assertEquals(SessionSupervisor.Level.DEGRADED, outbox.level);
+        assertEquals(List.of(1_000), actions.flushIntervals);
+        Thread.sleep(400);
+        supervisor.supervise(List.of(outbox), System.nanoTime());
+        assertEquals(List.of("stalled:" + SessionSupervisor.SLOW_CONSUMER), actions.evictions);
+        Map<String, Object> metrics = supervisor.getMetrics();
+        assertEquals(1L, metrics.get("warnings"));
+        assertEquals(1L, metrics.get("degradations"));
+        assertEquals(1L, ((Map<?, ?>) metrics.get("evictions")).get(SessionSupervisor.SLOW_CONSUMER));
+    }
+
+    @Test
+    void supervise_WhenADegradedSessionCatchesUp_ShouldRestoreItsCadence() throws InterruptedException {
+        // Given
+        RecordingActions actions = new RecordingActions();
+        SessionSupervisor supervisor = new SessionSupervisor(FAST, actions);
+        FakeClient client = new FakeClient("recovering", false);
+        SessionOutbox outbox = new SessionOutbox(client.session);
+        outbox.offer("XBT/USD", "xbt-1");
+        Thread.sleep(210);
+        supervisor.supervise(List.of(outbox), System.nanoTime());
+        assertEquals(SessionSupervisor.Level.DEGRADED, outbox.level);
+
+        // When
+        client.complete();
+        supervisor.supervise(List.of(outbox), System.nanoTime());
+
+        // Then
+        assertEquals(SessionSupervisor.Level.OK, outbox.level);
+        assertEquals(List.of(1_000, 0), actions.flushIntervals);
+        assertEquals(1L, supervisor.getMetrics().get("recoveries"));
+        assertEquals(List.of(), actions.evictions);
+    }
+
+    @Test
+    void supervise_WithTooManyPendingBytes_ShouldDisconnect() {
+        // Given
+        RecordingActions actions = new RecordingActions();
+        SessionSupervisor supervisor = new SessionSupervisor(
+            new SessionSupervisor.Policy(0, 0, 0, 0, 0, 1_000, 1_000, 0, 0), actions);
+        FakeClient client = new FakeClient("flooded", false);
+        SessionOutbox outbox = new SessionOutbox(client.session);
+        outbox.send("in flight");
+        for (int i = 0; i < 20; i++) {
+            outbox.send("x".repeat(100));
+        }
+
+        // When
+        supervisor.supervise(List.of(outbox), System.nanoTime());
+
+        // Then
+        assertEquals(2_000, outbox.getPendingBytes());
+        assertEquals(List.of("flooded:" + SessionSupervisor.SLOW_CONSUMER), actions.evictions);
+    }
+
+    @Test
+    void supervise_ShouldPingQuietSessionsAndReapThoseThatDoNotAnswer() {
+        // Given
+        RecordingActions actions = new RecordingActions();
+        SessionSupervisor supervisor = new SessionSupervisor(
+            new SessionSupervisor.Policy(0, 0, 0, 0, 0, 0, 1_000, 1_000, 3_000), actions);
+        FakeClient silent = new FakeClient("silent", true);
+        FakeClient answering = new FakeClient("answering", true);
+        SessionOutbox silentOutbox = new SessionOutbox(silent.session);
+        SessionOutbox answeringOutbox = new SessionOutbox(answering.session);
+        List<SessionOutbox> outboxes = List.of(silentOutbox, answeringOutbox);
+        long start = System.nanoTime();
+
+        // When
+        for (int second = 1; second <= 5; second++) {
+            long now = start + TimeUnit.SECONDS.toNanos(second);
+            supervisor.supervise(outboxes, now);
+            // Answers every ping right away
+            answeringOutbox.lastHeardNanos = now;
+        }
+
+        // Then
+        assertEquals(List.of("silent:" + SessionSupervisor.PING_TIMEOUT), actions.evictions);
+        assertEquals(4, silent.pings);
+        assertEquals(5, answering.pings);
+    }
+
+    @Test
+    void supervise_ShouldReapSessionsTheContainerClosed() {
+        // Given
+        RecordingActions actions = new RecordingActions();
+        SessionSupervisor supervisor = new SessionSupervisor(FAST, actions);
+        FakeClient client = new FakeClient("gone", true);
+        client.open = false;
+
+        // When
+        supervisor.supervise(List.of(new SessionOutbox(client.session)), System.nanoTime());
+
+        // Then
+        assertEquals(List.of("gone:" + SessionSupervisor.CLOSED), actions.evictions);
+    }
+
+    /**
+     * One supervision pass over 10,000 healthy sessions, with pings, which is the work added to
+     * the shared timer thread once per interval.
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmark_PassOver10kSessions() {
+        // Given
+        RecordingActions actions = new RecordingActions();
+        SessionSupervisor supervisor = new SessionSupervisor(SessionSupervisor.Policy.DEFAULT, actions);
+        List<SessionOutbox> outboxes = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            SessionOutbox outbox = new SessionOutbox(new FakeClient("s-" + i, true).session);
+            outbox.offer("XBT/USD", "xbt");
+            outboxes.add(outbox);
+        }
+        long now = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        for (int i = 0; i < 20; i++) {
+            supervisor.supervise(outboxes, now); // warm-up
+        }
+
+        // When
+        int passes = 50;
+        long start = System.nanoTime();
+        for (int i = 0; i < passes; i++) {
+            supervisor.supervise(outboxes, now);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        // Then
+        log.info(String.format("Supervision pass over %d sessions: %.2f ms", outboxes.size(), elapsed / 1e6 / passes));
+        assertEquals(List.of(), actions.evictions);
+    }
+}
@@ -0,0 +1,149 @@
+package com.cryptotrading.websocket;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SubscriptionIndexTest {
+    private static final Logger log = LoggerFactory.getLogger(SubscriptionIndexTest.class);
+
+    private static List<SessionOutbox> recipients(SubscriptionIndex index, int symbolId) {
+        AtomicLongArray interested = index.subscribers(symbolId);
+        AtomicLongArray all = index.allSymbols();
+        AtomicReferenceArray<SessionOutbox> slots = index.slots();
+        List<SessionOutbox> result = new ArrayList<>();
+        for (int w = 0; w < Math.max(interested.length(), all.length()); w++) {
+            long word = (w < interested.length() ? interested.get(w) : 0) | (w < all.length() ? all.get(w) : 0);
+            for (; word != 0; word &= word - 1) {
+                result.add(slots.get((w << 6) + Long.numberOfTrailingZeros(word)));
+            }
+        }
+        return result;
+    }
+
+    @Test
+    void add_ShouldSubscribeTheSessionToEverySymbol() {
+        SubscriptionIndex index = new SubscriptionIndex();
+        SessionOutbox outbox = new SessionOutbox(null);
+
+        index.add(outbox);
+
+        assertEquals(List.of(outbox), recipients(index, 7));
+        assertEquals(List.of(outbox), recipients(index, -1));
+        assertEquals(1, index.getAllSymbolSessions());
+    }
+
+    @Test
+    void subscribe_ShouldRouteOnlyTheChosenSymbols() {
+        SubscriptionIndex index = new SubscriptionIndex();
+        SessionOutbox btc = new SessionOutbox(null);
+        SessionOutbox eth = new SessionOutbox(null);
+        index.add(btc);
+        index.add(eth);
+        index.setAllSymbols(btc, false);
+        index.setAllSymbols(eth, false);
+
+        assertTrue(index.subscribe(btc, 1));
+        assertFalse(index.subscribe(btc, 1));
+        assertTrue(index.subscribe(eth, 2));
+        assertTrue(index.subscribe(eth, 1000));
+
+        assertEquals(List.of(btc), recipients(index, 1));
+        assertEquals(List.of(eth), recipients(index, 2));
+        assertEquals(List.of(eth), recipients(index, 1000));
+        assertEquals(List.of(), recipients(index, 3));
+        assertEquals(3, index.getSymbolSubscriptions());
+
+        assertTrue(index.unsubscribe(eth, 2));
+        assertFalse(index.unsubscribe(eth, 2));
+        assertEquals(List.of(), recipients(index, 2));
+    }
+
+    @Test
+    void subscribers_ShouldChangeInPlaceUntilTheBitsetGrows() {
+        SubscriptionIndex index = new SubscriptionIndex();
+        SessionOutbox outbox = new SessionOutbox(null);
+        index.add(outbox);
+        index.setAllSymbols(outbox, false);
+        index.subscribe(outbox, 5);
+
+        AtomicLongArray before = index.subscribers(5);
+        index.unsubscribe(outbox, 5);
+        index.subscribe(outbox, 5);
+
+        assertSame(before, index.subscribers(5));
+        assertEquals(1L, before.get(0));
+    }
+
+    @Test
+    void remove_ShouldClearSubscriptionsAndReuseTheSlot() {
+        SubscriptionIndex index = new SubscriptionIndex();
+        List<SessionOutbox> outboxes = new ArrayList<>();
+        for (int i = 0; i < 130; i++) {
+            SessionOutbox outbox = new SessionOutbox(null);
+            index.add(outbox);
+            index.setAllSymbols(outbox, false);
+            index.subscribe(outbox, 9);
+            outboxes.add(outbox);
+        }
+        SessionOutbox leaving = outboxes.get(70);
+
+        index.remove(leaving);
+        SessionOutbox joining = new SessionOutbox(null);
+        index.add(joining);
+
+        assertEquals(-1, leaving.slot);
+        assertEquals(70, joining.slot);
+        assertEquals(129, index.getSymbolSubscriptions());
+        List<SessionOutbox> recipients = recipients(index, 9);
+        assertFalse(recipients.contains(leaving));
+        assertTrue(recipients.contains(joining));
+        assertEquals(130, recipients.size());
+    }
+
+    /**
+     * Connect and disconnect cost with 50,000 sessions already indexed: the bits are changed in
+     * place, so nothing proportional to the session count is copied.
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmark_ChurnWith50kSessions() {
+        SubscriptionIndex index = new SubscriptionIndex();
+        for (int i = 0; i < 50_000; i++) {
+            index.add(new SessionOutbox(null));
+        }
+        SessionOutbox[] churn = new SessionOutbox[1_000];
+        for (int i = 0; i < churn.length; i++) {
+            churn[i] = new SessionOutbox(null);
+        }
+        int cycles = 200_000;
+        for (int i = 0; i < cycles; i++) {
+            cycle(index, churn[i % churn.length]); // warm-up
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < cycles; i++) {
+            cycle(index, churn[i % churn.length]);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        log.info(String.format("Subscription index churn with %d sessions: %.0f ns per connect and disconnect",
+            index.getSessions(), (double) elapsed / cycles));
+        assertEquals(50_000, index.getSessions());
+    }
+
+    private static void cycle(SubscriptionIndex index, SessionOutbox outbox) {
+        index.add(outbox);
+        index.setAllSymbols(outbox, false);
+        index.subscribe(outbox, 3);
+        index.remove(outbox);
+    }
+}